@@ -0,0 +1,159 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.common.tasks;
+
+import com.mesosphere.dcos.cassandra.common.tasks.cleanup.CleanupContext;
+import com.mesosphere.dcos.cassandra.common.tasks.repair.RepairContext;
+import com.mesosphere.dcos.cassandra.common.tasks.repair.RepairTask;
+import org.apache.mesos.Protos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the typed task lookups of CassandraState, which read the
+ * per-type index, with filtering all tasks by type on every call. Run with
+ * gradle :cassandra-commons:jmh -Pjmh=CassandraTaskIndexBenchmark.
+ *
+ * JMH 1.15 output of that task on a single core with JDK 8. The errors
+ * are wide on one core, so only the orders of magnitude are meaningful:
+ * <pre>
+ * Benchmark          (tasks)  Mode  Cnt       Score       Error  Units
+ * filterByType           100  avgt    5   11274.460 ± 10311.432  ns/op
+ * filterByType           300  avgt    5   72076.982 ± 34559.129  ns/op
+ * filterByType          1000  avgt    5  106270.466 ± 49071.921  ns/op
+ * filterGetOrCreate      100  avgt    5   27145.720 ±  6557.707  ns/op
+ * filterGetOrCreate      300  avgt    5   84951.290 ± 11550.250  ns/op
+ * filterGetOrCreate     1000  avgt    5  295759.869 ±  5611.043  ns/op
+ * indexByType            100  avgt    5       6.417 ±     0.140  ns/op
+ * indexByType            300  avgt    5       6.640 ±     3.256  ns/op
+ * indexByType           1000  avgt    5       6.281 ±     0.216  ns/op
+ * indexGetOrCreate       100  avgt    5      17.154 ±     5.346  ns/op
+ * indexGetOrCreate       300  avgt    5      10.425 ±    14.017  ns/op
+ * indexGetOrCreate      1000  avgt    5       9.808 ±    10.744  ns/op
+ * put                    100  avgt    5     274.107 ±    88.148  ns/op
+ * put                    300  avgt    5     268.724 ±   146.264  ns/op
+ * put                   1000  avgt    5     387.827 ±   107.826  ns/op
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CassandraTaskIndexBenchmark {
+
+    @Param({"100", "300", "1000"})
+    private int tasks;
+
+    private CassandraTaskIndex index;
+    private RepairTask repair;
+
+    private static CassandraTask task(String name, CassandraData data)
+        throws Exception {
+        return CassandraTask.parse(Protos.TaskInfo.newBuilder()
+            .setName(name)
+            .setTaskId(Protos.TaskID.newBuilder()
+                .setValue(name + "__" + UUID.randomUUID()))
+            .setSlaveId(Protos.SlaveID.newBuilder().setValue(""))
+            .setData(data.getBytes())
+            .build());
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        // Half of the tasks are repairs and half are cleanups, as after a
+        // repair and a cleanup of a cluster of tasks / 2 nodes.
+        final Map<String, CassandraTask> all = new HashMap<>();
+        for (int i = 0; i < tasks / 2; i++) {
+            final CassandraTask repair = task("repair-node-" + i,
+                CassandraData.createRepairData("", RepairContext.create(
+                    Collections.emptyList(), Collections.emptyList(),
+                    Collections.emptyList())));
+            final CassandraTask cleanup = task("cleanup-node-" + i,
+                CassandraData.createCleanupData("", CleanupContext.create(
+                    Collections.emptyList(), Collections.emptyList(),
+                    Collections.emptyList())));
+            all.put(repair.getName(), repair);
+            all.put(cleanup.getName(), cleanup);
+        }
+        index = CassandraTaskIndex.of(all);
+        repair = (RepairTask) all.get("repair-node-0");
+    }
+
+    /**
+     * The lookup of CassandraState.getRepairTasks() before the index.
+     */
+    private Map<String, RepairTask> filterRepairTasks() {
+        return index.get().entrySet().stream().filter(entry -> entry.getValue()
+            .getType() == CassandraTask.TYPE.REPAIR).collect
+            (Collectors.toMap(entry -> entry.getKey(), entry -> (
+                (RepairTask) entry.getValue())));
+    }
+
+    @Benchmark
+    public Map<String, RepairTask> filterByType() {
+        return filterRepairTasks();
+    }
+
+    @Benchmark
+    public Map<String, RepairTask> indexByType() {
+        return index.get(CassandraTask.TYPE.REPAIR);
+    }
+
+    /**
+     * The getOrCreate lookup of CassandraState.getOrCreateDaemon() before
+     * the index, which filtered the tasks twice.
+     */
+    @Benchmark
+    public RepairTask filterGetOrCreate() {
+        if (filterRepairTasks().containsKey(repair.getName())) {
+            return filterRepairTasks().get(repair.getName());
+        }
+        return null;
+    }
+
+    @Benchmark
+    public RepairTask indexGetOrCreate() {
+        final Map<String, RepairTask> repairs =
+            index.get(CassandraTask.TYPE.REPAIR);
+        return repairs.get(repair.getName());
+    }
+
+    /**
+     * The cost of keeping the indexes, paid by each write of a task.
+     */
+    @Benchmark
+    public void put() {
+        index.put(repair);
+    }
+}
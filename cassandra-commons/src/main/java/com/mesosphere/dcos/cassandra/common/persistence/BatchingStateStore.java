@@ -0,0 +1,453 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.common.persistence;
+
+import io.dropwizard.lifecycle.Managed;
+import org.apache.mesos.Protos;
+import org.apache.mesos.offer.TaskException;
+import org.apache.mesos.offer.TaskUtils;
+import org.apache.mesos.state.StateStore;
+import org.apache.mesos.state.StateStoreException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BatchingStateStore is a write-behind StateStore. Task and status writes
+ * are buffered per task, so a write supersedes the pending write of the
+ * same task, and are flushed once per window: all pending tasks and the
+ * latest status of each task are handed to a Writer in a single write,
+ * which a transactional Writer persists atomically. Reads are served from the pending writes first, so
+ * the scheduler always reads its own writes, and the statuses it has read
+ * or written are cached, as the scheduler is the only writer of its state.
+ * Every task write or removal increments the version of the tasks, so that
+ * readers that cache the tasks can cheaply detect writes they did not make.
+ *
+ * Writes that must be durable before the scheduler acts on them, e.g. a
+ * task that is about to be launched, must be followed by a call to flush(), or be acted on from an action
+ * passed to whenFlushed(), which runs once the writes are flushed.
+ * Statuses are validated when they are stored, as the underlying StateStore
+ * would validate them, so a status of an unknown task is rejected to its
+ * caller rather than at flush time. Writes that fail to flush stay pending
+ * and are retried in the next window. Framework ids and properties are
+ * written through.
+ */
+public class BatchingStateStore implements StateStore, Managed {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            BatchingStateStore.class);
+
+    /**
+     * The default time writes are buffered for before they are flushed.
+     */
+    public static final long DEFAULT_WINDOW_MS = 20;
+
+    private static final long STOP_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+
+    /**
+     * Writer persists the writes flushed by a BatchingStateStore.
+     */
+    public interface Writer extends Closeable {
+        /**
+         * Writes tasks and the statuses of tasks.
+         *
+         * @param tasks    The tasks to write.
+         * @param statuses The statuses to write, whose tasks are either
+         *                 already stored or among the tasks.
+         * @throws StateStoreException If the writes fail.
+         */
+        void write(Collection<Protos.TaskInfo> tasks,
+                   Collection<Protos.TaskStatus> statuses)
+                throws StateStoreException;
+
+        /**
+         * Called when a task has been removed from the underlying
+         * StateStore, so that the Writer can forget its nodes.
+         *
+         * @param taskName The name of the removed task.
+         */
+        default void cleared(String taskName) {
+        }
+
+        @Override
+        default void close() {
+        }
+    }
+
+    private final StateStore store;
+    private final Writer writer;
+    private final ScheduledExecutorService executor;
+    private final long windowMs;
+
+    // Maps Task Name -> pending TaskInfo / TaskStatus
+    private final ConcurrentMap<String, Protos.TaskInfo> pendingTasks =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Protos.TaskStatus> pendingStatuses =
+            new ConcurrentHashMap<>();
+    // Maps Task Name -> persisted TaskStatus
+    private final ConcurrentMap<String, Protos.TaskStatus> statuses =
+            new ConcurrentHashMap<>();
+    // Maps Task Name -> TaskID of the latest TaskInfo
+    private final ConcurrentMap<String, Protos.TaskID> taskIds =
+            new ConcurrentHashMap<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final AtomicLong version = new AtomicLong(0);
+    // The number of writes of tasks and statuses made
+    private final AtomicLong writes = new AtomicLong(0);
+    // Serializes flushes and the clearing of tasks
+    private final Object lock = new Object();
+    // The number of writes persisted by the flushes and the actions waiting
+    // for writes to be flushed, guarded by flushedLock
+    private final Object flushedLock = new Object();
+    private long flushed = 0;
+    private final SortedMap<Long, List<Runnable>> waiting = new TreeMap<>();
+
+    /**
+     * Creates a BatchingStateStore that flushes to a StateStore, tasks
+     * first, followed by each status.
+     *
+     * @param store    The StateStore writes are flushed to.
+     * @param executor The executor that flushes the writes.
+     * @param windowMs The time writes are buffered for before they are
+     *                 flushed.
+     */
+    public BatchingStateStore(final StateStore store,
+                              final ScheduledExecutorService executor,
+                              final long windowMs) {
+        this(store, (tasks, statuses) -> {
+            if (!tasks.isEmpty()) {
+                store.storeTasks(tasks);
+            }
+            for (Protos.TaskStatus status : statuses) {
+                store.storeStatus(status);
+            }
+        }, executor, windowMs);
+    }
+
+    /**
+     * Creates a BatchingStateStore.
+     *
+     * @param store    The StateStore writes are read from.
+     * @param writer   The Writer writes are flushed to. It must write to
+     *                 the state read by store.
+     * @param executor The executor that flushes the writes. It is shut
+     *                 down when the BatchingStateStore is stopped.
+     * @param windowMs The time writes are buffered for before they are
+     *                 flushed.
+     */
+    public BatchingStateStore(final StateStore store,
+                              final Writer writer,
+                              final ScheduledExecutorService executor,
+                              final long windowMs) {
+        this.store = store;
+        this.writer = writer;
+        this.executor = executor;
+        this.windowMs = windowMs;
+    }
+
+    private static String getName(final Protos.TaskStatus status) {
+        try {
+            return TaskUtils.toTaskName(status.getTaskId());
+        } catch (TaskException e) {
+            throw new StateStoreException(
+                    "Failed to parse task name of status: " + status, e);
+        }
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.schedule(() -> {
+                    scheduled.set(false);
+                    try {
+                        flush();
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Failed to flush writes, retrying", e);
+                        schedule();
+                    }
+                }, windowMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Stopped, so the writes are flushed by their caller.
+                scheduled.set(false);
+                flush();
+            }
+        }
+    }
+
+    private Optional<Protos.TaskID> getTaskId(final String taskName)
+            throws StateStoreException {
+        final Protos.TaskID id = taskIds.get(taskName);
+        if (id != null) {
+            return Optional.of(id);
+        }
+        final Optional<Protos.TaskInfo> task = store.fetchTask(taskName);
+        if (task.isPresent()) {
+            taskIds.putIfAbsent(taskName, task.get().getTaskId());
+        }
+        return task.map(Protos.TaskInfo::getTaskId);
+    }
+
+    /**
+     * Gets the version of the tasks.
+     *
+     * @return The number of times tasks have been written or removed.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Writes all pending tasks and statuses with the Writer.
+     *
+     * @throws StateStoreException If the writes fail. They stay pending and
+     *                             are retried by the next flush.
+     */
+    public void flush() throws StateStoreException {
+        final long written;
+        synchronized (lock) {
+            // Writes are counted once they are pending, so all the writes
+            // counted here are either among the pending writes or flushed.
+            written = writes.get();
+            final Map<String, Protos.TaskInfo> tasks =
+                    new HashMap<>(pendingTasks);
+            final Map<String, Protos.TaskStatus> pending =
+                    new HashMap<>(pendingStatuses);
+            if (!tasks.isEmpty() || !pending.isEmpty()) {
+                writer.write(tasks.values(), pending.values());
+                // Keep the writes that were made again during the flush.
+                tasks.forEach((name, task) -> pendingTasks.remove(name, task));
+                pending.forEach((name, status) -> {
+                    statuses.put(name, status);
+                    pendingStatuses.remove(name, status);
+                });
+                LOGGER.debug("Flushed tasks: {}, statuses: {}",
+                        tasks.size(), pending.size());
+            }
+        }
+        flushed(written);
+    }
+
+    private void flushed(final long written) {
+        final List<Runnable> actions = new ArrayList<>();
+        synchronized (flushedLock) {
+            flushed = Math.max(flushed, written);
+            final SortedMap<Long, List<Runnable>> ready =
+                    waiting.headMap(flushed + 1);
+            ready.values().forEach(actions::addAll);
+            ready.clear();
+        }
+        for (Runnable action : actions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to run action after flush", e);
+            }
+        }
+    }
+
+    /**
+     * Runs an action once all the writes made before the call are flushed,
+     * by the thread that flushes them. The action is run at once if they
+     * are already flushed, and never if they are not flushed before the
+     * BatchingStateStore is stopped.
+     *
+     * @param action The action to run.
+     */
+    public void whenFlushed(final Runnable action) {
+        final long written = writes.get();
+        synchronized (flushedLock) {
+            if (flushed < written) {
+                waiting.computeIfAbsent(written, key -> new ArrayList<>())
+                        .add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    @Override
+    public void storeTasks(final Collection<Protos.TaskInfo> tasks)
+            throws StateStoreException {
+        for (Protos.TaskInfo task : tasks) {
+            pendingTasks.put(task.getName(), task);
+            taskIds.put(task.getName(), task.getTaskId());
+        }
+        writes.incrementAndGet();
+        version.incrementAndGet();
+        schedule();
+    }
+
+    @Override
+    public void storeStatus(final Protos.TaskStatus status)
+            throws StateStoreException {
+        final String name = getName(status);
+        final Optional<Protos.TaskID> id = getTaskId(name);
+        if (!id.isPresent()) {
+            throw new StateStoreException("The following TaskInfo is not " +
+                    "present in the StateStore: " + name);
+        }
+        if (!id.get().equals(status.getTaskId())) {
+            throw new StateStoreException("Task ID: " +
+                    status.getTaskId().getValue() + " of status does not " +
+                    "match the Task ID: " + id.get().getValue() +
+                    " of task: " + name);
+        }
+        pendingStatuses.put(name, status);
+        writes.incrementAndGet();
+        schedule();
+    }
+
+    @Override
+    public void clearTask(final String taskName) throws StateStoreException {
+        synchronized (lock) {
+            pendingTasks.remove(taskName);
+            pendingStatuses.remove(taskName);
+            statuses.remove(taskName);
+            taskIds.remove(taskName);
+            store.clearTask(taskName);
+            writer.cleared(taskName);
+            version.incrementAndGet();
+        }
+    }
+
+    @Override
+    public Collection<String> fetchTaskNames() throws StateStoreException {
+        final Set<String> names = new LinkedHashSet<>(store.fetchTaskNames());
+        names.addAll(pendingTasks.keySet());
+        return names;
+    }
+
+    @Override
+    public Collection<Protos.TaskInfo> fetchTasks()
+            throws StateStoreException {
+        final Map<String, Protos.TaskInfo> tasks = new LinkedHashMap<>();
+        for (Protos.TaskInfo task : store.fetchTasks()) {
+            tasks.put(task.getName(), task);
+        }
+        tasks.putAll(pendingTasks);
+        return new ArrayList<>(tasks.values());
+    }
+
+    @Override
+    public Optional<Protos.TaskInfo> fetchTask(final String taskName)
+            throws StateStoreException {
+        final Protos.TaskInfo task = pendingTasks.get(taskName);
+        return (task != null) ? Optional.of(task) : store.fetchTask(taskName);
+    }
+
+    @Override
+    public Collection<Protos.TaskStatus> fetchStatuses()
+            throws StateStoreException {
+        final Map<String, Protos.TaskStatus> all = new LinkedHashMap<>();
+        for (Protos.TaskStatus status : store.fetchStatuses()) {
+            all.put(getName(status), status);
+        }
+        all.putAll(pendingStatuses);
+        return new ArrayList<>(all.values());
+    }
+
+    @Override
+    public Optional<Protos.TaskStatus> fetchStatus(final String taskName)
+            throws StateStoreException {
+        Protos.TaskStatus status = pendingStatuses.get(taskName);
+        if (status == null) {
+            status = statuses.get(taskName);
+        }
+        if (status != null) {
+            return Optional.of(status);
+        }
+        final Optional<Protos.TaskStatus> stored = store.fetchStatus(taskName);
+        if (stored.isPresent()) {
+            statuses.putIfAbsent(taskName, stored.get());
+        }
+        return stored;
+    }
+
+    @Override
+    public void storeFrameworkId(final Protos.FrameworkID fwkId)
+            throws StateStoreException {
+        store.storeFrameworkId(fwkId);
+    }
+
+    @Override
+    public void clearFrameworkId() throws StateStoreException {
+        store.clearFrameworkId();
+    }
+
+    @Override
+    public Optional<Protos.FrameworkID> fetchFrameworkId()
+            throws StateStoreException {
+        return store.fetchFrameworkId();
+    }
+
+    @Override
+    public void storeProperty(final String key, final byte[] value)
+            throws StateStoreException {
+        store.storeProperty(key, value);
+    }
+
+    @Override
+    public byte[] fetchProperty(final String key) throws StateStoreException {
+        return store.fetchProperty(key);
+    }
+
+    @Override
+    public Collection<String> fetchPropertyKeys() throws StateStoreException {
+        return store.fetchPropertyKeys();
+    }
+
+    @Override
+    public void clearProperty(final String key) throws StateStoreException {
+        store.clearProperty(key);
+    }
+
+    @Override
+    public void start() throws Exception {
+
+    }
+
+    @Override
+    public void stop() throws Exception {
+        try {
+            flush();
+        } finally {
+            executor.shutdown();
+            if (!executor.awaitTermination(STOP_TIMEOUT_MS,
+                    TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+            writer.close();
+        }
+    }
+}
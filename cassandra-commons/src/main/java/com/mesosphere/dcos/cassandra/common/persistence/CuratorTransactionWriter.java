@@ -0,0 +1,200 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.common.persistence;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.transaction.CuratorTransaction;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
+import org.apache.mesos.Protos;
+import org.apache.mesos.offer.TaskException;
+import org.apache.mesos.offer.TaskUtils;
+import org.apache.mesos.state.StateStoreException;
+import org.apache.zookeeper.KeeperException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CuratorTransactionWriter writes the tasks and statuses flushed by a
+ * BatchingStateStore to ZooKeeper in a single transaction, so a flush is
+ * persisted entirely or not at all. The nodes are laid out as dcos-commons'
+ * CuratorStateStore lays them out, which reads them back:
+ * <pre>
+ * /dcos-service-[service name]/Tasks/[task name]/TaskInfo
+ * /dcos-service-[service name]/Tasks/[task name]/TaskStatus
+ * </pre>
+ * The writer remembers the nodes it has created, so a flush costs the
+ * single round trip of its transaction. Only when a transaction fails
+ * because a node was created or removed by another writer are the nodes of
+ * its tasks read, and the transaction retried once.
+ */
+public class CuratorTransactionWriter implements BatchingStateStore.Writer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            CuratorTransactionWriter.class);
+
+    /**
+     * The prefix of the root path of a service's state, which is the
+     * service's zk_path.
+     */
+    public static final String SERVICE_ROOT_PREFIX = "/dcos-service-";
+    public static final String TASKS_ROOT_NAME = "Tasks";
+    public static final String TASK_INFO_NAME = "TaskInfo";
+    public static final String TASK_STATUS_NAME = "TaskStatus";
+
+    private final CuratorFramework curator;
+    private final String tasksPath;
+    // The paths of the nodes known to exist
+    private final Set<String> existing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a CuratorTransactionWriter.
+     *
+     * @param curator     The started client the writer writes through. It
+     *                    is closed with the writer.
+     * @param serviceName The name of the service whose tasks are written.
+     */
+    public CuratorTransactionWriter(final CuratorFramework curator,
+                                    final String serviceName) {
+        this.curator = curator;
+        this.tasksPath = SERVICE_ROOT_PREFIX + serviceName + "/" +
+                TASKS_ROOT_NAME;
+    }
+
+    private String getTaskPath(final String taskName) {
+        return tasksPath + "/" + taskName;
+    }
+
+    @Override
+    public void write(final Collection<Protos.TaskInfo> tasks,
+                      final Collection<Protos.TaskStatus> statuses)
+            throws StateStoreException {
+        final Set<String> taskNames = new LinkedHashSet<>();
+        try {
+            for (Protos.TaskInfo task : tasks) {
+                taskNames.add(task.getName());
+            }
+            for (Protos.TaskStatus status : statuses) {
+                taskNames.add(TaskUtils.toTaskName(status.getTaskId()));
+            }
+        } catch (TaskException e) {
+            throw new StateStoreException(
+                    "Failed to parse task name of status", e);
+        }
+
+        try {
+            try {
+                commit(tasks, statuses);
+            } catch (KeeperException.NodeExistsException |
+                    KeeperException.NoNodeException e) {
+                LOGGER.info("Nodes of tasks changed since they were " +
+                        "written, reading them: {}", taskNames);
+                read(taskNames);
+                commit(tasks, statuses);
+            }
+        } catch (Exception e) {
+            throw new StateStoreException("Failed to write tasks: " +
+                    tasks.size() + ", statuses: " + statuses.size(), e);
+        }
+    }
+
+    private void commit(final Collection<Protos.TaskInfo> tasks,
+                        final Collection<Protos.TaskStatus> statuses)
+            throws Exception {
+        // The paths created by the transaction
+        final Set<String> created = new HashSet<>();
+        CuratorTransaction transaction = curator.inTransaction();
+        for (Protos.TaskInfo task : tasks) {
+            transaction = set(transaction, task.getName(), TASK_INFO_NAME,
+                    task.toByteArray(), created);
+        }
+        for (Protos.TaskStatus status : statuses) {
+            transaction = set(transaction,
+                    TaskUtils.toTaskName(status.getTaskId()),
+                    TASK_STATUS_NAME, status.toByteArray(), created);
+        }
+        if (transaction instanceof CuratorTransactionFinal) {
+            ((CuratorTransactionFinal) transaction).commit();
+            existing.addAll(created);
+        }
+    }
+
+    /**
+     * Adds the write of a node of a task to a transaction, creating the
+     * node, and the task's node, unless they are known to exist.
+     */
+    private CuratorTransaction set(final CuratorTransaction transaction,
+                                   final String taskName,
+                                   final String name,
+                                   final byte[] data,
+                                   final Set<String> created)
+            throws Exception {
+        final String taskPath = getTaskPath(taskName);
+        final String path = taskPath + "/" + name;
+        if (existing.contains(path) || created.contains(path)) {
+            return transaction.setData().forPath(path, data).and();
+        }
+        CuratorTransaction parent = transaction;
+        if (!existing.contains(taskPath) && created.add(taskPath)) {
+            parent = transaction.create().forPath(taskPath).and();
+        }
+        created.add(path);
+        return parent.create().forPath(path, data).and();
+    }
+
+    /**
+     * Reads which nodes of tasks exist, creating the node the tasks are
+     * stored under if needed, as a transaction can not create it along with
+     * its children.
+     */
+    private void read(final Collection<String> taskNames) throws Exception {
+        try {
+            curator.create().creatingParentsIfNeeded().forPath(tasksPath);
+        } catch (KeeperException.NodeExistsException e) {
+            // Created by the StateStore.
+        }
+        for (String taskName : taskNames) {
+            final String taskPath = getTaskPath(taskName);
+            for (String path : Arrays.asList(taskPath,
+                    taskPath + "/" + TASK_INFO_NAME,
+                    taskPath + "/" + TASK_STATUS_NAME)) {
+                if (curator.checkExists().forPath(path) != null) {
+                    existing.add(path);
+                } else {
+                    existing.remove(path);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void cleared(final String taskName) {
+        final String taskPath = getTaskPath(taskName);
+        existing.remove(taskPath);
+        existing.remove(taskPath + "/" + TASK_INFO_NAME);
+        existing.remove(taskPath + "/" + TASK_STATUS_NAME);
+    }
+
+    @Override
+    public void close() {
+        curator.close();
+    }
+}
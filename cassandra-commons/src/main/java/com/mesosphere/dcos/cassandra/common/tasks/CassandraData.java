@@ -5,12 +5,14 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import com.mesosphere.dcos.cassandra.common.CassandraProtos;
 import com.mesosphere.dcos.cassandra.common.config.CassandraConfig;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.TransferProgress;
 import com.mesosphere.dcos.cassandra.common.tasks.cleanup.CleanupContext;
 import com.mesosphere.dcos.cassandra.common.tasks.repair.RepairContext;
 import org.apache.mesos.Protos;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * CassandraData encapsulates command task and status data
@@ -85,13 +87,7 @@ public class CassandraData {
         return new CassandraData(
             CassandraTask.TYPE.BACKUP_SNAPSHOT,
             hostname,
-            context.getNodeId(),
-            context.getName(),
-            context.getExternalLocation(),
-            context.getLocalLocation(),
-            context.getAccountId(),
-            context.getSecretKey(),
-            context.getUsesEmc());
+            context);
     }
 
     public static final CassandraData createBackupSnapshotStatusData() {
@@ -104,19 +100,26 @@ public class CassandraData {
         return new CassandraData(
             CassandraTask.TYPE.BACKUP_UPLOAD,
             hostname,
-            context.getNodeId(),
-            context.getName(),
-            context.getExternalLocation(),
-            context.getLocalLocation(),
-            context.getAccountId(),
-            context.getSecretKey(),
-            context.getUsesEmc());
+            context);
     }
 
     public static final CassandraData createBackupUploadStatusData() {
         return new CassandraData(CassandraTask.TYPE.BACKUP_UPLOAD);
     }
 
+    public static final CassandraData createBackupVerifyData(
+        final String hostname,
+        final BackupRestoreContext context) {
+        return new CassandraData(
+            CassandraTask.TYPE.BACKUP_VERIFY,
+            hostname,
+            context);
+    }
+
+    public static final CassandraData createBackupVerifyStatusData() {
+        return new CassandraData(CassandraTask.TYPE.BACKUP_VERIFY);
+    }
+
 
     public static final CassandraData createSnapshotDownloadData(
         final String hostname,
@@ -124,13 +127,7 @@ public class CassandraData {
         return new CassandraData(
             CassandraTask.TYPE.SNAPSHOT_DOWNLOAD,
             hostname,
-            context.getNodeId(),
-            context.getName(),
-            context.getExternalLocation(),
-            context.getLocalLocation(),
-            context.getAccountId(),
-            context.getSecretKey(),
-            context.getUsesEmc());
+            context);
     }
 
     public static final CassandraData createSnapshotDownloadStatusData() {
@@ -143,13 +140,7 @@ public class CassandraData {
         return new CassandraData(
             CassandraTask.TYPE.SNAPSHOT_RESTORE,
             hostname,
-            context.getNodeId(),
-            context.getName(),
-            context.getExternalLocation(),
-            context.getLocalLocation(),
-            context.getAccountId(),
-            context.getSecretKey(),
-            context.getUsesEmc());
+            context);
     }
 
     public static final CassandraData createRestoreSnapshotStatusData() {
@@ -218,25 +209,37 @@ public class CassandraData {
 
     private CassandraData(final CassandraTask.TYPE type,
                           final String hostname,
-                          final String nodeId,
-                          final String name,
-                          final String externalLocation,
-                          final String localLocation,
-                          final String accountId,
-                          final String secretKey,
-                          final boolean usesEmc) {
+                          final BackupRestoreContext context) {
 
         data = CassandraProtos.CassandraData.newBuilder()
             .setType(type.ordinal())
             .setHostname(hostname)
-            .setNode(nodeId)
-            .setBackupName(name)
-            .setExternalLocation(externalLocation)
-            .setLocalLocation(localLocation)
-            .setAccoundId(accountId)
-            .setSecretKey(secretKey)
+            .setNode(context.getNodeId())
+            .setBackupName(context.getName())
+            .setExternalLocation(context.getExternalLocation())
+            .setLocalLocation(context.getLocalLocation())
+            .setAccoundId(context.getAccountId())
+            .setSecretKey(context.getSecretKey())
             .setState(Protos.TaskState.TASK_STAGING.ordinal())
-            .setUsesEmc(usesEmc)
+            .setUsesEmc(context.getUsesEmc())
+            .setPartSizeMb(context.getPartSizeMb())
+            .setConcurrency(context.getConcurrency())
+            .setIncremental(context.isIncremental())
+            .setCompression(context.getCompression())
+            .setThrottleMbPerSec(context.getThrottleMbPerSec())
+            .setAzureBlobType(context.getAzureBlobType())
+            .setStagingBudgetMb(context.getStagingBudgetMb())
+            .setImportSSTables(context.isImportSSTables())
+            .setConcurrentNodes(context.getConcurrentNodes())
+            .setConcurrentNodesPerRack(context.getConcurrentNodesPerRack())
+            .setContinuous(context.isContinuous())
+            .setPointInTime(context.getPointInTime())
+            .addAllKeySpaces(context.getKeyspaces())
+            .addAllColumnFamilies(context.getColumnFamilies())
+            .setVerify(context.isVerify())
+            .setShippingThrottleMbPerSec(
+                context.getShippingThrottleMbPerSec())
+            .setLoadConcurrency(context.getLoadConcurrency())
             .build();
 
     }
@@ -270,6 +273,25 @@ public class CassandraData {
                 .build());
     }
 
+    public CassandraData withProgress(final TransferProgress progress) {
+        return new CassandraData(
+            getBuilder()
+                .setProgress(progress.toProto())
+                .build());
+    }
+
+    /**
+     * Gets the progress of a transfer.
+     *
+     * @return The progress reported with the status of an upload, download
+     * or restore, or empty if none was reported.
+     */
+    public Optional<TransferProgress> getProgress() {
+        return data.hasProgress() ?
+            Optional.of(TransferProgress.parse(data.getProgress())) :
+            Optional.empty();
+    }
+
     public CassandraData withHostname(final String hostname) {
         return new CassandraData(
             getBuilder()
@@ -350,7 +372,24 @@ public class CassandraData {
             data.getLocalLocation(),
             data.getAccoundId(),
             data.getSecretKey(),
-            data.getUsesEmc());
+            data.getUsesEmc(),
+            data.getPartSizeMb(),
+            data.getConcurrency(),
+            data.getIncremental(),
+            data.getCompression(),
+            data.getThrottleMbPerSec(),
+            data.getAzureBlobType(),
+            data.getStagingBudgetMb(),
+            data.getImportSSTables(),
+            data.getConcurrentNodes(),
+            data.getConcurrentNodesPerRack(),
+            data.getContinuous(),
+            data.getPointInTime(),
+            data.getKeySpacesList(),
+            data.getColumnFamiliesList(),
+            data.getVerify(),
+            data.getShippingThrottleMbPerSec(),
+            data.getLoadConcurrency());
     }
 
     public ByteString getBytes() {
@@ -1,14 +1,15 @@
 package com.mesosphere.dcos.cassandra.common.tasks;
 
 
-import com.google.common.collect.ImmutableMap;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.Inject;
 import com.google.protobuf.TextFormat;
 import com.mesosphere.dcos.cassandra.common.config.CassandraSchedulerConfiguration;
 import com.mesosphere.dcos.cassandra.common.config.ClusterTaskConfig;
 import com.mesosphere.dcos.cassandra.common.config.ConfigurationManager;
 import com.mesosphere.dcos.cassandra.common.config.ServiceConfig;
+import com.mesosphere.dcos.cassandra.common.persistence.BatchingStateStore;
 import com.mesosphere.dcos.cassandra.common.persistence.PersistenceException;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.*;
 import com.mesosphere.dcos.cassandra.common.tasks.cleanup.CleanupContext;
@@ -30,10 +31,23 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 
 /**
- * Cassandra State Store
+ * Cassandra State Store. The tasks are loaded from the StateStore once and
+ * cached in memory, and every write is applied to the cache as it is
+ * persisted, so reading tasks does not access ZooKeeper. A
+ * BatchingStateStore counts the task writes, so the tasks are reloaded when
+ * code writes them to the StateStore other than through this class. Other
+ * StateStores can not tell, so with them the tasks are reloaded by every
+ * read. The typed getters, e.g. getDaemons(), return unmodifiable views of a
+ * per-type index.
+ *
+ * Writes of a task, or of its status, are serialized by a lock striped by
+ * the task's name rather than by the StateStore's monitor, so the writes of
+ * different tasks, e.g. the status updates of a rolling restart, persist
+ * concurrently. Reloading the tasks holds every stripe.
  */
 public class CassandraState extends SchedulerState implements Managed {
     private static final Logger LOGGER = LoggerFactory.getLogger(
@@ -42,10 +56,18 @@ public class CassandraState extends SchedulerState implements Managed {
     private final ConfigurationManager configuration;
     private final ClusterTaskConfig clusterTaskConfig;
 
-    // Maps Task Name -> Task, where task name can be PREFIX-id
-    private volatile Map<String, CassandraTask> tasks = Collections.emptyMap();
-    // Maps TaskId -> Task Name
-    private final Map<String, String> byId = new HashMap<>();
+    private static final int LOCK_STRIPES = 64;
+
+    private static final long UNVERSIONED = -1;
+
+    // Indexes the tasks by name, type and TaskId. Reloading the tasks
+    // replaces the index.
+    private volatile CassandraTaskIndex tasks = new CassandraTaskIndex();
+    // The version of the StateStore's tasks the index reflects, incremented
+    // by the writes of this class
+    private final AtomicLong version = new AtomicLong(UNVERSIONED);
+    // Serializes the writes of each task, keyed by task name
+    private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
 
     @Inject
     public CassandraState(
@@ -56,36 +78,66 @@ public class CassandraState extends SchedulerState implements Managed {
         this.configuration = configuration;
         this.clusterTaskConfig = clusterTaskConfig;
 
-        loadTasks();
+        loadTasks(true);
+    }
+
+    private long getVersion() {
+        return (getStateStore() instanceof BatchingStateStore) ?
+                ((BatchingStateStore) getStateStore()).getVersion() :
+                UNVERSIONED;
+    }
+
+    private boolean isStale() {
+        final long current = getVersion();
+        return current == UNVERSIONED || current != version.get();
     }
 
-    private void loadTasks() {
+    /**
+     * Gets the cached tasks, reloading them first if tasks have been written
+     * to the StateStore other than through this class. Must not be called
+     * while holding the lock of a task.
+     */
+    private CassandraTaskIndex getTasks() {
+        if (isStale()) {
+            loadTasks(false);
+        }
+        return tasks;
+    }
+
+    private void loadTasks(final boolean force) {
         Map<String, CassandraTask> builder = new HashMap<>();
         // Need to synchronize here to be sure that when the start method of
         // client managed objects is called this completes prior to the
         // retrieval of tasks
         try {
             synchronized (getStateStore()) {
-                LOGGER.info("Loading data from persistent store");
-                final Collection<Protos.TaskInfo> taskInfos = getStateStore().fetchTasks();
-
-                for (Protos.TaskInfo taskInfo : taskInfos) {
-                    try {
-                        final CassandraTask cassandraTask = CassandraTask.parse(TaskUtils.unpackTaskInfo(taskInfo));
-                        LOGGER.info("Loaded task: {}, type: {}, hostname: {}",
-                                cassandraTask.getName(), cassandraTask.getType().name(), cassandraTask.getHostname());
-                        builder.put(cassandraTask.getName(), cassandraTask);
-                    } catch (IOException e) {
-                        LOGGER.error("Error parsing task: {}. Reason: {}", TextFormat.shortDebugString(taskInfo), e);
-                        throw new RuntimeException(e);
+                lockAll();
+                try {
+                    if (!force && !isStale()) {
+                        // Reloaded by a concurrent read.
+                        return;
+                    }
+                    version.set(getVersion());
+                    LOGGER.info("Loading data from persistent store");
+                    final Collection<Protos.TaskInfo> taskInfos = getStateStore().fetchTasks();
+
+                    for (Protos.TaskInfo taskInfo : taskInfos) {
+                        try {
+                            final CassandraTask cassandraTask = CassandraTask.parse(TaskUtils.unpackTaskInfo(taskInfo));
+                            LOGGER.info("Loaded task: {}, type: {}, hostname: {}",
+                                    cassandraTask.getName(), cassandraTask.getType().name(), cassandraTask.getHostname());
+                            builder.put(cassandraTask.getName(), cassandraTask);
+                        } catch (IOException e) {
+                            LOGGER.error("Error parsing task: {}. Reason: {}", TextFormat.shortDebugString(taskInfo), e);
+                            throw new RuntimeException(e);
+                        }
                     }
-                }
 
-                tasks = ImmutableMap.copyOf(builder);
-                tasks.forEach((name, task) -> {
-                    byId.put(task.getId(), name);
-                });
-                LOGGER.debug("Loaded tasks: {}", tasks);
+                    tasks = CassandraTaskIndex.of(builder);
+                    LOGGER.debug("Loaded tasks: {}", tasks);
+                } finally {
+                    unlockAll();
+                }
             }
         } catch (StateStoreException e) {
             LOGGER.error("Error loading tasks. Reason: {}", e);
@@ -94,74 +146,60 @@ public class CassandraState extends SchedulerState implements Managed {
     }
 
 
+    private Lock lock(final String name) {
+        final Lock lock = locks.get(name);
+        lock.lock();
+        return lock;
+    }
+
+    private void lockAll() {
+        for (int i = 0; i < locks.size(); i++) {
+            locks.getAt(i).lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.getAt(i).unlock();
+        }
+    }
+
     private void removeTask(final String name) throws PersistenceException {
         getStateStore().clearTask(name);
-        if (tasks.containsKey(name)) {
-            byId.remove(tasks.get(name).getId());
-        }
-        tasks = ImmutableMap.<String, CassandraTask>builder().putAll(
-                tasks.entrySet().stream()
-                        .filter(entry -> !entry.getKey().equals(name))
-                        .collect(Collectors.toMap(
-                                entry -> entry.getKey(),
-                                entry -> entry.getValue())))
-                .build();
+        version.incrementAndGet();
+        tasks.remove(name);
     }
 
     public Map<String, CassandraDaemonTask> getDaemons() {
-        refreshTasks();
-        return tasks.entrySet().stream().filter(entry -> entry.getValue()
-                .getType() == CassandraTask.TYPE.CASSANDRA_DAEMON).collect
-                (Collectors.toMap(entry -> entry.getKey(), entry -> (
-                        (CassandraDaemonTask) entry.getValue())));
+        return getTasks().get(CassandraTask.TYPE.CASSANDRA_DAEMON);
     }
 
     public Map<String, BackupSnapshotTask> getBackupSnapshotTasks() {
-        refreshTasks();
-        return tasks.entrySet().stream().filter(entry -> entry.getValue()
-                .getType() == CassandraTask.TYPE.BACKUP_SNAPSHOT).collect
-                (Collectors.toMap(entry -> entry.getKey(), entry -> (
-                        (BackupSnapshotTask) entry.getValue())));
+        return getTasks().get(CassandraTask.TYPE.BACKUP_SNAPSHOT);
     }
 
     public Map<String, BackupUploadTask> getBackupUploadTasks() {
-        refreshTasks();
-        return tasks.entrySet().stream().filter(entry -> entry.getValue()
-                .getType() == CassandraTask.TYPE.BACKUP_UPLOAD).collect
-                (Collectors.toMap(entry -> entry.getKey(), entry -> (
-                        (BackupUploadTask) entry.getValue())));
+        return getTasks().get(CassandraTask.TYPE.BACKUP_UPLOAD);
+    }
+
+    public Map<String, BackupVerifyTask> getBackupVerifyTasks() {
+        return getTasks().get(CassandraTask.TYPE.BACKUP_VERIFY);
     }
 
     public Map<String, DownloadSnapshotTask> getDownloadSnapshotTasks() {
-        refreshTasks();
-        return tasks.entrySet().stream().filter(entry -> entry.getValue()
-                .getType() == CassandraTask.TYPE.SNAPSHOT_DOWNLOAD).collect
-                (Collectors.toMap(entry -> entry.getKey(), entry -> (
-                        (DownloadSnapshotTask) entry.getValue())));
+        return getTasks().get(CassandraTask.TYPE.SNAPSHOT_DOWNLOAD);
     }
 
     public Map<String, RestoreSnapshotTask> getRestoreSnapshotTasks() {
-        refreshTasks();
-        return tasks.entrySet().stream().filter(entry -> entry.getValue()
-                .getType() == CassandraTask.TYPE.SNAPSHOT_RESTORE).collect
-                (Collectors.toMap(entry -> entry.getKey(), entry -> (
-                        (RestoreSnapshotTask) entry.getValue())));
+        return getTasks().get(CassandraTask.TYPE.SNAPSHOT_RESTORE);
     }
 
     public Map<String, CleanupTask> getCleanupTasks() {
-        refreshTasks();
-        return tasks.entrySet().stream().filter(entry -> entry.getValue()
-                .getType() == CassandraTask.TYPE.CLEANUP).collect
-                (Collectors.toMap(entry -> entry.getKey(), entry -> (
-                        (CleanupTask) entry.getValue())));
+        return getTasks().get(CassandraTask.TYPE.CLEANUP);
     }
 
     public Map<String, RepairTask> getRepairTasks() {
-        refreshTasks();
-        return tasks.entrySet().stream().filter(entry -> entry.getValue()
-                .getType() == CassandraTask.TYPE.REPAIR).collect
-                (Collectors.toMap(entry -> entry.getKey(), entry -> (
-                        (RepairTask) entry.getValue())));
+        return getTasks().get(CassandraTask.TYPE.REPAIR);
     }
 
     public CassandraContainer createCassandraContainer(CassandraDaemonTask daemonTask) throws PersistenceException {
@@ -223,8 +261,15 @@ public class CassandraState extends SchedulerState implements Managed {
 
         Optional<Protos.TaskInfo> templateOptional = getTemplate(updated);
         if (templateOptional.isPresent()) {
-            getStateStore().storeTasks(
-                    Arrays.asList(CassandraTemplateTask.create(updated, clusterTaskConfig).getTaskInfo()));
+            final CassandraTemplateTask template = CassandraTemplateTask.create(updated, clusterTaskConfig);
+            final Lock lock = lock(template.getName());
+            try {
+                getStateStore().storeTasks(Arrays.asList(template.getTaskInfo()));
+                version.incrementAndGet();
+                cache(template);
+            } finally {
+                lock.unlock();
+            }
         }
 
         return updated;
@@ -272,6 +317,19 @@ public class CassandraState extends SchedulerState implements Managed {
         }
     }
 
+    public BackupVerifyTask createBackupVerifyTask(
+            CassandraDaemonTask daemon,
+            BackupRestoreContext context) throws PersistenceException {
+
+        Optional<Protos.TaskInfo> template = getTemplate(daemon);
+
+        if (template.isPresent()) {
+            return BackupVerifyTask.create(template.get(), daemon, context);
+        } else {
+            throw new PersistenceException("Failed to retrieve ClusterTask Template.");
+        }
+    }
+
     public DownloadSnapshotTask createDownloadSnapshotTask(
             CassandraDaemonTask daemon,
             BackupRestoreContext context) throws PersistenceException {
@@ -325,8 +383,9 @@ public class CassandraState extends SchedulerState implements Managed {
 
     public CassandraDaemonTask getOrCreateDaemon(String name) throws
             PersistenceException, ConfigStoreException {
-        if (getDaemons().containsKey(name)) {
-            return getDaemons().get(name);
+        final CassandraDaemonTask daemon = getDaemons().get(name);
+        if (daemon != null) {
+            return daemon;
         } else {
             return createDaemon(name);
         }
@@ -361,6 +420,20 @@ public class CassandraState extends SchedulerState implements Managed {
 
     }
 
+    public BackupVerifyTask getOrCreateBackupVerify(
+            CassandraDaemonTask daemon,
+            BackupRestoreContext context) throws PersistenceException {
+
+        String name = BackupVerifyTask.nameForDaemon(daemon);
+        Map<String, BackupVerifyTask> verifies = getBackupVerifyTasks();
+        if (verifies.containsKey(name)) {
+            return verifies.get(name);
+        } else {
+            return createBackupVerifyTask(daemon, context);
+        }
+
+    }
+
     public DownloadSnapshotTask getOrCreateSnapshotDownload(
             CassandraDaemonTask daemon,
             BackupRestoreContext context) throws PersistenceException {
@@ -432,11 +505,10 @@ public class CassandraState extends SchedulerState implements Managed {
     }
 
     public void update(CassandraTask task) throws PersistenceException {
-        synchronized (getStateStore()) {
+        final Lock lock = lock(task.getName());
+        try {
             getStateStore().storeTasks(Arrays.asList(TaskUtils.packTaskInfo(task.getTaskInfo())));
-            if (tasks.containsKey(task.getName())) {
-                byId.remove(tasks.get(task.getName()).getId());
-            }
+            version.incrementAndGet();
 
             if (!task.getId().contains("__")) {
                 LOGGER.error(
@@ -444,85 +516,150 @@ public class CassandraState extends SchedulerState implements Managed {
                         new PersistenceException("Encountered malformed TaskID: " + task.getId()));
             }
 
-            byId.put(task.getId(), task.getName());
-            tasks = ImmutableMap.<String, CassandraTask>builder().putAll(
-                    tasks.entrySet().stream()
-                            .filter(entry -> !entry.getKey().equals(task.getName()))
-                            .collect(Collectors.toMap(
-                                    entry -> entry.getKey(),
-                                    entry -> entry.getValue())))
-                    .put(task.getName(), task)
-                    .build();
+            cache(task);
+        } finally {
+            lock.unlock();
         }
 
         notifyObservers();
     }
 
+    /**
+     * Persists the writes that are pending in a write batch.
+     *
+     * @throws StateStoreException If the writes fail to persist.
+     */
+    public void flush() throws StateStoreException {
+        if (getStateStore() instanceof BatchingStateStore) {
+            ((BatchingStateStore) getStateStore()).flush();
+        }
+    }
+
+    /**
+     * Runs an action once all the writes made so far are persisted, at once
+     * if they are not batched.
+     *
+     * @param action The action to run.
+     */
+    public void whenPersisted(Runnable action) {
+        if (getStateStore() instanceof BatchingStateStore) {
+            ((BatchingStateStore) getStateStore()).whenFlushed(action);
+        } else {
+            action.run();
+        }
+    }
+
+    private void cache(CassandraTask task) {
+        tasks.put(task);
+    }
+
     public void update(Protos.TaskInfo taskInfo, Offer offer) throws Exception {
         try {
             CassandraTask task = CassandraTask.parse(taskInfo);
             task = task.update(offer);
-            getStateStore().storeTasks(Arrays.asList(TaskUtils.packTaskInfo(task.getTaskInfo())));
             update(task);
+            // The task is launched once it is recorded, so it must be
+            // persisted rather than left pending in a write batch.
+            flush();
         } catch (Exception e) {
             LOGGER.error("Error storing task: {}, reason: {}", taskInfo, e);
             throw e;
         }
     }
 
+    /**
+     * Stores a status update and applies it to its task.
+     *
+     * @param status The status update.
+     * @throws StateStoreException If the status is rejected or fails to be
+     *                             stored, so that it must not be
+     *                             acknowledged.
+     * @throws IOException         If the status or its task fails to be
+     *                             parsed or stored.
+     */
     @Subscribe
-    public void update(Protos.TaskStatus status) throws IOException {
+    public void update(Protos.TaskStatus status)
+            throws StateStoreException, IOException {
         LOGGER.info("Received status update: {}", TextFormat.shortDebugString(status));
-        synchronized (getStateStore()) {
-            try {
-                if (status.hasData()) {
-                    getStateStore().storeStatus(status);
-                } else {
-                    Optional<Protos.TaskStatus> taskStatusOptional =
-                            getStateStore().fetchStatus(TaskUtils.toTaskName(status.getTaskId()));
-
-                    if (taskStatusOptional.isPresent()) {
-                        if (taskStatusOptional.get().hasData()) {
-                            getStateStore().storeStatus(Protos.TaskStatus.newBuilder(status)
-                                    .setData(taskStatusOptional.get().getData())
-                                    .build());
-                        } else {
-                            getStateStore().storeStatus(status);
-                        }
-                    } else {
-                        getStateStore().storeStatus(status);
-                    }
-                }
-
-                if (byId.containsKey(status.getTaskId().getValue())) {
+        final String name;
+        try {
+            name = TaskUtils.toTaskName(status.getTaskId());
+        } catch (TaskException e) {
+            throw new StateStoreException("Unable to store status: " +
+                    TextFormat.shortDebugString(status), e);
+        }
+        // Reload before taking the task's lock, as reloading takes them all.
+        getTasks();
+        final Lock lock = lock(name);
+        try {
+            Optional<Protos.TaskStatus> taskStatusOptional =
+                    getStateStore().fetchStatus(name);
+            Protos.TaskStatus merged = status;
+            if (!status.hasData()
+                    && taskStatusOptional.isPresent()
+                    && taskStatusOptional.get().hasData()) {
+                merged = Protos.TaskStatus.newBuilder(status)
+                        .setData(taskStatusOptional.get().getData())
+                        .build();
+            }
+            // The same status is applied by the scheduler and by the block
+            // of the task's plan, only the first application is stored.
+            if (taskStatusOptional.isPresent()
+                    && taskStatusOptional.get().equals(merged)) {
+                LOGGER.debug("Status of task {} is unchanged", name);
+                return;
+            }
+            getStateStore().storeStatus(merged);
 
-                    CassandraTask cassandraTask = tasks.get(byId.get(status.getTaskId().getValue()));
-                    if (cassandraTask.getState().equals(Protos.TaskState.TASK_FINISHED)
-                            && status.getState().equals(Protos.TaskState.TASK_LOST)) {
-                        LOGGER.warn("Ignoring TASK_LOST task update for finished Task.");
-                        return;
-                    }
+            final Optional<CassandraTask> recorded =
+                    tasks.getById(status.getTaskId().getValue());
+            if (recorded.isPresent()) {
 
-                    if (status.hasData()) {
-                        cassandraTask = cassandraTask.update(CassandraTaskStatus.parse(status));
-                    } else {
-                        cassandraTask = cassandraTask.update(status.getState());
-                    }
+                CassandraTask cassandraTask = recorded.get();
+                if (cassandraTask.getState().equals(Protos.TaskState.TASK_FINISHED)
+                        && status.getState().equals(Protos.TaskState.TASK_LOST)) {
+                    LOGGER.warn("Ignoring TASK_LOST task update for finished Task.");
+                    return;
+                }
 
-                    update(cassandraTask);
-                    LOGGER.info("Updated status for task {}", status.getTaskId().getValue());
+                if (status.hasData()) {
+                    cassandraTask = cassandraTask.update(CassandraTaskStatus.parse(status));
                 } else {
-                    LOGGER.info("Received status update for unrecorded task: " +
-                            "status = {}", status);
-                    LOGGER.info("Tasks = {}", tasks);
-                    LOGGER.info("Ids = {}", byId);
+                    cassandraTask = cassandraTask.update(status.getState());
                 }
-            } catch (StateStoreException | TaskException e) {
-                LOGGER.info("Unable to store status. Reason: ", e);
+
+                update(cassandraTask);
+                LOGGER.info("Updated status for task {}", status.getTaskId().getValue());
+            } else {
+                LOGGER.info("Received status update for unrecorded task: " +
+                        "status = {}", status);
+                LOGGER.info("Tasks = {}", tasks);
             }
+        } finally {
+            lock.unlock();
         }
     }
 
+    /**
+     * Gets the latest status of a task, including the data the executor
+     * sent with it, e.g. the progress of a transfer.
+     *
+     * @param name The name of the task.
+     * @return The task's latest status, or empty if no status with data
+     * has been stored for it.
+     */
+    public Optional<CassandraTaskStatus> getStatus(String name) {
+        try {
+            final Optional<Protos.TaskStatus> status = getStateStore().fetchStatus(name);
+            if (status.isPresent() && status.get().hasData()) {
+                return Optional.of(CassandraTaskStatus.parse(status.get()));
+            }
+        } catch (StateStoreException | IOException e) {
+            LOGGER.error("Unable to fetch status of task: {}", name, e);
+        }
+        return Optional.empty();
+    }
+
     public boolean isTerminated(CassandraTask task) {
         try {
             final String name = task.getName();
@@ -540,16 +677,16 @@ public class CassandraState extends SchedulerState implements Managed {
         }
         return false;
     }
-    public synchronized void refreshTasks() {
-        LOGGER.info("Refreshing tasks");
-        loadTasks();
-    }
 
     public void remove(String name) throws PersistenceException {
-        synchronized (getStateStore()) {
-            if (tasks.containsKey(name)) {
+        getTasks();
+        final Lock lock = lock(name);
+        try {
+            if (tasks.get(name).isPresent()) {
                 removeTask(name);
             }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -560,12 +697,11 @@ public class CassandraState extends SchedulerState implements Managed {
     }
 
     public Optional<CassandraTask> get(String name) {
-        refreshTasks();
-        return Optional.ofNullable(tasks.get(name));
+        return getTasks().get(name);
     }
 
     public Map<String, CassandraTask> get() {
-        return tasks;
+        return getTasks().get();
     }
 
     @Override
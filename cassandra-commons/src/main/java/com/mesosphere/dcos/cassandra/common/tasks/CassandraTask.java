@@ -22,6 +22,7 @@ import com.mesosphere.dcos.cassandra.common.serialization.SerializationException
 import com.mesosphere.dcos.cassandra.common.serialization.Serializer;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupSnapshotTask;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupUploadTask;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupVerifyTask;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.DownloadSnapshotTask;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.RestoreSnapshotTask;
 import com.mesosphere.dcos.cassandra.common.tasks.cleanup.CleanupTask;
@@ -114,7 +115,11 @@ public abstract class CassandraTask {
         /**
          * Place holder for pre-reserving resources for Cluster Tasks
          */
-        TEMPLATE
+        TEMPLATE,
+        /**
+         * Task that verifies uploaded column families in remote storage.
+         */
+        BACKUP_VERIFY
     }
 
     /**
@@ -144,6 +149,8 @@ public abstract class CassandraTask {
                 return RepairTask.parse(info);
             case TEMPLATE:
                 return CassandraTemplateTask.parse(info);
+            case BACKUP_VERIFY:
+                return BackupVerifyTask.parse(info);
             default:
                 throw new IOException("Failed to parse task from TaskInfo " +
                     "type information is invalid");
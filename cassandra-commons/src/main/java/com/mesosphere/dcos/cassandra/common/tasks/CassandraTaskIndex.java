@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.common.tasks;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * CassandraTaskIndex indexes the tasks of a CassandraState by name, by type
+ * and by TaskID in concurrent maps, so adding, replacing or removing a task
+ * takes constant time and writes of different tasks do not block each
+ * other. Lookups return unmodifiable views of the indexes without filtering
+ * or copying the tasks. The writes of a task must be serialized by the
+ * caller, e.g. with a lock per task name, to keep its entries in the
+ * indexes consistent.
+ */
+final class CassandraTaskIndex {
+
+    /**
+     * Indexes tasks.
+     *
+     * @param tasks The tasks, keyed by name.
+     * @return An index of the tasks.
+     */
+    static CassandraTaskIndex of(final Map<String, CassandraTask> tasks) {
+        final CassandraTaskIndex index = new CassandraTaskIndex();
+        tasks.values().forEach(index::put);
+        return index;
+    }
+
+    // Maps Task Name -> Task, where task name can be PREFIX-id
+    private final ConcurrentMap<String, CassandraTask> byName =
+        new ConcurrentHashMap<>();
+    // Maps Task Type -> Task Name -> Task. The EnumMaps are filled once and
+    // only read afterwards, so they can be shared between threads.
+    private final EnumMap<CassandraTask.TYPE,
+        ConcurrentMap<String, CassandraTask>> byType =
+        new EnumMap<>(CassandraTask.TYPE.class);
+    private final EnumMap<CassandraTask.TYPE,
+        Map<String, CassandraTask>> views =
+        new EnumMap<>(CassandraTask.TYPE.class);
+    // Maps TaskId -> Task Name
+    private final ConcurrentMap<String, String> byId =
+        new ConcurrentHashMap<>();
+    private final Map<String, CassandraTask> view =
+        Collections.unmodifiableMap(byName);
+
+    CassandraTaskIndex() {
+        for (CassandraTask.TYPE type : CassandraTask.TYPE.values()) {
+            final ConcurrentMap<String, CassandraTask> tasks =
+                new ConcurrentHashMap<>();
+            byType.put(type, tasks);
+            views.put(type, Collections.unmodifiableMap(tasks));
+        }
+    }
+
+    /**
+     * Gets all tasks.
+     *
+     * @return An unmodifiable view of the tasks, keyed by name.
+     */
+    Map<String, CassandraTask> get() {
+        return view;
+    }
+
+    /**
+     * Gets a task by name.
+     *
+     * @param name The name of the task.
+     * @return The task, or empty if there is no task with the name.
+     */
+    Optional<CassandraTask> get(final String name) {
+        return Optional.ofNullable(byName.get(name));
+    }
+
+    /**
+     * Gets the tasks of a type. The index is keyed by the TYPE of each task,
+     * so the tasks are instances of the class of the type, e.g.
+     * CassandraDaemonTask for CASSANDRA_DAEMON.
+     *
+     * @param type The type of the tasks.
+     * @param <T>  The class of the tasks of the type.
+     * @return An unmodifiable view of the tasks of the type, keyed by name.
+     */
+    @SuppressWarnings("unchecked")
+    <T extends CassandraTask> Map<String, T> get(
+        final CassandraTask.TYPE type) {
+        return (Map<String, T>) (Map<String, ?>) views.get(type);
+    }
+
+    /**
+     * Gets a task by its TaskID.
+     *
+     * @param id The TaskID of the task.
+     * @return The task, or empty if no task has the id.
+     */
+    Optional<CassandraTask> getById(final String id) {
+        final String name = byId.get(id);
+        return (name == null) ? Optional.empty() :
+            Optional.ofNullable(byName.get(name));
+    }
+
+    /**
+     * Adds or replaces a task.
+     *
+     * @param task The task.
+     */
+    void put(final CassandraTask task) {
+        final CassandraTask previous = byName.put(task.getName(), task);
+        byType.get(task.getType()).put(task.getName(), task);
+        byId.put(task.getId(), task.getName());
+        if (previous != null) {
+            if (previous.getType() != task.getType()) {
+                byType.get(previous.getType()).remove(previous.getName());
+            }
+            // Status updates do not change the TaskID of a task.
+            if (!previous.getId().equals(task.getId())) {
+                byId.remove(previous.getId(), previous.getName());
+            }
+        }
+    }
+
+    /**
+     * Removes a task.
+     *
+     * @param name The name of the task.
+     */
+    void remove(final String name) {
+        final CassandraTask previous = byName.remove(name);
+        if (previous != null) {
+            byType.get(previous.getType()).remove(name);
+            byId.remove(previous.getId(), name);
+        }
+    }
+
+    /**
+     * Gets the number of tasks.
+     *
+     * @return The number of tasks in the index.
+     */
+    int size() {
+        return byName.size();
+    }
+
+    @Override
+    public String toString() {
+        return "CassandraTaskIndex{tasks=" + byName + ", ids=" + byId + "}";
+    }
+}
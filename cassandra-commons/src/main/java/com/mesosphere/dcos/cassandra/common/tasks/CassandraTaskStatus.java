@@ -18,8 +18,10 @@ package com.mesosphere.dcos.cassandra.common.tasks;
 import com.google.protobuf.TextFormat;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupSnapshotStatus;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupUploadStatus;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupVerifyStatus;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.DownloadSnapshotStatus;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.RestoreSnapshotStatus;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.TransferProgress;
 import com.mesosphere.dcos.cassandra.common.tasks.cleanup.CleanupStatus;
 import com.mesosphere.dcos.cassandra.common.tasks.repair.RepairStatus;
 import org.apache.mesos.Protos;
@@ -109,6 +111,8 @@ public abstract class CassandraTaskStatus {
                 return CleanupStatus.create(status);
             case REPAIR:
                 return RepairStatus.create(status);
+            case BACKUP_VERIFY:
+                return BackupVerifyStatus.create(status);
             default:
                 throw new IOException("Failed to parse task from TaskInfo " +
                     "type information is invalid");
@@ -178,6 +182,29 @@ public abstract class CassandraTaskStatus {
         return status;
     }
 
+    /**
+     * Gets the progress of the transfer of a backup or restore task.
+     *
+     * @return The progress reported with the status, or empty if none was
+     * reported.
+     */
+    public Optional<TransferProgress> getProgress() {
+        return getData().getProgress();
+    }
+
+    /**
+     * Gets the status with the progress of a transfer.
+     *
+     * @param progress The progress of the task's transfer.
+     * @return The Protocol Buffers representation of the status, whose data
+     * carries progress.
+     */
+    public Protos.TaskStatus getTaskStatus(final TransferProgress progress) {
+        return Protos.TaskStatus.newBuilder(status)
+            .setData(getData().withProgress(progress).getBytes())
+            .build();
+    }
+
     /**
      * Tests is the status is running.
      *
@@ -25,6 +25,8 @@ import com.mesosphere.dcos.cassandra.common.tasks.ClusterTaskContext;
 import com.mesosphere.dcos.cassandra.common.util.JsonUtils;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -48,7 +50,41 @@ public class BackupRestoreContext implements ClusterTaskContext {
         @JsonProperty("secret_key")
         final String secretKey,
         @JsonProperty("uses_emc")
-        final boolean usesEmc) {
+        final boolean usesEmc,
+        @JsonProperty("part_size_mb")
+        final int partSizeMb,
+        @JsonProperty("concurrency")
+        final int concurrency,
+        @JsonProperty("incremental")
+        final boolean incremental,
+        @JsonProperty("compression")
+        final String compression,
+        @JsonProperty("throttle_mb_per_sec")
+        final int throttleMbPerSec,
+        @JsonProperty("azure_blob_type")
+        final String azureBlobType,
+        @JsonProperty("staging_budget_mb")
+        final int stagingBudgetMb,
+        @JsonProperty("import_sstables")
+        final boolean importSSTables,
+        @JsonProperty("concurrent_nodes")
+        final int concurrentNodes,
+        @JsonProperty("concurrent_nodes_per_rack")
+        final int concurrentNodesPerRack,
+        @JsonProperty("continuous")
+        final boolean continuous,
+        @JsonProperty("point_in_time")
+        final long pointInTime,
+        @JsonProperty("keyspaces")
+        final List<String> keyspaces,
+        @JsonProperty("column_families")
+        final List<String> columnFamilies,
+        @JsonProperty("verify")
+        final boolean verify,
+        @JsonProperty("shipping_throttle_mb_per_sec")
+        final int shippingThrottleMbPerSec,
+        @JsonProperty("load_concurrency")
+        final int loadConcurrency) {
 
         return new BackupRestoreContext(
             nodeId,
@@ -57,7 +93,60 @@ public class BackupRestoreContext implements ClusterTaskContext {
             localLocation,
             accountId,
             secretKey,
-            usesEmc);
+            usesEmc,
+            partSizeMb,
+            concurrency,
+            incremental,
+            compression,
+            throttleMbPerSec,
+            azureBlobType,
+            stagingBudgetMb,
+            importSSTables,
+            concurrentNodes,
+            concurrentNodesPerRack,
+            continuous,
+            pointInTime,
+            keyspaces,
+            columnFamilies,
+            verify,
+            shippingThrottleMbPerSec,
+            loadConcurrency);
+    }
+
+    public static final BackupRestoreContext create(
+        final String nodeId,
+        final String name,
+        final String externalLocation,
+        final String localLocation,
+        final String accountId,
+        final String secretKey,
+        final boolean usesEmc) {
+
+        return create(
+            nodeId,
+            name,
+            externalLocation,
+            localLocation,
+            accountId,
+            secretKey,
+            usesEmc,
+            0,
+            0,
+            false,
+            "",
+            0,
+            "",
+            0,
+            false,
+            1,
+            0,
+            false,
+            0,
+            Collections.emptyList(),
+            Collections.emptyList(),
+            false,
+            0,
+            0);
     }
 
     @JsonProperty("node_id")
@@ -81,13 +170,81 @@ public class BackupRestoreContext implements ClusterTaskContext {
     @JsonProperty("uses_emc")
     private final boolean usesEmc;
 
+    @JsonProperty("part_size_mb")
+    private final int partSizeMb;
+
+    @JsonProperty("concurrency")
+    private final int concurrency;
+
+    @JsonProperty("incremental")
+    private final boolean incremental;
+
+    @JsonProperty("compression")
+    private final String compression;
+
+    @JsonProperty("throttle_mb_per_sec")
+    private final int throttleMbPerSec;
+
+    @JsonProperty("azure_blob_type")
+    private final String azureBlobType;
+
+    @JsonProperty("staging_budget_mb")
+    private final int stagingBudgetMb;
+
+    @JsonProperty("import_sstables")
+    private final boolean importSSTables;
+
+    @JsonProperty("concurrent_nodes")
+    private final int concurrentNodes;
+
+    @JsonProperty("concurrent_nodes_per_rack")
+    private final int concurrentNodesPerRack;
+
+    @JsonProperty("continuous")
+    private final boolean continuous;
+
+    @JsonProperty("point_in_time")
+    private final long pointInTime;
+
+    @JsonProperty("keyspaces")
+    private final List<String> keyspaces;
+
+    @JsonProperty("column_families")
+    private final List<String> columnFamilies;
+
+    @JsonProperty("verify")
+    private final boolean verify;
+
+    @JsonProperty("shipping_throttle_mb_per_sec")
+    private final int shippingThrottleMbPerSec;
+
+    @JsonProperty("load_concurrency")
+    private final int loadConcurrency;
+
     public BackupRestoreContext(final String nodeId,
                                 final String name,
                                 final String externalLocation,
                                 final String localLocation,
                                 final String accountId,
                                 final String secretKey,
-                                final boolean usesEmc) {
+                                final boolean usesEmc,
+                                final int partSizeMb,
+                                final int concurrency,
+                                final boolean incremental,
+                                final String compression,
+                                final int throttleMbPerSec,
+                                final String azureBlobType,
+                                final int stagingBudgetMb,
+                                final boolean importSSTables,
+                                final int concurrentNodes,
+                                final int concurrentNodesPerRack,
+                                final boolean continuous,
+                                final long pointInTime,
+                                final List<String> keyspaces,
+                                final List<String> columnFamilies,
+                                final boolean verify,
+                                final int shippingThrottleMbPerSec,
+                                final int loadConcurrency) {
         this.nodeId = nodeId;
         this.externalLocation = externalLocation;
         this.name = name;
@@ -95,6 +252,25 @@ public class BackupRestoreContext implements ClusterTaskContext {
         this.accountId = accountId;
         this.secretKey = secretKey;
         this.usesEmc = usesEmc;
+        this.partSizeMb = partSizeMb;
+        this.concurrency = concurrency;
+        this.incremental = incremental;
+        this.compression = (compression == null) ? "" : compression;
+        this.throttleMbPerSec = throttleMbPerSec;
+        this.azureBlobType = (azureBlobType == null) ? "" : azureBlobType;
+        this.stagingBudgetMb = stagingBudgetMb;
+        this.importSSTables = importSSTables;
+        this.concurrentNodes = concurrentNodes;
+        this.concurrentNodesPerRack = concurrentNodesPerRack;
+        this.continuous = continuous;
+        this.pointInTime = pointInTime;
+        this.keyspaces = (keyspaces == null) ?
+            Collections.emptyList() : keyspaces;
+        this.columnFamilies = (columnFamilies == null) ?
+            Collections.emptyList() : columnFamilies;
+        this.verify = verify;
+        this.shippingThrottleMbPerSec = shippingThrottleMbPerSec;
+        this.loadConcurrency = loadConcurrency;
     }
 
     /**
@@ -168,6 +344,230 @@ public class BackupRestoreContext implements ClusterTaskContext {
         return nodeId;
     }
 
+    /**
+     * Gets the part size used to split large files during transfer.
+     *
+     * @return The size, in megabytes, of each part of a multipart transfer.
+     * If zero or negative, the storage driver's default is used.
+     */
+    @JsonProperty("part_size_mb")
+    public int getPartSizeMb() {
+        return partSizeMb;
+    }
+
+    /**
+     * Gets the number of concurrent transfers.
+     *
+     * @return The maximum number of files or parts that are transferred at
+     * once by a node. If zero or negative, the storage driver's default is
+     * used.
+     */
+    @JsonProperty("concurrency")
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Gets whether the backup is incremental.
+     *
+     * @return True if SSTables already present in the backup location's
+     * content addressed store are not uploaded again, and the backup is
+     * described by a manifest.
+     */
+    @JsonProperty("incremental")
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Gets the compression applied to backup files.
+     *
+     * @return The name of the codec used to compress files before they are
+     * uploaded (none, snappy, lz4 or zstd). If empty, the storage driver's
+     * default is used.
+     */
+    @JsonProperty("compression")
+    public String getCompression() {
+        return compression;
+    }
+
+    /**
+     * Gets the bandwidth limit of each node.
+     *
+     * @return The maximum number of megabytes per second each node reads from
+     * or writes to the external location. If zero, transfers are not
+     * throttled.
+     */
+    @JsonProperty("throttle_mb_per_sec")
+    public int getThrottleMbPerSec() {
+        return throttleMbPerSec;
+    }
+
+    /**
+     * Gets the type of the blobs written to Azure storage.
+     *
+     * @return "block" to store files as block blobs or "page" to store
+     * them as page blobs. If empty, page blobs are used.
+     */
+    @JsonProperty("azure_blob_type")
+    public String getAzureBlobType() {
+        return azureBlobType;
+    }
+
+    /**
+     * Gets the disk space a restore may use to stage downloaded files.
+     *
+     * @return The staging budget in MB. If zero or negative, the whole
+     * backup is downloaded before it is restored.
+     */
+    @JsonProperty("staging_budget_mb")
+    public int getStagingBudgetMb() {
+        return stagingBudgetMb;
+    }
+
+    /**
+     * Gets whether the restored SSTables may be imported into the data
+     * directories of the nodes instead of being streamed to the ring. Each
+     * node only imports them when it and its ring have the tokens recorded
+     * in the manifest of its backup, so that it owns the data of the backup.
+     *
+     * @return True if nodes import the SSTables of matching backups.
+     */
+    @JsonProperty("import_sstables")
+    public boolean isImportSSTables() {
+        return importSSTables;
+    }
+
+    /**
+     * Gets the number of nodes that transfer data at the same time.
+     *
+     * @return The number of upload, download or restore tasks run at once.
+     */
+    @JsonProperty("concurrent_nodes")
+    public int getConcurrentNodes() {
+        return concurrentNodes;
+    }
+
+    /**
+     * Gets the number of nodes of each rack that transfer data at the same
+     * time.
+     *
+     * @return The number of tasks run at once in each rack of each data
+     * center, or zero if only the number of nodes is limited.
+     */
+    @JsonProperty("concurrent_nodes_per_rack")
+    public int getConcurrentNodesPerRack() {
+        return concurrentNodesPerRack;
+    }
+
+    /**
+     * Gets whether the nodes keep shipping the SSTables they flush after
+     * the backup, for point in time recovery.
+     *
+     * @return True if incremental backups are shipped continuously after
+     * the snapshot is uploaded.
+     */
+    @JsonProperty("continuous")
+    public boolean isContinuous() {
+        return continuous;
+    }
+
+    /**
+     * Gets the point in time that a restore recovers the data of.
+     *
+     * @return The time in milliseconds since the epoch up to which
+     * continuously shipped SSTables are restored, or zero to restore the
+     * snapshot alone.
+     */
+    @JsonProperty("point_in_time")
+    public long getPointInTime() {
+        return pointInTime;
+    }
+
+    /**
+     * Gets the keyspaces that are backed up or restored.
+     *
+     * @return The names of the selected keyspaces. If neither keyspaces nor
+     * column families are selected, all keyspaces are.
+     */
+    @JsonProperty("keyspaces")
+    public List<String> getKeyspaces() {
+        return keyspaces;
+    }
+
+    /**
+     * Gets the column families that are backed up or restored, in addition
+     * to the selected keyspaces.
+     *
+     * @return The names of the selected column families as
+     * keyspace.column_family.
+     */
+    @JsonProperty("column_families")
+    public List<String> getColumnFamilies() {
+        return columnFamilies;
+    }
+
+    /**
+     * Gets whether a backup is verified once it is uploaded.
+     *
+     * @return True if the objects of the backup are checked against its
+     * manifest after they are uploaded.
+     */
+    @JsonProperty("verify")
+    public boolean isVerify() {
+        return verify;
+    }
+
+    /**
+     * Gets the bandwidth limit of each node while it ships the SSTables
+     * flushed after a continuous backup. All nodes ship at the same time, so
+     * the cluster wide limit is split across all of them rather than across
+     * the nodes that upload their snapshots at once.
+     *
+     * @return The maximum number of megabytes per second each node ships.
+     * If zero, shipping is not throttled.
+     */
+    @JsonProperty("shipping_throttle_mb_per_sec")
+    public int getShippingThrottleMbPerSec() {
+        return shippingThrottleMbPerSec;
+    }
+
+    /**
+     * Gets the number of column families a restore loads at once. It is
+     * independent of the concurrency of transfers, as each loaded column
+     * family streams to, or is refreshed by, the live node.
+     *
+     * @return The maximum number of column families loaded at once by a
+     * node. If zero or negative, the loader's default is used.
+     */
+    @JsonProperty("load_concurrency")
+    public int getLoadConcurrency() {
+        return loadConcurrency;
+    }
+
+    /**
+     * Checks whether a column family is backed up or restored.
+     *
+     * @param keyspace     The name of the keyspace.
+     * @param columnFamily The name of the column family, or of its data
+     *                     directory (i.e. name-id).
+     * @return True if no keyspaces or column families are selected, or if
+     * the keyspace or the column family is.
+     */
+    @JsonIgnore
+    public boolean isSelected(final String keyspace,
+                              final String columnFamily) {
+        if (keyspaces.isEmpty() && columnFamilies.isEmpty()) {
+            return true;
+        }
+        // Table names can not contain '-', which separates the table id in
+        // the name of its data directory.
+        final int id = columnFamily.indexOf('-');
+        return keyspaces.contains(keyspace) || columnFamilies.contains(
+            keyspace + "." + (id < 0 ? columnFamily :
+                columnFamily.substring(0, id)));
+    }
+
     @Override
     public String toString() {
         return JsonUtils.toJsonString(this);
@@ -185,13 +585,45 @@ public class BackupRestoreContext implements ClusterTaskContext {
                 Objects.equals(getLocalLocation(),
                         that.getLocalLocation()) &&
                 Objects.equals(getAccountId(), that.getAccountId()) &&
-                Objects.equals(getSecretKey(), that.getSecretKey());
+                Objects.equals(getSecretKey(), that.getSecretKey()) &&
+                getPartSizeMb() == that.getPartSizeMb() &&
+                getConcurrency() == that.getConcurrency() &&
+                isIncremental() == that.isIncremental() &&
+                Objects.equals(getCompression(), that.getCompression()) &&
+                getThrottleMbPerSec() == that.getThrottleMbPerSec() &&
+                Objects.equals(getAzureBlobType(), that.getAzureBlobType()) &&
+                getStagingBudgetMb() == that.getStagingBudgetMb() &&
+                isImportSSTables() == that.isImportSSTables() &&
+                getConcurrentNodes() == that.getConcurrentNodes() &&
+                getConcurrentNodesPerRack() == that.getConcurrentNodesPerRack() &&
+                isContinuous() == that.isContinuous() &&
+                getPointInTime() == that.getPointInTime() &&
+                Objects.equals(getKeyspaces(), that.getKeyspaces()) &&
+                Objects.equals(getColumnFamilies(), that.getColumnFamilies()) &&
+                isVerify() == that.isVerify() &&
+                getShippingThrottleMbPerSec() ==
+                        that.getShippingThrottleMbPerSec() &&
+                getLoadConcurrency() == that.getLoadConcurrency();
     }
 
     @Override
     public int hashCode() {
         return Objects.hash(getNodeId(), getName(), getExternalLocation(),
-                getLocalLocation(), getAccountId(), getSecretKey());
+                getLocalLocation(), getAccountId(), getSecretKey(),
+                getPartSizeMb(), getConcurrency(), isIncremental(),
+                getCompression(), getThrottleMbPerSec(),
+                getAzureBlobType(),
+                getStagingBudgetMb(),
+                isImportSSTables(),
+                getConcurrentNodes(),
+                getConcurrentNodesPerRack(),
+                isContinuous(),
+                getPointInTime(),
+                getKeyspaces(),
+                getColumnFamilies(),
+                isVerify(),
+                getShippingThrottleMbPerSec(),
+                getLoadConcurrency());
     }
 
     @JsonIgnore
@@ -203,7 +635,24 @@ public class BackupRestoreContext implements ClusterTaskContext {
             localLocation,
             accountId,
             secretKey,
-            usesEmc);
+            usesEmc,
+            partSizeMb,
+            concurrency,
+            incremental,
+            compression,
+            throttleMbPerSec,
+            azureBlobType,
+            stagingBudgetMb,
+            importSSTables,
+            concurrentNodes,
+            concurrentNodesPerRack,
+            continuous,
+            pointInTime,
+            keyspaces,
+            columnFamilies,
+            verify,
+            shippingThrottleMbPerSec,
+            loadConcurrency);
     }
 
     @JsonIgnore
@@ -215,7 +664,24 @@ public class BackupRestoreContext implements ClusterTaskContext {
             localLocation,
             accountId,
             secretKey,
-            usesEmc);
+            usesEmc,
+            partSizeMb,
+            concurrency,
+            incremental,
+            compression,
+            throttleMbPerSec,
+            azureBlobType,
+            stagingBudgetMb,
+            importSSTables,
+            concurrentNodes,
+            concurrentNodesPerRack,
+            continuous,
+            pointInTime,
+            keyspaces,
+            columnFamilies,
+            verify,
+            shippingThrottleMbPerSec,
+            loadConcurrency);
     }
 
     /**
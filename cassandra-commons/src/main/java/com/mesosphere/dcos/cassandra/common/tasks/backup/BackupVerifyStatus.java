@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.common.tasks.backup;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.mesosphere.dcos.cassandra.common.CassandraProtos;
+import com.mesosphere.dcos.cassandra.common.tasks.CassandraTask;
+import com.mesosphere.dcos.cassandra.common.tasks.CassandraTaskStatus;
+import org.apache.mesos.Protos;
+
+import java.util.Optional;
+
+/**
+ * BackupVerifyStatus extends CassandraTaskStatus to implement the status
+ * Object for a BackupVerify task.
+ */
+public class BackupVerifyStatus extends CassandraTaskStatus {
+    public static BackupVerifyStatus create(final Protos.TaskStatus status) {
+        return new BackupVerifyStatus(status);
+    }
+
+    protected BackupVerifyStatus(final Protos.TaskStatus status) {
+        super(status);
+    }
+}
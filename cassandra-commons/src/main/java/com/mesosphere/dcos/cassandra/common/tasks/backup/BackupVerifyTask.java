@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.common.tasks.backup;
+
+import com.mesosphere.dcos.cassandra.common.config.ClusterTaskConfig;
+import com.mesosphere.dcos.cassandra.common.tasks.*;
+
+import org.apache.mesos.offer.TaskUtils;
+import org.apache.mesos.offer.VolumeRequirement;
+import org.apache.mesos.Protos;
+
+import java.util.Collections;
+import java.util.Optional;
+
+/**
+ * BackupVerifyTask extends CassandraTask to implement a task that verifies
+ * that the objects of an uploaded backup are present in external storage, and
+ * that their sizes and ETags match those recorded in the manifest of the
+ * backup, without downloading them. The task can only be launched
+ * successfully if the CassandraDaemonTask is running on the targeted slave
+ * and the BackupUploadTask has completed.
+ */
+public class BackupVerifyTask extends CassandraTask {
+
+    /**
+     * The name prefix for BackupVerifyTasks.
+     */
+    public static final String NAME_PREFIX = "verify-";
+
+    /**
+     * Gets the name of a BackupVerifyTask for a CassandraDaemonTask.
+     *
+     * @param daemonName The name of the CassandraDaemonTask.
+     * @return The name of the BackupVerifyTask for daemonName.
+     */
+    public static final String nameForDaemon(final String daemonName) {
+        return NAME_PREFIX + daemonName;
+    }
+
+    /**
+     * Gets the name of a BackupVerifyTask for a CassandraDaemonTask.
+     *
+     * @param daemon The CassandraDaemonTask for which the snapshot will be
+     *               verified.
+     * @return The name of the BackupVerifyTask for daemon.
+     */
+    public static final String nameForDaemon(final CassandraDaemonTask daemon) {
+        return nameForDaemon(daemon.getName());
+    }
+
+    public static BackupVerifyTask parse(final Protos.TaskInfo info) {
+        return new BackupVerifyTask(info);
+    }
+
+    public static BackupVerifyTask create(
+            final Protos.TaskInfo template,
+            final CassandraDaemonTask daemon,
+            final BackupRestoreContext context) {
+
+        CassandraData data = CassandraData.createBackupVerifyData(
+                "",
+                context
+                    .forNode(daemon.getName())
+                    .withLocalLocation(daemon.getVolumePath() + "/data"));
+
+        String name = nameForDaemon(daemon);
+        Protos.TaskInfo completedTemplate = Protos.TaskInfo.newBuilder(template)
+                .setName(name)
+                .setTaskId(TaskUtils.toTaskId(name))
+                .setData(data.getBytes())
+                .build();
+
+        completedTemplate = org.apache.mesos.offer.TaskUtils.clearTransient(completedTemplate);
+
+        return new BackupVerifyTask(completedTemplate);
+    }
+
+    /**
+     * Constructs a new BackupVerifyTask.
+     */
+    protected BackupVerifyTask(final Protos.TaskInfo info) {
+        super(info);
+    }
+
+    @Override
+    public BackupVerifyTask update(Protos.Offer offer) {
+        return new BackupVerifyTask(getBuilder()
+            .setSlaveId(offer.getSlaveId())
+            .setData(getData().withHostname(offer.getHostname()).getBytes())
+            .build());
+    }
+
+    @Override
+    public BackupVerifyTask updateId() {
+        return new BackupVerifyTask(getBuilder().setTaskId(createId(getName()))
+            .build());
+    }
+
+    @Override
+    public BackupVerifyTask update(CassandraTaskStatus status) {
+        if (status.getType() == TYPE.BACKUP_VERIFY &&
+            getId().equalsIgnoreCase(status.getId())) {
+            return update(status.getState());
+        }
+        return this;
+    }
+
+    @Override
+    public BackupVerifyTask update(Protos.TaskState state) {
+        return new BackupVerifyTask(getBuilder().setData(
+            getData().withState(state).getBytes()).build());
+    }
+
+    @Override
+    public BackupVerifyStatus createStatus(
+            Protos.TaskState state,
+            Optional<String> message) {
+
+        Protos.TaskStatus.Builder builder = getStatusBuilder();
+        if (message.isPresent()) {
+            builder.setMessage(message.get());
+        }
+
+        return BackupVerifyStatus.create(builder
+                .setData(CassandraData.createBackupVerifyStatusData().getBytes())
+                .setState(state)
+                .build());
+    }
+
+
+    public BackupRestoreContext getBackupRestoreContext() {
+        return getData().getBackupRestoreContext();
+    }
+}
\ No newline at end of file
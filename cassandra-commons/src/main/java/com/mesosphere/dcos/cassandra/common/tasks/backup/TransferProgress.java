@@ -0,0 +1,232 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.common.tasks.backup;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.mesosphere.dcos.cassandra.common.CassandraProtos;
+import com.mesosphere.dcos.cassandra.common.util.JsonUtils;
+
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * TransferProgress is the progress of a node's backup or restore transfer,
+ * as reported in the status updates of upload, download and restore tasks.
+ * Files are counted as they complete and bytes as they are transferred, so
+ * that a slow transfer can be told apart from a stuck one. When SSTables
+ * are loaded, the files counted are column families.
+ */
+public class TransferProgress {
+
+    /**
+     * The progress of a transfer that has not started.
+     */
+    public static final TransferProgress NONE = create(0, 0, 0, 0, 0);
+
+    @JsonCreator
+    public static TransferProgress create(
+        @JsonProperty("files")
+        final int files,
+        @JsonProperty("total_files")
+        final int totalFiles,
+        @JsonProperty("bytes")
+        final long bytes,
+        @JsonProperty("total_bytes")
+        final long totalBytes,
+        @JsonProperty("bytes_per_sec")
+        final double bytesPerSec) {
+        return new TransferProgress(files, totalFiles, bytes, totalBytes,
+            bytesPerSec);
+    }
+
+    /**
+     * Parses a TransferProgress from a Protocol Buffers representation.
+     *
+     * @param progress A Protocol Buffers representation of a
+     *                 TransferProgress.
+     * @return A TransferProgress parsed from progress.
+     */
+    public static TransferProgress parse(
+        final CassandraProtos.TransferProgress progress) {
+        return create(progress.getFiles(),
+            progress.getTotalFiles(),
+            progress.getBytes(),
+            progress.getTotalBytes(),
+            progress.getBytesPerSec());
+    }
+
+    /**
+     * Sums the progress of transfers running at the same time, e.g. on all
+     * the nodes of the cluster.
+     *
+     * @param progresses The progress of each transfer.
+     * @return The combined progress, whose rate is the aggregate rate of
+     * the transfers that have not completed.
+     */
+    public static TransferProgress sum(
+        final Collection<TransferProgress> progresses) {
+        int files = 0;
+        int totalFiles = 0;
+        long bytes = 0;
+        long totalBytes = 0;
+        double bytesPerSec = 0;
+        for (TransferProgress progress : progresses) {
+            files += progress.getFiles();
+            totalFiles += progress.getTotalFiles();
+            bytes += progress.getBytes();
+            totalBytes += progress.getTotalBytes();
+            if (progress.getBytes() < progress.getTotalBytes()) {
+                bytesPerSec += progress.getBytesPerSec();
+            }
+        }
+        return create(files, totalFiles, bytes, totalBytes, bytesPerSec);
+    }
+
+    @JsonProperty("files")
+    private final int files;
+
+    @JsonProperty("total_files")
+    private final int totalFiles;
+
+    @JsonProperty("bytes")
+    private final long bytes;
+
+    @JsonProperty("total_bytes")
+    private final long totalBytes;
+
+    @JsonProperty("bytes_per_sec")
+    private final double bytesPerSec;
+
+    public TransferProgress(final int files,
+                            final int totalFiles,
+                            final long bytes,
+                            final long totalBytes,
+                            final double bytesPerSec) {
+        this.files = files;
+        this.totalFiles = totalFiles;
+        this.bytes = bytes;
+        this.totalBytes = totalBytes;
+        this.bytesPerSec = bytesPerSec;
+    }
+
+    /**
+     * Gets the number of files transferred.
+     *
+     * @return The number of files whose transfer has completed.
+     */
+    @JsonProperty("files")
+    public int getFiles() {
+        return files;
+    }
+
+    /**
+     * Gets the number of files to transfer.
+     *
+     * @return The number of files known to be transferred, which may grow
+     * while the files to upload are being listed.
+     */
+    @JsonProperty("total_files")
+    public int getTotalFiles() {
+        return totalFiles;
+    }
+
+    /**
+     * Gets the number of bytes transferred.
+     *
+     * @return The number of bytes read or written so far.
+     */
+    @JsonProperty("bytes")
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Gets the number of bytes to transfer.
+     *
+     * @return The total size of the files to transfer.
+     */
+    @JsonProperty("total_bytes")
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Gets the throughput.
+     *
+     * @return The average number of bytes transferred per second.
+     */
+    @JsonProperty("bytes_per_sec")
+    public double getBytesPerSec() {
+        return bytesPerSec;
+    }
+
+    /**
+     * Gets the estimated time to complete the transfer at its current rate.
+     *
+     * @return The estimated number of seconds left, zero if the transfer is
+     * complete, or -1 if nothing has been transferred yet.
+     */
+    @JsonProperty("eta_seconds")
+    public long getEtaSeconds() {
+        if (bytes >= totalBytes) {
+            return 0;
+        } else if (bytesPerSec <= 0) {
+            return -1;
+        }
+        return (long) Math.ceil((totalBytes - bytes) / bytesPerSec);
+    }
+
+    /**
+     * Gets a Protocol Buffers representation of the TransferProgress.
+     *
+     * @return A Protocol Buffers representation of the TransferProgress.
+     */
+    @JsonIgnore
+    public CassandraProtos.TransferProgress toProto() {
+        return CassandraProtos.TransferProgress.newBuilder()
+            .setFiles(files)
+            .setTotalFiles(totalFiles)
+            .setBytes(bytes)
+            .setTotalBytes(totalBytes)
+            .setBytesPerSec(bytesPerSec)
+            .build();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TransferProgress)) return false;
+        TransferProgress that = (TransferProgress) o;
+        return getFiles() == that.getFiles() &&
+                getTotalFiles() == that.getTotalFiles() &&
+                getBytes() == that.getBytes() &&
+                getTotalBytes() == that.getTotalBytes() &&
+                Double.compare(getBytesPerSec(), that.getBytesPerSec()) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getFiles(), getTotalFiles(), getBytes(),
+                getTotalBytes(), getBytesPerSec());
+    }
+
+    @Override
+    public String toString() {
+        return JsonUtils.toJsonString(this);
+    }
+}
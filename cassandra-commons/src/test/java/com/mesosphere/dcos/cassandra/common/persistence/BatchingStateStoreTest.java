@@ -0,0 +1,240 @@
+package com.mesosphere.dcos.cassandra.common.persistence;
+
+import org.apache.mesos.Protos;
+import org.apache.mesos.state.StateStore;
+import org.apache.mesos.state.StateStoreException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * This class tests the BatchingStateStore class.
+ */
+public class BatchingStateStoreTest {
+    private StateStore store;
+    private ScheduledExecutorService executor;
+    private BatchingStateStore batching;
+
+    @Before
+    public void beforeEach() {
+        store = Mockito.mock(StateStore.class);
+        when(store.fetchTasks()).thenReturn(Collections.emptyList());
+        when(store.fetchTaskNames()).thenReturn(Collections.emptyList());
+        when(store.fetchTask(any())).thenReturn(Optional.empty());
+        when(store.fetchStatus(any())).thenReturn(Optional.empty());
+        executor = Executors.newSingleThreadScheduledExecutor();
+        // The window is long enough that only explicit flushes write.
+        batching = new BatchingStateStore(store, executor,
+                TimeUnit.HOURS.toMillis(1));
+    }
+
+    @After
+    public void afterEach() {
+        executor.shutdownNow();
+    }
+
+    private static Protos.TaskInfo task(String name, String id) {
+        return Protos.TaskInfo.newBuilder()
+                .setName(name)
+                .setTaskId(Protos.TaskID.newBuilder().setValue(name + "__" + id))
+                .setSlaveId(Protos.SlaveID.newBuilder().setValue(""))
+                .build();
+    }
+
+    private static Protos.TaskStatus status(Protos.TaskInfo task,
+                                            Protos.TaskState state) {
+        return Protos.TaskStatus.newBuilder()
+                .setTaskId(task.getTaskId())
+                .setState(state)
+                .build();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCoalescesWrites() throws Exception {
+        final Protos.TaskInfo first = task("node-0", "1");
+        final Protos.TaskInfo second = task("node-1", "1");
+        final Protos.TaskInfo updated = task("node-0", "2");
+        batching.storeTasks(Arrays.asList(first));
+        batching.storeTasks(Arrays.asList(second));
+        batching.storeTasks(Arrays.asList(updated));
+        batching.storeStatus(status(updated, Protos.TaskState.TASK_STAGING));
+        batching.storeStatus(status(updated, Protos.TaskState.TASK_RUNNING));
+        verify(store, never()).storeTasks(any());
+        verify(store, never()).storeStatus(any());
+
+        batching.flush();
+        final ArgumentCaptor<Collection> tasks =
+                ArgumentCaptor.forClass(Collection.class);
+        verify(store, times(1)).storeTasks(tasks.capture());
+        Assert.assertEquals(2, tasks.getValue().size());
+        Assert.assertTrue(tasks.getValue().contains(updated));
+        Assert.assertTrue(tasks.getValue().contains(second));
+        verify(store, times(1)).storeStatus(
+                status(updated, Protos.TaskState.TASK_RUNNING));
+
+        // Nothing is pending after a flush.
+        batching.flush();
+        verify(store, times(1)).storeTasks(any());
+    }
+
+    @Test
+    public void testReadsPendingWrites() throws Exception {
+        final Protos.TaskInfo task = task("node-0", "1");
+        final Protos.TaskStatus running =
+                status(task, Protos.TaskState.TASK_RUNNING);
+        batching.storeTasks(Arrays.asList(task));
+        batching.storeStatus(running);
+
+        Assert.assertEquals(task, batching.fetchTask("node-0").get());
+        Assert.assertEquals(Arrays.asList(task), batching.fetchTasks());
+        Assert.assertTrue(batching.fetchTaskNames().contains("node-0"));
+        Assert.assertEquals(running, batching.fetchStatus("node-0").get());
+
+        // Written statuses are served from memory once flushed.
+        batching.flush();
+        Assert.assertEquals(running, batching.fetchStatus("node-0").get());
+        verify(store, never()).fetchStatus(any());
+    }
+
+    @Test
+    public void testClearDropsPendingWrites() throws Exception {
+        final Protos.TaskInfo task = task("node-0", "1");
+        batching.storeTasks(Arrays.asList(task));
+        batching.storeStatus(status(task, Protos.TaskState.TASK_RUNNING));
+        batching.clearTask("node-0");
+
+        verify(store).clearTask("node-0");
+        Assert.assertFalse(batching.fetchTask("node-0").isPresent());
+        Assert.assertFalse(batching.fetchStatus("node-0").isPresent());
+        batching.flush();
+        verify(store, never()).storeTasks(any());
+        verify(store, never()).storeStatus(any());
+    }
+
+    @Test
+    public void testRetriesFailedTasks() throws Exception {
+        final Protos.TaskInfo task = task("node-0", "1");
+        doThrow(new StateStoreException("Failed")).doNothing()
+                .when(store).storeTasks(any());
+        batching.storeTasks(Arrays.asList(task));
+
+        try {
+            batching.flush();
+            Assert.fail("Flush should fail");
+        } catch (StateStoreException e) {
+            Assert.assertEquals(task, batching.fetchTask("node-0").get());
+        }
+        batching.flush();
+        verify(store, times(2)).storeTasks(any());
+        batching.flush();
+        verify(store, times(2)).storeTasks(any());
+    }
+
+    @Test
+    public void testRunsActionsOnceWritesAreFlushed() throws Exception {
+        final Protos.TaskInfo task = task("node-0", "1");
+        final AtomicInteger flushed = new AtomicInteger(0);
+        batching.whenFlushed(flushed::incrementAndGet);
+        Assert.assertEquals(1, flushed.get());
+
+        doThrow(new StateStoreException("Failed")).doNothing()
+                .when(store).storeTasks(any());
+        batching.storeTasks(Arrays.asList(task));
+        batching.whenFlushed(flushed::incrementAndGet);
+        try {
+            batching.flush();
+            Assert.fail("Flush should fail");
+        } catch (StateStoreException e) {
+            Assert.assertEquals(1, flushed.get());
+        }
+        batching.flush();
+        Assert.assertEquals(2, flushed.get());
+        batching.flush();
+        Assert.assertEquals(2, flushed.get());
+    }
+
+    @Test
+    public void testRejectsStatusesOfUnknownTasks() throws Exception {
+        final Protos.TaskInfo task = task("node-0", "1");
+        try {
+            batching.storeStatus(status(task, Protos.TaskState.TASK_RUNNING));
+            Assert.fail("Status of unknown task should be rejected");
+        } catch (StateStoreException e) {
+        }
+        batching.storeTasks(Arrays.asList(task));
+        try {
+            batching.storeStatus(status(task("node-0", "2"),
+                    Protos.TaskState.TASK_RUNNING));
+            Assert.fail("Status of another task id should be rejected");
+        } catch (StateStoreException e) {
+        }
+        batching.flush();
+        verify(store, never()).storeStatus(any());
+    }
+
+    @Test
+    public void testRetriesFailedStatuses() throws Exception {
+        final Protos.TaskInfo task = task("node-0", "1");
+        final Protos.TaskStatus running =
+                status(task, Protos.TaskState.TASK_RUNNING);
+        when(store.fetchTask("node-0")).thenReturn(Optional.of(task));
+        doThrow(new StateStoreException("Failed")).doNothing()
+                .when(store).storeStatus(any());
+        batching.storeStatus(running);
+
+        try {
+            batching.flush();
+            Assert.fail("Flush should fail");
+        } catch (StateStoreException e) {
+            Assert.assertEquals(running, batching.fetchStatus("node-0").get());
+        }
+        batching.flush();
+        verify(store, times(2)).storeStatus(running);
+        batching.flush();
+        verify(store, times(2)).storeStatus(running);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStopFlushesAndShutsDown() throws Exception {
+        final BatchingStateStore.Writer writer =
+                Mockito.mock(BatchingStateStore.Writer.class);
+        batching = new BatchingStateStore(store, writer, executor,
+                TimeUnit.HOURS.toMillis(1));
+        final Protos.TaskInfo task = task("node-0", "1");
+        batching.storeTasks(Arrays.asList(task));
+        batching.stop();
+
+        final ArgumentCaptor<Collection> tasks =
+                ArgumentCaptor.forClass(Collection.class);
+        verify(writer).write(tasks.capture(), any());
+        Assert.assertEquals(Arrays.asList(task),
+                new ArrayList<>(tasks.getValue()));
+        verify(writer).close();
+        Assert.assertTrue(executor.isTerminated());
+    }
+
+    @Test
+    public void testFlushesAfterWindow() throws Exception {
+        batching = new BatchingStateStore(store, executor, 10);
+        final Protos.TaskInfo task = task("node-0", "1");
+        batching.storeTasks(Arrays.asList(task));
+        verify(store, timeout(5000)).storeTasks(any());
+    }
+}
@@ -0,0 +1,139 @@
+package com.mesosphere.dcos.cassandra.common.persistence;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.apache.mesos.Protos;
+import org.apache.mesos.state.StateStoreException;
+import org.apache.zookeeper.CreateMode;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * This class tests the CuratorTransactionWriter class.
+ */
+public class CuratorTransactionWriterTest {
+    private static final String TASKS_PATH = "/dcos-service-cassandra/Tasks";
+
+    private TestingServer server;
+    private CuratorFramework curator;
+    private CuratorTransactionWriter writer;
+
+    @Before
+    public void beforeEach() throws Exception {
+        server = new TestingServer();
+        server.start();
+        curator = CuratorFrameworkFactory.newClient(
+                server.getConnectString(), new RetryOneTime(100));
+        curator.start();
+        writer = new CuratorTransactionWriter(curator, "cassandra");
+    }
+
+    @After
+    public void afterEach() throws Exception {
+        writer.close();
+        server.close();
+    }
+
+    private static Protos.TaskInfo task(String name, String id) {
+        return Protos.TaskInfo.newBuilder()
+                .setName(name)
+                .setTaskId(Protos.TaskID.newBuilder().setValue(name + "__" + id))
+                .setSlaveId(Protos.SlaveID.newBuilder().setValue(""))
+                .build();
+    }
+
+    private static Protos.TaskStatus status(Protos.TaskInfo task,
+                                            Protos.TaskState state) {
+        return Protos.TaskStatus.newBuilder()
+                .setTaskId(task.getTaskId())
+                .setState(state)
+                .build();
+    }
+
+    private byte[] read(String taskName, String name) throws Exception {
+        return curator.getData().forPath(TASKS_PATH + "/" + taskName + "/" +
+                name);
+    }
+
+    @Test
+    public void testWritesNewAndExistingNodes() throws Exception {
+        final Protos.TaskInfo task = task("node-0", "1");
+        final Protos.TaskStatus staging =
+                status(task, Protos.TaskState.TASK_STAGING);
+        writer.write(Arrays.asList(task), Arrays.asList(staging));
+        Assert.assertEquals(task, Protos.TaskInfo.parseFrom(
+                read("node-0", "TaskInfo")));
+        Assert.assertEquals(staging, Protos.TaskStatus.parseFrom(
+                read("node-0", "TaskStatus")));
+
+        final Protos.TaskInfo other = task("node-1", "1");
+        final Protos.TaskStatus running =
+                status(task, Protos.TaskState.TASK_RUNNING);
+        writer.write(Arrays.asList(other), Arrays.asList(running));
+        Assert.assertEquals(other, Protos.TaskInfo.parseFrom(
+                read("node-1", "TaskInfo")));
+        Assert.assertEquals(running, Protos.TaskStatus.parseFrom(
+                read("node-0", "TaskStatus")));
+    }
+
+    @Test
+    public void testWritesKnownNodesWithoutReading() throws Exception {
+        final Protos.TaskInfo task = task("node-0", "1");
+        writer.write(Arrays.asList(task),
+                Arrays.asList(status(task, Protos.TaskState.TASK_STAGING)));
+
+        final CuratorFramework spy = Mockito.spy(curator);
+        writer = new CuratorTransactionWriter(spy, "cassandra");
+        writer.write(Arrays.asList(task),
+                Arrays.asList(status(task, Protos.TaskState.TASK_STAGING)));
+        // The first write of the new writer reads the nodes it does not
+        // know, the following writes only commit.
+        Mockito.reset(spy);
+        final Protos.TaskStatus running =
+                status(task, Protos.TaskState.TASK_RUNNING);
+        writer.write(Arrays.asList(task), Arrays.asList(running));
+        Mockito.verify(spy, Mockito.never()).checkExists();
+        Mockito.verify(spy, Mockito.times(1)).inTransaction();
+        Assert.assertEquals(running, Protos.TaskStatus.parseFrom(
+                read("node-0", "TaskStatus")));
+    }
+
+    @Test
+    public void testRecreatesClearedNodes() throws Exception {
+        final Protos.TaskInfo task = task("node-0", "1");
+        writer.write(Arrays.asList(task), Collections.emptyList());
+        // Removed by the StateStore.
+        curator.delete().deletingChildrenIfNeeded()
+                .forPath(TASKS_PATH + "/node-0");
+
+        writer.write(Arrays.asList(task), Collections.emptyList());
+        Assert.assertEquals(task, Protos.TaskInfo.parseFrom(
+                read("node-0", "TaskInfo")));
+    }
+
+    @Test
+    public void testWritesNothingWhenAWriteFails() throws Exception {
+        final Protos.TaskInfo task = task("node-0", "1");
+        writer.write(Arrays.asList(task), Collections.emptyList());
+        // Ephemeral nodes can not have children, so writing the TaskInfo of
+        // node-1 fails the transaction.
+        curator.create().withMode(CreateMode.EPHEMERAL)
+                .forPath(TASKS_PATH + "/node-1");
+        try {
+            writer.write(Arrays.asList(task("node-1", "1")),
+                    Arrays.asList(status(task, Protos.TaskState.TASK_RUNNING)));
+            Assert.fail("Write should fail");
+        } catch (StateStoreException e) {
+        }
+        Assert.assertNull(curator.checkExists().forPath(
+                TASKS_PATH + "/node-0/TaskStatus"));
+    }
+}
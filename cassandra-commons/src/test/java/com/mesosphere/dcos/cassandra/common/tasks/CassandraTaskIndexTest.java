@@ -0,0 +1,159 @@
+package com.mesosphere.dcos.cassandra.common.tasks;
+
+import com.mesosphere.dcos.cassandra.common.tasks.cleanup.CleanupContext;
+import com.mesosphere.dcos.cassandra.common.tasks.repair.RepairContext;
+import com.mesosphere.dcos.cassandra.common.tasks.repair.RepairTask;
+import org.apache.mesos.Protos;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class tests the CassandraTaskIndex class.
+ */
+public class CassandraTaskIndexTest {
+
+    private static CassandraTask task(String name, CassandraData data)
+            throws Exception {
+        return CassandraTask.parse(Protos.TaskInfo.newBuilder()
+                .setName(name)
+                .setTaskId(Protos.TaskID.newBuilder()
+                        .setValue(name + "__" + UUID.randomUUID()))
+                .setSlaveId(Protos.SlaveID.newBuilder().setValue(""))
+                .setData(data.getBytes())
+                .build());
+    }
+
+    private static CassandraTask repair(String name) throws Exception {
+        return task(name, CassandraData.createRepairData("",
+                RepairContext.create(Collections.emptyList(),
+                        Collections.emptyList(), Collections.emptyList())));
+    }
+
+    private static CassandraTask cleanup(String name) throws Exception {
+        return task(name, CassandraData.createCleanupData("",
+                CleanupContext.create(Collections.emptyList(),
+                        Collections.emptyList(), Collections.emptyList())));
+    }
+
+    @Test
+    public void testIndexesByType() throws Exception {
+        final CassandraTask repair = repair("repair-node-0");
+        final CassandraTask cleanup = cleanup("cleanup-node-0");
+        final CassandraTaskIndex index = new CassandraTaskIndex();
+        index.put(repair);
+        index.put(cleanup);
+
+        Assert.assertEquals(2, index.size());
+        final Map<String, RepairTask> repairs =
+                index.get(CassandraTask.TYPE.REPAIR);
+        Assert.assertEquals(Collections.singletonMap(repair.getName(), repair),
+                repairs);
+        Assert.assertEquals(Collections.singleton(cleanup.getName()),
+                index.get(CassandraTask.TYPE.CLEANUP).keySet());
+        Assert.assertTrue(index.get(CassandraTask.TYPE.CASSANDRA_DAEMON)
+                .isEmpty());
+        Assert.assertEquals(cleanup, index.getById(cleanup.getId()).get());
+
+        // Lookups return views of the index rather than copies.
+        Assert.assertSame(repairs, index.get(CassandraTask.TYPE.REPAIR));
+        Assert.assertEquals(index.get(),
+                CassandraTaskIndex.of(index.get()).get());
+    }
+
+    @Test
+    public void testUpdatesInPlace() throws Exception {
+        final CassandraTask repair = repair("repair-node-0");
+        final CassandraTask cleanup = cleanup("cleanup-node-0");
+        final CassandraTaskIndex index = new CassandraTaskIndex();
+        index.put(repair);
+        index.put(cleanup);
+        final Map<String, RepairTask> repairs =
+                index.get(CassandraTask.TYPE.REPAIR);
+
+        final CassandraTask running =
+                repair.update(Protos.TaskState.TASK_RUNNING);
+        index.put(running);
+        Assert.assertEquals(running, index.get(repair.getName()).get());
+        Assert.assertEquals(running, index.getById(repair.getId()).get());
+        Assert.assertEquals(running, repairs.get(repair.getName()));
+
+        index.remove(repair.getName());
+        Assert.assertEquals(1, index.size());
+        Assert.assertFalse(index.get(repair.getName()).isPresent());
+        Assert.assertFalse(index.getById(repair.getId()).isPresent());
+        Assert.assertTrue(repairs.isEmpty());
+        index.remove("missing");
+        Assert.assertEquals(1, index.size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testViewsAreUnmodifiable() throws Exception {
+        new CassandraTaskIndex().get(CassandraTask.TYPE.REPAIR)
+                .put("repair-node-0", (RepairTask) repair("repair-node-0"));
+    }
+
+    @Test
+    public void testReplacesTaskId() throws Exception {
+        final CassandraTask first = repair("repair-node-0");
+        final CassandraTask second = repair("repair-node-0");
+        final CassandraTaskIndex index = new CassandraTaskIndex();
+        index.put(first);
+        index.put(second);
+
+        Assert.assertEquals(1, index.size());
+        Assert.assertFalse(index.getById(first.getId()).isPresent());
+        Assert.assertEquals(second, index.getById(second.getId()).get());
+    }
+
+    @Test
+    public void testConcurrentWritesOfDifferentTasks() throws Exception {
+        final int threads = 4;
+        final int perThread = 50;
+        final List<List<CassandraTask>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final List<CassandraTask> list = new ArrayList<>();
+            for (int i = 0; i < perThread; i++) {
+                list.add(repair("repair-node-" + t + "-" + i));
+            }
+            tasks.add(list);
+        }
+
+        final CassandraTaskIndex index = new CassandraTaskIndex();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (List<CassandraTask> list : tasks) {
+                futures.add(executor.submit(() -> {
+                    for (CassandraTask task : list) {
+                        index.put(task);
+                        index.put(task.update(Protos.TaskState.TASK_RUNNING));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(threads * perThread, index.size());
+        Assert.assertEquals(threads * perThread,
+                index.get(CassandraTask.TYPE.REPAIR).size());
+        for (List<CassandraTask> list : tasks) {
+            for (CassandraTask task : list) {
+                Assert.assertEquals(Protos.TaskState.TASK_RUNNING,
+                        index.getById(task.getId()).get().getState());
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@ package com.mesosphere.dcos.cassandra.executor;
 import com.google.common.collect.ImmutableSet;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.mesosphere.dcos.cassandra.common.tasks.*;
+import com.mesosphere.dcos.cassandra.executor.backup.BackupManifest;
 import com.mesosphere.dcos.cassandra.executor.metrics.MetricsConfig;
 import org.apache.cassandra.db.SystemKeyspace;
 import org.apache.cassandra.schema.SchemaKeyspace;
@@ -302,6 +303,18 @@ public class CassandraDaemonProcess extends ProcessTask {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Gets the topology of the node, as recorded in the manifests of its
+     * backups.
+     *
+     * @return The fingerprints of the tokens of the node and of the ring.
+     */
+    public BackupManifest.Topology getTopology() {
+        final NodeProbe probe = getProbe();
+        return BackupManifest.Topology.of(probe.getTokens(),
+                probe.getTokenToEndpointMap().keySet());
+    }
+
     /**
      * Assassinates the node at address.
      *
@@ -367,6 +380,48 @@ public class CassandraDaemonProcess extends ProcessTask {
         getProbe().takeSnapshot(name, null, keySpace);
     }
 
+    /**
+     * Takes a snapshot of several key spaces with the given name in a single
+     * call, so that all key spaces are flushed and linked together.
+     *
+     * @param name      The name of the snapshot.
+     * @param keySpaces The names of the key spaces. This must not be empty,
+     *                  as no key spaces snapshots all of them.
+     * @throws IOException If an error occurs taking the snapshot.
+     */
+    public void takeSnapShot(String name, List<String> keySpaces)
+            throws IOException {
+        getProbe().takeSnapshot(name, null,
+                keySpaces.toArray(new String[keySpaces.size()]));
+    }
+
+    /**
+     * Takes a snapshot of several column families with the given name in a
+     * single call.
+     *
+     * @param name           The name of the snapshot.
+     * @param columnFamilies The names of the column families as
+     *                       keyspace.table. This must not be empty.
+     * @throws IOException If an error occurs taking the snapshot.
+     */
+    public void takeColumnFamilySnapShot(String name,
+                                         List<String> columnFamilies)
+            throws IOException {
+        getProbe().takeMultipleTableSnapshot(name,
+                columnFamilies.toArray(new String[columnFamilies.size()]));
+    }
+
+    /**
+     * Loads the SSTables placed in the data directory of a column family
+     * while the node is running, as nodetool refresh does.
+     *
+     * @param keySpace     The name of the key space.
+     * @param columnFamily The name of the column family.
+     */
+    public void loadNewSSTables(String keySpace, String columnFamily) {
+        getProbe().loadNewSSTables(keySpace, columnFamily);
+    }
+
     /**
      * Performs anti-entropy repair on the indicated keySpace.
      *
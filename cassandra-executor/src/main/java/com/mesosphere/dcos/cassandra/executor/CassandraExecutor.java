@@ -16,6 +16,7 @@
 package com.mesosphere.dcos.cassandra.executor;
 
 import com.google.inject.Inject;
+import com.mesosphere.dcos.cassandra.executor.backup.TransferMetrics;
 import com.mesosphere.dcos.cassandra.executor.tasks.CassandraTaskFactory;
 import org.apache.mesos.Executor;
 import org.apache.mesos.ExecutorDriver;
@@ -40,6 +41,7 @@ public class CassandraExecutor implements Executor {
 
     private final ScheduledExecutorService executor;
     private final ExecutorService clusterJobExecutorService;
+    private final TransferMetrics metrics;
     private CassandraTaskFactory cassandraTaskFactory;
     private CustomExecutor customExecutor;
 
@@ -51,12 +53,16 @@ public class CassandraExecutor implements Executor {
      *                                  tasks.
      * @param clusterJobExecutorService The ExecutorService used by the
      *                                  Executor to run ClusterTasks.
+     * @param metrics                   The metrics the progress of backup
+     *                                  and restore transfers is recorded in.
      */
     @Inject
     public CassandraExecutor(final ScheduledExecutorService executor,
-                             final ExecutorService clusterJobExecutorService) {
+                             final ExecutorService clusterJobExecutorService,
+                             final TransferMetrics metrics) {
         this.executor = executor;
         this.clusterJobExecutorService = clusterJobExecutorService;
+        this.metrics = metrics;
     }
 
 
@@ -65,7 +71,7 @@ public class CassandraExecutor implements Executor {
                            Protos.ExecutorInfo executorInfo,
                            Protos.FrameworkInfo frameworkInfo,
                            Protos.SlaveInfo slaveInfo) {
-        cassandraTaskFactory = new CassandraTaskFactory(driver);
+        cassandraTaskFactory = new CassandraTaskFactory(driver, metrics);
         customExecutor = new CustomExecutor(clusterJobExecutorService, cassandraTaskFactory);
     }
 
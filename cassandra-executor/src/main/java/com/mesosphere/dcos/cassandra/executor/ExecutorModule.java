@@ -16,6 +16,7 @@
 package com.mesosphere.dcos.cassandra.executor;
 
 import com.google.inject.AbstractModule;
+import com.mesosphere.dcos.cassandra.executor.backup.TransferMetrics;
 import com.mesosphere.dcos.cassandra.executor.config.CassandraExecutorConfiguration;
 import org.apache.mesos.Executor;
 
@@ -58,6 +59,7 @@ public class ExecutorModule extends AbstractModule {
                 Executors.newCachedThreadPool());
         bind(ScheduledExecutorService.class).toInstance(
                 Executors.newScheduledThreadPool(10));
+        bind(TransferMetrics.class).asEagerSingleton();
         bind(Executor.class).to(CassandraExecutor.class).asEagerSingleton();
         bind(ExecutorDriverFactory.class)
                 .to(MesosExecutorDriverFactory.class)
@@ -18,6 +18,7 @@ package com.mesosphere.dcos.cassandra.executor;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.mesosphere.dcos.cassandra.executor.checks.DaemonRunning;
+import com.mesosphere.dcos.cassandra.executor.backup.TransferMetrics;
 import com.mesosphere.dcos.cassandra.executor.config.CassandraExecutorConfiguration;
 import com.mesosphere.dcos.cassandra.executor.resources.CassandraDaemonController;
 import io.dropwizard.Application;
@@ -72,5 +73,7 @@ public class Main extends Application<CassandraExecutorConfiguration> {
                 injector.getInstance(CassandraDaemonController.class));
         environment.lifecycle().manage(
                 injector.getInstance(ExecutorDriverDispatcher.class));
+        environment.metrics().registerAll(
+                injector.getInstance(TransferMetrics.class));
     }
 }
@@ -1,55 +1,108 @@
 package com.mesosphere.dcos.cassandra.executor.backup;
 
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.hash.HashingOutputStream;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
-import com.mesosphere.dcos.cassandra.executor.backup.azure.PageBlobInputStream;
+import com.mesosphere.dcos.cassandra.executor.backup.azure.AzureIOException;
+import com.mesosphere.dcos.cassandra.executor.backup.azure.BlockBlobOutputStream;
 import com.mesosphere.dcos.cassandra.executor.backup.azure.PageBlobOutputStream;
+import com.mesosphere.dcos.cassandra.executor.backup.azure.PrefetchingBlobInputStream;
+import com.mesosphere.dcos.cassandra.executor.compress.BufferPool;
+import com.mesosphere.dcos.cassandra.executor.compress.CompressionDriver;
+import com.mesosphere.dcos.cassandra.executor.compress.CompressionDriverFactory;
+import com.mesosphere.dcos.cassandra.executor.compress.NoCompressionDriver;
+import com.mesosphere.dcos.cassandra.executor.compress.SnappyCompressionDriver;
 import com.microsoft.azure.storage.CloudStorageAccount;
+import com.microsoft.azure.storage.StorageErrorCodeStrings;
 import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.blob.BlobListingDetails;
+import com.microsoft.azure.storage.blob.CloudBlob;
 import com.microsoft.azure.storage.blob.CloudBlobClient;
 import com.microsoft.azure.storage.blob.CloudBlobContainer;
+import com.microsoft.azure.storage.blob.CloudBlockBlob;
 import com.microsoft.azure.storage.blob.CloudPageBlob;
 import com.microsoft.azure.storage.blob.ListBlobItem;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xerial.snappy.SnappyInputStream;
-import org.xerial.snappy.SnappyOutputStream;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.OutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.InvalidKeyException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.mesosphere.dcos.cassandra.executor.backup.azure.PageBlobOutputStream.ORIGINAL_SIZE_KEY;
 
 /**
  * Implements a BackupStorageDriver that provides upload and download
- * functionality to an Azure Storage using Page Blobs.
+ * functionality to an Azure Storage using Page Blobs or Block Blobs.
  * Page Blobs allow for 1TB file sizes.
  * Page Blobs require a Storage Account (but NOT a blob storage account)
+ * Block Blobs are staged in parallel, block by block, and committed once.
+ * Block Blobs allow for 50,000 blocks of 4MB, so larger files are still
+ * stored as Page Blobs.  Downloads read either type.
  */
 public class AzureStorageDriver implements BackupStorageDriver {
 
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
-  private static final int DEFAULT_PART_SIZE_UPLOAD = 4 * 1024 * 1024; // Chunk size set to 4MB
+  private static final CompressionDriver DEFAULT_COMPRESSION = new SnappyCompressionDriver();
   private static final int DEFAULT_PART_SIZE_DOWNLOAD = 4 * 1024 * 1024; // Chunk size set to 4MB
+  private static final int DEFAULT_CONCURRENCY = 8;
+  private static final int READ_AHEAD = 4; // Ranges prefetched ahead of the reader of each blob
+  private static final int MAX_BLOCK_SIZE = 4 * 1024 * 1024; // Largest block of the storage service version
+  static final String BLOCK_BLOB_TYPE = "block";
 
   private StorageUtil storageUtil = new StorageUtil();
+  private final StorageClients clients;
+
+  /**
+   * Constructs a driver with its own container cache.
+   */
+  public AzureStorageDriver() {
+    this(new StorageClients());
+  }
+
+  /**
+   * Constructs a driver.
+   *
+   * @param clients The cache of the blob containers, shared by the drivers of the executor.
+   */
+  public AzureStorageDriver(StorageClients clients) {
+    this.clients = clients;
+  }
 
   @Override
-  public void upload(BackupRestoreContext ctx) throws IOException {
+  public void upload(BackupRestoreContext ctx, BandwidthThrottle throttle,
+    Optional<BackupManifest.Topology> topology) throws IOException {
 
     final String accountName = ctx.getAccountId();
     final String accountKey = ctx.getSecretKey();
@@ -69,6 +122,52 @@ public class AzureStorageDriver implements BackupStorageDriver {
       return;
     }
 
+    final List<BackupManifest.Entry> entries = new ArrayList<>();
+    final CompressionDriver compression =
+      CompressionDriverFactory.createCompressionDriver(ctx.getCompression(), DEFAULT_COMPRESSION);
+    // The store is not listed, as it grows with every backup. Files of the previous backup of the node are known
+    // to be stored, and only the files that are new since are checked with a HEAD request.
+    final String latestKey = StorageUtil.getLatestManifestKey(nodeId);
+    final Set<String> storedKeys = ctx.isIncremental() ?
+      StorageUtil.getStoredKeys(getManifest(container, latestKey)) : new HashSet<>();
+
+    final UploadJournal journal = UploadJournal.open(UploadJournal.getJournalFile(ctx),
+      ctx.getExternalLocation() + "/" + key);
+    final BlockUploads blockUploads = isBlockBlobs(ctx) ?
+      new BlockUploads(getBlockSize(ctx), getConcurrency(ctx)) : null;
+    try {
+      uploadSnapshots(ctx, dataDirectory, container, containerName, key, compression, storedKeys, journal,
+        entries, blockUploads, throttle);
+    } finally {
+      IOUtils.closeQuietly(blockUploads);
+      journal.close();
+    }
+
+    // The manifest is only written once all of the files it references are stored,
+    // so restores never see a partial backup.
+    final BackupManifest manifest = BackupManifest.create(backupName, nodeId, entries, topology.orElse(null));
+    putManifest(container, key, manifest);
+    if (ctx.isIncremental()) {
+      putManifest(container, latestKey, manifest);
+    }
+    journal.delete();
+
+    logger.info("Done uploading snapshots for backup: {} | {}", backupName, throttle.getSummary());
+  }
+
+  private void uploadSnapshots(BackupRestoreContext ctx,
+    File dataDirectory,
+    CloudBlobContainer container,
+    String containerName,
+    String key,
+    CompressionDriver compression,
+    Set<String> storedKeys,
+    UploadJournal journal,
+    List<BackupManifest.Entry> entries,
+    BlockUploads blockUploads,
+    BandwidthThrottle throttle) throws IOException {
+    final String backupName = ctx.getName();
+
     // Ex: data/<keyspace>/<cf>/snapshots/</snapshot-dir>/<files>
     for (File keyspaceDir : dataDirectory.listFiles()) {
       if (keyspaceDir.isFile()) {
@@ -80,7 +179,7 @@ public class AzureStorageDriver implements BackupStorageDriver {
       for (File cfDir : keyspaceDir.listFiles()) {
         logger.info("Entering column family: {}", cfDir.getName());
         File snapshotDir = new File(cfDir, "snapshots");
-        if (!storageUtil.isValidBackupDir(keyspaceDir, cfDir, snapshotDir)) {
+        if (!storageUtil.isValidBackupDir(ctx, keyspaceDir, cfDir, snapshotDir)) {
           logger.info("Skipping directory: {}", snapshotDir.getAbsolutePath());
           continue;
         }
@@ -96,7 +195,8 @@ public class AzureStorageDriver implements BackupStorageDriver {
           logger.info("Going to upload directory: {}", snapshotDirectory.get().getAbsolutePath());
 
           uploadDirectory(snapshotDirectory.get().getAbsolutePath(), container, containerName, key,
-            keyspaceDir.getName(), cfDir.getName());
+            keyspaceDir.getName(), cfDir.getName(), ctx.isIncremental(), compression, storedKeys, journal,
+            entries, blockUploads, throttle);
 
         } else {
           logger.warn(
@@ -105,8 +205,6 @@ public class AzureStorageDriver implements BackupStorageDriver {
         }
       }
     }
-
-    logger.info("Done uploading snapshots for backup: {}", backupName);
   }
 
   private void uploadDirectory(String localLocation,
@@ -114,50 +212,115 @@ public class AzureStorageDriver implements BackupStorageDriver {
     String containerName,
     String key,
     String keyspaceName,
-    String cfName) throws IOException {
+    String cfName,
+    boolean incremental,
+    CompressionDriver compression,
+    Set<String> storedKeys,
+    UploadJournal journal,
+    List<BackupManifest.Entry> entries,
+    BlockUploads blockUploads,
+    BandwidthThrottle throttle) throws IOException {
 
     logger.info(
       "uploadDirectory() localLocation: {}, containerName: {}, key: {}, keyspaceName: {}, cfName: {}",
       localLocation, containerName, key, keyspaceName, cfName);
 
-    Files.walk(FileSystems.getDefault().getPath(localLocation)).forEach(filePath -> {
-        File file = filePath.toFile();
-        if (file.isFile()) {
-          String fileKey = key + "/" + keyspaceName + "/" + cfName + "/" + file.getName();
-          uploadFile(azureContainer, fileKey, file);
-        }
-      }
-    );
-  }
-
-  private void uploadFile(CloudBlobContainer container, String fileKey, File sourceFile) {
+    final List<Path> filePaths;
+    try (Stream<Path> paths = Files.walk(FileSystems.getDefault().getPath(localLocation))) {
+      filePaths = paths.collect(Collectors.toList());
+    }
 
-    PageBlobOutputStream pageBlobOutputStream = null;
-    SnappyOutputStream compress = null;
-    BufferedOutputStream bufferedOutputStream = null;
-    try (BufferedInputStream inputStream = new BufferedInputStream(new FileInputStream(sourceFile))) {
+    for (Path path : filePaths) {
+      File file = path.toFile();
+      if (!file.isFile()) {
+        continue;
+      }
 
-      logger.info("Initiating upload for file: {} | key: {}",
-        sourceFile.getAbsolutePath(), fileKey);
+      final String filePath = keyspaceName + "/" + cfName + "/" + file.getName();
+      final Optional<BackupManifest.Entry> uploaded = journal.getFile(filePath);
+      if (uploaded.isPresent() && uploaded.get().getSize() == file.length()) {
+        logger.info("File: {} was uploaded by a previous attempt | key: {}", file.getAbsolutePath(),
+          uploaded.get().getKey());
+        entries.add(uploaded.get());
+        continue;
+      }
 
-      final CloudPageBlob blob = container.getPageBlobReference(fileKey);
-      pageBlobOutputStream = new PageBlobOutputStream(blob);
-      bufferedOutputStream = new BufferedOutputStream(pageBlobOutputStream);
+      // Only the keys of the store are derived from the checksum, otherwise it is computed as the file is
+      // uploaded.
+      final String checksum = incremental ? StorageUtil.getChecksum(file) : null;
+      final String fileKey = incremental ?
+        StorageUtil.getStoreKey(keyspaceName, cfName, file, checksum, compression.getName()) : key + "/" + filePath;
+      final BackupManifest.Entry entry;
+      if (incremental && (storedKeys.contains(fileKey) || exists(azureContainer, fileKey, blockUploads != null))) {
+        logger.info("File: {} is already stored | key: {}", file.getAbsolutePath(), fileKey);
+        entry = BackupManifest.Entry.create(filePath, fileKey, file.length(), checksum, compression.getName());
+      } else {
+        entry = uploadFile(azureContainer, filePath, fileKey, file, 0, compression, blockUploads, throttle)
+          .orElseThrow(() -> new IOException("Failed to upload file: " + file.getAbsolutePath()));
+      }
+      entries.add(entry);
+      journal.fileUploaded(entry);
+    }
+  }
 
-      compress = new SnappyOutputStream(bufferedOutputStream, DEFAULT_PART_SIZE_UPLOAD);
-      IOUtils.copy(inputStream, compress, DEFAULT_PART_SIZE_UPLOAD);
+  /**
+   * Uploads a file.  The CRC32C checksum of the file is computed as it is read for the upload.
+   *
+   * @return The manifest entry of the file, with its checksum and the ETag of its blob, or empty if the upload
+   * failed.
+   */
+  private Optional<BackupManifest.Entry> uploadFile(CloudBlobContainer container, String filePath, String fileKey,
+    File sourceFile, long time, CompressionDriver compression, BlockUploads blockUploads,
+    BandwidthThrottle throttle) {
+
+    OutputStream blobOutputStream = null;
+    OutputStream compress = null;
+    BufferedOutputStream bufferedOutputStream = null;
+    final long size = sourceFile.length();
+    throttle.expect(size);
+    try (HashingInputStream hashing = new HashingInputStream(Hashing.crc32c(), new FileInputStream(sourceFile));
+         BufferedInputStream inputStream = new BufferedInputStream(throttle.throttle(hashing))) {
+
+      final Map<String, String> metadata =
+        Collections.singletonMap(CompressionDriver.METADATA_KEY, compression.getName());
+      final CloudBlob blob;
+      if (blockUploads != null && blockUploads.fits(size)) {
+        logger.info("Initiating block blob upload for file: {} | key: {}",
+          sourceFile.getAbsolutePath(), fileKey);
+        // Block blobs are already written in pooled, block sized buffers.
+        final CloudBlockBlob blockBlob = container.getBlockBlobReference(fileKey);
+        blob = blockBlob;
+        blobOutputStream = blockUploads.open(blockBlob, metadata);
+        compress = compression.compress(blobOutputStream);
+      } else {
+        logger.info("Initiating upload for file: {} | key: {}",
+          sourceFile.getAbsolutePath(), fileKey);
+        final CloudPageBlob pageBlob = container.getPageBlobReference(fileKey);
+        blob = pageBlob;
+        blobOutputStream = new PageBlobOutputStream(pageBlob, metadata);
+        bufferedOutputStream = new BufferedOutputStream(blobOutputStream);
+        compress = compression.compress(bufferedOutputStream);
+      }
 
+      CompressionDriver.BUFFERS.copy(inputStream, compress);
+      // Closing flushes through to the blob, so a failure to commit the blob fails the upload.
+      compress.close();
+      throttle.transferred();
+      // The blob's ETag is updated by the request that commits it.
+      return Optional.of(BackupManifest.Entry.create(filePath, fileKey, size, hashing.hash().toString(),
+        compression.getName(), time, blob.getProperties().getEtag()));
     } catch (StorageException | URISyntaxException | IOException e) {
       logger.error("Unable to store blob", e);
+      return Optional.empty();
     } finally {
       IOUtils.closeQuietly(compress);  // super important that the compress close is called first in order to flush
       IOUtils.closeQuietly(bufferedOutputStream);
-      IOUtils.closeQuietly(pageBlobOutputStream);
+      IOUtils.closeQuietly(blobOutputStream);
     }
   }
 
   @Override
-  public void download(BackupRestoreContext ctx) throws IOException {
+  public void download(BackupRestoreContext ctx, BandwidthThrottle throttle) throws IOException {
 
     final String accountName = ctx.getAccountId();
     final String accountKey = ctx.getSecretKey();
@@ -176,52 +339,271 @@ public class AzureStorageDriver implements BackupStorageDriver {
     }
     String keyPrefix = String.format("%s/%s", backupName, nodeId);
 
-    final Map<String, Long> snapshotFileKeys = getSnapshotFileKeys(container, keyPrefix);
-    logger.info("Snapshot files for this node: {}", snapshotFileKeys);
+    final Optional<BackupManifest> manifest = getManifest(container, keyPrefix);
+
+    if (manifest.isPresent()) {
+      logger.info("Snapshot manifest for this node: {}", manifest.get());
+      download(ctx, container, manifest.get().select(ctx).getFiles(), throttle);
+      return;
+    }
+
+    // Blobs are compressed, so they can not be split into ranges that map
+    // to offsets in the local file. Download whole blobs in parallel, each
+    // one prefetching its ranges ahead of decompression.
+    try (ParallelDownloader downloader = new ParallelDownloader(DEFAULT_PART_SIZE_DOWNLOAD, getConcurrency(ctx));
+         RangeReads rangeReads = new RangeReads(DEFAULT_PART_SIZE_DOWNLOAD, getConcurrency(ctx))) {
+      final Map<String, Long> snapshotFileKeys = getSnapshotFileKeys(container, keyPrefix);
+      logger.info("Snapshot files for this node: {}", snapshotFileKeys);
 
-    for (String fileKey : snapshotFileKeys.keySet()) {
-      downloadFile(localLocation, container, fileKey, snapshotFileKeys.get(fileKey));
+      for (String fileKey : snapshotFileKeys.keySet()) {
+        if (!StorageUtil.isSelected(ctx, fileKey.substring(Math.min(fileKey.length(), keyPrefix.length() + 1)))) {
+          continue;
+        }
+        downloader.submit(() -> downloadFile(
+          new File(localLocation + File.separator + fileKey), container, fileKey, snapshotFileKeys.get(fileKey),
+          SnappyCompressionDriver.NAME, null, isBlockBlobs(ctx), rangeReads, throttle));
+      }
+      downloader.await();
     }
+
+    logger.info("Done downloading snapshots for backup: {} | {}", backupName, throttle.getSummary());
   }
 
-  private void downloadFile(String localLocation, CloudBlobContainer container, String fileKey, long originalSize) {
+  @Override
+  public Optional<BackupManifest> getManifest(BackupRestoreContext ctx) throws IOException {
+    return getManifest(getContainer(ctx), String.format("%s/%s", ctx.getName(), ctx.getNodeId()));
+  }
 
-    logger.info("Downloading |  Local location {} | fileKey: {} | Size: {}", localLocation, fileKey, originalSize);
+  @Override
+  public void download(BackupRestoreContext ctx, List<BackupManifest.Entry> files, BandwidthThrottle throttle)
+    throws IOException {
+    download(ctx, getContainer(ctx), files, throttle);
+  }
 
-    final String fileLocation = localLocation + File.separator + fileKey;
-    File file = new File(fileLocation);
-    // Only create parent directory once, if it doesn't exist.
-    if (!createParentDir(file)) {
-      logger.error("Unable to create parent directories!");
-      return;
+  private void download(BackupRestoreContext ctx, CloudBlobContainer container, List<BackupManifest.Entry> files,
+    BandwidthThrottle throttle) throws IOException {
+    final String nodeLocation = ctx.getLocalLocation() + File.separator + ctx.getName() + File.separator +
+      ctx.getNodeId();
+
+    // Blobs are compressed, so they can not be split into ranges that map
+    // to offsets in the local file. Download whole blobs in parallel, each
+    // one prefetching its ranges ahead of decompression.
+    try (ParallelDownloader downloader = new ParallelDownloader(DEFAULT_PART_SIZE_DOWNLOAD, getConcurrency(ctx));
+         RangeReads rangeReads = new RangeReads(DEFAULT_PART_SIZE_DOWNLOAD, getConcurrency(ctx))) {
+      for (BackupManifest.Entry entry : files) {
+        downloader.submit(() -> downloadFile(
+          new File(nodeLocation, entry.getPath()), container, entry.getKey(), entry.getSize(),
+          entry.getCompression(), entry.getChecksum(), isBlockBlobs(ctx), rangeReads, throttle));
+      }
+      downloader.await();
     }
 
-    InputStream inputStream = null;
-    SnappyInputStream compress = null;
+    logger.info("Done downloading {} files for backup: {} | {}", files.size(), ctx.getName(),
+      throttle.getSummary());
+  }
 
-    try (
-      FileOutputStream fileOutputStream = new FileOutputStream(file, true);
-      BufferedOutputStream bos = new BufferedOutputStream(fileOutputStream)) {
+  @Override
+  public List<BackupManifest.Entry> verify(BackupRestoreContext ctx, List<BackupManifest.Entry> files)
+    throws IOException {
+    final CloudBlobContainer container = getContainer(ctx);
+    return StorageUtil.verify(files, getConcurrency(ctx), entry -> verifyFile(container, entry, isBlockBlobs(ctx)));
+  }
 
-      final CloudPageBlob pageBlobReference = container.getPageBlobReference(fileKey);
-      inputStream = new PageBlobInputStream(pageBlobReference);
-      compress = new SnappyInputStream(inputStream);
+  /**
+   * Checks the blob of a file from its attributes.
+   */
+  private boolean verifyFile(CloudBlobContainer container, BackupManifest.Entry entry, boolean blockBlob)
+    throws StorageException, URISyntaxException {
+    final CloudBlob blob;
+    try {
+      blob = getBlobReference(container, entry.getKey(), blockBlob);
+    } catch (StorageException e) {
+      if (e.getHttpStatusCode() == 404) {
+        logger.error("Missing blob for file: {} | key: {}", entry.getPath(), entry.getKey());
+        return false;
+      }
+      throw e;
+    }
+    // Blobs record the size of their contents, page blobs are padded to whole pages.
+    final String originalSize = blob.getMetadata().get(ORIGINAL_SIZE_KEY);
+    final long size = (originalSize != null) ? Long.parseLong(originalSize) : blob.getProperties().getLength();
+    if (!StorageUtil.isSameETag(entry.getETag(), blob.getProperties().getEtag()) ||
+      (NoCompressionDriver.NAME.equals(entry.getCompression()) && size != entry.getSize())) {
+      logger.error("Blob differs for file: {} | key: {} | ETag: {} | size: {} | stored ETag: {} | stored size: {}",
+        entry.getPath(), entry.getKey(), entry.getETag(), entry.getSize(), blob.getProperties().getEtag(), size);
+      return false;
+    }
+    return true;
+  }
 
-      IOUtils.copy(compress, bos, DEFAULT_PART_SIZE_DOWNLOAD);
+  @Override
+  public List<BackupManifest.Entry> upload(BackupRestoreContext ctx, Map<String, File> files,
+    BandwidthThrottle throttle) throws IOException {
+    final CloudBlobContainer container = getContainer(ctx);
+    final CompressionDriver compression =
+      CompressionDriverFactory.createCompressionDriver(ctx.getCompression(), DEFAULT_COMPRESSION);
+    final List<BackupManifest.Entry> entries = new ArrayList<>();
+
+    try (BlockUploads blockUploads = isBlockBlobs(ctx) ?
+      new BlockUploads(getBlockSize(ctx), getConcurrency(ctx)) : null) {
+      for (Map.Entry<String, File> file : files.entrySet()) {
+        final String[] segments = file.getKey().split("/");
+        final String checksum = StorageUtil.getChecksum(file.getValue());
+        final String fileKey = StorageUtil.getStoreKey(segments[0], segments[1], file.getValue(), checksum,
+          compression.getName());
+        entries.add(uploadFile(container, file.getKey(), fileKey, file.getValue(), file.getValue().lastModified(),
+          compression, blockUploads, throttle)
+          .orElseThrow(() -> new IOException("Failed to upload file: " + file.getValue().getAbsolutePath())));
+      }
+    }
+    return entries;
+  }
 
+  @Override
+  public List<BackupManifest> getIncrementalSegments(BackupRestoreContext ctx) throws IOException {
+    final CloudBlobContainer container = getContainer(ctx);
+    final String key = String.format("%s/%s", ctx.getName(), ctx.getNodeId());
+    final List<String> names = new ArrayList<>();
+    try {
+      for (ListBlobItem item : container.listBlobs(
+        key + "/" + BackupManifest.INCREMENTAL_MANIFEST_DIRECTORY + "/", true)) {
+        if (item instanceof CloudBlob) {
+          names.add(((CloudBlob) item).getName().substring(key.length() + 1));
+        }
+      }
+    } catch (NoSuchElementException e) {
+      // The listing iterator reports storage errors as NoSuchElementException.
+      throw new IOException("Unable to list incremental manifest for key: " + key, e);
+    }
+    Collections.sort(names);
+    final List<BackupManifest> segments = new ArrayList<>();
+    for (String name : names) {
+      segments.add(getManifest(container, key, name)
+        .orElseThrow(() -> new IOException("Incremental manifest segment removed: " + name)));
+    }
+    return segments;
+  }
+
+  @Override
+  public void appendIncrementalSegment(BackupRestoreContext ctx, long time, BackupManifest segment)
+    throws IOException {
+    putManifest(getContainer(ctx), String.format("%s/%s", ctx.getName(), ctx.getNodeId()),
+      BackupManifest.getIncrementalSegmentName(time), segment);
+  }
+
+  private CloudBlobContainer getContainer(BackupRestoreContext ctx) throws IOException {
+    final String containerName = StringUtils.lowerCase(getContainerName(ctx.getExternalLocation()));
+    final CloudBlobContainer container = getCloudBlobContainer(ctx.getAccountId(), ctx.getSecretKey(),
+      containerName);
+    if (container == null) {
+      throw new AzureIOException("Unable to connect to " + ctx.getExternalLocation() + " for container " +
+        containerName);
+    }
+    return container;
+  }
+
+  int getConcurrency(BackupRestoreContext ctx) {
+    return ctx.getConcurrency() > 0 ? ctx.getConcurrency() : DEFAULT_CONCURRENCY;
+  }
+
+  boolean isBlockBlobs(BackupRestoreContext ctx) {
+    return BLOCK_BLOB_TYPE.equalsIgnoreCase(ctx.getAzureBlobType());
+  }
+
+  int getBlockSize(BackupRestoreContext ctx) {
+    return ctx.getPartSizeMb() > 0 ?
+      Math.min(ctx.getPartSizeMb() * 1024 * 1024, MAX_BLOCK_SIZE) : MAX_BLOCK_SIZE;
+  }
+
+  /**
+   * Downloads a file, replacing the contents of a file left by an earlier attempt.  If its checksum is known, it is
+   * checked against the checksum of the decompressed contents, computed as they are written.
+   *
+   * @throws UncheckedIOException If the file can not be downloaded, which fails the download.
+   */
+  private void downloadFile(File file, CloudBlobContainer container, String fileKey, long originalSize,
+    String compression, String checksum, boolean blockBlob, RangeReads rangeReads, BandwidthThrottle throttle) {
+
+    logger.info("Downloading |  Local location {} | fileKey: {} | Size: {} | Compression: {}",
+      file.getAbsolutePath(), fileKey, originalSize, compression);
+
+    throttle.expect(originalSize);
+
+    InputStream inputStream = null;
+    InputStream compress = null;
+    String actual = null;
+
+    try {
+      createParentDir(file);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    try (
+      FileOutputStream fileOutputStream = new FileOutputStream(file);
+      BufferedOutputStream bos = new BufferedOutputStream(fileOutputStream);
+      HashingOutputStream hashing = new HashingOutputStream(Hashing.crc32c(), bos)) {
+
+      // Block blobs carry the same "originalSize" metadata, so either type is read the same way.
+      inputStream = rangeReads.open(getBlobReference(container, fileKey, blockBlob));
+      compress = throttle.throttle(CompressionDriverFactory.createCompressionDriver(compression, DEFAULT_COMPRESSION)
+        .decompress(inputStream));
+
+      CompressionDriver.BUFFERS.copy(compress, hashing);
+      hashing.flush();
+      actual = hashing.hash().toString();
     } catch (Exception e) {
       logger.error("Unable to write file: {}", fileKey, e);
+      throw new UncheckedIOException(new IOException("Unable to write file: " + file.getAbsolutePath(), e));
     } finally {
       IOUtils.closeQuietly(compress);
       IOUtils.closeQuietly(inputStream);
     }
+    ParallelDownloader.checkChecksum(file, checksum, actual);
+    throttle.transferred();
+  }
+
+  /**
+   * Gets a reference to an existing blob of either type, with its attributes.  The
+   * expected type is tried first, so only blobs of the other type, e.g. files too large
+   * for a block blob, cost an additional request.
+   */
+  private CloudBlob getBlobReference(CloudBlobContainer container, String key, boolean blockBlob)
+    throws StorageException, URISyntaxException {
+    final CloudBlob blob = blockBlob ?
+      container.getBlockBlobReference(key) : container.getPageBlobReference(key);
+    try {
+      blob.downloadAttributes();
+      return blob;
+    } catch (StorageException e) {
+      if (!StorageErrorCodeStrings.INCORRECT_BLOB_TYPE.equals(e.getErrorCode())) {
+        throw e;
+      }
+      final CloudBlob other = blockBlob ? container.getPageBlobReference(key) : container.getBlockBlobReference(key);
+      other.downloadAttributes();
+      return other;
+    }
   }
 
   private String getContainerName(String externalLocation) {
     return externalLocation.substring("azure://".length()).replace("/", "");
   }
 
-  private CloudBlobContainer getCloudBlobContainer(String accountName, String accountKey, String containerName) {
+  /**
+   * Gets a container from the executor's cache, so that the connection string is parsed and the container is
+   * created only once for each account and container.  Containers hold no connections of their own, requests
+   * reuse the JVM's keep alive connections, so the lease is released at once.
+   */
+  private CloudBlobContainer getCloudBlobContainer(String accountName, String accountKey, String containerName)
+    throws IOException {
+    final StorageClients.Key key = new StorageClients.Key("azure", containerName, accountName, accountKey, "");
+    try (StorageClients.Lease<CloudBlobContainer> container = clients.lease(key,
+      () -> createCloudBlobContainer(accountName, accountKey, containerName), c -> { })) {
+      return container.get();
+    }
+  }
+
+  private CloudBlobContainer createCloudBlobContainer(String accountName, String accountKey, String containerName) {
     CloudBlobContainer container = null;
 
     if (StringUtils.isNotBlank(containerName)) {
@@ -243,29 +625,81 @@ public class AzureStorageDriver implements BackupStorageDriver {
     return container;
   }
 
-  private boolean createParentDir(File file) {
+  private void createParentDir(File file) throws IOException {
     final File parentDir = new File(file.getParent());
-    if (!parentDir.isDirectory()) {
-      final boolean parentDirCreated = parentDir.mkdirs();
-      if (!parentDirCreated) {
-        logger.error("Error creating parent directory for file: {}. Skipping to next");
+    // Files of the same directory are downloaded concurrently, so another download may create it first.
+    if (!parentDir.mkdirs() && !parentDir.isDirectory()) {
+      throw new IOException("Unable to create parent directory for file: " + file.getAbsolutePath());
+    }
+  }
+
+  private Optional<BackupManifest> getManifest(CloudBlobContainer container, String key) throws IOException {
+    return getManifest(container, key, BackupManifest.MANIFEST_NAME);
+  }
+
+  private Optional<BackupManifest> getManifest(CloudBlobContainer container, String key, String name)
+    throws IOException {
+    try {
+      final CloudBlockBlob blob = container.getBlockBlobReference(key + "/" + name);
+      if (!blob.exists()) {
+        logger.info("No manifest found for key: {}", key);
+        return Optional.empty();
+      }
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      blob.download(bytes);
+      return Optional.of(BackupManifest.JSON_SERIALIZER.deserialize(bytes.toByteArray()));
+    } catch (StorageException | URISyntaxException e) {
+      throw new IOException("Unable to read manifest for key: " + key, e);
+    }
+  }
+
+  private void putManifest(CloudBlobContainer container, String key, BackupManifest manifest) throws IOException {
+    putManifest(container, key, BackupManifest.MANIFEST_NAME, manifest);
+  }
+
+  private void putManifest(CloudBlobContainer container, String key, String name, BackupManifest manifest)
+    throws IOException {
+    try {
+      final byte[] bytes = BackupManifest.JSON_SERIALIZER.serialize(manifest);
+      logger.info("Uploading manifest for key: {} | files: {}", key, manifest.getFiles().size());
+      container.getBlockBlobReference(key + "/" + name)
+        .uploadFromByteArray(bytes, 0, bytes.length);
+    } catch (StorageException | URISyntaxException e) {
+      throw new IOException("Unable to write manifest for key: " + key, e);
+    }
+  }
+
+  /**
+   * Checks whether a blob exists with a HEAD request.
+   */
+  private boolean exists(CloudBlobContainer container, String key, boolean blockBlob) throws IOException {
+    try {
+      getBlobReference(container, key, blockBlob);
+      return true;
+    } catch (StorageException e) {
+      if (e.getHttpStatusCode() == 404) {
         return false;
       }
+      throw new AzureIOException("Unable to check blob: " + key, e);
+    } catch (URISyntaxException e) {
+      throw new AzureIOException("Unable to check blob: " + key, e);
     }
-    return true;
   }
 
   private Map<String, Long> getSnapshotFileKeys(CloudBlobContainer container, String keyPrefix) {
     Map<String, Long> snapshotFiles = new HashMap<>();
 
     try {
-      for (ListBlobItem item : container.listBlobs(keyPrefix, true)) {
-        if (item instanceof CloudPageBlob) {
-          CloudPageBlob cloudBlob = (CloudPageBlob) item;
+      // Include the metadata in the listing rather than fetching the attributes of each blob.
+      for (ListBlobItem item : container.listBlobs(
+        keyPrefix, true, EnumSet.of(BlobListingDetails.METADATA), null, null)) {
+        if (item instanceof CloudBlob && !((CloudBlob) item).getName().endsWith(BackupManifest.MANIFEST_NAME)) {
+          CloudBlob cloudBlob = (CloudBlob) item;
           snapshotFiles.put(cloudBlob.getName(), getOriginalFileSize(cloudBlob));
         }
       }
-    } catch (StorageException e) {
+    } catch (NoSuchElementException e) {
+      // The listing iterator reports storage errors as NoSuchElementException.
       logger.error("Unable to retrieve metadata.", e);
       // all or none
       snapshotFiles = new HashMap<>();
@@ -273,10 +707,9 @@ public class AzureStorageDriver implements BackupStorageDriver {
     return snapshotFiles;
   }
 
-  private long getOriginalFileSize(CloudPageBlob pageBlobReference) throws StorageException {
+  private long getOriginalFileSize(CloudBlob pageBlobReference) {
     long size = 0;
 
-    pageBlobReference.downloadAttributes();
     HashMap<String, String> map = pageBlobReference.getMetadata();
     if (map != null && map.size() > 0) {
       try {
@@ -288,4 +721,58 @@ public class AzureStorageDriver implements BackupStorageDriver {
 
     return size;
   }
+
+  /**
+   * The block buffers and the staging threads shared by the block blob uploads of a backup.
+   * At most one block per thread is in flight, plus the block being filled.
+   */
+  private static class BlockUploads implements Closeable {
+    private final BufferPool buffers;
+    private final ExecutorService executor;
+
+    BlockUploads(int blockSize, int concurrency) {
+      this.buffers = new BufferPool(blockSize, concurrency + 1);
+      this.executor = Executors.newFixedThreadPool(concurrency);
+    }
+
+    /**
+     * Returns true if a file of the given length fits in a block blob, leaving headroom
+     * for compression growing data that does not compress.
+     */
+    boolean fits(long length) {
+      return length + length / 8 <= (long) BlockBlobOutputStream.MAX_BLOCKS * buffers.getBufferSize();
+    }
+
+    BlockBlobOutputStream open(CloudBlockBlob blob, Map<String, String> metadata) {
+      return new BlockBlobOutputStream(blob, buffers, executor, metadata);
+    }
+
+    @Override
+    public void close() {
+      executor.shutdownNow();
+    }
+  }
+  /**
+   * The range buffers and the fetching threads shared by the blob downloads of a restore.
+   * Each blob has up to READ_AHEAD ranges in flight, but the pool bounds the memory of all
+   * of them to two ranges per downloaded blob.
+   */
+  private static class RangeReads implements Closeable {
+    private final BufferPool buffers;
+    private final ExecutorService executor;
+
+    RangeReads(int rangeSize, int concurrency) {
+      this.buffers = new BufferPool(rangeSize, 2 * concurrency);
+      this.executor = Executors.newFixedThreadPool(2 * concurrency);
+    }
+
+    PrefetchingBlobInputStream open(CloudBlob blob) {
+      return PrefetchingBlobInputStream.open(blob, buffers, executor, READ_AHEAD);
+    }
+
+    @Override
+    public void close() {
+      executor.shutdownNow();
+    }
+  }
 }
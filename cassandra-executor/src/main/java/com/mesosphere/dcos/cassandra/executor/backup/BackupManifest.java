@@ -0,0 +1,614 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.mesosphere.dcos.cassandra.common.serialization.SerializationException;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
+import com.mesosphere.dcos.cassandra.common.serialization.Serializer;
+import com.mesosphere.dcos.cassandra.common.util.JsonUtils;
+import com.mesosphere.dcos.cassandra.executor.compress.NoCompressionDriver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * BackupManifest describes the files of a node's backup. Each entry maps
+ * the path of a file, relative to the node's backup directory
+ * (i.e. keyspace/column family/file), to the key of the object that holds
+ * its contents. For incremental backups the objects live in a content
+ * addressed store shared by all backups at the same external location.
+ * Restores plan their transfers from the manifest alone, without listing
+ * the external location.
+ *
+ * The SSTables that a node flushes after a continuous backup are shipped to
+ * the store as they appear and listed, with the time they were written, in
+ * an incremental manifest next to the backup's manifest. The incremental
+ * manifest is written as append-only segments, one per batch of shipped
+ * SSTables, which are read back in order and concatenated.
+ *
+ * The manifest of a snapshot also records the Topology of the ring when it
+ * was uploaded, so that a restore, into the same cluster or a new one, can
+ * tell whether the node owns the data of its backup.
+ */
+public class BackupManifest {
+
+    /**
+     * The name of the manifest object stored with each node's backup.
+     */
+    public static final String MANIFEST_NAME = "manifest.json";
+
+    /**
+     * The name of the directory, next to the manifest of a node's backup,
+     * holding the segments of the manifest of the SSTables shipped after a
+     * continuous backup.
+     */
+    public static final String INCREMENTAL_MANIFEST_DIRECTORY =
+        "incremental-manifest";
+
+    /**
+     * Gets the name of a segment of an incremental manifest, relative to
+     * the node's backup directory. Segments are named by the time they were
+     * written, zero padded, so that they sort in the order they were
+     * written.
+     *
+     * @param time The time the segment is written in milliseconds since the
+     *             epoch.
+     * @return The name of the segment.
+     */
+    public static String getIncrementalSegmentName(final long time) {
+        return INCREMENTAL_MANIFEST_DIRECTORY + "/" +
+            String.format("%013d.json", time);
+    }
+
+    /**
+     * Concatenates the segments of an incremental manifest.
+     *
+     * @param name     The name of the backup.
+     * @param nodeId   The id of the node that was backed up.
+     * @param segments The segments in the order they were written.
+     * @return The incremental manifest, or empty if there are no segments.
+     */
+    public static Optional<BackupManifest> concat(
+        final String name,
+        final String nodeId,
+        final List<BackupManifest> segments) {
+        if (segments.isEmpty()) {
+            return Optional.empty();
+        }
+        final List<Entry> files = new ArrayList<>();
+        segments.forEach(segment -> files.addAll(segment.getFiles()));
+        return Optional.of(create(name, nodeId, files));
+    }
+
+    /**
+     * The compression of objects that hold the file contents as is.
+     */
+    public static final String NO_COMPRESSION = NoCompressionDriver.NAME;
+
+    /**
+     * Serializer that serializes a BackupManifest to and from a JSON object.
+     */
+    public static final Serializer<BackupManifest> JSON_SERIALIZER =
+        new Serializer<BackupManifest>() {
+            @Override
+            public byte[] serialize(BackupManifest value)
+                throws SerializationException {
+                try {
+                    return JsonUtils.MAPPER.writeValueAsBytes(value);
+                } catch (IOException ex) {
+                    throw new SerializationException("Error writing " +
+                        "BackupManifest to JSON", ex);
+                }
+            }
+
+            @Override
+            public BackupManifest deserialize(byte[] bytes)
+                throws SerializationException {
+                try {
+                    return JsonUtils.MAPPER.readValue(bytes,
+                        BackupManifest.class);
+                } catch (IOException ex) {
+                    throw new SerializationException("Error reading " +
+                        "BackupManifest from JSON", ex);
+                }
+            }
+        };
+
+    /**
+     * Entry describes a single file of a backup.
+     */
+    public static class Entry {
+
+        /**
+         * Creates a new Entry.
+         *
+         * @param path        The path of the file relative to the node's
+         *                    backup directory.
+         * @param key         The key of the object holding the file.
+         * @param size        The size of the file in bytes.
+         * @param checksum    The checksum of the file.
+         * @param compression The name of the CompressionDriver applied to
+         *                    the object.
+         * @return A new Entry.
+         */
+        public static Entry create(
+            final String path,
+            final String key,
+            final long size,
+            final String checksum,
+            final String compression) {
+            return new Entry(path, key, size, checksum, compression, 0, null);
+        }
+
+        /**
+         * Creates a new Entry for a file written at a known time.
+         *
+         * @param path        The path of the file relative to the node's
+         *                    backup directory.
+         * @param key         The key of the object holding the file.
+         * @param size        The size of the file in bytes.
+         * @param checksum    The checksum of the file.
+         * @param compression The name of the CompressionDriver applied to
+         *                    the object.
+         * @param time        The time the file was written in milliseconds
+         *                    since the epoch, or zero if it is not known.
+         * @return A new Entry.
+         */
+        public static Entry create(
+            final String path,
+            final String key,
+            final long size,
+            final String checksum,
+            final String compression,
+            final long time) {
+            return new Entry(path, key, size, checksum, compression, time,
+                null);
+        }
+
+        /**
+         * Creates a new Entry for a file whose object is identified by the
+         * ETag the external storage assigned to it.
+         *
+         * @param path        The path of the file relative to the node's
+         *                    backup directory.
+         * @param key         The key of the object holding the file.
+         * @param size        The size of the file in bytes.
+         * @param checksum    The checksum of the file.
+         * @param compression The name of the CompressionDriver applied to
+         *                    the object.
+         * @param time        The time the file was written in milliseconds
+         *                    since the epoch, or zero if it is not known.
+         * @param etag        The ETag of the object, or null if it is not
+         *                    known.
+         * @return A new Entry.
+         */
+        @JsonCreator
+        public static Entry create(
+            @JsonProperty("path") final String path,
+            @JsonProperty("key") final String key,
+            @JsonProperty("size") final long size,
+            @JsonProperty("checksum") final String checksum,
+            @JsonProperty("compression") final String compression,
+            @JsonProperty("time") final long time,
+            @JsonProperty("etag") final String etag) {
+            return new Entry(path, key, size, checksum, compression, time,
+                etag);
+        }
+
+        @JsonProperty("path")
+        private final String path;
+        @JsonProperty("key")
+        private final String key;
+        @JsonProperty("size")
+        private final long size;
+        @JsonProperty("checksum")
+        private final String checksum;
+        @JsonProperty("compression")
+        private final String compression;
+        @JsonProperty("time")
+        private final long time;
+        @JsonProperty("etag")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private final String etag;
+
+        private Entry(final String path,
+                      final String key,
+                      final long size,
+                      final String checksum,
+                      final String compression,
+                      final long time,
+                      final String etag) {
+            this.path = path;
+            this.key = key;
+            this.size = size;
+            this.checksum = checksum;
+            this.compression = (compression == null) ?
+                NO_COMPRESSION : compression;
+            this.time = time;
+            this.etag = etag;
+        }
+
+        /**
+         * Gets the path of the file.
+         *
+         * @return The path of the file relative to the node's backup
+         * directory.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Gets the key of the object holding the file.
+         *
+         * @return The key of the object relative to the external location.
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Gets the size of the file.
+         *
+         * @return The size of the file in bytes.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Gets the checksum of the file.
+         *
+         * @return The checksum of the file.
+         */
+        public String getChecksum() {
+            return checksum;
+        }
+
+        /**
+         * Gets the compression of the object holding the file.
+         *
+         * @return The name of the compression applied to the file contents
+         * before they were stored.
+         */
+        public String getCompression() {
+            return compression;
+        }
+
+        /**
+         * Gets the time the file was written.
+         *
+         * @return The time in milliseconds since the epoch, or zero if it is
+         * not known.
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * Gets the ETag of the object holding the file.
+         *
+         * @return The ETag the external storage assigned to the object when
+         * it was uploaded, or null if it is not known.
+         */
+        public String getETag() {
+            return etag;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Entry)) return false;
+            Entry that = (Entry) o;
+            return getSize() == that.getSize() &&
+                getTime() == that.getTime() &&
+                Objects.equals(getPath(), that.getPath()) &&
+                Objects.equals(getKey(), that.getKey()) &&
+                Objects.equals(getChecksum(), that.getChecksum()) &&
+                Objects.equals(getCompression(), that.getCompression()) &&
+                Objects.equals(getETag(), that.getETag());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(getPath(), getKey(), getSize(), getChecksum(),
+                getCompression(), getTime(), getETag());
+        }
+
+        @Override
+        public String toString() {
+            return JsonUtils.toJsonString(this);
+        }
+    }
+
+    /**
+     * Topology identifies the tokens of a node and of the ring it belongs to
+     * by their fingerprints. When a node has the same Topology as the node
+     * that was backed up, it owns the same token ranges, with the same
+     * replicas, so the data of the backup is its own.
+     */
+    public static class Topology {
+
+        /**
+         * Creates a new Topology from tokens.
+         *
+         * @param tokens     The tokens of the node.
+         * @param ringTokens The tokens of all nodes of the ring.
+         * @return The Topology of the node.
+         */
+        public static Topology of(final Collection<String> tokens,
+                                  final Collection<String> ringTokens) {
+            return new Topology(fingerprint(tokens), fingerprint(ringTokens));
+        }
+
+        /**
+         * Creates a new Topology.
+         *
+         * @param tokens The fingerprint of the tokens of the node.
+         * @param ring   The fingerprint of the tokens of the ring.
+         * @return A new Topology.
+         */
+        @JsonCreator
+        public static Topology create(
+            @JsonProperty("tokens") final String tokens,
+            @JsonProperty("ring") final String ring) {
+            return new Topology(tokens, ring);
+        }
+
+        /**
+         * Gets a fingerprint of a set of tokens, independent of their order.
+         *
+         * @param tokens The tokens.
+         * @return The SHA-256 digest of the sorted tokens in hexadecimal.
+         */
+        static String fingerprint(final Collection<String> tokens) {
+            final List<String> sorted = new ArrayList<>(tokens);
+            Collections.sort(sorted);
+            final Hasher hasher = Hashing.sha256().newHasher();
+            for (String token : sorted) {
+                hasher.putString(token, StandardCharsets.UTF_8)
+                    .putByte((byte) ',');
+            }
+            return hasher.hash().toString();
+        }
+
+        @JsonProperty("tokens")
+        private final String tokens;
+        @JsonProperty("ring")
+        private final String ring;
+
+        private Topology(final String tokens, final String ring) {
+            this.tokens = tokens;
+            this.ring = ring;
+        }
+
+        /**
+         * Gets the fingerprint of the tokens of the node.
+         *
+         * @return The fingerprint of the tokens owned by the node.
+         */
+        public String getTokens() {
+            return tokens;
+        }
+
+        /**
+         * Gets the fingerprint of the tokens of the ring.
+         *
+         * @return The fingerprint of the tokens owned by all nodes.
+         */
+        public String getRing() {
+            return ring;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Topology)) return false;
+            Topology that = (Topology) o;
+            return Objects.equals(getTokens(), that.getTokens()) &&
+                Objects.equals(getRing(), that.getRing());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(getTokens(), getRing());
+        }
+
+        @Override
+        public String toString() {
+            return JsonUtils.toJsonString(this);
+        }
+    }
+
+    /**
+     * Creates a new BackupManifest.
+     *
+     * @param name   The name of the backup.
+     * @param nodeId The id of the node that was backed up.
+     * @param files  The files of the backup.
+     * @return A new BackupManifest.
+     */
+    public static BackupManifest create(
+        final String name,
+        final String nodeId,
+        final List<Entry> files) {
+        return new BackupManifest(name, nodeId, files, null);
+    }
+
+    /**
+     * Creates a new BackupManifest of a snapshot.
+     *
+     * @param name     The name of the backup.
+     * @param nodeId   The id of the node that was backed up.
+     * @param files    The files of the backup.
+     * @param topology The Topology of the node when it was backed up, or
+     *                 null if it is not known.
+     * @return A new BackupManifest.
+     */
+    @JsonCreator
+    public static BackupManifest create(
+        @JsonProperty("name") final String name,
+        @JsonProperty("node_id") final String nodeId,
+        @JsonProperty("files") final List<Entry> files,
+        @JsonProperty("topology") final Topology topology) {
+        return new BackupManifest(name, nodeId, files, topology);
+    }
+
+    @JsonProperty("name")
+    private final String name;
+    @JsonProperty("node_id")
+    private final String nodeId;
+    @JsonProperty("files")
+    private final List<Entry> files;
+    @JsonProperty("topology")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final Topology topology;
+
+    private BackupManifest(final String name,
+                           final String nodeId,
+                           final List<Entry> files,
+                           final Topology topology) {
+        this.name = name;
+        this.nodeId = nodeId;
+        this.files = (files == null) ? Collections.emptyList() : files;
+        this.topology = topology;
+    }
+
+    /**
+     * Gets the name of the backup.
+     *
+     * @return The name of the backup.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the id of the node.
+     *
+     * @return The id of the node that was backed up.
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Gets the files of the backup.
+     *
+     * @return The entries for all files of the node's backup.
+     */
+    public List<Entry> getFiles() {
+        return files;
+    }
+
+    /**
+     * Gets the Topology of the node when it was backed up.
+     *
+     * @return The Topology of the node, or empty if it is not known, as for
+     * backups taken by earlier versions.
+     */
+    @JsonIgnore
+    public Optional<Topology> getTopology() {
+        return Optional.ofNullable(topology);
+    }
+
+    /**
+     * Gets the manifest that recovers the data of the node up to a point in
+     * time, from this snapshot and the SSTables shipped after it. An SSTable
+     * is only included if all of its components were written by the point
+     * in time, and SSTables that are already part of the snapshot are not
+     * included twice.
+     *
+     * @param incremental The manifest of the SSTables shipped after the
+     *                    snapshot.
+     * @param pointInTime The time in milliseconds since the epoch.
+     * @return A manifest with the files of the snapshot followed by the
+     * shipped SSTables.
+     */
+    public BackupManifest withIncrementals(final BackupManifest incremental,
+                                           final long pointInTime) {
+        final Set<String> paths = new HashSet<>();
+        files.forEach(entry -> paths.add(entry.getPath()));
+        final Map<String, List<Entry>> sstables = new LinkedHashMap<>();
+        for (Entry entry : incremental.getFiles()) {
+            final int component = entry.getPath().lastIndexOf('-');
+            final String sstable = (component < 0) ?
+                entry.getPath() : entry.getPath().substring(0, component);
+            sstables.computeIfAbsent(sstable, s -> new ArrayList<>())
+                .add(entry);
+        }
+        final List<Entry> recovered = new ArrayList<>(files);
+        for (List<Entry> sstable : sstables.values()) {
+            if (sstable.stream().allMatch(entry ->
+                entry.getTime() <= pointInTime &&
+                    !paths.contains(entry.getPath()))) {
+                recovered.addAll(sstable);
+            }
+        }
+        return new BackupManifest(name, nodeId, recovered, topology);
+    }
+
+    /**
+     * Gets the manifest of the files of the keyspaces and column families
+     * that a backup or restore selects.
+     *
+     * @param ctx The context of the backup or restore.
+     * @return A manifest with the selected files only.
+     */
+    public BackupManifest select(final BackupRestoreContext ctx) {
+        return new BackupManifest(name, nodeId, files.stream()
+            .filter(entry -> StorageUtil.isSelected(ctx, entry.getPath()))
+            .collect(Collectors.toList()), topology);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BackupManifest)) return false;
+        BackupManifest that = (BackupManifest) o;
+        return Objects.equals(getName(), that.getName()) &&
+            Objects.equals(getNodeId(), that.getNodeId()) &&
+            Objects.equals(getFiles(), that.getFiles()) &&
+            Objects.equals(getTopology(), that.getTopology());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getName(), getNodeId(), getFiles(), getTopology());
+    }
+
+    @Override
+    public String toString() {
+        return JsonUtils.toJsonString(this);
+    }
+}
@@ -17,8 +17,12 @@ package com.mesosphere.dcos.cassandra.executor.backup;
 
 import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * BackupStorageDriver is the interface to all drivers that store and
@@ -31,12 +35,192 @@ public interface BackupStorageDriver {
      * @param ctx The context of the backup.
      * @throws IOException If the upload fails.
      */
-    void upload(BackupRestoreContext ctx) throws IOException, URISyntaxException;
+    default void upload(BackupRestoreContext ctx) throws IOException, URISyntaxException {
+        upload(ctx, BandwidthThrottle.create(ctx.getThrottleMbPerSec()));
+    }
+
+    /**
+     * Uploads snapshot files to a remote location.
+     * @param ctx The context of the backup.
+     * @param throttle The throttle that limits and measures the upload.
+     * @throws IOException If the upload fails.
+     */
+    default void upload(BackupRestoreContext ctx, BandwidthThrottle throttle)
+        throws IOException, URISyntaxException {
+        upload(ctx, throttle, Optional.empty());
+    }
+
+    /**
+     * Uploads snapshot files to a remote location.
+     * @param ctx The context of the backup.
+     * @param throttle The throttle that limits and measures the upload.
+     * @param topology The topology of the node, recorded in the manifest
+     *                 so that restores can import the SSTables when the
+     *                 node they are restored to has the same topology.
+     * @throws IOException If the upload fails.
+     */
+    void upload(BackupRestoreContext ctx,
+                BandwidthThrottle throttle,
+                Optional<BackupManifest.Topology> topology)
+        throws IOException, URISyntaxException;
 
     /**
      * Downloads snapshot files from a remote location.
      * @param ctx The context of the restore.
      * @throws IOException If the download from the remote location fails.
      */
-    void download(BackupRestoreContext ctx) throws IOException, URISyntaxException;
+    default void download(BackupRestoreContext ctx) throws IOException, URISyntaxException {
+        download(ctx, BandwidthThrottle.create(ctx.getThrottleMbPerSec()));
+    }
+
+    /**
+     * Downloads snapshot files from a remote location.
+     * @param ctx The context of the restore.
+     * @param throttle The throttle that limits and measures the download.
+     * @throws IOException If the download from the remote location fails.
+     */
+    void download(BackupRestoreContext ctx, BandwidthThrottle throttle)
+        throws IOException, URISyntaxException;
+
+    /**
+     * Reads the manifest of a node's backup.
+     * @param ctx The context of the restore.
+     * @return The manifest of the node's backup, or empty if the backup was
+     * written without one.
+     * @throws IOException If the manifest can not be read.
+     */
+    Optional<BackupManifest> getManifest(BackupRestoreContext ctx)
+        throws IOException, URISyntaxException;
+
+    /**
+     * Downloads some of the files of a node's backup from a remote location,
+     * to the same local paths as download does.
+     * @param ctx The context of the restore.
+     * @param files The manifest entries of the files to download.
+     * @param throttle The throttle that limits and measures the download.
+     * @throws IOException If the download from the remote location fails.
+     */
+    void download(BackupRestoreContext ctx,
+                  List<BackupManifest.Entry> files,
+                  BandwidthThrottle throttle)
+        throws IOException, URISyntaxException;
+
+    /**
+     * Uploads files to the content addressed store of the external location,
+     * for the SSTables shipped after a continuous backup.
+     * @param ctx The context of the backup.
+     * @param files The files to upload by their path relative to the node's
+     *              backup directory (i.e. keyspace/column family/file).
+     * @param throttle The throttle that limits and measures the upload.
+     * @return The manifest entries of the uploaded files, with the time each
+     * file was last modified.
+     * @throws IOException If the upload fails.
+     */
+    List<BackupManifest.Entry> upload(BackupRestoreContext ctx,
+                                      Map<String, File> files,
+                                      BandwidthThrottle throttle)
+        throws IOException, URISyntaxException;
+
+    /**
+     * Reads the manifest of the SSTables shipped after a node's backup.
+     * @param ctx The context of the backup or restore.
+     * @return The incremental manifest of the node's backup, concatenated
+     * from its segments, or empty if no SSTables have been shipped.
+     * @throws IOException If a segment can not be listed or read.
+     */
+    default Optional<BackupManifest> getIncrementalManifest(
+        BackupRestoreContext ctx) throws IOException, URISyntaxException {
+        return BackupManifest.concat(ctx.getName(), ctx.getNodeId(),
+            getIncrementalSegments(ctx));
+    }
+
+    /**
+     * Reads the segments of the manifest of the SSTables shipped after a
+     * node's backup.
+     * @param ctx The context of the backup or restore.
+     * @return The segments in the order they were written.
+     * @throws IOException If a segment can not be listed or read.
+     */
+    List<BackupManifest> getIncrementalSegments(BackupRestoreContext ctx)
+        throws IOException, URISyntaxException;
+
+    /**
+     * Appends a segment to the manifest of the SSTables shipped after a
+     * node's backup. The segments written before are left as they are, so
+     * the cost of shipping a batch does not grow with the SSTables shipped
+     * before it.
+     * @param ctx The context of the backup.
+     * @param time The time the segment is written, which orders it after
+     *             the segments written before.
+     * @param segment The manifest of the SSTables of the batch.
+     * @throws IOException If the segment can not be written.
+     */
+    void appendIncrementalSegment(BackupRestoreContext ctx,
+                                  long time,
+                                  BackupManifest segment)
+        throws IOException, URISyntaxException;
+
+    /**
+     * Checks that the files of a node's backup are stored as its manifest
+     * records them. Only the metadata of the stored objects is read, so a
+     * backup can be verified without downloading it.
+     * @param ctx The context of the backup.
+     * @return The manifest entries of the files whose objects are missing,
+     * or differ from their entries.
+     * @throws IOException If the backup has no manifest, or the metadata of
+     * the objects can not be read.
+     */
+    default List<BackupManifest.Entry> verify(BackupRestoreContext ctx)
+        throws IOException, URISyntaxException {
+        final Optional<BackupManifest> manifest = getManifest(ctx);
+        if (!manifest.isPresent()) {
+            throw new IOException("Unable to verify backup " + ctx.getName() +
+                ": it has no manifest");
+        }
+        return verify(ctx, manifest.get().select(ctx).getFiles());
+    }
+
+    /**
+     * Checks that some of the files of a node's backup are stored as their
+     * manifest entries record them, from the metadata of their objects. The
+     * ETag recorded when an object was uploaded is compared with the ETag it
+     * is stored with, otherwise the object must exist, and have the size of
+     * its file if it is not compressed.
+     * @param ctx The context of the backup.
+     * @param files The manifest entries of the files to verify.
+     * @return The manifest entries of the files whose objects are missing,
+     * or differ from their entries.
+     * @throws IOException If the metadata of the objects can not be read.
+     */
+    List<BackupManifest.Entry> verify(BackupRestoreContext ctx,
+                                      List<BackupManifest.Entry> files)
+        throws IOException, URISyntaxException;
+
+    /**
+     * Reads the manifest of the files that a restore downloads. Unless the
+     * restore recovers a point in time, this is the manifest of the node's
+     * backup. Only the files of the selected keyspaces and column families
+     * are included.
+     * @param ctx The context of the restore.
+     * @return The manifest of the files to restore, or empty if the backup
+     * was written without one.
+     * @throws IOException If a manifest can not be read, or a point in time
+     * is restored from a backup without a manifest.
+     */
+    default Optional<BackupManifest> getRestoreManifest(
+        BackupRestoreContext ctx) throws IOException, URISyntaxException {
+        final Optional<BackupManifest> manifest = getManifest(ctx);
+        if (ctx.getPointInTime() <= 0) {
+            return manifest.map(selected -> selected.select(ctx));
+        } else if (!manifest.isPresent()) {
+            throw new IOException("Unable to restore a point in time: " +
+                "backup " + ctx.getName() + " has no manifest");
+        }
+        final Optional<BackupManifest> incremental =
+            getIncrementalManifest(ctx);
+        return Optional.of((incremental.isPresent() ?
+            manifest.get().withIncrementals(incremental.get(),
+                ctx.getPointInTime()) :
+            manifest.get()).select(ctx));
+    }
 }
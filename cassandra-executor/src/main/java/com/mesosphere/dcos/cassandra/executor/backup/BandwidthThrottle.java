@@ -0,0 +1,208 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.TransferProgress;
+import org.apache.commons.io.FileUtils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BandwidthThrottle limits the rate at which a node transfers data to or
+ * from a backup location and measures the resulting throughput. The limit
+ * is enforced with a token bucket that holds one permit per byte and is
+ * shared by all transfer threads of the node, so the aggregate rate of
+ * concurrent files and parts stays below the limit. The storage drivers
+ * also record the files they are going to transfer and the files they have
+ * transferred, so that the progress of the transfer can be reported.
+ */
+public class BandwidthThrottle {
+    private static final long MB = 1024 * 1024;
+
+    /**
+     * Creates a new BandwidthThrottle.
+     *
+     * @param mbPerSec The maximum rate in megabytes per second. If zero or
+     *                 negative, transfers are measured but not throttled.
+     * @return A new BandwidthThrottle.
+     */
+    public static BandwidthThrottle create(final int mbPerSec) {
+        return new BandwidthThrottle(mbPerSec);
+    }
+
+    private final int mbPerSec;
+    private final RateLimiter limiter;
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicInteger files = new AtomicInteger();
+    private final AtomicInteger totalFiles = new AtomicInteger();
+    private final long started = System.nanoTime();
+
+    private BandwidthThrottle(final int mbPerSec) {
+        this.mbPerSec = Math.max(0, mbPerSec);
+        this.limiter = (mbPerSec > 0) ?
+                RateLimiter.create((double) mbPerSec * MB) : null;
+    }
+
+    /**
+     * Records the transfer of bytes, blocking until the rate limit allows
+     * them to be transferred.
+     *
+     * @param count The number of bytes that are about to be transferred.
+     */
+    public void acquire(final int count) {
+        if (count <= 0) {
+            return;
+        }
+        if (limiter != null) {
+            limiter.acquire(count);
+        }
+        bytes.addAndGet(count);
+    }
+
+    /**
+     * Wraps a stream so that reads from it are throttled and measured.
+     * Mark and reset are passed through to the stream, so re-read bytes
+     * are accounted for again.
+     *
+     * @param inputStream The stream to throttle.
+     * @return A stream that reads from inputStream.
+     */
+    public InputStream throttle(final InputStream inputStream) {
+        return new FilterInputStream(inputStream) {
+            @Override
+            public int read() throws IOException {
+                acquire(1);
+                return super.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                final int read = super.read(b, off, len);
+                // The permits are taken after the read, as the number of
+                // bytes is not known before.
+                acquire(read);
+                return read;
+            }
+        };
+    }
+
+    /**
+     * Records a file that is going to be transferred.
+     *
+     * @param size The size of the file in bytes.
+     */
+    public void expect(final long size) {
+        totalFiles.incrementAndGet();
+        totalBytes.addAndGet(size);
+    }
+
+    /**
+     * Records the files that are going to be transferred.
+     *
+     * @param entries The manifest entries of the files.
+     */
+    public void expect(final Iterable<BackupManifest.Entry> entries) {
+        for (BackupManifest.Entry entry : entries) {
+            expect(entry.getSize());
+        }
+    }
+
+    /**
+     * Records a file whose transfer has completed.
+     */
+    public void transferred() {
+        files.incrementAndGet();
+    }
+
+    /**
+     * Gets the progress of the transfer.
+     *
+     * @return The files and bytes transferred so far, out of those
+     * expected, and the average throughput.
+     */
+    public TransferProgress getProgress() {
+        final long elapsed = Math.max(1, getElapsedMillis());
+        final long transferred = getBytes();
+        return TransferProgress.create(
+                files.get(),
+                totalFiles.get(),
+                transferred,
+                // Bytes re-read on retries may exceed the expected total.
+                Math.max(transferred, totalBytes.get()),
+                transferred / (elapsed / 1000.0));
+    }
+
+    /**
+     * Gets the limit.
+     *
+     * @return The maximum rate in megabytes per second, or zero if
+     * transfers are not throttled.
+     */
+    public int getMbPerSec() {
+        return mbPerSec;
+    }
+
+    /**
+     * Gets the number of bytes transferred.
+     *
+     * @return The number of bytes transferred since the throttle was
+     * created.
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Gets the time since the throttle was created.
+     *
+     * @return The elapsed time in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    }
+
+    /**
+     * Gets the average throughput.
+     *
+     * @return The average number of megabytes transferred per second since
+     * the throttle was created.
+     */
+    public double getMbPerSecAverage() {
+        final long elapsed = Math.max(1, getElapsedMillis());
+        return (getBytes() / (double) MB) / (elapsed / 1000.0);
+    }
+
+    /**
+     * Gets a human readable summary of the transfer.
+     *
+     * @return The amount of data transferred, the time taken and the
+     * average throughput, e.g. "1 GB in 20 s (51.2 MB/s)".
+     */
+    public String getSummary() {
+        return String.format("%s in %d s (%.1f MB/s%s)",
+                FileUtils.byteCountToDisplaySize(getBytes()),
+                TimeUnit.MILLISECONDS.toSeconds(getElapsedMillis()),
+                getMbPerSecAverage(),
+                mbPerSec > 0 ? ", limit " + mbPerSec + " MB/s" : "");
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import com.google.common.hash.HashCode;
+
+/**
+ * Crc32c combines the CRC32C checksums of consecutive ranges of a file into
+ * the checksum of the whole file, so that ranges that are transferred
+ * concurrently can be checksummed as they are read, without reading the
+ * file again. Checksums are formatted as Guava's Hashing.crc32c() formats
+ * them, which is the format of the checksums in a BackupManifest.
+ */
+public final class Crc32c {
+    /**
+     * The reversed CRC32C (Castagnoli) polynomial.
+     */
+    private static final int POLYNOMIAL = 0x82F63B78;
+
+    private Crc32c() {
+    }
+
+    /**
+     * Combines the checksums of two consecutive ranges.
+     *
+     * @param first  The checksum of the first range.
+     * @param second The checksum of the second range.
+     * @param length The length of the second range in bytes.
+     * @return The checksum of the first range followed by the second.
+     */
+    public static int combine(int first, final int second, long length) {
+        if (length <= 0) {
+            return first;
+        }
+        // The operators that append one, two, four, ... zero bits to a
+        // checksum, as in zlib's crc32_combine.
+        final int[] even = new int[32];
+        final int[] odd = new int[32];
+        odd[0] = POLYNOMIAL;
+        int row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        square(even, odd);
+        square(odd, even);
+
+        // Appends length zero bytes to the first checksum.
+        do {
+            square(even, odd);
+            if ((length & 1) != 0) {
+                first = times(even, first);
+            }
+            length >>= 1;
+            if (length == 0) {
+                break;
+            }
+            square(odd, even);
+            if ((length & 1) != 0) {
+                first = times(odd, first);
+            }
+            length >>= 1;
+        } while (length != 0);
+        return first ^ second;
+    }
+
+    /**
+     * Formats a checksum.
+     *
+     * @param checksum The checksum.
+     * @return The checksum as it is stored in a BackupManifest.
+     */
+    public static String toString(final int checksum) {
+        return HashCode.fromInt(checksum).toString();
+    }
+
+    private static int times(final int[] matrix, int vector) {
+        int sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void square(final int[] square, final int[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+}
@@ -0,0 +1,541 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
+import com.mesosphere.dcos.cassandra.common.util.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * IncrementalShipper ships the SSTables that a node flushes after a
+ * continuous backup, for point in time recovery. With incremental_backups
+ * enabled, Cassandra hard links every SSTable it writes into the backups
+ * directory of its column family. The shipper watches those directories
+ * with a WatchService and, once per interval, uploads the SSTables that are
+ * complete in one batch through the BackupStorageDriver of the backup,
+ * appends a segment listing them to the backup's incremental manifest and
+ * removes the local links. The links of the tables the backup does not
+ * select are removed without shipping them.
+ *
+ * The context of the backup being shipped is stored on the node's volume,
+ * so shipping resumes when the executor is restarted. A node ships for one
+ * backup at a time, the next continuous backup replaces it.
+ *
+ * Cassandra keeps linking SSTables while no backup is shipped, so the links
+ * are also removed once per interval while no shipment is active, unless a
+ * continuous backup is being taken. Otherwise the backups directories would
+ * hold every SSTable ever flushed until the disk fills up.
+ */
+public class IncrementalShipper implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            IncrementalShipper.class);
+
+    /**
+     * The directory of a column family that SSTables are linked into.
+     */
+    static final String BACKUPS_DIRECTORY = "backups";
+
+    /**
+     * The name of the file that stores the context of the backup being
+     * shipped.
+     */
+    static final String STATE_NAME = "continuous-backup.json";
+
+    private static final long DEFAULT_INTERVAL_MS = 60 * 1000;
+    private static final String TOC_COMPONENT = "TOC.txt";
+
+    private final ScheduledExecutorService executor;
+    private final Function<BackupRestoreContext, BackupStorageDriver> drivers;
+    private final long intervalMs;
+    private Shipment shipment;
+    private File dataDirectory;
+    private ScheduledFuture<?> janitor;
+    // The name of the continuous backup being taken, whose SSTables are
+    // kept until it starts shipping
+    private String pending;
+
+    /**
+     * Constructs a new IncrementalShipper.
+     *
+     * @param executor The executor that ships the SSTables.
+     */
+    public IncrementalShipper(final ScheduledExecutorService executor) {
+        this(executor, StorageDriverFactory::createStorageDriver,
+                DEFAULT_INTERVAL_MS);
+    }
+
+    /**
+     * Constructs a new IncrementalShipper.
+     *
+     * @param executor   The executor that ships the SSTables.
+     * @param drivers    Creates the storage driver of a backup.
+     * @param intervalMs The interval between batches in milliseconds.
+     */
+    IncrementalShipper(
+            final ScheduledExecutorService executor,
+            final Function<BackupRestoreContext, BackupStorageDriver> drivers,
+            final long intervalMs) {
+        this.executor = executor;
+        this.drivers = drivers;
+        this.intervalMs = intervalMs;
+    }
+
+    /**
+     * Gets the file that stores the context of the backup being shipped.
+     *
+     * @param volume The volume of the node.
+     * @return The state file, which is stored next to the upload journals.
+     */
+    static File getStateFile(final File volume) {
+        return new File(new File(volume, UploadJournal.JOURNAL_DIRECTORY),
+                STATE_NAME);
+    }
+
+    private static File getVolume(final BackupRestoreContext ctx) {
+        return new File(ctx.getLocalLocation()).getAbsoluteFile()
+                .getParentFile();
+    }
+
+    /**
+     * Starts shipping the SSTables flushed after a backup, replacing the
+     * backup being shipped if any.
+     *
+     * @param ctx The context of the backup.
+     * @throws IOException If the state can not be stored or the data
+     *                     directory can not be watched.
+     */
+    public synchronized void start(final BackupRestoreContext ctx)
+            throws IOException {
+        stop();
+        final File state = getStateFile(getVolume(ctx));
+        Files.createDirectories(state.getParentFile().toPath());
+        final File temporary = new File(state.getParentFile(),
+                STATE_NAME + ".tmp");
+        Files.write(temporary.toPath(), JsonUtils.MAPPER.writeValueAsBytes(ctx));
+        Files.move(temporary.toPath(), state.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        shipment = open(ctx);
+        pending = null;
+        LOGGER.info("Started shipping incremental backups for backup: {}",
+                ctx.getName());
+    }
+
+    /**
+     * Resumes shipping for the backup stored on a node's volume, if any.
+     * Failures are logged, the node is then only protected by its
+     * snapshots. The links of the node's data directory are removed while
+     * no backup is shipped.
+     *
+     * @param volume The volume of the node.
+     */
+    public synchronized void resume(final File volume) {
+        dataDirectory = new File(volume, "data");
+        if (janitor == null) {
+            janitor = executor.scheduleWithFixedDelay(this::clean,
+                    intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+        final File state = getStateFile(volume);
+        if (shipment != null || !state.isFile()) {
+            return;
+        }
+        try {
+            final BackupRestoreContext ctx = JsonUtils.MAPPER.readValue(
+                    state, BackupRestoreContext.class);
+            shipment = open(ctx);
+            LOGGER.info("Resumed shipping incremental backups for backup: {}",
+                    ctx.getName());
+        } catch (IOException ex) {
+            LOGGER.error("Failed to resume shipping incremental backups: {}",
+                    state.getAbsolutePath(), ex);
+        }
+    }
+
+    /**
+     * Stops shipping and removes the SSTables linked into the backups
+     * directories before a continuous backup is taken. The snapshot
+     * contains all of them, so the SSTables linked afterwards are exactly
+     * the ones to ship after it. They are kept until the backup starts
+     * shipping or is cancelled.
+     *
+     * @param ctx The context of the backup.
+     * @throws IOException If the state or a link can not be deleted.
+     */
+    public synchronized void reset(final BackupRestoreContext ctx)
+            throws IOException {
+        stop();
+        Files.deleteIfExists(getStateFile(getVolume(ctx)).toPath());
+        clear(new File(ctx.getLocalLocation()));
+        pending = ctx.getName();
+        LOGGER.info("Cleared incremental backups of data directory: {}",
+                ctx.getLocalLocation());
+    }
+
+    /**
+     * Cancels a continuous backup that failed before it started shipping,
+     * so that the SSTables linked since it was taken are removed.
+     *
+     * @param ctx The context of the backup.
+     */
+    public synchronized void cancel(final BackupRestoreContext ctx) {
+        if (ctx.getName().equals(pending)) {
+            LOGGER.info("Cancelled continuous backup: {}", ctx.getName());
+            pending = null;
+        }
+    }
+
+    /**
+     * Removes the SSTables linked into the backups directories of a data
+     * directory.
+     *
+     * @return The number of links removed.
+     */
+    private static int clear(final File dataDirectory) throws IOException {
+        int cleared = 0;
+        final File[] keyspaces = dataDirectory.listFiles(File::isDirectory);
+        if (keyspaces == null) {
+            return cleared;
+        }
+        for (File keyspaceDir : keyspaces) {
+            final File[] columnFamilies = keyspaceDir.listFiles(File::isDirectory);
+            if (columnFamilies == null) {
+                continue;
+            }
+            for (File cfDir : columnFamilies) {
+                cleared += clearLinks(new File(cfDir, BACKUPS_DIRECTORY));
+            }
+        }
+        return cleared;
+    }
+
+    private static int clearLinks(final File backupsDir) throws IOException {
+        final File[] links = backupsDir.listFiles(File::isFile);
+        if (links == null) {
+            return 0;
+        }
+        for (File link : links) {
+            Files.deleteIfExists(link.toPath());
+        }
+        return links.length;
+    }
+
+    /**
+     * Removes the SSTables linked while no backup is shipped or taken.
+     */
+    synchronized void clean() {
+        if (shipment != null || pending != null || dataDirectory == null) {
+            return;
+        }
+        try {
+            final int cleared = clear(dataDirectory);
+            if (cleared > 0) {
+                LOGGER.info("Removed {} incremental backup files, no " +
+                        "continuous backup is shipped", cleared);
+            }
+        } catch (Throwable t) {
+            LOGGER.error("Failed to remove incremental backups of data " +
+                    "directory: {}", dataDirectory.getAbsolutePath(), t);
+        }
+    }
+
+    /**
+     * Gets the backup being shipped.
+     *
+     * @return The name of the backup, or null if none is shipped.
+     */
+    public synchronized String getBackupName() {
+        return shipment != null ? shipment.ctx.getName() : null;
+    }
+
+    /**
+     * Ships the SSTables that are complete now, rather than at the next
+     * interval.
+     *
+     * @return The number of files shipped.
+     * @throws IOException If the SSTables can not be uploaded or the
+     *                     manifest segment can not be written.
+     */
+    int ship() throws IOException, URISyntaxException {
+        final Shipment current;
+        synchronized (this) {
+            current = shipment;
+        }
+        return current != null ? current.ship() : 0;
+    }
+
+    private synchronized void stop() {
+        if (shipment != null) {
+            LOGGER.info("Stopped shipping incremental backups for backup: {}",
+                    shipment.ctx.getName());
+            shipment.close();
+            shipment = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        stop();
+        if (janitor != null) {
+            janitor.cancel(false);
+            janitor = null;
+        }
+    }
+
+    private Shipment open(final BackupRestoreContext ctx) throws IOException {
+        final Shipment opened = new Shipment(ctx, drivers.apply(ctx));
+        opened.future = executor.scheduleWithFixedDelay(() -> {
+            try {
+                opened.ship();
+            } catch (Throwable t) {
+                // The links are kept, so the batch is shipped again by the
+                // next attempt.
+                LOGGER.error("Failed to ship incremental backups for " +
+                        "backup: {}", ctx.getName(), t);
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        return opened;
+    }
+
+    /**
+     * The shipping of the SSTables flushed after one backup.
+     */
+    private static class Shipment {
+        private final StorageUtil storageUtil = new StorageUtil();
+        private final BackupRestoreContext ctx;
+        private final BackupStorageDriver driver;
+        private final BandwidthThrottle throttle;
+        private final Path dataDirectory;
+        private final WatchService watcher;
+        private final Map<WatchKey, Path> keys = new HashMap<>();
+        private final Set<Path> tables = new HashSet<>();
+        private final Set<Path> changed = new HashSet<>();
+        private ScheduledFuture<?> future;
+        private boolean closed = false;
+
+        private Shipment(final BackupRestoreContext ctx,
+                         final BackupStorageDriver driver) throws IOException {
+            this.ctx = ctx;
+            this.driver = driver;
+            this.throttle = BandwidthThrottle.create(
+                    ctx.getShippingThrottleMbPerSec());
+            this.dataDirectory = new File(ctx.getLocalLocation()).toPath();
+            this.watcher = FileSystems.getDefault().newWatchService();
+            try {
+                // Every table is scanned once, for the SSTables linked
+                // while no shipper was running.
+                register(dataDirectory);
+            } catch (IOException ex) {
+                watcher.close();
+                throw ex;
+            }
+        }
+
+        private int getDepth(Path directory) {
+            return directory.equals(dataDirectory) ? 0 :
+                    dataDirectory.relativize(directory).getNameCount();
+        }
+
+        /**
+         * Watches a directory of the data directory and the directories
+         * below it, down to the backups directory of each column family.
+         */
+        private void register(Path directory) throws IOException {
+            final int depth = getDepth(directory);
+            keys.put(directory.register(watcher,
+                    StandardWatchEventKinds.ENTRY_CREATE), directory);
+            if (depth == 3) {
+                changed.add(directory.getParent());
+                return;
+            } else if (depth == 2) {
+                tables.add(directory);
+                changed.add(directory);
+            }
+            final List<Path> children;
+            try (Stream<Path> list = Files.list(directory)) {
+                children = list.filter(Files::isDirectory)
+                        .filter(child -> depth < 2 || child.getFileName()
+                                .toString().equals(BACKUPS_DIRECTORY))
+                        .collect(Collectors.toList());
+            }
+            for (Path child : children) {
+                register(child);
+            }
+        }
+
+        /**
+         * Drains the events of the watched directories, registering new
+         * keyspaces and column families and collecting the column families
+         * whose backups directories changed.
+         */
+        private void poll() throws IOException {
+            WatchKey key;
+            while ((key = watcher.poll()) != null) {
+                final Path directory = keys.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        changed.addAll(tables);
+                        continue;
+                    }
+                    final Path child = directory.resolve((Path) event.context());
+                    final int depth = getDepth(directory);
+                    if (depth == 3) {
+                        changed.add(directory.getParent());
+                    } else if (Files.isDirectory(child) && (depth < 2 ||
+                            child.getFileName().toString()
+                                    .equals(BACKUPS_DIRECTORY))) {
+                        register(child);
+                    }
+                }
+                if (!key.reset()) {
+                    // The directory was removed, e.g. a table was dropped.
+                    keys.remove(key);
+                    tables.remove(directory);
+                }
+            }
+        }
+
+        private synchronized int ship() throws IOException, URISyntaxException {
+            if (closed) {
+                return 0;
+            }
+            poll();
+            final Map<String, File> files = new LinkedHashMap<>();
+            final Set<Path> complete = new HashSet<>();
+            for (Path table : changed) {
+                final File cfDir = table.toFile();
+                final File keyspaceDir = cfDir.getParentFile();
+                final File backupsDir = new File(cfDir, BACKUPS_DIRECTORY);
+                if (!backupsDir.isDirectory()) {
+                    complete.add(table);
+                } else if (!storageUtil.isValidBackupDir(ctx, keyspaceDir,
+                        cfDir, backupsDir)) {
+                    // The backup does not ship the table, its links would
+                    // only fill the disk.
+                    clearLinks(backupsDir);
+                    complete.add(table);
+                } else if (collect(keyspaceDir.getName() + "/" +
+                        cfDir.getName(), backupsDir, files)) {
+                    complete.add(table);
+                }
+            }
+            if (!files.isEmpty()) {
+                final List<BackupManifest.Entry> entries =
+                        driver.upload(ctx, files, throttle);
+                // Only the batch is written, the segments of the batches
+                // shipped before are left as they are.
+                driver.appendIncrementalSegment(ctx,
+                        System.currentTimeMillis(),
+                        BackupManifest.create(ctx.getName(), ctx.getNodeId(),
+                                entries));
+
+                // The links are only removed once the segment that
+                // references the stored files is written.
+                for (File file : files.values()) {
+                    Files.deleteIfExists(file.toPath());
+                }
+                LOGGER.info("Shipped {} files for backup: {} | {}",
+                        files.size(), ctx.getName(), throttle.getSummary());
+            }
+            changed.removeAll(complete);
+            return files.size();
+        }
+
+        /**
+         * Collects the files of the SSTables of a backups directory whose
+         * components are all linked, which Cassandra records in the TOC of
+         * each SSTable.
+         *
+         * @return True if no SSTable of the directory is incomplete.
+         */
+        private boolean collect(String table,
+                                File backupsDir,
+                                Map<String, File> files) throws IOException {
+            final Map<String, List<File>> sstables = new LinkedHashMap<>();
+            final File[] links = backupsDir.listFiles(File::isFile);
+            if (links == null) {
+                return true;
+            }
+            Arrays.sort(links);
+            for (File link : links) {
+                final int component = link.getName().lastIndexOf('-');
+                if (component > 0) {
+                    sstables.computeIfAbsent(
+                            link.getName().substring(0, component),
+                            sstable -> new ArrayList<>()).add(link);
+                }
+            }
+            boolean complete = true;
+            for (Map.Entry<String, List<File>> sstable : sstables.entrySet()) {
+                final File toc = new File(backupsDir,
+                        sstable.getKey() + "-" + TOC_COMPONENT);
+                if (!toc.isFile() || !Files.readAllLines(toc.toPath()).stream()
+                        .map(String::trim)
+                        .filter(component -> !component.isEmpty())
+                        .allMatch(component -> new File(backupsDir,
+                                sstable.getKey() + "-" + component).isFile())) {
+                    LOGGER.debug("SSTable: {} of table: {} is not complete",
+                            sstable.getKey(), table);
+                    complete = false;
+                    continue;
+                }
+                for (File file : sstable.getValue()) {
+                    files.put(table + "/" + file.getName(), file);
+                }
+            }
+            return complete;
+        }
+
+        private synchronized void close() {
+            closed = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+            try {
+                watcher.close();
+            } catch (IOException ex) {
+                LOGGER.warn("Failed to close the watch service", ex);
+            }
+        }
+    }
+}
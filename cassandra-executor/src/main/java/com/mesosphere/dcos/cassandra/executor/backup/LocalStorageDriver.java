@@ -0,0 +1,512 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
+import com.mesosphere.dcos.cassandra.executor.compress.CompressionDriver;
+import com.mesosphere.dcos.cassandra.executor.compress.CompressionDriverFactory;
+import com.mesosphere.dcos.cassandra.executor.compress.NoCompressionDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Implements a BackupStorageDriver that stores backups in a directory of a
+ * local or mounted (e.g. NFS) file system, addressed by a "file://"
+ * external location. The layout matches the S3 driver: files are stored at
+ * name/node/keyspace/column family/file, or in the store/ directory for
+ * incremental backups, next to each node's manifest.
+ *
+ * Uncompressed files are hard linked when the backup directory is on the
+ * same file system as the data directory, and otherwise copied with
+ * FileChannel.transferTo so that the kernel moves the data without copying
+ * it through the heap. Files are transferred concurrently and written to a
+ * temporary file that is moved into place once complete.
+ */
+public class LocalStorageDriver implements BackupStorageDriver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            LocalStorageDriver.class);
+    private static final int DEFAULT_CONCURRENCY = 4;
+    private static final long TRANSFER_SIZE = 8 * 1024 * 1024; // 8MB
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final CompressionDriver DEFAULT_COMPRESSION = new NoCompressionDriver();
+    private StorageUtil storageUtil = new StorageUtil();
+
+    File getRootDirectory(BackupRestoreContext ctx) throws URISyntaxException {
+        return new File(new URI(ctx.getExternalLocation()).getPath());
+    }
+
+    int getConcurrency(BackupRestoreContext ctx) {
+        return ctx.getConcurrency() > 0 ?
+                ctx.getConcurrency() : DEFAULT_CONCURRENCY;
+    }
+
+    @Override
+    public void upload(BackupRestoreContext ctx,
+                       BandwidthThrottle throttle,
+                       Optional<BackupManifest.Topology> topology)
+            throws IOException, URISyntaxException {
+        final String backupName = ctx.getName();
+        final String nodeId = ctx.getNodeId();
+        final File root = getRootDirectory(ctx);
+        final String key = backupName + "/" + nodeId;
+        final File dataDirectory = new File(ctx.getLocalLocation());
+        final CompressionDriver compression =
+                CompressionDriverFactory.createCompressionDriver(
+                        ctx.getCompression(), DEFAULT_COMPRESSION);
+        final List<BackupManifest.Entry> entries = new ArrayList<>();
+        final List<CompletableFuture<Void>> copies = new ArrayList<>();
+        final ExecutorService executor =
+                Executors.newFixedThreadPool(getConcurrency(ctx));
+        LOGGER.info("Backup directory: {} | key: {}",
+                root.getAbsolutePath(), key);
+
+        final UploadJournal journal = UploadJournal.open(
+                UploadJournal.getJournalFile(ctx),
+                ctx.getExternalLocation() + "/" + key);
+        try {
+            // Ex: data/<keyspace>/<cf>/snapshots/</snapshot-dir>/<files>
+            for (File keyspaceDir : dataDirectory.listFiles()) {
+                if (keyspaceDir.isFile()) {
+                    // Skip any files in the data directory.
+                    // Only enter keyspace directory.
+                    continue;
+                }
+                LOGGER.info("Entering keyspace: {}", keyspaceDir.getName());
+                for (File cfDir : keyspaceDir.listFiles()) {
+                    LOGGER.info("Entering column family: {}", cfDir.getName());
+                    File snapshotDir = new File(cfDir, "snapshots");
+                    if (!storageUtil.isValidBackupDir(ctx, keyspaceDir, cfDir, snapshotDir)) {
+                        LOGGER.info("Skipping directory: {}",
+                                snapshotDir.getAbsolutePath());
+                        continue;
+                    }
+
+                    final Optional<File> snapshotDirectory =
+                            storageUtil.getValidSnapshotDirectory(snapshotDir, backupName);
+                    if (!snapshotDirectory.isPresent()) {
+                        LOGGER.warn(
+                                "Snapshots directory: {} doesn't contain the current backup directory: {}",
+                                snapshotDir.getName(), backupName);
+                        continue;
+                    }
+
+                    final List<Path> paths;
+                    try (Stream<Path> files = Files.walk(snapshotDirectory.get().toPath())) {
+                        paths = files.filter(Files::isRegularFile)
+                                .collect(Collectors.toList());
+                    }
+                    for (Path path : paths) {
+                        final File file = path.toFile();
+                        final String filePath = keyspaceDir.getName() + "/" +
+                                cfDir.getName() + "/" + file.getName();
+                        final Optional<BackupManifest.Entry> uploaded =
+                                journal.getFile(filePath);
+                        if (uploaded.isPresent() &&
+                                uploaded.get().getSize() == file.length()) {
+                            LOGGER.info("File: {} was uploaded by a previous attempt",
+                                    file.getAbsolutePath());
+                            entries.add(uploaded.get());
+                            continue;
+                        }
+
+                        final String checksum = StorageUtil.getChecksum(file);
+                        final String fileKey = ctx.isIncremental() ?
+                                StorageUtil.getStoreKey(keyspaceDir.getName(),
+                                        cfDir.getName(), file, checksum,
+                                        compression.getName()) :
+                                key + "/" + filePath;
+                        final BackupManifest.Entry entry =
+                                BackupManifest.Entry.create(filePath, fileKey,
+                                        file.length(), checksum,
+                                        compression.getName());
+                        entries.add(entry);
+
+                        final File target = new File(root, fileKey);
+                        if (ctx.isIncremental() && target.isFile()) {
+                            LOGGER.info("File: {} is already stored | key: {}",
+                                    file.getAbsolutePath(), fileKey);
+                            journal.fileUploaded(entry);
+                            continue;
+                        }
+                        throttle.expect(file.length());
+                        copies.add(CompletableFuture.runAsync(() -> {
+                            store(file, target, compression, throttle);
+                            throttle.transferred();
+                            journal.fileUploaded(entry);
+                        }, executor));
+                    }
+                }
+            }
+
+            await(copies);
+        } finally {
+            executor.shutdownNow();
+            journal.close();
+        }
+
+        putManifest(new File(root, key),
+                BackupManifest.create(backupName, nodeId, entries,
+                        topology.orElse(null)));
+        journal.delete();
+
+        LOGGER.info("Done uploading snapshots for backup: {} | {}",
+                backupName, throttle.getSummary());
+    }
+
+    @Override
+    public void download(BackupRestoreContext ctx, BandwidthThrottle throttle)
+            throws IOException, URISyntaxException {
+        final BackupManifest manifest = getManifest(getRootDirectory(ctx),
+                ctx.getName() + "/" + ctx.getNodeId());
+        LOGGER.info("Snapshot manifest for this node: {}", manifest);
+        download(ctx, manifest.select(ctx).getFiles(), throttle);
+    }
+
+    @Override
+    public Optional<BackupManifest> getManifest(BackupRestoreContext ctx)
+            throws IOException, URISyntaxException {
+        return Optional.of(getManifest(getRootDirectory(ctx),
+                ctx.getName() + "/" + ctx.getNodeId()));
+    }
+
+    @Override
+    public void download(BackupRestoreContext ctx,
+                         List<BackupManifest.Entry> files,
+                         BandwidthThrottle throttle)
+            throws IOException, URISyntaxException {
+        final File root = getRootDirectory(ctx);
+        final File nodeLocation = new File(ctx.getLocalLocation(),
+                ctx.getName() + "/" + ctx.getNodeId());
+        final List<CompletableFuture<Void>> copies = new ArrayList<>();
+        final ExecutorService executor =
+                Executors.newFixedThreadPool(getConcurrency(ctx));
+
+        throttle.expect(files);
+        try {
+            for (BackupManifest.Entry entry : files) {
+                final File source = new File(root, entry.getKey());
+                final File target = new File(nodeLocation, entry.getPath());
+                copies.add(CompletableFuture.runAsync(() -> {
+                    retrieve(source, target, entry.getCompression(),
+                            entry.getChecksum(), throttle);
+                    throttle.transferred();
+                }, executor));
+            }
+            await(copies);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        LOGGER.info("Done downloading {} files for backup: {} | {}",
+                files.size(), ctx.getName(), throttle.getSummary());
+    }
+
+    @Override
+    public List<BackupManifest.Entry> verify(BackupRestoreContext ctx,
+                                             List<BackupManifest.Entry> files)
+            throws IOException, URISyntaxException {
+        final File root = getRootDirectory(ctx);
+        return StorageUtil.verify(files, getConcurrency(ctx), entry -> {
+            final File stored = new File(root, entry.getKey());
+            if (!stored.isFile() ||
+                    (NoCompressionDriver.NAME.equals(entry.getCompression()) &&
+                            stored.length() != entry.getSize())) {
+                LOGGER.error("Missing or differing file: {} | stored: {}",
+                        entry.getPath(), stored.getAbsolutePath());
+                return false;
+            }
+            return true;
+        });
+    }
+
+    @Override
+    public List<BackupManifest.Entry> upload(BackupRestoreContext ctx,
+                                             Map<String, File> files,
+                                             BandwidthThrottle throttle)
+            throws IOException, URISyntaxException {
+        final File root = getRootDirectory(ctx);
+        final CompressionDriver compression =
+                CompressionDriverFactory.createCompressionDriver(
+                        ctx.getCompression(), DEFAULT_COMPRESSION);
+        final List<BackupManifest.Entry> entries = new ArrayList<>();
+        final List<CompletableFuture<Void>> copies = new ArrayList<>();
+        final ExecutorService executor =
+                Executors.newFixedThreadPool(getConcurrency(ctx));
+
+        try {
+            for (Map.Entry<String, File> file : files.entrySet()) {
+                final String[] segments = file.getKey().split("/");
+                final String checksum =
+                        StorageUtil.getChecksum(file.getValue());
+                final String fileKey = StorageUtil.getStoreKey(segments[0],
+                        segments[1], file.getValue(), checksum,
+                        compression.getName());
+                entries.add(BackupManifest.Entry.create(file.getKey(),
+                        fileKey, file.getValue().length(), checksum,
+                        compression.getName(),
+                        file.getValue().lastModified()));
+
+                final File target = new File(root, fileKey);
+                if (!target.isFile()) {
+                    throttle.expect(file.getValue().length());
+                    copies.add(CompletableFuture.runAsync(() -> {
+                        store(file.getValue(), target, compression, throttle);
+                        throttle.transferred();
+                    }, executor));
+                }
+            }
+            await(copies);
+        } finally {
+            executor.shutdownNow();
+        }
+        return entries;
+    }
+
+    @Override
+    public List<BackupManifest> getIncrementalSegments(
+            BackupRestoreContext ctx) throws IOException, URISyntaxException {
+        final File[] files = new File(new File(getRootDirectory(ctx),
+                ctx.getName() + "/" + ctx.getNodeId()),
+                BackupManifest.INCREMENTAL_MANIFEST_DIRECTORY)
+                .listFiles(file -> file.isFile() &&
+                        !file.getName().endsWith(TEMPORARY_SUFFIX));
+        final List<BackupManifest> segments = new ArrayList<>();
+        if (files == null) {
+            return segments;
+        }
+        Arrays.sort(files);
+        for (File segment : files) {
+            segments.add(BackupManifest.JSON_SERIALIZER.deserialize(
+                    Files.readAllBytes(segment.toPath())));
+        }
+        return segments;
+    }
+
+    @Override
+    public void appendIncrementalSegment(BackupRestoreContext ctx,
+                                         long time,
+                                         BackupManifest segment)
+            throws IOException, URISyntaxException {
+        putManifest(new File(getRootDirectory(ctx),
+                        ctx.getName() + "/" + ctx.getNodeId()),
+                BackupManifest.getIncrementalSegmentName(time), segment);
+    }
+
+    private void store(File source,
+                       File target,
+                       CompressionDriver compression,
+                       BandwidthThrottle throttle) {
+        LOGGER.info("Storing file: {} | target: {} | compression: {}",
+                source.getAbsolutePath(), target.getAbsolutePath(),
+                compression.getName());
+        try {
+            if (NoCompressionDriver.NAME.equals(compression.getName())) {
+                transfer(source, target, throttle);
+            } else {
+                final File temporary = createTemporary(target);
+                try (InputStream input = throttle.throttle(
+                        new FileInputStream(source));
+                     OutputStream output = compression.compress(
+                             new FileOutputStream(temporary))) {
+                    CompressionDriver.BUFFERS.copy(input, output);
+                }
+                moveIntoPlace(temporary, target);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Retrieves a file. Compressed files are checked against their checksum
+     * as they are decompressed, uncompressed files are linked or copied
+     * without being read.
+     */
+    private void retrieve(File source,
+                          File target,
+                          String compression,
+                          String checksum,
+                          BandwidthThrottle throttle) {
+        LOGGER.info("Retrieving file: {} | target: {} | compression: {}",
+                source.getAbsolutePath(), target.getAbsolutePath(),
+                compression);
+        try {
+            if (NoCompressionDriver.NAME.equals(compression)) {
+                transfer(source, target, throttle);
+            } else {
+                final File temporary = createTemporary(target);
+                try (InputStream input = throttle.throttle(
+                        CompressionDriverFactory.createCompressionDriver(
+                                compression, DEFAULT_COMPRESSION)
+                                .decompress(new FileInputStream(source)));
+                     HashingOutputStream output = new HashingOutputStream(
+                             Hashing.crc32c(),
+                             new FileOutputStream(temporary))) {
+                    CompressionDriver.BUFFERS.copy(input, output);
+                    ParallelDownloader.checkChecksum(target, checksum,
+                            output.hash().toString());
+                }
+                moveIntoPlace(temporary, target);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Links or copies an uncompressed file. A hard link is attempted first,
+     * which only succeeds within a file system. Otherwise the file is copied
+     * with FileChannel.transferTo.
+     */
+    private void transfer(File source, File target, BandwidthThrottle throttle)
+            throws IOException {
+        Files.createDirectories(target.getParentFile().toPath());
+        Files.deleteIfExists(target.toPath());
+        try {
+            Files.createLink(target.toPath(), source.toPath());
+            LOGGER.debug("Linked file: {} | target: {}",
+                    source.getAbsolutePath(), target.getAbsolutePath());
+            return;
+        } catch (FileSystemException | UnsupportedOperationException ex) {
+            LOGGER.debug("Unable to link file: {}, copying it | reason: {}",
+                    source.getAbsolutePath(), ex.getMessage());
+        }
+
+        final File temporary = createTemporary(target);
+        try (FileChannel input = FileChannel.open(source.toPath(),
+                StandardOpenOption.READ);
+             FileChannel output = FileChannel.open(temporary.toPath(),
+                     StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            final long size = input.size();
+            long position = 0;
+            while (position < size) {
+                final long count = Math.min(TRANSFER_SIZE, size - position);
+                throttle.acquire((int) count);
+                position += input.transferTo(position, count, output);
+            }
+        }
+        moveIntoPlace(temporary, target);
+    }
+
+    private static File createTemporary(File target) throws IOException {
+        Files.createDirectories(target.getParentFile().toPath());
+        final File temporary = new File(target.getParentFile(),
+                target.getName() + TEMPORARY_SUFFIX);
+        Files.deleteIfExists(temporary.toPath());
+        Files.createFile(temporary.toPath());
+        return temporary;
+    }
+
+    private static void moveIntoPlace(File temporary, File target)
+            throws IOException {
+        Files.move(temporary.toPath(), target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void await(List<CompletableFuture<Void>> copies)
+            throws IOException {
+        try {
+            CompletableFuture.allOf(
+                    copies.toArray(new CompletableFuture[copies.size()])).get();
+        } catch (ExecutionException ex) {
+            final Throwable cause = (ex.getCause() instanceof UncheckedIOException) ?
+                    ex.getCause().getCause() : ex.getCause();
+            throw new IOException("Transfer failed", cause);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Transfer interrupted");
+        }
+    }
+
+    private BackupManifest getManifest(File root, String key)
+            throws IOException {
+        final File manifest = new File(new File(root, key),
+                BackupManifest.MANIFEST_NAME);
+        if (manifest.isFile()) {
+            return BackupManifest.JSON_SERIALIZER.deserialize(
+                    Files.readAllBytes(manifest.toPath()));
+        }
+
+        // Without a manifest, every file below the node's directory is
+        // restored as is.
+        LOGGER.info("No manifest found: {}", manifest.getAbsolutePath());
+        final Path directory = new File(root, key).toPath();
+        final List<BackupManifest.Entry> entries = new ArrayList<>();
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path path : files.filter(Files::isRegularFile)
+                        .filter(path -> !path.toString().endsWith(TEMPORARY_SUFFIX))
+                        .collect(Collectors.toList())) {
+                    final String filePath = directory.relativize(path)
+                            .toString().replace(File.separatorChar, '/');
+                    entries.add(BackupManifest.Entry.create(filePath,
+                            key + "/" + filePath, Files.size(path), null,
+                            NoCompressionDriver.NAME));
+                }
+            }
+        }
+        return BackupManifest.create(null, null, entries);
+    }
+
+    private void putManifest(File directory, BackupManifest manifest)
+            throws IOException {
+        putManifest(directory, BackupManifest.MANIFEST_NAME, manifest);
+    }
+
+    private void putManifest(File directory,
+                             String name,
+                             BackupManifest manifest) throws IOException {
+        final File target = new File(directory, name);
+        LOGGER.info("Writing manifest: {} | files: {}",
+                target.getAbsolutePath(), manifest.getFiles().size());
+        final File temporary = createTemporary(target);
+        Files.write(temporary.toPath(),
+                BackupManifest.JSON_SERIALIZER.serialize(manifest));
+        moveIntoPlace(temporary, target);
+    }
+}
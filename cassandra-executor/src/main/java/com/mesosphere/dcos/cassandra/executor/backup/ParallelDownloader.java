@@ -0,0 +1,271 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ParallelDownloader schedules downloads from a backup location on a
+ * bounded pool of worker threads. Files larger than the part size are split
+ * into byte ranges that are fetched concurrently and written directly at
+ * their offsets in the destination file through a FileChannel. Transfers
+ * that can not be split (e.g. compressed blobs) may be submitted as a whole.
+ *
+ * If the checksum of a file is known, the CRC32C checksum of each range is
+ * computed as it is written, and the checksums of the ranges are combined
+ * and checked once the whole file has been written.
+ */
+public class ParallelDownloader implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            ParallelDownloader.class);
+
+    /**
+     * Opens a stream over a byte range of a remote object.
+     */
+    @FunctionalInterface
+    public interface RangeReader {
+        /**
+         * Opens a stream over a range of the remote object.
+         *
+         * @param offset The offset of the first byte of the range.
+         * @param length The number of bytes in the range.
+         * @return A stream containing exactly length bytes.
+         * @throws IOException If the range can not be opened.
+         */
+        InputStream open(long offset, long length) throws IOException;
+    }
+
+    /**
+     * A transfer that is executed as a single unit of work.
+     */
+    @FunctionalInterface
+    public interface Transfer {
+        void run() throws IOException;
+    }
+
+    private final long partSize;
+    private final ExecutorService executor;
+    private final List<CompletableFuture<Void>> downloads = new ArrayList<>();
+
+    /**
+     * Constructs a new ParallelDownloader.
+     *
+     * @param partSize    The size in bytes of the ranges large files are
+     *                    split into.
+     * @param concurrency The maximum number of requests that are in flight
+     *                    at once.
+     */
+    public ParallelDownloader(final long partSize, final int concurrency) {
+        this.partSize = partSize;
+        this.executor = Executors.newFixedThreadPool(concurrency);
+    }
+
+    /**
+     * Schedules the download of a remote object into a file. The file is
+     * created, or truncated, with the length of the object before any range
+     * is fetched.
+     *
+     * @param file   The destination file.
+     * @param length The length of the remote object in bytes.
+     * @param reader Opens ranges of the remote object.
+     * @return A future that completes when all ranges have been written.
+     * @throws IOException If the destination file can not be created.
+     */
+    public CompletableFuture<Void> download(
+            final File file,
+            final long length,
+            final RangeReader reader) throws IOException {
+        return download(file, length, null, reader);
+    }
+
+    /**
+     * Schedules the download of a remote object into a file, and checks the
+     * checksum of the file as it is written. The file is created, or
+     * truncated, with the length of the object before any range is fetched.
+     *
+     * @param file     The destination file.
+     * @param length   The length of the remote object in bytes.
+     * @param checksum The CRC32C checksum of the file, as it is recorded in
+     *                 a BackupManifest, or null or empty if it is not known.
+     * @param reader   Opens ranges of the remote object.
+     * @return A future that completes when all ranges have been written, and
+     * fails if the file does not match its checksum.
+     * @throws IOException If the destination file can not be created.
+     */
+    public synchronized CompletableFuture<Void> download(
+            final File file,
+            final long length,
+            final String checksum,
+            final RangeReader reader) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        }
+
+        final boolean verify = checksum != null && !checksum.isEmpty();
+        final List<CompletableFuture<Integer>> parts = new ArrayList<>();
+        for (long offset = 0; offset < length; offset += partSize) {
+            final long position = offset;
+            final long size = Math.min(partSize, length - offset);
+            parts.add(CompletableFuture.supplyAsync(
+                    () -> downloadRange(file, reader, position, size, verify),
+                    executor));
+        }
+
+        CompletableFuture<Void> download = CompletableFuture.allOf(
+                parts.toArray(new CompletableFuture[parts.size()]));
+        if (verify) {
+            download = download.thenRun(() -> {
+                int actual = 0;
+                for (int part = 0; part < parts.size(); part++) {
+                    actual = Crc32c.combine(actual, parts.get(part).join(),
+                            Math.min(partSize, length - part * partSize));
+                }
+                checkChecksum(file, checksum, Crc32c.toString(actual));
+            });
+        }
+        downloads.add(download);
+        return download;
+    }
+
+    /**
+     * Checks the checksum of a downloaded file.
+     *
+     * @param file     The downloaded file.
+     * @param expected The checksum recorded when the file was backed up, or
+     *                 null or empty if it is not known.
+     * @param actual   The checksum computed as the file was downloaded.
+     * @throws UncheckedIOException If the checksums differ.
+     */
+    public static void checkChecksum(final File file,
+                                     final String expected,
+                                     final String actual) {
+        if (expected != null && !expected.isEmpty() &&
+                !expected.equals(actual)) {
+            throw new UncheckedIOException(new IOException(
+                    "Checksum mismatch for file: " + file.getAbsolutePath() +
+                            " | expected: " + expected +
+                            " | actual: " + actual));
+        }
+    }
+
+    /**
+     * Schedules a transfer that is executed as a single unit of work.
+     *
+     * @param transfer The transfer to execute.
+     * @return A future that completes when the transfer has completed.
+     */
+    public synchronized CompletableFuture<Void> submit(final Transfer transfer) {
+        final CompletableFuture<Void> download = CompletableFuture.runAsync(
+                () -> {
+                    try {
+                        transfer.run();
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }, executor);
+        downloads.add(download);
+        return download;
+    }
+
+    /**
+     * Waits for all scheduled downloads to complete.
+     *
+     * @throws IOException If any download failed or the wait is interrupted.
+     */
+    public void await() throws IOException {
+        final CompletableFuture<Void> all;
+        synchronized (this) {
+            all = CompletableFuture.allOf(
+                    downloads.toArray(new CompletableFuture[downloads.size()]));
+        }
+        try {
+            all.get();
+        } catch (ExecutionException ex) {
+            final Throwable cause = (ex.getCause() instanceof UncheckedIOException) ?
+                    ex.getCause().getCause() : ex.getCause();
+            throw new IOException("Download failed", cause);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Download interrupted");
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Downloads a range of a file.
+     *
+     * @return The CRC32C checksum of the range if it is verified, zero
+     * otherwise.
+     */
+    private static int downloadRange(final File file,
+                                     final RangeReader reader,
+                                     final long offset,
+                                     final long size,
+                                     final boolean verify) {
+        LOGGER.debug("Downloading range: file: {} | offset: {} | size: {}",
+                file.getAbsolutePath(), offset, size);
+        try (InputStream inputStream = reader.open(offset, size);
+             HashingInputStream hashing = verify ?
+                     new HashingInputStream(Hashing.crc32c(), inputStream) :
+                     null;
+             ReadableByteChannel source = Channels.newChannel(
+                     verify ? hashing : inputStream);
+             FileChannel channel = FileChannel.open(file.toPath(),
+                     StandardOpenOption.WRITE)) {
+            final long end = offset + size;
+            long position = offset;
+            while (position < end) {
+                final long transferred = channel.transferFrom(source,
+                        position, end - position);
+                if (transferred <= 0) {
+                    throw new EOFException("Unexpected end of range for " +
+                            "file: " + file.getAbsolutePath() +
+                            " at position: " + position);
+                }
+                position += transferred;
+            }
+            return verify ? hashing.hash().asInt() : 0;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,731 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.io.sstable.SSTableLoader;
+import org.apache.cassandra.streaming.ProgressInfo;
+import org.apache.cassandra.streaming.StreamEvent;
+import org.apache.cassandra.streaming.StreamEventHandler;
+import org.apache.cassandra.streaming.StreamState;
+import org.apache.cassandra.utils.NativeSSTableLoaderClient;
+import org.apache.cassandra.utils.OutputHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiPredicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * ParallelSSTableLoader bulk loads the SSTables of a restored node into the
+ * ring from within the executor, using the SSTableLoader of the bundled
+ * Cassandra library instead of forking the sstableloader script for every
+ * column family. Several column families are streamed at once, up to a
+ * concurrency limit, and the tables of a keyspace share a single loader
+ * client, so the ring and the schema are discovered once per keyspace. A
+ * client is not shared across keyspaces, as the replicas of each range
+ * depend on the replication of the keyspace. Each table still streams in
+ * its own sessions, to the peers that own its data, as SSTableLoader
+ * streams one directory per stream plan. Streaming progress is tracked per
+ * table, and the streaming throughput is capped for the whole executor by
+ * {@link #setStreamThroughput(int)}.
+ * When the node owns the same tokens as the node that was backed up, an
+ * importer can be created instead, which links the SSTables into the node's
+ * own data directories and has the node load them without streaming.
+ * Imported SSTables are renamed to generations above those of the live
+ * SSTables, so they never collide with the SSTables the backup was linked
+ * from.
+ */
+public class ParallelSSTableLoader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            ParallelSSTableLoader.class);
+
+    /**
+     * The number of column families loaded at once when the request does
+     * not set a concurrency.
+     */
+    public static final int DEFAULT_CONCURRENCY = 2;
+
+    /**
+     * Loads the SSTables of one column family.
+     */
+    @FunctionalInterface
+    interface TableLoader {
+        /**
+         * Loads the SSTables in a column family directory.
+         *
+         * @param directory The directory keyspace/column family holding the
+         *                  SSTables.
+         * @param progress  The progress of the table, updated while
+         *                  streaming.
+         * @throws IOException If the SSTables could not be loaded.
+         */
+        void load(File directory, TableProgress progress) throws IOException;
+    }
+
+    /**
+     * Has a node load the SSTables placed in the data directory of a column
+     * family.
+     */
+    @FunctionalInterface
+    public interface Refresher {
+        /**
+         * Loads the new SSTables of a column family, as nodetool refresh
+         * does.
+         *
+         * @param keyspace The name of the keyspace.
+         * @param table    The name of the column family.
+         * @throws IOException If the SSTables could not be loaded.
+         */
+        void loadNewSSTables(String keyspace, String table) throws IOException;
+    }
+
+    /**
+     * Receives the progress of a load.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * Called when the progress of a table changes. May be called
+         * concurrently from several threads.
+         *
+         * @param tables The progress of all tables of the load.
+         */
+        void onProgress(List<TableProgress> tables);
+    }
+
+    /**
+     * TableProgress is the streaming progress of one column family.
+     */
+    public static class TableProgress {
+        private final String keyspace;
+        private final String table;
+        private final Runnable onUpdate;
+        private final Map<String, long[]> files = new HashMap<>();
+        private volatile long bytes = 0;
+        private volatile long totalBytes = 0;
+        private volatile boolean done = false;
+
+        TableProgress(final String keyspace,
+                      final String table,
+                      final Runnable onUpdate) {
+            this.keyspace = keyspace;
+            this.table = table;
+            this.onUpdate = onUpdate;
+        }
+
+        /**
+         * Updates the progress of a file of the table.
+         *
+         * @param fileName     The name of the file, unique within the table.
+         * @param currentBytes The number of bytes of the file streamed.
+         * @param fileBytes    The size of the file in bytes.
+         */
+        void update(final String fileName,
+                    final long currentBytes,
+                    final long fileBytes) {
+            synchronized (this) {
+                final long[] previous = files.put(fileName,
+                        new long[]{currentBytes, fileBytes});
+                bytes += currentBytes -
+                        (previous == null ? 0 : previous[0]);
+                totalBytes += fileBytes -
+                        (previous == null ? 0 : previous[1]);
+            }
+            onUpdate.run();
+        }
+
+        void finished() {
+            done = true;
+        }
+
+        public String getKeyspace() {
+            return keyspace;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+
+        /**
+         * Gets the percentage of the table that has been streamed.
+         *
+         * @return The percentage of the bytes of the table's files streamed
+         * so far, 100 once the table is loaded.
+         */
+        public int getPercent() {
+            if (done) {
+                return 100;
+            }
+            final long total = totalBytes;
+            return (total <= 0) ? 0 : (int) Math.min(99, bytes * 100 / total);
+        }
+
+        @Override
+        public String toString() {
+            return keyspace + "." + table + " " + getPercent() + "%";
+        }
+    }
+
+    /**
+     * Sets the maximum streaming throughput of the executor. The limit is a
+     * setting of the Cassandra library, which is shared by the whole
+     * executor process, so it applies to every loader streaming at the time
+     * rather than to one restore. It should be set once by the task that
+     * streams, before the loader is created.
+     *
+     * @param throughputMbPerSec The maximum streaming throughput in MB/s. If
+     *                           zero or negative, streaming is not
+     *                           throttled.
+     */
+    public static void setStreamThroughput(final int throughputMbPerSec) {
+        // Keeps DatabaseDescriptor from loading a cassandra.yaml.
+        Config.setClientMode(true);
+        // Zero disables the limit, as for the sstableloader script.
+        DatabaseDescriptor.setStreamThroughputOutboundMegabitsPerSec(
+                Math.max(0, throughputMbPerSec) * 8);
+    }
+
+    /**
+     * Creates a loader that streams SSTables to the ring of a node, at the
+     * throughput set by {@link #setStreamThroughput(int)}.
+     *
+     * @param hosts       The addresses of the nodes used to discover the
+     *                    ring.
+     * @param nativePort  The native transport port of the nodes.
+     * @param concurrency The number of column families loaded at once. If
+     *                    zero or negative, the default is used.
+     * @return A loader that streams SSTables to the ring.
+     */
+    public static ParallelSSTableLoader create(
+            final Collection<InetAddress> hosts,
+            final int nativePort,
+            final int concurrency) {
+        return new ParallelSSTableLoader(
+                new CassandraTableLoader(hosts, nativePort), concurrency);
+    }
+
+    /**
+     * Creates a loader that imports SSTables into the data directories of
+     * the local node. The files are hard linked, or moved if they are on
+     * another file system, so the node only reads the SSTables it already
+     * owns and nothing is streamed. Each SSTable is given a generation
+     * above the highest one in its live directory, as for nodetool refresh.
+     * The column families must exist.
+     *
+     * @param dataDirectory The data directory of the node, holding
+     *                      keyspace/column family directories.
+     * @param refresher     Has the node load the imported SSTables.
+     * @param concurrency   The number of column families imported at once.
+     *                      If zero or negative, the default is used.
+     * @return A loader that imports SSTables into the local node.
+     */
+    public static ParallelSSTableLoader createImporter(
+            final File dataDirectory,
+            final Refresher refresher,
+            final int concurrency) {
+        return new ParallelSSTableLoader(
+                new SSTableImporter(dataDirectory, refresher), concurrency);
+    }
+
+    private final TableLoader loader;
+    private final int concurrency;
+
+    ParallelSSTableLoader(final TableLoader loader, final int concurrency) {
+        this.loader = loader;
+        this.concurrency = concurrency > 0 ? concurrency : DEFAULT_CONCURRENCY;
+    }
+
+    /**
+     * Gets the number of column families loaded at once.
+     *
+     * @return The concurrency of the loader.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Loads all column families of a restored node and waits for them to
+     * complete. A failed table does not stop the others from loading.
+     *
+     * @param nodeDirectory The directory holding keyspace/column family
+     *                      directories of SSTables.
+     * @param listener      Receives the progress of the tables.
+     * @return The progress of all loaded tables.
+     * @throws IOException If any table failed to load or the load is
+     *                     interrupted.
+     */
+    public List<TableProgress> load(final File nodeDirectory,
+                                    final ProgressListener listener)
+            throws IOException {
+        return load(nodeDirectory, (keyspace, columnFamily) -> true, listener);
+    }
+
+    /**
+     * Loads the selected column families of a restored node and waits for
+     * them to complete. A failed table does not stop the others from
+     * loading.
+     *
+     * @param nodeDirectory The directory holding keyspace/column family
+     *                      directories of SSTables.
+     * @param selected      Tests the names of a keyspace and of a column
+     *                      family directory to load.
+     * @param listener      Receives the progress of the tables.
+     * @return The progress of the loaded tables.
+     * @throws IOException If any table failed to load or the load is
+     *                     interrupted.
+     */
+    public List<TableProgress> load(final File nodeDirectory,
+                                    final BiPredicate<String, String> selected,
+                                    final ProgressListener listener)
+            throws IOException {
+        final List<File> directories = new ArrayList<>();
+        final File[] keyspaces = nodeDirectory.listFiles(File::isDirectory);
+        if (keyspaces != null) {
+            for (File keyspace : keyspaces) {
+                final File[] columnFamilies = keyspace.listFiles(file ->
+                        file.isDirectory() && selected.test(
+                                keyspace.getName(), file.getName()));
+                if (columnFamilies != null) {
+                    Collections.addAll(directories, columnFamilies);
+                }
+            }
+        }
+
+        final List<TableProgress> tables = new ArrayList<>();
+        final List<TableProgress> view = Collections.unmodifiableList(tables);
+        for (File directory : directories) {
+            tables.add(new TableProgress(directory.getParentFile().getName(),
+                    directory.getName(), () -> listener.onProgress(view)));
+        }
+        final Map<TableProgress, Throwable> failures =
+                new ConcurrentHashMap<>();
+        LOGGER.info("Bulk loading {} column families, {} at once",
+                tables.size(), concurrency);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                concurrency);
+        try {
+            final List<CompletableFuture<Void>> loads = new ArrayList<>();
+            for (int i = 0; i < directories.size(); i++) {
+                final File directory = directories.get(i);
+                final TableProgress table = tables.get(i);
+                loads.add(CompletableFuture.runAsync(() -> {
+                    loadTable(directory, table, failures);
+                    listener.onProgress(view);
+                }, executor));
+            }
+            CompletableFuture.allOf(
+                    loads.toArray(new CompletableFuture[loads.size()])).get();
+        } catch (ExecutionException ex) {
+            throw new IOException("Bulk load failed", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Bulk load interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        checkFailures(failures);
+        return view;
+    }
+
+    /**
+     * Loads one column family. A failure is recorded rather than thrown.
+     *
+     * @param directory The directory holding the SSTables of the table.
+     * @param table     The progress of the table.
+     * @param failures  Receives the failure of the table, if any.
+     */
+    void loadTable(final File directory,
+                   final TableProgress table,
+                   final Map<TableProgress, Throwable> failures) {
+        LOGGER.info("Bulk loading... keyspace: {} column family: {}",
+                table.getKeyspace(), table.getTable());
+        try {
+            loader.load(directory, table);
+            table.finished();
+            LOGGER.info("Done bulk loading! keyspace: {} column family: {}",
+                    table.getKeyspace(), table.getTable());
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.error("Failed bulk loading keyspace: {} column family: {}",
+                    table.getKeyspace(), table.getTable(), ex);
+            failures.put(table, ex);
+        }
+    }
+
+    /**
+     * Throws an exception naming all failed tables, if any.
+     */
+    static void checkFailures(final Map<TableProgress, Throwable> failures)
+            throws IOException {
+        if (!failures.isEmpty()) {
+            final IOException error = new IOException(
+                    "Failed to load column families: " + failures.keySet()
+                            .stream()
+                            .map(table -> table.getKeyspace() + "." +
+                                    table.getTable())
+                            .sorted()
+                            .collect(Collectors.joining(", ")));
+            failures.values().forEach(error::addSuppressed);
+            throw error;
+        }
+    }
+
+    /**
+     * Streams SSTables with Cassandra's SSTableLoader, which runs the
+     * library in client mode within the executor.
+     */
+    private static class CassandraTableLoader implements TableLoader {
+        static {
+            // Keeps DatabaseDescriptor from loading a cassandra.yaml.
+            Config.setClientMode(true);
+        }
+
+        private final Collection<InetAddress> hosts;
+        private final int nativePort;
+        private final Map<String, SSTableLoader.Client> clients =
+                new ConcurrentHashMap<>();
+
+        CassandraTableLoader(final Collection<InetAddress> hosts,
+                             final int nativePort) {
+            this.hosts = hosts;
+            this.nativePort = nativePort;
+        }
+
+        @Override
+        public void load(final File directory, final TableProgress progress)
+                throws IOException {
+            final String keyspace = directory.getParentFile().getName();
+            final SSTableLoader.Client client = clients.computeIfAbsent(
+                    keyspace, name -> new KeyspaceClient(hosts, nativePort));
+            final SSTableLoader loader = new SSTableLoader(directory, client,
+                    new OutputHandler.LogOutput());
+
+            final StreamState state;
+            try {
+                state = loader.stream(Collections.emptySet(),
+                        new StreamEventHandler() {
+                            @Override
+                            public void handleStreamEvent(StreamEvent event) {
+                                if (event.eventType ==
+                                        StreamEvent.Type.FILE_PROGRESS) {
+                                    final ProgressInfo info =
+                                            ((StreamEvent.ProgressEvent) event)
+                                                    .progress;
+                                    progress.update(
+                                            info.peer + "/" + info.fileName,
+                                            info.currentBytes,
+                                            info.totalBytes);
+                                }
+                            }
+
+                            @Override
+                            public void onSuccess(StreamState result) {
+                            }
+
+                            @Override
+                            public void onFailure(Throwable t) {
+                            }
+                        }).get();
+            } catch (ExecutionException ex) {
+                throw new IOException("Streaming failed for directory: " +
+                        directory.getAbsolutePath(), ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Streaming interrupted");
+            }
+
+            if (state.hasFailedSession() ||
+                    !loader.getFailedHosts().isEmpty()) {
+                throw new IOException("Streaming failed for directory: " +
+                        directory.getAbsolutePath() + " hosts: " +
+                        loader.getFailedHosts());
+            }
+        }
+    }
+
+    /**
+     * Imports SSTables by placing them in the live data directory of their
+     * column family and refreshing the column family.
+     */
+    static class SSTableImporter implements TableLoader {
+        /**
+         * The suffix of the id that Cassandra appends to the directory of a
+         * column family.
+         */
+        private static final Pattern TABLE_ID = Pattern.compile(
+                "-[0-9a-f]{32}$");
+
+        /**
+         * Matches the name of an SSTable component without the keyspace
+         * and column family prefix of the legacy formats, e.g.
+         * mc-5-big-Data.db, as version, generation and the rest.
+         */
+        private static final Pattern SSTABLE_NAME = Pattern.compile(
+                "^([a-z]{2})-(\\d+)-(.+)$");
+
+        private final File dataDirectory;
+        private final Refresher refresher;
+
+        SSTableImporter(final File dataDirectory, final Refresher refresher) {
+            this.dataDirectory = dataDirectory;
+            this.refresher = refresher;
+        }
+
+        @Override
+        public void load(final File directory, final TableProgress progress)
+                throws IOException {
+            final String keyspace = directory.getParentFile().getName();
+            final String table = getTableName(directory.getName());
+            final File target = getTableDirectory(keyspace,
+                    directory.getName());
+            final File[] files = directory.listFiles(File::isFile);
+            if (files == null) {
+                throw new IOException("Unable to list directory: " +
+                        directory.getAbsolutePath());
+            }
+
+            final String[] live = target.list();
+            if (live == null) {
+                throw new IOException("Unable to list directory: " +
+                        target.getAbsolutePath());
+            }
+            final Map<String, String> names = getImportNames(
+                    keyspace + "-" + table + "-",
+                    Arrays.stream(files).map(File::getName)
+                            .collect(Collectors.toList()),
+                    Arrays.asList(live));
+
+            // All destinations are checked before any file is placed, so a
+            // name that is still taken, e.g. by a file that is not part of
+            // an SSTable, fails the table without leaving part of an SSTable
+            // in the live directory.
+            for (File file : files) {
+                final Path destination = new File(target,
+                        names.get(file.getName())).toPath();
+                if (Files.exists(destination)) {
+                    throw new IOException("SSTable already exists in the " +
+                            "data directory: " + destination);
+                }
+            }
+
+            // Maps placed file in the live directory -> file it was moved
+            // from, or null if it was linked
+            final Map<Path, Path> placed = new LinkedHashMap<>();
+            try {
+                for (File file : files) {
+                    final Path destination = new File(target,
+                            names.get(file.getName())).toPath();
+                    try {
+                        Files.createLink(destination, file.toPath());
+                        placed.put(destination, null);
+                    } catch (FileAlreadyExistsException ex) {
+                        throw ex;
+                    } catch (FileSystemException |
+                            UnsupportedOperationException ex) {
+                        Files.move(file.toPath(), destination);
+                        placed.put(destination, file.toPath());
+                    }
+                    progress.update(file.getName(), file.length(),
+                            file.length());
+                }
+            } catch (IOException | RuntimeException ex) {
+                rollback(placed);
+                throw ex;
+            }
+            LOGGER.info("Imported {} files into: {}", files.length,
+                    target.getAbsolutePath());
+
+            refresher.loadNewSSTables(keyspace, table);
+        }
+
+        /**
+         * Gets the names the files of a backed up column family are
+         * imported under. The components of each SSTable are given the same
+         * new generation, and the SSTables are numbered in the order of
+         * their generations from above the highest generation of the live
+         * SSTables. Files that are not part of an SSTable keep their names.
+         *
+         * @param prefix    The keyspace-column family- prefix of the names
+         *                  of SSTables in the legacy formats.
+         * @param names     The names of the files to import.
+         * @param liveNames The names of the files in the live directory.
+         * @return Maps the name of each file to import -> its name in the
+         * live directory.
+         */
+        static Map<String, String> getImportNames(
+                final String prefix,
+                final Collection<String> names,
+                final Collection<String> liveNames) {
+            long next = 1;
+            for (String name : liveNames) {
+                final Matcher matcher = matchSSTable(prefix, name);
+                if (matcher != null) {
+                    next = Math.max(next,
+                            Long.parseLong(matcher.group(2)) + 1);
+                }
+            }
+
+            final List<String> sorted = new ArrayList<>(names);
+            sorted.sort(Comparator.comparingLong(name -> {
+                final Matcher matcher = matchSSTable(prefix, name);
+                return (matcher == null) ?
+                        -1 : Long.parseLong(matcher.group(2));
+            }));
+            // Maps version-generation of a backed up SSTable -> its new
+            // generation
+            final Map<String, Long> generations = new HashMap<>();
+            final Map<String, String> imported = new LinkedHashMap<>();
+            for (String name : sorted) {
+                final Matcher matcher = matchSSTable(prefix, name);
+                if (matcher == null) {
+                    imported.put(name, name);
+                    continue;
+                }
+                final String key = matcher.group(1) + "-" + matcher.group(2);
+                Long generation = generations.get(key);
+                if (generation == null) {
+                    generation = next++;
+                    generations.put(key, generation);
+                }
+                imported.put(name, (name.startsWith(prefix) ? prefix : "") +
+                        matcher.group(1) + "-" + generation + "-" +
+                        matcher.group(3));
+            }
+            return imported;
+        }
+
+        private static Matcher matchSSTable(final String prefix,
+                                            final String name) {
+            final Matcher matcher = SSTABLE_NAME.matcher(
+                    name.startsWith(prefix) ?
+                            name.substring(prefix.length()) : name);
+            return matcher.matches() ? matcher : null;
+        }
+
+        /**
+         * Removes the files placed in a live directory by a failed import,
+         * moving back those that were moved, so that the node never loads
+         * part of an SSTable.
+         */
+        private static void rollback(final Map<Path, Path> placed) {
+            for (Map.Entry<Path, Path> file : placed.entrySet()) {
+                try {
+                    if (file.getValue() == null) {
+                        Files.deleteIfExists(file.getKey());
+                    } else {
+                        Files.move(file.getKey(), file.getValue());
+                    }
+                } catch (IOException ex) {
+                    LOGGER.error("Failed to remove imported file: {}",
+                            file.getKey(), ex);
+                }
+            }
+        }
+
+        /**
+         * Gets the live directory of a column family. The directory of the
+         * backup is used if it still exists, otherwise the most recent
+         * directory of a table with the same name, which has another id if
+         * the table was created again.
+         */
+        File getTableDirectory(final String keyspace, final String name)
+                throws IOException {
+            final File keyspaceDirectory = new File(dataDirectory, keyspace);
+            final File same = new File(keyspaceDirectory, name);
+            if (same.isDirectory()) {
+                return same;
+            }
+            final String table = getTableName(name);
+            final File[] candidates = keyspaceDirectory.listFiles(file ->
+                    file.isDirectory() && getTableName(file.getName())
+                            .equals(table));
+            if (candidates == null || candidates.length == 0) {
+                throw new IOException("No data directory for column family " +
+                        keyspace + "." + table + ", its schema must be " +
+                        "created before it is restored");
+            }
+            return Arrays.stream(candidates)
+                    .max(Comparator.comparingLong(File::lastModified))
+                    .get();
+        }
+
+        static String getTableName(final String directoryName) {
+            return TABLE_ID.matcher(directoryName).replaceFirst("");
+        }
+    }
+
+    /**
+     * A loader client shared by all tables of a keyspace. The ring and the
+     * schema of the keyspace are only fetched by the first table. The
+     * stream sessions are opened by the SSTableLoader of each table.
+     */
+    private static class KeyspaceClient extends NativeSSTableLoaderClient {
+        private boolean initialized = false;
+
+        KeyspaceClient(final Collection<InetAddress> hosts,
+                       final int nativePort) {
+            super(hosts, nativePort, null, null, null);
+        }
+
+        @Override
+        public synchronized void init(final String keyspace) {
+            if (!initialized) {
+                super.init(keyspace);
+                initialized = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * PipelinedRestore restores a node's backup one column family at a time
+ * instead of staging the whole backup before loading it. Column families are
+ * downloaded in order into the node's local directory while the column
+ * families already downloaded are bulk loaded by a ParallelSSTableLoader.
+ * The files of a column family are deleted once it is loaded, and a column
+ * family is only downloaded when the bytes staged and not yet loaded fit
+ * within the staging budget, so the extra disk used by a restore is bounded
+ * by the budget, or by the largest column family if that is larger.
+ */
+public class PipelinedRestore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            PipelinedRestore.class);
+
+    /**
+     * Downloads the files of one column family.
+     */
+    @FunctionalInterface
+    interface TableDownloader {
+        /**
+         * Downloads files to their paths below the node's directory.
+         *
+         * @param files The manifest entries of the column family's files.
+         * @throws IOException If the download failed.
+         */
+        void download(List<BackupManifest.Entry> files)
+                throws IOException, URISyntaxException;
+    }
+
+    /**
+     * The staged bytes of downloaded column families that are not loaded
+     * yet.
+     */
+    static class StagingBudget {
+        private final long capacity;
+        private long used = 0;
+
+        StagingBudget(final long capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * Reserves space for a column family, waiting until the space is
+         * released by loaded column families. A column family larger than
+         * the whole budget reserves all of it, so it is staged alone.
+         *
+         * @param bytes The size of the column family.
+         * @return The number of bytes reserved.
+         * @throws InterruptedIOException If interrupted while waiting.
+         */
+        synchronized long reserve(final long bytes)
+                throws InterruptedIOException {
+            final long reserved = Math.min(bytes, capacity);
+            try {
+                while (used > 0 && used + reserved > capacity) {
+                    wait();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(
+                        "Interrupted waiting for staging space");
+            }
+            used += reserved;
+            return reserved;
+        }
+
+        synchronized void release(final long bytes) {
+            used -= bytes;
+            notifyAll();
+        }
+
+        synchronized long getUsed() {
+            return used;
+        }
+    }
+
+    /**
+     * Creates a pipelined restore of the backup of a context.
+     *
+     * @param driver   The storage driver the backup is downloaded with.
+     * @param ctx      The context of the restore. Its staging budget must be
+     *                 positive.
+     * @param throttle The throttle that limits and measures the downloads.
+     * @param loader   The loader the column families are loaded with.
+     * @return A pipelined restore of the node's backup.
+     */
+    public static PipelinedRestore create(final BackupStorageDriver driver,
+                                          final BackupRestoreContext ctx,
+                                          final BandwidthThrottle throttle,
+                                          final ParallelSSTableLoader loader) {
+        return new PipelinedRestore(
+                files -> driver.download(ctx, files, throttle),
+                new File(ctx.getLocalLocation() + File.separator +
+                        ctx.getName() + File.separator + ctx.getNodeId()),
+                ctx.getStagingBudgetMb() * 1024L * 1024L,
+                loader);
+    }
+
+    private final TableDownloader downloader;
+    private final File nodeDirectory;
+    private final StagingBudget budget;
+    private final ParallelSSTableLoader loader;
+
+    PipelinedRestore(final TableDownloader downloader,
+                     final File nodeDirectory,
+                     final long budgetBytes,
+                     final ParallelSSTableLoader loader) {
+        this.downloader = downloader;
+        this.nodeDirectory = nodeDirectory;
+        this.budget = new StagingBudget(budgetBytes);
+        this.loader = loader;
+    }
+
+    /**
+     * Downloads and loads all column families of a backup, and waits for
+     * them to complete. A table that fails to load does not stop the
+     * others, but a failed download stops the restore once the tables
+     * already downloaded are loaded.
+     *
+     * @param files    The manifest entries of the node's backup.
+     * @param listener Receives the progress of the tables.
+     * @return The progress of all loaded tables.
+     * @throws IOException If a download failed, a table failed to load or
+     *                     the restore is interrupted.
+     */
+    public List<ParallelSSTableLoader.TableProgress> restore(
+            final List<BackupManifest.Entry> files,
+            final ParallelSSTableLoader.ProgressListener listener)
+            throws IOException {
+        final Map<String, List<BackupManifest.Entry>> tableFiles =
+                groupByTable(files);
+        final List<ParallelSSTableLoader.TableProgress> tables =
+                new ArrayList<>();
+        final List<ParallelSSTableLoader.TableProgress> view =
+                Collections.unmodifiableList(tables);
+        for (String table : tableFiles.keySet()) {
+            final String[] names = table.split("/");
+            tables.add(new ParallelSSTableLoader.TableProgress(names[0],
+                    names[1], () -> listener.onProgress(view)));
+        }
+        final Map<ParallelSSTableLoader.TableProgress, Throwable> failures =
+                new ConcurrentHashMap<>();
+        LOGGER.info("Restoring {} column families, {} loaded at once, " +
+                        "staging budget: {} bytes",
+                tables.size(), loader.getConcurrency(), budget.capacity);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                loader.getConcurrency());
+        final List<CompletableFuture<Void>> loads = new ArrayList<>();
+        IOException downloadError = null;
+        try {
+            int index = 0;
+            for (Map.Entry<String, List<BackupManifest.Entry>> entry :
+                    tableFiles.entrySet()) {
+                final ParallelSSTableLoader.TableProgress table =
+                        tables.get(index++);
+                final File directory = new File(nodeDirectory,
+                        entry.getKey());
+                final long reserved = budget.reserve(entry.getValue().stream()
+                        .mapToLong(BackupManifest.Entry::getSize).sum());
+                try {
+                    LOGGER.info("Staging column family: {} | files: {} | " +
+                                    "staged bytes: {}", entry.getKey(),
+                            entry.getValue().size(), budget.getUsed());
+                    downloader.download(entry.getValue());
+                } catch (IOException | URISyntaxException |
+                        RuntimeException ex) {
+                    LOGGER.error("Failed staging column family: {}",
+                            entry.getKey(), ex);
+                    delete(directory, reserved);
+                    downloadError = new IOException(
+                            "Failed to download column family: " +
+                                    entry.getKey(), ex);
+                    break;
+                }
+                loads.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        loader.loadTable(directory, table, failures);
+                    } finally {
+                        delete(directory, reserved);
+                    }
+                    listener.onProgress(view);
+                }, executor));
+            }
+            CompletableFuture.allOf(
+                    loads.toArray(new CompletableFuture[loads.size()])).get();
+        } catch (ExecutionException ex) {
+            throw new IOException("Bulk load failed", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Restore interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (downloadError != null) {
+            failures.values().forEach(downloadError::addSuppressed);
+            throw downloadError;
+        }
+        ParallelSSTableLoader.checkFailures(failures);
+        return view;
+    }
+
+    /**
+     * Groups the files of a backup by keyspace/column family, in the order
+     * of the manifest. Files outside of a column family directory are not
+     * loaded, so they are not downloaded.
+     */
+    static Map<String, List<BackupManifest.Entry>> groupByTable(
+            final List<BackupManifest.Entry> files) {
+        final Map<String, List<BackupManifest.Entry>> tables =
+                new LinkedHashMap<>();
+        for (BackupManifest.Entry file : files) {
+            final String[] names = file.getPath().split("/");
+            if (names.length < 3) {
+                LOGGER.warn("Skipping file outside of a column family: {}",
+                        file.getPath());
+                continue;
+            }
+            tables.computeIfAbsent(names[0] + "/" + names[1],
+                    table -> new ArrayList<>()).add(file);
+        }
+        return tables;
+    }
+
+    private void delete(final File directory, final long reserved) {
+        try {
+            FileUtils.deleteDirectory(directory);
+            LOGGER.info("Deleted staged column family: {}",
+                    directory.getAbsolutePath());
+        } catch (IOException ex) {
+            LOGGER.error("Failed to delete staged column family: {}",
+                    directory.getAbsolutePath(), ex);
+        } finally {
+            budget.release(reserved);
+        }
+    }
+}
@@ -15,20 +15,34 @@
  */
 package com.mesosphere.dcos.cassandra.executor.backup;
 
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.S3ClientOptions;
 import com.amazonaws.services.s3.internal.Constants;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ListObjectsRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
+import com.mesosphere.dcos.cassandra.executor.backup.s3.S3Uploader;
+import com.mesosphere.dcos.cassandra.executor.compress.CompressionDriver;
+import com.mesosphere.dcos.cassandra.executor.compress.CompressionDriverFactory;
+import com.mesosphere.dcos.cassandra.executor.compress.NoCompressionDriver;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.FileSystems;
@@ -37,9 +51,18 @@ import java.nio.file.FileVisitor;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * Implements a BackupStorageDriver that provides upload and download
@@ -48,7 +71,30 @@ import java.util.Optional;
 public class S3StorageDriver implements BackupStorageDriver {
     private static final Logger LOGGER = LoggerFactory.getLogger(
             S3StorageDriver.class);
+    private static final long DEFAULT_PART_SIZE = 64 * 1024 * 1024; // 64MB
+    private static final int DEFAULT_CONCURRENCY = 8;
+    private static final CompressionDriver DEFAULT_COMPRESSION = new NoCompressionDriver();
+    private static final long CONNECTION_MAX_IDLE_MS =
+            TimeUnit.MINUTES.toMillis(2);
     private StorageUtil storageUtil = new StorageUtil();
+    private final StorageClients clients;
+
+    /**
+     * Constructs a driver with its own client cache.
+     */
+    public S3StorageDriver() {
+        this(new StorageClients());
+    }
+
+    /**
+     * Constructs a driver.
+     *
+     * @param clients The cache of the S3 clients, shared by the drivers of
+     *                the executor.
+     */
+    public S3StorageDriver(StorageClients clients) {
+        this.clients = clients;
+    }
 
     String getBucketName(BackupRestoreContext ctx) throws URISyntaxException {
         URI uri = new URI(ctx.getExternalLocation());
@@ -61,6 +107,10 @@ public class S3StorageDriver implements BackupStorageDriver {
     }
 
     String getPrefixKey(BackupRestoreContext ctx) throws URISyntaxException {
+        return getRootKey(ctx) + ctx.getName(); // append backup name
+    }
+
+    String getRootKey(BackupRestoreContext ctx) throws URISyntaxException {
         URI uri = new URI(ctx.getExternalLocation());
         String[] segments = uri.getPath().split("/");
 
@@ -73,10 +123,7 @@ public class S3StorageDriver implements BackupStorageDriver {
             }
         }
 
-        prefixKey = (prefixKey.length() > 0 && !prefixKey.endsWith("/")) ? prefixKey + "/" : prefixKey;
-        prefixKey += ctx.getName(); // append backup name
-
-        return prefixKey;
+        return (prefixKey.length() > 0 && !prefixKey.endsWith("/")) ? prefixKey + "/" : prefixKey;
     }
 
     String getEndpoint(BackupRestoreContext ctx) throws URISyntaxException {
@@ -96,83 +143,190 @@ public class S3StorageDriver implements BackupStorageDriver {
         }
     }
 
-    private AmazonS3Client getAmazonS3Client(BackupRestoreContext ctx) throws URISyntaxException {
+    long getPartSize(BackupRestoreContext ctx) {
+        return ctx.getPartSizeMb() > 0 ?
+                ctx.getPartSizeMb() * 1024L * 1024L : DEFAULT_PART_SIZE;
+    }
+
+    int getConcurrency(BackupRestoreContext ctx) {
+        return ctx.getConcurrency() > 0 ?
+                ctx.getConcurrency() : DEFAULT_CONCURRENCY;
+    }
+
+    /**
+     * Leases the client of the endpoint and credentials of the context from
+     * the executor's cache, so that consecutive transfers reuse its pooled
+     * connections.
+     */
+    private StorageClients.Lease<AmazonS3Client> getAmazonS3Client(
+            BackupRestoreContext ctx) throws IOException, URISyntaxException {
         final String accessKey = ctx.getAccountId();
         final String secretKey = ctx.getSecretKey();
         String endpoint = getEndpoint(ctx);
         LOGGER.info("endpoint: {}", endpoint);
 
-        final BasicAWSCredentials basicAWSCredentials = new BasicAWSCredentials(accessKey, secretKey);
-        final AmazonS3Client amazonS3Client = new AmazonS3Client(basicAWSCredentials);
-        amazonS3Client.setEndpoint(endpoint);
-
-        if (ctx.usesEmc()) {
-            final S3ClientOptions options = new S3ClientOptions();
-            options.setPathStyleAccess(true);
-            amazonS3Client.setS3ClientOptions(options);
-        }
+        // All concurrent transfers share this client, so its connection
+        // pool must be at least as large as the transfer concurrency.
+        final int maxConnections = Math.max(
+                ClientConfiguration.DEFAULT_MAX_CONNECTIONS,
+                getConcurrency(ctx));
+        final StorageClients.Key key = new StorageClients.Key(
+                AmazonS3Client.S3_SERVICE_NAME, endpoint, accessKey, secretKey,
+                "connections=" + maxConnections + "&emc=" + ctx.usesEmc());
+        return clients.lease(key, () -> {
+            final BasicAWSCredentials basicAWSCredentials = new BasicAWSCredentials(accessKey, secretKey);
+            // Idle connections stay open, with TCP keep alive, between the
+            // transfers of consecutive tasks.
+            final ClientConfiguration clientConfiguration = new ClientConfiguration()
+                    .withMaxConnections(maxConnections)
+                    .withTcpKeepAlive(true)
+                    .withConnectionMaxIdleMillis(CONNECTION_MAX_IDLE_MS);
+            final AmazonS3Client amazonS3Client = new AmazonS3Client(basicAWSCredentials, clientConfiguration);
+            amazonS3Client.setEndpoint(endpoint);
+
+            if (ctx.usesEmc()) {
+                final S3ClientOptions options = new S3ClientOptions();
+                options.setPathStyleAccess(true);
+                amazonS3Client.setS3ClientOptions(options);
+            }
 
-        return amazonS3Client;
+            return amazonS3Client;
+        }, AmazonS3Client::shutdown);
     }
 
     @Override
-    public void upload(BackupRestoreContext ctx) throws IOException, URISyntaxException {
+    public void upload(BackupRestoreContext ctx,
+                       BandwidthThrottle throttle,
+                       Optional<BackupManifest.Topology> topology)
+            throws IOException, URISyntaxException {
+        try (StorageClients.Lease<AmazonS3Client> client =
+                     getAmazonS3Client(ctx)) {
+            uploadSnapshots(ctx, client.get(), throttle, topology);
+        }
+    }
+
+    private void uploadSnapshots(BackupRestoreContext ctx,
+                                 AmazonS3Client amazonS3Client,
+                                 BandwidthThrottle throttle,
+                                 Optional<BackupManifest.Topology> topology)
+            throws IOException, URISyntaxException {
         final String localLocation = ctx.getLocalLocation();
         final String backupName = ctx.getName();
         final String nodeId = ctx.getNodeId();
 
         final String key = getPrefixKey(ctx) + "/" + nodeId;
         LOGGER.info("Backup key: " + key);
-        final AmazonS3Client amazonS3Client = getAmazonS3Client(ctx);
 
         final File dataDirectory = new File(localLocation);
-
-        // Ex: data/<keyspace>/<cf>/snapshots/</snapshot-dir>/<files>
-        for (File keyspaceDir : dataDirectory.listFiles()) {
-            if (keyspaceDir.isFile()) {
-                // Skip any files in the data directory.
-                // Only enter keyspace directory.
-                continue;
-            }
-            LOGGER.info("Entering keyspace: {}", keyspaceDir.getName());
-            for (File cfDir : keyspaceDir.listFiles()) {
-                LOGGER.info("Entering column family: {}", cfDir.getName());
-                File snapshotDir = new File(cfDir, "snapshots");
-                if (!storageUtil.isValidBackupDir(keyspaceDir, cfDir, snapshotDir)) {
-                    LOGGER.info("Skipping directory: {}",
-                            snapshotDir.getAbsolutePath());
+        final String bucketName = getBucketName(ctx);
+        final String rootKey = getRootKey(ctx);
+        // Entries are added by the uploader's threads as files complete.
+        final List<BackupManifest.Entry> entries =
+                Collections.synchronizedList(new ArrayList<>());
+        final CompressionDriver compression =
+                CompressionDriverFactory.createCompressionDriver(
+                        ctx.getCompression(), DEFAULT_COMPRESSION);
+        // The store is not listed, as it grows with every backup. Files of
+        // the previous backup of the node are known to be stored, and only
+        // the files that are new since are checked with a HEAD request.
+        final String latestKey =
+                rootKey + StorageUtil.getLatestManifestKey(nodeId);
+        final Set<String> storedKeys = ctx.isIncremental() ?
+                StorageUtil.getStoredKeys(getManifest(amazonS3Client,
+                        bucketName, latestKey)) :
+                new HashSet<>();
+        final Predicate<String> isStored = fileKey ->
+                storedKeys.contains(fileKey) ||
+                        exists(amazonS3Client, bucketName, fileKey);
+
+        // Files uploaded by a previous attempt have been removed from the
+        // snapshot, so their entries are taken from the journal.
+        final UploadJournal journal = UploadJournal.open(
+                UploadJournal.getJournalFile(ctx), "s3://" + bucketName + "/" + key);
+        try (S3Uploader uploader = new S3Uploader(
+                amazonS3Client,
+                bucketName,
+                getPartSize(ctx),
+                getConcurrency(ctx),
+                throttle,
+                journal)) {
+
+            // Ex: data/<keyspace>/<cf>/snapshots/</snapshot-dir>/<files>
+            for (File keyspaceDir : dataDirectory.listFiles()) {
+                if (keyspaceDir.isFile()) {
+                    // Skip any files in the data directory.
+                    // Only enter keyspace directory.
                     continue;
                 }
-                LOGGER.info(
-                        "Valid backup directories. Keyspace: {} | ColumnFamily: {} | Snapshot: {} | BackupName: {}",
-                        keyspaceDir.getAbsolutePath(), cfDir.getAbsolutePath(),
-                        snapshotDir.getAbsolutePath(), backupName);
-
-                final Optional<File> snapshotDirectory = storageUtil.getValidSnapshotDirectory(
-                         snapshotDir, backupName);
-                LOGGER.info("Valid snapshot directory: {}",
-                        snapshotDirectory.isPresent());
-                if (snapshotDirectory.isPresent()) {
-                    // Upload this directory
-                    LOGGER.info("Going to upload directory: {}",
-                            snapshotDirectory.get().getAbsolutePath());
-                    uploadDirectory(
-                            ctx,
-                            snapshotDirectory.get().getAbsolutePath(),
-                            amazonS3Client,
-                            getBucketName(ctx),
-                            key,
-                            keyspaceDir.getName(),
-                            cfDir.getName());
-                } else {
-                    LOGGER.warn(
-                            "Snapshots directory: {} doesn't contain the current backup directory: {}",
-                            snapshotDir.getName(), backupName);
+                LOGGER.info("Entering keyspace: {}", keyspaceDir.getName());
+                for (File cfDir : keyspaceDir.listFiles()) {
+                    LOGGER.info("Entering column family: {}", cfDir.getName());
+                    File snapshotDir = new File(cfDir, "snapshots");
+                    if (!storageUtil.isValidBackupDir(ctx, keyspaceDir, cfDir, snapshotDir)) {
+                        LOGGER.info("Skipping directory: {}",
+                                snapshotDir.getAbsolutePath());
+                        continue;
+                    }
+                    LOGGER.info(
+                            "Valid backup directories. Keyspace: {} | ColumnFamily: {} | Snapshot: {} | BackupName: {}",
+                            keyspaceDir.getAbsolutePath(), cfDir.getAbsolutePath(),
+                            snapshotDir.getAbsolutePath(), backupName);
+
+                    final Optional<File> snapshotDirectory = storageUtil.getValidSnapshotDirectory(
+                            snapshotDir, backupName);
+                    LOGGER.info("Valid snapshot directory: {}",
+                            snapshotDirectory.isPresent());
+                    if (snapshotDirectory.isPresent()) {
+                        // Upload this directory
+                        LOGGER.info("Going to upload directory: {}",
+                                snapshotDirectory.get().getAbsolutePath());
+                        uploadDirectory(
+                                ctx,
+                                snapshotDirectory.get().getAbsolutePath(),
+                                uploader,
+                                key,
+                                keyspaceDir.getName(),
+                                cfDir.getName(),
+                                rootKey,
+                                compression,
+                                isStored,
+                                journal,
+                                entries);
+                    } else {
+                        LOGGER.warn(
+                                "Snapshots directory: {} doesn't contain the current backup directory: {}",
+                                snapshotDir.getName(), backupName);
+                    }
                 }
             }
+
+            // Wait for all files and parts scheduled above.
+            uploader.await();
+        } finally {
+            journal.close();
+        }
+
+        final Set<String> paths = new HashSet<>();
+        entries.forEach(entry -> paths.add(entry.getPath()));
+        for (BackupManifest.Entry entry : journal.getFiles()) {
+            if (paths.add(entry.getPath())) {
+                entries.add(entry);
+            }
+        }
+
+        // The manifest is only written once all of the files it references
+        // are stored, so restores never see a partial backup.
+        final BackupManifest manifest =
+                BackupManifest.create(backupName, nodeId, entries,
+                        topology.orElse(null));
+        putManifest(amazonS3Client, bucketName, key, manifest);
+        if (ctx.isIncremental()) {
+            putManifest(amazonS3Client, bucketName, latestKey, manifest);
         }
+        journal.delete();
 
-        LOGGER.info("Done uploading snapshots for backup: {}", backupName);
+        LOGGER.info("Done uploading snapshots for backup: {} | {}",
+                backupName, throttle.getSummary());
     }
 
     private boolean isValidFileForUpload(File file, BackupRestoreContext backupRestoreContext) {
@@ -191,15 +345,18 @@ public class S3StorageDriver implements BackupStorageDriver {
     private void uploadDirectory(
             BackupRestoreContext BackupRestoreContext,
             String localLocation,
-            AmazonS3Client amazonS3Client,
-            String bucketName,
+            S3Uploader uploader,
             String key,
             String keyspaceName,
-            String cfName) throws IOException {
+            String cfName,
+            String rootKey,
+            CompressionDriver compression,
+            Predicate<String> isStored,
+            UploadJournal journal,
+            List<BackupManifest.Entry> entries) throws IOException {
         LOGGER.info(
-                "uploadDirectory() localLocation: {}, AmazonS3Client: {}, bucketName: {}, key: {}, keyspaceName: {}, cfName: {}",
-                localLocation, amazonS3Client, bucketName, key, keyspaceName,
-                cfName);
+                "uploadDirectory() localLocation: {}, key: {}, keyspaceName: {}, cfName: {}",
+                localLocation, key, keyspaceName, cfName);
 
         Files.walkFileTree(FileSystems.getDefault().getPath(localLocation),
                 new FileVisitor<Path>() {
@@ -216,21 +373,69 @@ public class S3StorageDriver implements BackupStorageDriver {
                         final File file = path.toFile();
                         LOGGER.info("Visiting file: {}", file.getAbsolutePath());
                         if (isValidFileForUpload(file, BackupRestoreContext)) {
-                            String fileKey = key + "/" + keyspaceName + "/" + cfName + "/" + file.getName();
+                            final String filePath = keyspaceName + "/" + cfName + "/" + file.getName();
+                            final Optional<BackupManifest.Entry> uploaded = journal.getFile(filePath);
+                            if (uploaded.isPresent() && uploaded.get().getSize() == file.length()) {
+                                LOGGER.info(
+                                        "File: {} was uploaded by a previous attempt | key: {}",
+                                        file.getAbsolutePath(), uploaded.get().getKey());
+                                entries.add(uploaded.get());
+                                file.delete();
+                                return FileVisitResult.CONTINUE;
+                            }
+
+                            // Only the keys of the store are derived from the
+                            // checksum, otherwise it is computed as the file
+                            // is uploaded.
+                            final long size = file.length();
+                            final String checksum = BackupRestoreContext.isIncremental() ?
+                                    StorageUtil.getChecksum(file) : null;
+                            final String fileKey = BackupRestoreContext.isIncremental() ?
+                                    rootKey + StorageUtil.getStoreKey(keyspaceName, cfName, file,
+                                            checksum, compression.getName()) :
+                                    key + "/" + filePath;
+
+                            if (BackupRestoreContext.isIncremental() &&
+                                    isStored.test(fileKey)) {
+                                LOGGER.info(
+                                        "File: {} is already stored | key: {}",
+                                        file.getAbsolutePath(), fileKey);
+                                final BackupManifest.Entry entry = BackupManifest.Entry.create(
+                                        filePath,
+                                        fileKey,
+                                        size,
+                                        checksum,
+                                        compression.getName());
+                                entries.add(entry);
+                                journal.fileUploaded(entry);
+                                file.delete();
+                                return FileVisitResult.CONTINUE;
+                            }
 
                             LOGGER.info(
-                                    "Initiating upload for file: {} | bucket: {} | key: {}",
-                                    file.getAbsolutePath(), bucketName, fileKey);
-
-                            amazonS3Client.putObject(bucketName,fileKey,file);
-
-                            LOGGER.debug(
+                                    "Scheduling upload for file: {} | key: {}",
+                                    file.getAbsolutePath(), fileKey);
+
+                            uploader.upload(file, fileKey, compression, object -> {
+                                final BackupManifest.Entry entry = BackupManifest.Entry.create(
+                                        filePath,
+                                        fileKey,
+                                        size,
+                                        object.getChecksum(),
+                                        compression.getName(),
+                                        0,
+                                        object.getETag());
+                                entries.add(entry);
+                                // Recorded before the file is removed, so a
+                                // retry still lists it in the manifest.
+                                journal.fileUploaded(entry);
+                                LOGGER.debug(
                                         "Successfully uploaded the file to S3. Deleting the file now: {}",
                                         file.getAbsolutePath());
-                            final boolean delete = file.delete();
-                            LOGGER.debug("Deletion status: {} for file {}",
+                                final boolean delete = file.delete();
+                                LOGGER.debug("Deletion status: {} for file {}",
                                         delete, file.getAbsolutePath());
-
+                            });
                         }
 
                         return FileVisitResult.CONTINUE;
@@ -253,7 +458,18 @@ public class S3StorageDriver implements BackupStorageDriver {
     }
 
     @Override
-    public void download(BackupRestoreContext ctx) throws IOException, URISyntaxException {
+    public void download(BackupRestoreContext ctx, BandwidthThrottle throttle)
+            throws IOException, URISyntaxException {
+        try (StorageClients.Lease<AmazonS3Client> client =
+                     getAmazonS3Client(ctx)) {
+            downloadSnapshots(ctx, client.get(), throttle);
+        }
+    }
+
+    private void downloadSnapshots(BackupRestoreContext ctx,
+                                   AmazonS3Client amazonS3Client,
+                                   BandwidthThrottle throttle)
+            throws IOException, URISyntaxException {
         // Ex: data/<keyspace>/<cf>/snapshots/</snapshot-dir>/<files>
 
         // Location of data directory, where the data will be copied.
@@ -262,29 +478,210 @@ public class S3StorageDriver implements BackupStorageDriver {
         final String nodeId = ctx.getNodeId();
 
         final String bucketName = getBucketName(ctx);
-        final AmazonS3Client amazonS3Client = getAmazonS3Client(ctx);
 
-        final Map<String, Long> snapshotFileKeys = listSnapshotFiles(amazonS3Client, bucketName, backupName + "/" + nodeId);
+        final Optional<BackupManifest> manifest = getManifest(amazonS3Client,
+                bucketName, getPrefixKey(ctx) + "/" + nodeId);
+
+        if (manifest.isPresent()) {
+            LOGGER.info("Snapshot manifest for this node: {}", manifest.get());
+            downloadFiles(ctx, amazonS3Client,
+                    manifest.get().select(ctx).getFiles(), throttle);
+            return;
+        }
+
+        try (ParallelDownloader downloader = new ParallelDownloader(
+                getPartSize(ctx), getConcurrency(ctx))) {
+            final Map<String, Long> snapshotFileKeys = listSnapshotFiles(amazonS3Client, bucketName, backupName + "/" + nodeId);
+
+            LOGGER.info("Snapshot files for this node: {}", snapshotFileKeys);
+
+            for (String fileKey : snapshotFileKeys.keySet()) {
+                if (!StorageUtil.isSelected(ctx, fileKey.substring(
+                        Math.min(fileKey.length(),
+                                backupName.length() + nodeId.length() + 2)))) {
+                    continue;
+                }
+                downloadFile(
+                        new File(localLocation + File.separator + fileKey),
+                        bucketName,
+                        amazonS3Client,
+                        fileKey,
+                        snapshotFileKeys.get(fileKey),
+                        NoCompressionDriver.NAME,
+                        null,
+                        downloader,
+                        throttle);
+            }
+
+            // Wait for all files and ranges scheduled above.
+            downloader.await();
+        }
 
-        LOGGER.info("Snapshot files for this node: {}", snapshotFileKeys);
+        LOGGER.info("Done downloading snapshots for backup: {} | {}",
+                backupName, throttle.getSummary());
+    }
+
+    @Override
+    public Optional<BackupManifest> getManifest(BackupRestoreContext ctx)
+            throws IOException, URISyntaxException {
+        try (StorageClients.Lease<AmazonS3Client> client =
+                     getAmazonS3Client(ctx)) {
+            return getManifest(client.get(), getBucketName(ctx),
+                    getPrefixKey(ctx) + "/" + ctx.getNodeId());
+        }
+    }
 
-        for (String fileKey : snapshotFileKeys.keySet()) {
-            downloadFile(localLocation, bucketName, amazonS3Client, fileKey,
-                    snapshotFileKeys.get(fileKey));
+    @Override
+    public List<BackupManifest.Entry> upload(BackupRestoreContext ctx,
+                                             Map<String, File> files,
+                                             BandwidthThrottle throttle)
+            throws IOException, URISyntaxException {
+        try (StorageClients.Lease<AmazonS3Client> client =
+                     getAmazonS3Client(ctx)) {
+            return uploadFiles(ctx, client.get(), files, throttle);
         }
     }
 
-    private void downloadFile(String localLocation,
+    private List<BackupManifest.Entry> uploadFiles(
+            BackupRestoreContext ctx,
+            AmazonS3Client amazonS3Client,
+            Map<String, File> files,
+            BandwidthThrottle throttle)
+            throws IOException, URISyntaxException {
+        final String bucketName = getBucketName(ctx);
+        final String rootKey = getRootKey(ctx);
+        final CompressionDriver compression =
+                CompressionDriverFactory.createCompressionDriver(
+                        ctx.getCompression(), DEFAULT_COMPRESSION);
+        final Map<String, BackupManifest.Entry> entries =
+                new ConcurrentHashMap<>();
+
+        try (S3Uploader uploader = new S3Uploader(
+                amazonS3Client,
+                bucketName,
+                getPartSize(ctx),
+                getConcurrency(ctx),
+                throttle,
+                UploadJournal.inMemory())) {
+            for (Map.Entry<String, File> file : files.entrySet()) {
+                final String[] segments = file.getKey().split("/");
+                final String checksum =
+                        StorageUtil.getChecksum(file.getValue());
+                final String fileKey = rootKey + StorageUtil.getStoreKey(
+                        segments[0], segments[1], file.getValue(), checksum,
+                        compression.getName());
+                final long size = file.getValue().length();
+                final long time = file.getValue().lastModified();
+                LOGGER.info("Scheduling upload for file: {} | key: {}",
+                        file.getValue().getAbsolutePath(), fileKey);
+                uploader.upload(file.getValue(), fileKey, compression,
+                        uploaded -> entries.put(file.getKey(),
+                                BackupManifest.Entry.create(file.getKey(),
+                                        fileKey, size, checksum,
+                                        compression.getName(), time,
+                                        uploaded.getETag())));
+            }
+            uploader.await();
+        }
+        return files.keySet().stream().map(entries::get)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<BackupManifest> getIncrementalSegments(
+            BackupRestoreContext ctx) throws IOException, URISyntaxException {
+        final String key = getPrefixKey(ctx) + "/" + ctx.getNodeId();
+        try (StorageClients.Lease<AmazonS3Client> client =
+                     getAmazonS3Client(ctx)) {
+            final String bucketName = getBucketName(ctx);
+            final List<String> names = listSnapshotFiles(client.get(),
+                    bucketName,
+                    key + "/" + BackupManifest.INCREMENTAL_MANIFEST_DIRECTORY +
+                            "/")
+                    .keySet().stream()
+                    .map(segment -> segment.substring(key.length() + 1))
+                    .sorted()
+                    .collect(Collectors.toList());
+            final List<BackupManifest> segments = new ArrayList<>();
+            for (String name : names) {
+                segments.add(getManifest(client.get(), bucketName, key, name)
+                        .orElseThrow(() -> new IOException(
+                                "Incremental manifest segment removed: " +
+                                        name)));
+            }
+            return segments;
+        }
+    }
+
+    @Override
+    public void appendIncrementalSegment(BackupRestoreContext ctx,
+                                         long time,
+                                         BackupManifest segment)
+            throws IOException, URISyntaxException {
+        try (StorageClients.Lease<AmazonS3Client> client =
+                     getAmazonS3Client(ctx)) {
+            putManifest(client.get(), getBucketName(ctx),
+                    getPrefixKey(ctx) + "/" + ctx.getNodeId(),
+                    BackupManifest.getIncrementalSegmentName(time), segment);
+        }
+    }
+
+    @Override
+    public void download(BackupRestoreContext ctx,
+                         List<BackupManifest.Entry> files,
+                         BandwidthThrottle throttle)
+            throws IOException, URISyntaxException {
+        try (StorageClients.Lease<AmazonS3Client> client =
+                     getAmazonS3Client(ctx)) {
+            downloadFiles(ctx, client.get(), files, throttle);
+        }
+    }
+
+    private void downloadFiles(BackupRestoreContext ctx,
+                               AmazonS3Client amazonS3Client,
+                               List<BackupManifest.Entry> files,
+                               BandwidthThrottle throttle)
+            throws IOException, URISyntaxException {
+        final String bucketName = getBucketName(ctx);
+        final String nodeLocation = ctx.getLocalLocation() + File.separator +
+                ctx.getName() + File.separator + ctx.getNodeId();
+
+        try (ParallelDownloader downloader = new ParallelDownloader(
+                getPartSize(ctx), getConcurrency(ctx))) {
+            for (BackupManifest.Entry entry : files) {
+                downloadFile(
+                        new File(nodeLocation, entry.getPath()),
+                        bucketName,
+                        amazonS3Client,
+                        entry.getKey(),
+                        entry.getSize(),
+                        entry.getCompression(),
+                        entry.getChecksum(),
+                        downloader,
+                        throttle);
+            }
+
+            // Wait for all files and ranges scheduled above.
+            downloader.await();
+        }
+
+        LOGGER.info("Done downloading {} files for backup: {} | {}",
+                files.size(), ctx.getName(), throttle.getSummary());
+    }
+
+    private void downloadFile(File file,
                               String bucketName,
                               AmazonS3Client amazonS3Client,
                               String fileKey,
-                              Long sizeInBytes) throws IOException {
+                              Long sizeInBytes,
+                              String compression,
+                              String checksum,
+                              ParallelDownloader downloader,
+                              BandwidthThrottle throttle) throws IOException {
+        final String fileLocation = file.getAbsolutePath();
         LOGGER.info(
-                "DownloadFile | Local location: {} | Bucket Name: {} | fileKey: {} | Size in bytes: {}",
-                localLocation, bucketName, fileKey, sizeInBytes);
-
-            final String fileLocation = localLocation + File.separator + fileKey;
-            File file = new File(fileLocation);
+                "DownloadFile | Local location: {} | Bucket Name: {} | fileKey: {} | Size in bytes: {} | Compression: {}",
+                fileLocation, bucketName, fileKey, sizeInBytes, compression);
 
             // Only create parent directory once, if it doesn't exist.
             final File parentDir = new File(file.getParent());
@@ -298,27 +695,178 @@ public class S3StorageDriver implements BackupStorageDriver {
                 }
             }
 
-            amazonS3Client.getObject(
-              new GetObjectRequest(bucketName, fileKey),
-              file);
+            throttle.expect(sizeInBytes);
+            if (!NoCompressionDriver.NAME.equals(compression)) {
+                // Compressed offsets do not map to offsets in the file, so
+                // the object is streamed through the decompressor.
+                downloader.submit(() -> downloadCompressedFile(
+                        file, bucketName, amazonS3Client, fileKey, compression,
+                        checksum, throttle)).thenRun(throttle::transferred);
+                return;
+            }
+
+            // S3 ranges are inclusive of the last byte.
+            downloader.download(file, sizeInBytes, checksum, (offset, length) ->
+                    throttle.throttle(amazonS3Client.getObject(
+                            new GetObjectRequest(bucketName, fileKey)
+                                    .withRange(offset, offset + length - 1))
+                            .getObjectContent()))
+                    .thenRun(throttle::transferred);
+    }
+
+    private void downloadCompressedFile(File file,
+                                        String bucketName,
+                                        AmazonS3Client amazonS3Client,
+                                        String fileKey,
+                                        String compression,
+                                        String checksum,
+                                        BandwidthThrottle throttle) throws IOException {
+        try (S3Object object = amazonS3Client.getObject(bucketName, fileKey);
+             HashingOutputStream output = new HashingOutputStream(
+                     Hashing.crc32c(), new FileOutputStream(file))) {
+            // Prefer the compression recorded with the object itself.
+            final String objectCompression = object.getObjectMetadata()
+                    .getUserMetaDataOf(CompressionDriver.METADATA_KEY);
+            final CompressionDriver driver =
+                    CompressionDriverFactory.createCompressionDriver(
+                            objectCompression != null ?
+                                    objectCompression : compression,
+                            DEFAULT_COMPRESSION);
+            try (InputStream input = throttle.throttle(
+                    driver.decompress(object.getObjectContent()))) {
+                CompressionDriver.BUFFERS.copy(input, output);
+            }
+            ParallelDownloader.checkChecksum(file, checksum,
+                    output.hash().toString());
+        }
+    }
+
+    @Override
+    public List<BackupManifest.Entry> verify(BackupRestoreContext ctx,
+                                             List<BackupManifest.Entry> files)
+            throws IOException, URISyntaxException {
+        final String bucketName = getBucketName(ctx);
+        try (StorageClients.Lease<AmazonS3Client> client =
+                     getAmazonS3Client(ctx)) {
+            return StorageUtil.verify(files, getConcurrency(ctx),
+                    entry -> verifyFile(client.get(), bucketName, entry));
+        }
+    }
+
+    /**
+     * Checks the object of a file with a HEAD request.
+     */
+    private boolean verifyFile(AmazonS3Client amazonS3Client,
+                               String bucketName,
+                               BackupManifest.Entry entry) {
+        final ObjectMetadata metadata;
+        try {
+            metadata = amazonS3Client.getObjectMetadata(bucketName,
+                    entry.getKey());
+        } catch (AmazonS3Exception ex) {
+            if (ex.getStatusCode() == 404) {
+                LOGGER.error("Missing object for file: {} | bucket: {} | " +
+                        "key: {}", entry.getPath(), bucketName, entry.getKey());
+                return false;
+            }
+            throw ex;
+        }
+        if (!StorageUtil.isSameETag(entry.getETag(), metadata.getETag()) ||
+                (NoCompressionDriver.NAME.equals(entry.getCompression()) &&
+                        metadata.getContentLength() != entry.getSize())) {
+            LOGGER.error("Object differs for file: {} | key: {} | " +
+                            "ETag: {} | size: {} | stored ETag: {} | " +
+                            "stored size: {}", entry.getPath(), entry.getKey(),
+                    entry.getETag(), entry.getSize(), metadata.getETag(),
+                    metadata.getContentLength());
+            return false;
+        }
+        return true;
+    }
+
+    private Optional<BackupManifest> getManifest(AmazonS3Client amazonS3Client,
+                                                 String bucketName,
+                                                 String key) throws IOException {
+        return getManifest(amazonS3Client, bucketName, key,
+                BackupManifest.MANIFEST_NAME);
+    }
+
+    private Optional<BackupManifest> getManifest(AmazonS3Client amazonS3Client,
+                                                 String bucketName,
+                                                 String key,
+                                                 String name) throws IOException {
+        final String manifestKey = key + "/" + name;
+        try (S3Object object = amazonS3Client.getObject(bucketName, manifestKey)) {
+            return Optional.of(BackupManifest.JSON_SERIALIZER.deserialize(
+                    IOUtils.toByteArray(object.getObjectContent())));
+        } catch (AmazonS3Exception ex) {
+            if (ex.getStatusCode() == 404) {
+                LOGGER.info("No manifest found | bucket: {} | key: {}",
+                        bucketName, manifestKey);
+                return Optional.empty();
+            }
+            throw ex;
+        }
+    }
+
+    private void putManifest(AmazonS3Client amazonS3Client,
+                             String bucketName,
+                             String key,
+                             BackupManifest manifest) throws IOException {
+        putManifest(amazonS3Client, bucketName, key,
+                BackupManifest.MANIFEST_NAME, manifest);
+    }
+
+    private void putManifest(AmazonS3Client amazonS3Client,
+                             String bucketName,
+                             String key,
+                             String name,
+                             BackupManifest manifest) throws IOException {
+        final String manifestKey = key + "/" + name;
+        final byte[] bytes = BackupManifest.JSON_SERIALIZER.serialize(manifest);
+        final ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(bytes.length);
+        LOGGER.info("Uploading manifest | bucket: {} | key: {} | files: {}",
+                bucketName, manifestKey, manifest.getFiles().size());
+        amazonS3Client.putObject(bucketName, manifestKey,
+                new ByteArrayInputStream(bytes), metadata);
+    }
+
+    /**
+     * Checks whether an object exists with a HEAD request.
+     */
+    private boolean exists(AmazonS3Client amazonS3Client,
+                           String bucketName,
+                           String key) {
+        try {
+            amazonS3Client.getObjectMetadata(bucketName, key);
+            return true;
+        } catch (AmazonS3Exception ex) {
+            if (ex.getStatusCode() == 404) {
+                return false;
+            }
+            throw ex;
+        }
     }
 
     public Map<String, Long> listSnapshotFiles(AmazonS3Client amazonS3Client,
                                                String bucketName,
                                                String backupName) {
         Map<String, Long> snapshotFiles = new HashMap<>();
-        ObjectListing objectListing;
-        ListObjectsRequest listObjectsRequest = new ListObjectsRequest()
-                .withBucketName(bucketName)
-                .withPrefix(backupName);
-        do {
-            objectListing = amazonS3Client.listObjects(listObjectsRequest);
+        ObjectListing objectListing = amazonS3Client.listObjects(
+                new ListObjectsRequest()
+                        .withBucketName(bucketName)
+                        .withPrefix(backupName));
+        while (true) {
             for (S3ObjectSummary objectSummary : objectListing.getObjectSummaries()) {
                 snapshotFiles.put(objectSummary.getKey(),
                         objectSummary.getSize());
             }
-        } while (objectListing.isTruncated());
-
-        return snapshotFiles;
+            if (!objectListing.isTruncated()) {
+                return snapshotFiles;
+            }
+            // Continue from the marker of the previous page.
+            objectListing = amazonS3Client.listNextBatchOfObjects(objectListing);
+        }
     }
 }
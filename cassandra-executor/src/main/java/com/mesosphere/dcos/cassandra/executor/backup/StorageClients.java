@@ -0,0 +1,305 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * StorageClients caches the clients of external storage for the executor,
+ * so that the transfers of a task, and the tasks of successive backups and
+ * restores, reuse warm connection pools instead of creating a client, and
+ * a TLS handshake, for every call. Clients are keyed by endpoint and
+ * credentials. A client is leased for the duration of a transfer, and is
+ * closed once it has not been leased for the idle timeout.
+ */
+public class StorageClients implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            StorageClients.class);
+
+    /**
+     * The time after which a client that is not leased is closed.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT_MS =
+            TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Creates a client on a cache miss.
+     *
+     * @param <T> The type of the client.
+     */
+    public interface Factory<T> {
+        /**
+         * Creates a client.
+         *
+         * @return The new client, or null if it can not be created. Null is
+         * not cached.
+         * @throws IOException If the client can not be created.
+         */
+        T create() throws IOException;
+    }
+
+    /**
+     * Identifies a client by the kind of storage, its endpoint, the
+     * credentials and any options the client is configured with.
+     */
+    public static final class Key {
+        private final String storage;
+        private final String endpoint;
+        private final String account;
+        private final String secret;
+        private final String options;
+
+        public Key(final String storage,
+                   final String endpoint,
+                   final String account,
+                   final String secret,
+                   final String options) {
+            this.storage = storage;
+            this.endpoint = endpoint;
+            this.account = account;
+            this.secret = secret;
+            this.options = options;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key that = (Key) o;
+            return Objects.equals(storage, that.storage) &&
+                    Objects.equals(endpoint, that.endpoint) &&
+                    Objects.equals(account, that.account) &&
+                    Objects.equals(secret, that.secret) &&
+                    Objects.equals(options, that.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(storage, endpoint, account, secret, options);
+        }
+
+        /**
+         * Describes the client without its secret.
+         */
+        @Override
+        public String toString() {
+            return storage + "://" + account + "@" + endpoint +
+                    (options.isEmpty() ? "" : "?" + options);
+        }
+    }
+
+    /**
+     * A client leased from the cache. Closing the lease releases the client,
+     * it does not close it.
+     *
+     * @param <T> The type of the client.
+     */
+    public final class Lease<T> implements AutoCloseable {
+        private final Entry entry;
+        private final T client;
+        private boolean released = false;
+
+        private Lease(final Entry entry, final T client) {
+            this.entry = entry;
+            this.client = client;
+        }
+
+        /**
+         * Gets the leased client.
+         *
+         * @return The client, or null if it could not be created.
+         */
+        public T get() {
+            return client;
+        }
+
+        @Override
+        public void close() {
+            if (entry != null && !released) {
+                released = true;
+                release(entry);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final Key key;
+        private final Object client;
+        private final Runnable close;
+        private int leases = 0;
+        private long released;
+
+        private <T> Entry(final Key key,
+                          final T client,
+                          final Consumer<? super T> close) {
+            this.key = key;
+            this.client = client;
+            this.close = () -> close.accept(client);
+        }
+    }
+
+    private final long idleTimeoutMs;
+    private final Map<Key, Entry> clients = new HashMap<>();
+    private ScheduledExecutorService reaper = null;
+    private boolean closed = false;
+
+    /**
+     * Constructs a cache that closes clients after the default idle timeout.
+     */
+    public StorageClients() {
+        this(DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    /**
+     * Constructs a cache.
+     *
+     * @param idleTimeoutMs The time after which a client that is not leased
+     *                      is closed. If zero or negative, idle clients
+     *                      are only closed when the cache is.
+     */
+    public StorageClients(final long idleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    /**
+     * Leases a client, creating it if it is not cached.
+     *
+     * @param key     The key of the client.
+     * @param factory Creates the client on a cache miss.
+     * @param close   Closes the client once it is evicted.
+     * @param <T>     The type of the client.
+     * @return A lease of the client, which must be closed once the client is
+     * no longer used.
+     * @throws IOException If the client can not be created.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> Lease<T> lease(final Key key,
+                                           final Factory<T> factory,
+                                           final Consumer<? super T> close)
+            throws IOException {
+        if (closed) {
+            throw new IOException("Storage clients are closed");
+        }
+        Entry entry = clients.get(key);
+        if (entry == null) {
+            final T client = factory.create();
+            if (client == null) {
+                return new Lease<>(null, null);
+            }
+            LOGGER.info("Created storage client: {}", key);
+            entry = new Entry(key, client, close);
+            clients.put(key, entry);
+            startReaper();
+        }
+        entry.leases++;
+        return new Lease<>(entry, (T) entry.client);
+    }
+
+    /**
+     * Gets the number of cached clients.
+     *
+     * @return The number of clients, leased or idle.
+     */
+    public synchronized int size() {
+        return clients.size();
+    }
+
+    /**
+     * Closes the clients that have not been leased for the idle timeout.
+     *
+     * @return The number of clients closed.
+     */
+    synchronized int evictIdle() {
+        final long now = System.currentTimeMillis();
+        final List<Entry> evicted = new ArrayList<>();
+        final Iterator<Entry> entries = clients.values().iterator();
+        while (entries.hasNext()) {
+            final Entry entry = entries.next();
+            if (entry.leases == 0 && now - entry.released >= idleTimeoutMs) {
+                entries.remove();
+                evicted.add(entry);
+            }
+        }
+        evicted.forEach(this::close);
+        return evicted.size();
+    }
+
+    /**
+     * Closes all idle clients. Leased clients are closed when they are
+     * released.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+        final Iterator<Entry> entries = clients.values().iterator();
+        while (entries.hasNext()) {
+            final Entry entry = entries.next();
+            if (entry.leases == 0) {
+                entries.remove();
+                close(entry);
+            }
+        }
+    }
+
+    private synchronized void release(final Entry entry) {
+        entry.leases--;
+        entry.released = System.currentTimeMillis();
+        if (closed && entry.leases == 0) {
+            clients.remove(entry.key);
+            close(entry);
+        }
+    }
+
+    private void startReaper() {
+        if (reaper != null || idleTimeoutMs <= 0) {
+            return;
+        }
+        reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "storage-clients");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long period = Math.max(1, idleTimeoutMs / 2);
+        reaper.scheduleWithFixedDelay(this::evictIdle, period, period,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void close(final Entry entry) {
+        LOGGER.info("Closing idle storage client: {}", entry.key);
+        try {
+            entry.close.run();
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Failed to close storage client: {}", entry.key, ex);
+        }
+    }
+}
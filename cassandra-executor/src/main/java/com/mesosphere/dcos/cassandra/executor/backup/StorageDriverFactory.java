@@ -1,34 +1,56 @@
 package com.mesosphere.dcos.cassandra.executor.backup;
 
+import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupUploadTask;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupVerifyTask;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.DownloadSnapshotTask;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.RestoreSnapshotTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Selects the storage driver for uploading and downloading.  The external location should start
- * with "s3://xyz" or "azure://xyz".  The default is S3.
+ * with "s3://xyz", "azure://xyz" or "file:///path".  The default is S3.  The drivers share the
+ * executor's storage clients, so that successive tasks reuse warm connections.
  */
 public class StorageDriverFactory {
   private static final Logger LOGGER = LoggerFactory.getLogger(StorageDriverFactory.class);
+  private static final StorageClients CLIENTS = new StorageClients();
 
   public static BackupStorageDriver createStorageDriver(BackupUploadTask backupUploadTask) {
     final String externalLocation = backupUploadTask.getBackupRestoreContext().getExternalLocation();
     return getBackupStorageDriver(externalLocation);
   }
 
+  public static BackupStorageDriver createStorageDriver(BackupVerifyTask backupVerifyTask) {
+    final String externalLocation = backupVerifyTask.getBackupRestoreContext().getExternalLocation();
+    return getBackupStorageDriver(externalLocation);
+  }
+
   public static BackupStorageDriver createStorageDriver(DownloadSnapshotTask downloadSnapshotTask) {
     final String externalLocation = downloadSnapshotTask.getBackupRestoreContext().getExternalLocation();
     return getBackupStorageDriver(externalLocation);
   }
 
+  public static BackupStorageDriver createStorageDriver(RestoreSnapshotTask restoreSnapshotTask) {
+    final String externalLocation = restoreSnapshotTask.getBackupRestoreContext().getExternalLocation();
+    return getBackupStorageDriver(externalLocation);
+  }
+
+  public static BackupStorageDriver createStorageDriver(BackupRestoreContext backupRestoreContext) {
+    return getBackupStorageDriver(backupRestoreContext.getExternalLocation());
+  }
+
   private static BackupStorageDriver getBackupStorageDriver(String externalLocation) {
     if (StorageUtil.isAzure(externalLocation)) {
       LOGGER.info("Using the Azure Driver.");
-      return new AzureStorageDriver();
+      return new AzureStorageDriver(CLIENTS);
+    } else if (StorageUtil.isLocal(externalLocation)) {
+      LOGGER.info("Using the Local Driver.");
+      return new LocalStorageDriver();
     } else {
       LOGGER.info("Using the S3 Driver.");
-      return new S3StorageDriver();
+      return new S3StorageDriver(CLIENTS);
     }
   }
 }
@@ -1,30 +1,48 @@
 package com.mesosphere.dcos.cassandra.executor.backup;
 
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
+import com.mesosphere.dcos.cassandra.executor.compress.NoCompressionDriver;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 /**
  */
 public class StorageUtil {
 
+  /**
+   * The prefix, relative to the external location, of the content addressed
+   * store holding the SSTable components of incremental backups.
+   */
+  static final String STORE_PREFIX = "store/";
+
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
   private final Set<String> SKIP_KEYSPACES = ImmutableSet.of("system");
-  private final Map<String, List<String>> SKIP_COLUMN_FAMILIES = ImmutableMap.of();
 
   /**
-   * Filters unwanted keyspaces and column families
+   * Filters unwanted keyspaces and column families, and those not selected
+   * by the context.
    */
-  boolean isValidBackupDir(File ksDir, File cfDir, File bkDir) {
+  boolean isValidBackupDir(BackupRestoreContext ctx, File ksDir, File cfDir, File bkDir) {
     if (!bkDir.isDirectory() && !bkDir.exists()) {
       return false;
     }
@@ -36,8 +54,7 @@ public class StorageUtil {
     }
 
     String cfName = cfDir.getName();
-    if (SKIP_COLUMN_FAMILIES.containsKey(ksName)
-      && SKIP_COLUMN_FAMILIES.get(ksName).contains(cfName)) {
+    if (!ctx.isSelected(ksName, cfName)) {
       logger.debug("Skipping column family: {}", cfName);
       return false;
     }
@@ -45,6 +62,16 @@ public class StorageUtil {
     return true;
   }
 
+  /**
+   * Checks whether a file of a node's backup, by its path relative to the
+   * node's backup directory (i.e. keyspace/column family/file), belongs to
+   * a column family selected by the context.
+   */
+  static boolean isSelected(BackupRestoreContext ctx, String path) {
+    final String[] names = path.split("/", 3);
+    return names.length < 3 || ctx.isSelected(names[0], names[1]);
+  }
+
   Optional<File> getValidSnapshotDirectory(File snapshotsDir, String snapshotName) {
     File validSnapshot = null;
     for (File snapshotDir : snapshotsDir.listFiles())
@@ -58,6 +85,106 @@ public class StorageUtil {
     return Optional.of(validSnapshot);
   }
 
+  /**
+   * Gets the checksum used to address a file in the store.
+   */
+  static String getChecksum(File file) throws IOException {
+    return Files.hash(file, Hashing.crc32c()).toString();
+  }
+
+  /**
+   * Gets the key of a file in the content addressed store. SSTable
+   * components are immutable, so a file with the same name, size and
+   * checksum in the same column family is only stored once for each
+   * compression.
+   */
+  static String getStoreKey(String keyspaceName, String cfName, File file, String checksum, String compression) {
+    final String key = STORE_PREFIX + keyspaceName + "/" + cfName + "/" + file.getName()
+      + "." + file.length() + "." + checksum;
+    return NoCompressionDriver.NAME.equals(compression) ? key : key + "." + compression;
+  }
+
+  /**
+   * Gets the key, relative to the external location, under which the manifest of a node's latest incremental
+   * backup is copied. Keyspace names can't start with a dot, so it never collides with the key of a stored file.
+   */
+  static String getLatestManifestKey(String nodeId) {
+    return STORE_PREFIX + ".latest/" + nodeId;
+  }
+
+  /**
+   * Gets the store keys referenced by the manifest of a node's previous incremental backup. They are known to be
+   * stored, so the next incremental backup of the node skips them without a request per file, and only checks the
+   * store for the keys of files that are new since.
+   */
+  static Set<String> getStoredKeys(Optional<BackupManifest> previous) {
+    final Set<String> keys = new HashSet<>();
+    if (previous.isPresent()) {
+      for (BackupManifest.Entry entry : previous.get().getFiles()) {
+        keys.add(entry.getKey());
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * Checks the stored object of a file from its metadata.
+   */
+  interface ObjectCheck {
+    /**
+     * @return True if the object is stored as the entry of its file records it.
+     */
+    boolean check(BackupManifest.Entry entry) throws Exception;
+  }
+
+  /**
+   * Checks the stored objects of files concurrently, so that verifying a backup costs about as many round trips
+   * as there are files divided by the concurrency.
+   *
+   * @return The entries of the files whose objects are missing or differ from their entries.
+   */
+  static List<BackupManifest.Entry> verify(List<BackupManifest.Entry> files, int concurrency, ObjectCheck check)
+    throws IOException {
+    final ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+    try {
+      final List<CompletableFuture<Boolean>> checks = files.stream()
+        .map(entry -> CompletableFuture.supplyAsync(() -> {
+          try {
+            return check.check(entry);
+          } catch (Exception ex) {
+            throw new CompletionException(ex);
+          }
+        }, executor))
+        .collect(Collectors.toList());
+      final List<BackupManifest.Entry> failed = new ArrayList<>();
+      for (int i = 0; i < files.size(); i++) {
+        if (!checks.get(i).get()) {
+          failed.add(files.get(i));
+        }
+      }
+      return failed;
+    } catch (ExecutionException ex) {
+      throw new IOException("Unable to verify backup", ex.getCause());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Verification interrupted");
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Compares the ETag recorded when an object was uploaded with the ETag it is stored with. ETags are compared
+   * with or without their quotes, and objects without a recorded ETag always match.
+   */
+  static boolean isSameETag(String recorded, String stored) {
+    return recorded == null || StringUtils.strip(recorded, "\"").equals(StringUtils.strip(stored, "\""));
+  }
+
+  static boolean isLocal(String externalLocation) {
+    return StringUtils.isNotEmpty(externalLocation) && externalLocation.startsWith("file:");
+  }
+
   static boolean isAzure(String externalLocation) {
     // default to s3 (backward compatible)
     return StringUtils.isNotEmpty(externalLocation) && externalLocation.startsWith("azure:");
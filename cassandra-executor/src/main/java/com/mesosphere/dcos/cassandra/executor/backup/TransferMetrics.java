@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.TransferProgress;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * TransferMetrics exposes the progress of the executor's latest upload,
+ * download and restore as gauges, e.g. transfer.upload.bytes, so that
+ * transfers can be graphed and alerted on with the executor's other
+ * metrics. The gauges keep the progress of a finished transfer until the
+ * next transfer of the same operation starts.
+ */
+public class TransferMetrics implements MetricSet {
+
+    /**
+     * The operations whose transfers are measured.
+     */
+    public enum Operation {
+        UPLOAD,
+        DOWNLOAD,
+        RESTORE;
+
+        public String getName() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final Map<Operation, AtomicReference<TransferProgress>> progress =
+            new EnumMap<>(Operation.class);
+
+    public TransferMetrics() {
+        for (Operation operation : Operation.values()) {
+            progress.put(operation,
+                    new AtomicReference<>(TransferProgress.NONE));
+        }
+    }
+
+    /**
+     * Updates the progress of an operation.
+     *
+     * @param operation The operation.
+     * @param update    The progress of the operation's transfer.
+     */
+    public void update(final Operation operation,
+                       final TransferProgress update) {
+        progress.get(operation).set(update);
+    }
+
+    /**
+     * Gets the progress of an operation.
+     *
+     * @param operation The operation.
+     * @return The latest progress of the operation's transfer.
+     */
+    public TransferProgress get(final Operation operation) {
+        return progress.get(operation).get();
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        final Map<String, Metric> metrics = new HashMap<>();
+        for (Operation operation : Operation.values()) {
+            final String prefix = "transfer." + operation.getName() + ".";
+            gauge(metrics, prefix + "files", operation,
+                    TransferProgress::getFiles);
+            gauge(metrics, prefix + "total_files", operation,
+                    TransferProgress::getTotalFiles);
+            gauge(metrics, prefix + "bytes", operation,
+                    TransferProgress::getBytes);
+            gauge(metrics, prefix + "total_bytes", operation,
+                    TransferProgress::getTotalBytes);
+            gauge(metrics, prefix + "bytes_per_sec", operation,
+                    TransferProgress::getBytesPerSec);
+            gauge(metrics, prefix + "eta_seconds", operation,
+                    TransferProgress::getEtaSeconds);
+        }
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    private void gauge(final Map<String, Metric> metrics,
+                       final String name,
+                       final Operation operation,
+                       final ToDoubleFunction<TransferProgress> value) {
+        metrics.put(name, (Gauge<Double>) () ->
+                value.applyAsDouble(get(operation)));
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
+import com.mesosphere.dcos.cassandra.common.util.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * UploadJournal records the progress of a node's backup upload so that an
+ * upload that is retried after a failure resumes where the previous attempt
+ * stopped. It records the files that have been uploaded, with their
+ * manifest entries, and the upload id and finished parts of each multipart
+ * upload in progress.
+ *
+ * The journal is an append only file of JSON records, one per line, that
+ * lives on the node's persistent volume so it survives executor restarts.
+ * Appending a record is cheap regardless of the size of the backup, and a
+ * record that was only partially written when the executor died is ignored
+ * when the journal is replayed.
+ */
+public class UploadJournal implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            UploadJournal.class);
+
+    /**
+     * The directory, next to the data directory, that holds the journals.
+     */
+    public static final String JOURNAL_DIRECTORY = "backup-journal";
+
+    private static final String LOCATION = "location";
+    private static final String FILE = "file";
+    private static final String UPLOAD = "upload";
+    private static final String PART = "part";
+    private static final String UPLOADED = "uploaded";
+
+    /**
+     * MultipartUpload describes a multipart upload in progress.
+     */
+    public static class MultipartUpload {
+        private final String uploadId;
+        private final long partSize;
+        private final Map<Integer, String> parts = new HashMap<>();
+
+        MultipartUpload(final String uploadId, final long partSize) {
+            this.uploadId = uploadId;
+            this.partSize = partSize;
+        }
+
+        /**
+         * Gets the id of the upload.
+         *
+         * @return The id assigned to the upload by the storage service.
+         */
+        public String getUploadId() {
+            return uploadId;
+        }
+
+        /**
+         * Gets the part size of the upload.
+         *
+         * @return The size in bytes of each part but the last one.
+         */
+        public long getPartSize() {
+            return partSize;
+        }
+
+        /**
+         * Gets the finished parts.
+         *
+         * @return The etags of the finished parts indexed by part number.
+         */
+        public Map<Integer, String> getParts() {
+            return Collections.unmodifiableMap(parts);
+        }
+    }
+
+    /**
+     * Record is a single line of the journal.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    static class Record {
+
+        @JsonCreator
+        static Record create(
+                @JsonProperty("type") final String type,
+                @JsonProperty("key") final String key,
+                @JsonProperty("entry") final BackupManifest.Entry entry,
+                @JsonProperty("upload_id") final String uploadId,
+                @JsonProperty("part_size") final Long partSize,
+                @JsonProperty("part_number") final Integer partNumber,
+                @JsonProperty("etag") final String etag) {
+            return new Record(type, key, entry, uploadId, partSize,
+                    partNumber, etag);
+        }
+
+        @JsonProperty("type")
+        private final String type;
+        @JsonProperty("key")
+        private final String key;
+        @JsonProperty("entry")
+        private final BackupManifest.Entry entry;
+        @JsonProperty("upload_id")
+        private final String uploadId;
+        @JsonProperty("part_size")
+        private final Long partSize;
+        @JsonProperty("part_number")
+        private final Integer partNumber;
+        @JsonProperty("etag")
+        private final String etag;
+
+        private Record(final String type,
+                       final String key,
+                       final BackupManifest.Entry entry,
+                       final String uploadId,
+                       final Long partSize,
+                       final Integer partNumber,
+                       final String etag) {
+            this.type = type;
+            this.key = key;
+            this.entry = entry;
+            this.uploadId = uploadId;
+            this.partSize = partSize;
+            this.partNumber = partNumber;
+            this.etag = etag;
+        }
+    }
+
+    /**
+     * Gets the journal file of a node's backup.
+     *
+     * @param ctx The context of the backup.
+     * @return The journal file, which is stored on the same volume as the
+     * data directory.
+     */
+    public static File getJournalFile(final BackupRestoreContext ctx) {
+        final File volume = new File(ctx.getLocalLocation())
+                .getAbsoluteFile().getParentFile();
+        return new File(new File(volume, JOURNAL_DIRECTORY),
+                ctx.getName() + ".journal");
+    }
+
+    /**
+     * Opens the journal of an upload, replaying the records of any previous
+     * attempt. If the previous attempt uploaded to a different location its
+     * records are discarded.
+     *
+     * @param file     The journal file.
+     * @param location The location the files are uploaded to.
+     * @return The journal of the upload.
+     * @throws IOException If the journal can not be read or created.
+     */
+    public static UploadJournal open(final File file, final String location)
+            throws IOException {
+        final UploadJournal journal = new UploadJournal(file);
+        if (file.isFile()) {
+            journal.replay(location);
+        }
+        if (journal.location == null) {
+            Files.createDirectories(file.getParentFile().toPath());
+            journal.output = new FileOutputStream(file, false);
+            journal.append(Record.create(LOCATION, location, null, null, null,
+                    null, null));
+            journal.location = location;
+        } else {
+            journal.output = new FileOutputStream(file, true);
+        }
+        return journal;
+    }
+
+    /**
+     * Creates a journal that is not persisted, for uploads that are not
+     * resumed.
+     *
+     * @return A journal that only records progress in memory.
+     */
+    public static UploadJournal inMemory() {
+        return new UploadJournal(null);
+    }
+
+    private final File file;
+    private final Map<String, BackupManifest.Entry> files =
+            new LinkedHashMap<>();
+    private final Map<String, MultipartUpload> uploads = new HashMap<>();
+    private String location;
+    private OutputStream output;
+
+    private UploadJournal(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Indicates if the journal is persisted.
+     *
+     * @return True if the records survive the executor.
+     */
+    public boolean isPersistent() {
+        return file != null;
+    }
+
+    /**
+     * Gets an uploaded file.
+     *
+     * @param path The path of the file relative to the node's backup
+     *             directory.
+     * @return The manifest entry of the file, if it has been uploaded.
+     */
+    public synchronized Optional<BackupManifest.Entry> getFile(
+            final String path) {
+        return Optional.ofNullable(files.get(path));
+    }
+
+    /**
+     * Gets all uploaded files.
+     *
+     * @return The manifest entries of all uploaded files.
+     */
+    public synchronized Collection<BackupManifest.Entry> getFiles() {
+        return new ArrayList<>(files.values());
+    }
+
+    /**
+     * Records that a file has been uploaded. The record is written before
+     * the local copy of the file is removed.
+     *
+     * @param entry The manifest entry of the file.
+     */
+    public synchronized void fileUploaded(final BackupManifest.Entry entry) {
+        files.put(entry.getPath(), entry);
+        append(Record.create(FILE, entry.getKey(), entry, null, null, null,
+                null));
+    }
+
+    /**
+     * Gets the multipart upload in progress for a key.
+     *
+     * @param key The key of the object.
+     * @return The upload, if one was started and neither completed nor
+     * aborted.
+     */
+    public synchronized Optional<MultipartUpload> getMultipartUpload(
+            final String key) {
+        return Optional.ofNullable(uploads.get(key));
+    }
+
+    /**
+     * Records that a multipart upload has been initiated.
+     *
+     * @param key      The key of the object.
+     * @param uploadId The id of the upload.
+     * @param partSize The size in bytes of each part but the last one.
+     */
+    public synchronized void uploadStarted(final String key,
+                                           final String uploadId,
+                                           final long partSize) {
+        uploads.put(key, new MultipartUpload(uploadId, partSize));
+        append(Record.create(UPLOAD, key, null, uploadId, partSize, null,
+                null));
+    }
+
+    /**
+     * Records that a part of a multipart upload has been uploaded.
+     *
+     * @param key        The key of the object.
+     * @param uploadId   The id of the upload.
+     * @param partNumber The number of the part.
+     * @param etag       The etag of the part.
+     */
+    public synchronized void partUploaded(final String key,
+                                          final String uploadId,
+                                          final int partNumber,
+                                          final String etag) {
+        final MultipartUpload upload = uploads.get(key);
+        if (upload != null && upload.getUploadId().equals(uploadId)) {
+            upload.parts.put(partNumber, etag);
+            append(Record.create(PART, key, null, uploadId, null, partNumber,
+                    etag));
+        }
+    }
+
+    /**
+     * Records that a multipart upload has been completed or aborted.
+     *
+     * @param key The key of the object.
+     */
+    public synchronized void uploadFinished(final String key) {
+        if (uploads.remove(key) != null) {
+            append(Record.create(UPLOADED, key, null, null, null, null,
+                    null));
+        }
+    }
+
+    /**
+     * Closes and removes the journal once the upload is complete.
+     */
+    public synchronized void delete() {
+        close();
+        if (file != null && file.exists() && !file.delete()) {
+            LOGGER.warn("Failed to delete upload journal: {}",
+                    file.getAbsolutePath());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException ex) {
+                LOGGER.warn("Failed to close upload journal", ex);
+            }
+            output = null;
+        }
+    }
+
+    private void append(final Record record) {
+        if (output == null) {
+            return;
+        }
+        try {
+            output.write(JsonUtils.MAPPER.writeValueAsBytes(record));
+            output.write('\n');
+            output.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to write upload journal: " +
+                    file.getAbsolutePath(), ex);
+        }
+    }
+
+    private void replay(final String expectedLocation) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(),
+                StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final Record record;
+                try {
+                    record = JsonUtils.MAPPER.readValue(line, Record.class);
+                } catch (IOException ex) {
+                    // The last record may have been cut short.
+                    LOGGER.warn("Ignoring invalid upload journal record: {}",
+                            line);
+                    break;
+                }
+                if (location == null) {
+                    if (!LOCATION.equals(record.type) ||
+                            !expectedLocation.equals(record.key)) {
+                        LOGGER.info("Discarding upload journal for another " +
+                                "location: {}", file.getAbsolutePath());
+                        return;
+                    }
+                    location = record.key;
+                    continue;
+                }
+                apply(record);
+            }
+        }
+        LOGGER.info("Resuming upload from journal: {} | files: {} | " +
+                        "multipart uploads: {}", file.getAbsolutePath(),
+                files.size(), uploads.size());
+    }
+
+    private void apply(final Record record) {
+        switch (record.type) {
+            case FILE:
+                files.put(record.entry.getPath(), record.entry);
+                break;
+            case UPLOAD:
+                uploads.put(record.key,
+                        new MultipartUpload(record.uploadId, record.partSize));
+                break;
+            case PART:
+                final MultipartUpload upload = uploads.get(record.key);
+                if (upload != null &&
+                        upload.getUploadId().equals(record.uploadId)) {
+                    upload.parts.put(record.partNumber, record.etag);
+                }
+                break;
+            case UPLOADED:
+                uploads.remove(record.key);
+                break;
+            default:
+                LOGGER.warn("Ignoring unknown upload journal record: {}",
+                        record.type);
+        }
+    }
+}
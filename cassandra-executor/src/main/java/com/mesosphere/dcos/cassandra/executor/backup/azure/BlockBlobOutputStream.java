@@ -0,0 +1,197 @@
+package com.mesosphere.dcos.cassandra.executor.backup.azure;
+
+import com.mesosphere.dcos.cassandra.executor.compress.BufferPool;
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.blob.BlockEntry;
+import com.microsoft.azure.storage.blob.CloudBlockBlob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import static com.mesosphere.dcos.cassandra.executor.backup.azure.PageBlobOutputStream.ORIGINAL_SIZE_KEY;
+
+/**
+ * OutputStream for working with Azure BlockBlob.  Bytes are collected in fixed size
+ * blocks taken from a shared BufferPool.  Each full block is staged on the executor
+ * while the caller keeps writing, so several blocks are in flight at once, and the
+ * buffer goes back to the pool once its block is staged.  The size of the blob is
+ * simply the sum of its blocks, so unlike PageBlobOutputStream there is no padding
+ * and no resize request while writing.  The block list is committed, together with
+ * the metadata and the "originalSize" that PageBlobInputStream reads, once on close.
+ * A blob that is never committed is not visible and its staged blocks expire.
+ */
+public class BlockBlobOutputStream extends OutputStream {
+
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /**
+   * The maximum number of blocks in a committed block blob.
+   */
+  public static final int MAX_BLOCKS = 50000;
+
+  private final CloudBlockBlob blockBlob;
+  private final BufferPool buffers;
+  private final Executor executor;
+  private final Map<String, String> metadata;
+
+  private final List<BlockEntry> blocks = new ArrayList<>();
+  private final List<CompletableFuture<Void>> stagedBlocks = new ArrayList<>();
+
+  private byte[] buffer;
+  private int position = 0;
+  private long count = 0;
+  private boolean closed = false;
+
+  private volatile IOException lastError;
+
+  /**
+   * Creates an output stream that writes a new block blob.
+   *
+   * @param blockBlob The Azure blob reference to write.
+   * @param buffers   The pool the blocks are taken from.  The size of its buffers is
+   *                  the size of the blocks, and its bound limits the blocks in flight.
+   * @param executor  The executor that stages the blocks.
+   * @param metadata  Metadata stored in the blob, in addition to its original size,
+   *                  when the stream is closed.
+   */
+  public BlockBlobOutputStream(CloudBlockBlob blockBlob,
+    BufferPool buffers,
+    Executor executor,
+    Map<String, String> metadata) {
+    this.blockBlob = blockBlob;
+    this.buffers = buffers;
+    this.executor = executor;
+    this.metadata = metadata;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureBuffer();
+    buffer[position++] = (byte) b;
+    count += 1;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      ensureBuffer();
+      final int length = Math.min(len, buffer.length - position);
+      System.arraycopy(b, off, buffer, position, length);
+      position += length;
+      count += length;
+      off += length;
+      len -= length;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      if (position > 0) {
+        stageBlock();
+      }
+      awaitStagedBlocks();
+      checkStreamState();
+      commitBlockList();
+    } finally {
+      if (buffer != null) {
+        buffers.release(buffer);
+        buffer = null;
+      }
+    }
+  }
+
+  private void ensureBuffer() throws IOException {
+    checkStreamState();
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    if (buffer != null && position == buffer.length) {
+      stageBlock();
+    }
+    if (buffer == null) {
+      buffer = buffers.acquire();
+      position = 0;
+    }
+  }
+
+  private void stageBlock() throws IOException {
+    if (blocks.size() == MAX_BLOCKS) {
+      throw new AzureIOException("Blob " + blockBlob.getName() + " exceeds " + MAX_BLOCKS + " blocks of " +
+        buffers.getBufferSize() + " bytes");
+    }
+    final String blockId = getBlockId(blocks.size());
+    final byte[] block = buffer;
+    final int length = position;
+    blocks.add(new BlockEntry(blockId));
+    buffer = null;
+    position = 0;
+
+    stagedBlocks.add(CompletableFuture.runAsync(() -> {
+      try {
+        if (lastError == null) {
+          blockBlob.uploadBlock(blockId, new ByteArrayInputStream(block, 0, length), length);
+        }
+      } catch (StorageException | IOException e) {
+        logger.error("Unable to stage block: {} of blob: {}", blockId, blockBlob.getName(), e);
+        lastError = new AzureIOException("Unable to stage block " + blockId + " of blob " + blockBlob.getName(), e);
+      } finally {
+        buffers.release(block);
+      }
+    }, executor));
+  }
+
+  private void awaitStagedBlocks() throws IOException {
+    try {
+      CompletableFuture.allOf(stagedBlocks.toArray(new CompletableFuture[stagedBlocks.size()])).get();
+    } catch (ExecutionException e) {
+      throw new AzureIOException("Unable to stage blocks of blob " + blockBlob.getName(), e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted staging blocks of blob " + blockBlob.getName());
+    }
+  }
+
+  private void commitBlockList() throws AzureIOException {
+    final HashMap<String, String> blobMetadata = new HashMap<>(metadata);
+    blobMetadata.put(ORIGINAL_SIZE_KEY, count + "");
+    blockBlob.setMetadata(blobMetadata);
+
+    try {
+      blockBlob.commitBlockList(blocks);
+    } catch (StorageException e) {
+      throw new AzureIOException("Unable to commit block list", e);
+    }
+  }
+
+  private void checkStreamState() throws IOException {
+    if (lastError != null) {
+      throw lastError;
+    }
+  }
+
+  /**
+   * Block ids must be Base64 encoded and have the same length for all blocks of a blob.
+   */
+  static String getBlockId(int index) {
+    return Base64.getEncoder().encodeToString(
+      String.format("%08d", index).getBytes(StandardCharsets.UTF_8));
+  }
+}
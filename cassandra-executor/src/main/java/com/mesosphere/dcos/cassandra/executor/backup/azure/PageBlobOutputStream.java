@@ -5,7 +5,9 @@ import com.microsoft.azure.storage.blob.CloudPageBlob;
 
 import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * OutputStream for working with Azure PageBlob.  PageBlobs stores everything in 512 pages.
@@ -25,6 +27,7 @@ public class PageBlobOutputStream extends FilterOutputStream {
   public static final String ORIGINAL_SIZE_KEY = "originalSize";
 
   private CloudPageBlob pageBlob;
+  private final Map<String, String> metadata;
 
   private long count = 0;
   private long currentPageSize = PAGE_BLOB_PAGE_SIZE;
@@ -46,10 +49,28 @@ public class PageBlobOutputStream extends FilterOutputStream {
     this(pageBlob, PAGE_BLOB_PAGE_SIZE);
   }
 
+  /**
+   * Creates an output stream filter built on top of the Azure
+   * PageBlob output stream, that stores additional metadata with the blob.
+   *
+   * @param pageBlob The Azure blob reference.
+   * @param metadata Metadata stored in the blob, in addition to its original size,
+   *                 when the stream is closed.
+   */
+  public PageBlobOutputStream(CloudPageBlob pageBlob, Map<String, String> metadata) throws StorageException {
+    this(pageBlob, PAGE_BLOB_PAGE_SIZE, metadata);
+  }
+
   public PageBlobOutputStream(CloudPageBlob pageBlob, long initialPageSize) throws StorageException {
+    this(pageBlob, initialPageSize, Collections.emptyMap());
+  }
+
+  public PageBlobOutputStream(CloudPageBlob pageBlob, long initialPageSize, Map<String, String> metadata)
+    throws StorageException {
     // to set the size we need to calc but that can't be the first line when we need to construct the super:(
     super(pageBlob.openWriteNew(initialPageSize));
     this.pageBlob = pageBlob;
+    this.metadata = metadata;
     resize(initialPageSize);
   }
 
@@ -114,7 +135,7 @@ public class PageBlobOutputStream extends FilterOutputStream {
   }
 
   private HashMap<String, String> fileMetaData(long count) {
-    HashMap<String, String> metadata = new HashMap<>(1);
+    HashMap<String, String> metadata = new HashMap<>(this.metadata);
     metadata.put(ORIGINAL_SIZE_KEY, count + "");
     return metadata;
   }
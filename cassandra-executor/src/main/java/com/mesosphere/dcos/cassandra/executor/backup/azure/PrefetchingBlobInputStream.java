@@ -0,0 +1,219 @@
+package com.mesosphere.dcos.cassandra.executor.backup.azure;
+
+import com.mesosphere.dcos.cassandra.executor.compress.BufferPool;
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.blob.CloudBlob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import static com.mesosphere.dcos.cassandra.executor.backup.azure.PageBlobOutputStream.ORIGINAL_SIZE_KEY;
+
+/**
+ * InputStream for reading an Azure blob, of either type, ahead of the reader.  The blob is
+ * fetched in ranges of the size of the buffers of a shared BufferPool, and up to readAhead
+ * ranges are in flight on the executor while the caller decompresses and writes the ranges
+ * already received.  Like PageBlobInputStream, it stops at the "originalSize" metadata, so
+ * the padding of page blobs is never read.
+ * A stream only waits for a buffer when it holds none, further ranges are prefetched only
+ * when the pool has a buffer to spare, so streams sharing a pool never wait on each other.
+ */
+public class PrefetchingBlobInputStream extends InputStream {
+
+  private static final Logger logger = LoggerFactory.getLogger(PrefetchingBlobInputStream.class);
+
+  /**
+   * Reads a range of a blob into a buffer.
+   */
+  @FunctionalInterface
+  interface RangeReader {
+    /**
+     * Reads the range into the start of the buffer.
+     *
+     * @return The number of bytes read.
+     */
+    int read(long offset, int length, byte[] buffer) throws StorageException, IOException;
+  }
+
+  private static class Range {
+    private final byte[] buffer;
+    private final int length;
+
+    private Range(byte[] buffer, int length) {
+      this.buffer = buffer;
+      this.length = length;
+    }
+  }
+
+  private final String name;
+  private final RangeReader reader;
+  private final long length;
+  private final BufferPool buffers;
+  private final Executor executor;
+  private final int readAhead;
+
+  private final Deque<CompletableFuture<Range>> inFlight = new ArrayDeque<>();
+  private long nextOffset = 0;
+  private Range current;
+  private int position = 0;
+  private boolean closed = false;
+
+  /**
+   * Opens a stream over a blob.  The attributes of the blob must have been downloaded.
+   *
+   * @param blob      The Azure blob reference to read.
+   * @param buffers   The pool the ranges are read into.  The size of its buffers is the size
+   *                  of the ranges.
+   * @param executor  The executor that fetches the ranges.
+   * @param readAhead The maximum number of ranges in flight.
+   * @return A stream over the original contents of the blob.
+   */
+  public static PrefetchingBlobInputStream open(CloudBlob blob, BufferPool buffers, Executor executor,
+    int readAhead) {
+    return new PrefetchingBlobInputStream(blob.getName(),
+      (offset, length, buffer) -> blob.downloadRangeToByteArray(offset, (long) length, buffer, 0),
+      getOriginalSize(blob), buffers, executor, readAhead);
+  }
+
+  PrefetchingBlobInputStream(String name, RangeReader reader, long length, BufferPool buffers,
+    Executor executor, int readAhead) {
+    this.name = name;
+    this.reader = reader;
+    this.length = length;
+    this.buffers = buffers;
+    this.executor = executor;
+    this.readAhead = Math.max(1, readAhead);
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!ensureRange()) {
+      return -1;
+    }
+    return current.buffer[position++] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!ensureRange()) {
+      return -1;
+    }
+    final int count = Math.min(len, current.length - position);
+    System.arraycopy(current.buffer, position, b, off, count);
+    position += count;
+    return count;
+  }
+
+  @Override
+  public int available() {
+    return (current == null) ? 0 : current.length - position;
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    releaseCurrent();
+    // Ranges still in flight own their buffers until they complete.
+    for (CompletableFuture<Range> range : inFlight) {
+      range.thenAccept(completed -> buffers.release(completed.buffer));
+    }
+    inFlight.clear();
+  }
+
+  private boolean ensureRange() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    if (current != null && position < current.length) {
+      return true;
+    }
+    releaseCurrent();
+    prefetch();
+    final CompletableFuture<Range> next = inFlight.poll();
+    if (next == null) {
+      return false;
+    }
+    current = await(next);
+    position = 0;
+    prefetch();
+    return true;
+  }
+
+  private void prefetch() throws IOException {
+    while (nextOffset < length && inFlight.size() < readAhead) {
+      // Only a stream that holds no buffer waits for one.
+      final byte[] buffer = (current == null && inFlight.isEmpty()) ? buffers.acquire() : buffers.tryAcquire();
+      if (buffer == null) {
+        return;
+      }
+      final long offset = nextOffset;
+      final int size = (int) Math.min(buffer.length, length - offset);
+      nextOffset += size;
+      inFlight.add(CompletableFuture.supplyAsync(() -> fetch(offset, size, buffer), executor));
+    }
+  }
+
+  private Range fetch(long offset, int size, byte[] buffer) {
+    logger.debug("Fetching range: blob: {} | offset: {} | size: {}", name, offset, size);
+    try {
+      final int read = reader.read(offset, size, buffer);
+      if (read != size) {
+        throw new EOFException("Unexpected end of blob: " + name + " at offset: " + (offset + read));
+      }
+      return new Range(buffer, size);
+    } catch (StorageException | IOException e) {
+      buffers.release(buffer);
+      throw new CompletionException(new AzureIOException("Unable to read blob " + name + " at offset " + offset, e));
+    } catch (RuntimeException e) {
+      buffers.release(buffer);
+      throw e;
+    }
+  }
+
+  private static Range await(CompletableFuture<Range> range) throws IOException {
+    try {
+      return range.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new AzureIOException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted reading blob");
+    }
+  }
+
+  private void releaseCurrent() {
+    if (current != null) {
+      buffers.release(current.buffer);
+      current = null;
+    }
+  }
+
+  private static long getOriginalSize(CloudBlob blob) {
+    final String size = blob.getMetadata().get(ORIGINAL_SIZE_KEY);
+    try {
+      return Long.parseLong(size);
+    } catch (NumberFormatException e) {
+      logger.error("Size meta-data missing for blob: {}, reading the whole blob.", blob.getName());
+      return blob.getProperties().getLength();
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.executor.backup.s3;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * FileRangeInputStream reads a range of bytes of a file. It supports mark
+ * and reset by seeking in the file, so the S3 client can retry a request
+ * without buffering the content of the range in memory.
+ *
+ * The CRC32C checksum of the range is computed as it is read. Bytes that
+ * are read again after a reset are only hashed once.
+ */
+class FileRangeInputStream extends InputStream {
+    private final RandomAccessFile file;
+    private final long end;
+    private final Hasher hasher = Hashing.crc32c().newHasher();
+    private long position;
+    private long mark;
+    private long hashed;
+    private Integer checksum;
+
+    /**
+     * Constructs a new FileRangeInputStream.
+     *
+     * @param file   The file to read.
+     * @param offset The offset of the first byte of the range.
+     * @param length The number of bytes in the range.
+     * @throws IOException If the file can not be opened.
+     */
+    FileRangeInputStream(final File file,
+                         final long offset,
+                         final long length) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.end = offset + length;
+        this.position = offset;
+        this.mark = offset;
+        this.hashed = offset;
+    }
+
+    /**
+     * Gets the checksum of the range.
+     *
+     * @return The CRC32C checksum of the bytes of the range.
+     * @throws IllegalStateException If the range has not been read in full.
+     */
+    int getChecksum() {
+        if (hashed != end) {
+            throw new IllegalStateException("Range has not been read");
+        }
+        if (checksum == null) {
+            checksum = hasher.hash().asInt();
+        }
+        return checksum;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] b = new byte[1];
+        return (read(b, 0, 1) == 1) ? (b[0] & 0xff) : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= end) {
+            return -1;
+        }
+        file.seek(position);
+        final int read = file.read(b, off, (int) Math.min(len, end - position));
+        if (read > 0) {
+            if (position <= hashed && hashed < position + read) {
+                final int from = (int) (hashed - position);
+                hasher.putBytes(b, off + from, read - from);
+                hashed = position + read;
+            }
+            position += read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) {
+        final long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        mark = position;
+    }
+
+    @Override
+    public synchronized void reset() {
+        position = mark;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
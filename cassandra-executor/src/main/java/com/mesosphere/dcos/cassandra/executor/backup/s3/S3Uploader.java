@@ -0,0 +1,798 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.executor.backup.s3;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.mesosphere.dcos.cassandra.executor.backup.BandwidthThrottle;
+import com.mesosphere.dcos.cassandra.executor.backup.Crc32c;
+import com.mesosphere.dcos.cassandra.executor.backup.UploadJournal;
+import com.mesosphere.dcos.cassandra.executor.compress.BufferPool;
+import com.mesosphere.dcos.cassandra.executor.compress.CompressionDriver;
+import com.mesosphere.dcos.cassandra.executor.compress.NoCompressionDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * S3Uploader uploads files to an S3 bucket using a bounded pool of worker
+ * threads that share a single AmazonS3Client. Files smaller than the part
+ * size are sent with a single PUT. Larger files are split into parts that
+ * are read directly from their offsets in the file and sent concurrently
+ * using the multipart upload API, so that one large SSTable does not
+ * serialize the upload of a node.
+ *
+ * Compressed files are streamed through the CompressionDriver into pooled,
+ * fixed size buffers. Each full buffer is uploaded as a part while
+ * compression continues, so no temporary copy of the file is written and
+ * the memory used is bounded by the pool. Files too large to fit in the
+ * maximum number of parts of that size use larger parts, from pools with
+ * fewer buffers.
+ *
+ * All file contents are read through a BandwidthThrottle, which limits the
+ * rate at which the node uploads and measures its throughput.
+ *
+ * The upload id and finished parts of each multipart upload are recorded in
+ * an UploadJournal. If the journal is persistent, a failed multipart upload
+ * is left open rather than aborted, and a later attempt with the same
+ * journal only uploads the parts that are missing.
+ *
+ * The CRC32C checksum of each file is computed as its contents are read for
+ * the upload. The checksums of the parts of a multipart upload are combined
+ * into the checksum of the file, so the file is not read a second time.
+ */
+public class S3Uploader implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            S3Uploader.class);
+
+    /**
+     * The minimum size of any part but the last one of a multipart upload.
+     */
+    public static final long MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    /**
+     * The maximum number of parts in a multipart upload.
+     */
+    public static final int MAX_PARTS = 10000;
+
+    /**
+     * The maximum size of the in memory parts of compressed uploads, unless
+     * a file is large enough to need larger parts.
+     */
+    public static final int MAX_COMPRESSED_PART_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * The size of the largest in memory part of a compressed upload.
+     */
+    static final int MAX_COMPRESSED_BUFFER_SIZE = 1024 * 1024 * 1024;
+
+    private final AmazonS3Client amazonS3Client;
+    private final String bucketName;
+    private final long partSize;
+    private final ExecutorService executor;
+    private final ExecutorService compressors;
+    private final BufferPool buffers;
+    // Maps part size -> pool of the parts of compressed uploads
+    private final ConcurrentMap<Integer, BufferPool> partBuffers =
+            new ConcurrentHashMap<>();
+    private final int concurrency;
+    private final BandwidthThrottle throttle;
+    private final UploadJournal journal;
+    private final List<CompletableFuture<Void>> uploads = new ArrayList<>();
+
+    /**
+     * Uploaded describes a file once it has been uploaded.
+     */
+    public static final class Uploaded {
+        private final String checksum;
+        private final String etag;
+
+        Uploaded(final String checksum, final String etag) {
+            this.checksum = checksum;
+            this.etag = etag;
+        }
+
+        /**
+         * Gets the checksum of the file.
+         *
+         * @return The CRC32C checksum of the contents of the file, as they
+         * were read for the upload.
+         */
+        public String getChecksum() {
+            return checksum;
+        }
+
+        /**
+         * Gets the ETag of the object.
+         *
+         * @return The ETag that S3 assigned to the object.
+         */
+        public String getETag() {
+            return etag;
+        }
+    }
+
+    /**
+     * A part of a multipart upload, with the checksum of its contents.
+     */
+    private static final class Part {
+        private final PartETag etag;
+        private final int checksum;
+        private final long size;
+
+        Part(final PartETag etag, final int checksum, final long size) {
+            this.etag = etag;
+            this.checksum = checksum;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Constructs a new S3Uploader.
+     *
+     * @param amazonS3Client The client used for all requests.
+     * @param bucketName     The bucket the files are uploaded to.
+     * @param partSize       The size in bytes of each part of a multipart
+     *                       upload.
+     * @param concurrency    The maximum number of requests that are in
+     *                       flight at once.
+     */
+    public S3Uploader(final AmazonS3Client amazonS3Client,
+                      final String bucketName,
+                      final long partSize,
+                      final int concurrency) {
+        this(amazonS3Client, bucketName, partSize, concurrency,
+                BandwidthThrottle.create(0), UploadJournal.inMemory());
+    }
+
+    /**
+     * Constructs a new S3Uploader that limits its bandwidth.
+     *
+     * @param amazonS3Client The client used for all requests.
+     * @param bucketName     The bucket the files are uploaded to.
+     * @param partSize       The size in bytes of each part of a multipart
+     *                       upload.
+     * @param concurrency    The maximum number of requests that are in
+     *                       flight at once.
+     * @param throttle       The throttle that file contents are read
+     *                       through.
+     * @param journal        The journal that multipart uploads are
+     *                       recorded in and resumed from.
+     */
+    public S3Uploader(final AmazonS3Client amazonS3Client,
+                      final String bucketName,
+                      final long partSize,
+                      final int concurrency,
+                      final BandwidthThrottle throttle,
+                      final UploadJournal journal) {
+        this.throttle = throttle;
+        this.journal = journal;
+        this.amazonS3Client = amazonS3Client;
+        this.bucketName = bucketName;
+        this.partSize = Math.max(partSize, MIN_PART_SIZE);
+        this.concurrency = concurrency;
+        this.executor = Executors.newFixedThreadPool(concurrency);
+        this.compressors = Executors.newFixedThreadPool(concurrency);
+        // Each compressor fills one buffer while the others are uploaded.
+        this.buffers = new BufferPool(
+                (int) Math.min(this.partSize, MAX_COMPRESSED_PART_SIZE),
+                2 * concurrency);
+    }
+
+    /**
+     * Gets the size of the parts used to upload a file. The configured part
+     * size is increased if the file would otherwise exceed the maximum
+     * number of parts.
+     *
+     * @param fileLength The length of the file in bytes.
+     * @param partSize   The configured part size in bytes.
+     * @return The part size in bytes to use for the file.
+     */
+    static long getPartSize(long fileLength, long partSize) {
+        final long minimum = (fileLength + MAX_PARTS - 1) / MAX_PARTS;
+        return Math.max(partSize, minimum);
+    }
+
+    /**
+     * Gets the size of the in memory parts used to upload a compressed
+     * file. The compressed length is not known until the file is
+     * compressed, so the part size is doubled until the file fits in the
+     * maximum number of parts even if it does not compress, allowing for the
+     * worst case expansion of the codecs (a sixth for Snappy).
+     *
+     * @param fileLength The length of the file in bytes.
+     * @param partSize   The part size in bytes of files that are not large
+     *                   enough to need larger parts.
+     * @return The part size in bytes to use for the file.
+     */
+    static int getCompressedPartSize(long fileLength, int partSize) {
+        final long maximum = fileLength + fileLength / 6;
+        long size = partSize;
+        while (size * MAX_PARTS < maximum &&
+                size < MAX_COMPRESSED_BUFFER_SIZE) {
+            size *= 2;
+        }
+        return (int) Math.min(size, MAX_COMPRESSED_BUFFER_SIZE);
+    }
+
+    /**
+     * Gets the pool of the parts of compressed uploads with a part size. The
+     * pools of larger parts, which are only used by very large files, hold
+     * fewer buffers, so that each pool holds about as much memory as the
+     * pool of the default part size, but at least two buffers, one being
+     * filled while the other is uploaded.
+     */
+    private BufferPool getPartBuffers(final int partSize) {
+        if (partSize == buffers.getBufferSize()) {
+            return buffers;
+        }
+        return partBuffers.computeIfAbsent(partSize, size -> new BufferPool(
+                size, (int) Math.max(2,
+                (2L * concurrency * buffers.getBufferSize()) / size)));
+    }
+
+    /**
+     * Schedules the upload of a file. The upload proceeds asynchronously,
+     * call {@link #await()} to wait for all scheduled uploads.
+     *
+     * @param file       The file to upload.
+     * @param key        The key of the object in the bucket.
+     * @param onUploaded Invoked once the file has been uploaded successfully.
+     * @return A future that completes when the file has been uploaded and
+     * onUploaded has returned.
+     */
+    public CompletableFuture<Void> upload(final File file,
+                                          final String key,
+                                          final Runnable onUploaded) {
+        return upload(file, key, new NoCompressionDriver(), onUploaded);
+    }
+
+    /**
+     * Schedules the upload of a file compressed with a CompressionDriver.
+     * The name of the driver is stored in the object's user metadata. The
+     * upload proceeds asynchronously, call {@link #await()} to wait for all
+     * scheduled uploads.
+     *
+     * @param file        The file to upload.
+     * @param key         The key of the object in the bucket.
+     * @param compression The driver used to compress the file.
+     * @param onUploaded  Invoked once the file has been uploaded
+     *                    successfully.
+     * @return A future that completes when the file has been uploaded and
+     * onUploaded has returned.
+     */
+    public CompletableFuture<Void> upload(final File file,
+                                          final String key,
+                                          final CompressionDriver compression,
+                                          final Runnable onUploaded) {
+        return upload(file, key, compression, uploaded -> onUploaded.run());
+    }
+
+    /**
+     * Schedules the upload of a file compressed with a CompressionDriver.
+     * The name of the driver is stored in the object's user metadata. The
+     * upload proceeds asynchronously, call {@link #await()} to wait for all
+     * scheduled uploads.
+     *
+     * @param file        The file to upload.
+     * @param key         The key of the object in the bucket.
+     * @param compression The driver used to compress the file.
+     * @param onUploaded  Invoked with the checksum of the file and the ETag
+     *                    of the object once the file has been uploaded
+     *                    successfully.
+     * @return A future that completes when the file has been uploaded and
+     * onUploaded has returned.
+     */
+    public synchronized CompletableFuture<Void> upload(
+            final File file,
+            final String key,
+            final CompressionDriver compression,
+            final Consumer<Uploaded> onUploaded) {
+        throttle.expect(file.length());
+        final CompletableFuture<Uploaded> upload;
+        if (NoCompressionDriver.NAME.equals(compression.getName())) {
+            upload = (file.length() <= partSize) ?
+                    CompletableFuture.supplyAsync(() -> putObject(file, key),
+                            executor) :
+                    uploadMultipart(file, key);
+        } else {
+            upload = CompletableFuture.supplyAsync(
+                    () -> uploadCompressed(file, key, compression),
+                    compressors);
+        }
+        uploads.add(upload.thenAccept(uploaded -> {
+            onUploaded.accept(uploaded);
+            throttle.transferred();
+        }));
+        return uploads.get(uploads.size() - 1);
+    }
+
+    /**
+     * Waits for all scheduled uploads to complete.
+     *
+     * @throws IOException If any upload failed or the wait is interrupted.
+     */
+    public void await() throws IOException {
+        final CompletableFuture<Void> all;
+        synchronized (this) {
+            all = CompletableFuture.allOf(
+                    uploads.toArray(new CompletableFuture[uploads.size()]));
+        }
+        try {
+            all.get();
+        } catch (ExecutionException ex) {
+            throw new IOException("Upload to bucket " + bucketName +
+                    " failed", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Upload interrupted");
+        }
+    }
+
+    @Override
+    public void close() {
+        compressors.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private Uploaded putObject(final File file, final String key) {
+        LOGGER.info("Uploading file: {} | bucket: {} | key: {}",
+                file.getAbsolutePath(), bucketName, key);
+        final ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(file.length());
+        try (FileRangeInputStream range =
+                     new FileRangeInputStream(file, 0, file.length());
+             InputStream input = throttle.throttle(range)) {
+            final String etag = amazonS3Client.putObject(bucketName, key,
+                    input, metadata).getETag();
+            return new Uploaded(Crc32c.toString(range.getChecksum()), etag);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private CompletableFuture<Uploaded> uploadMultipart(final File file,
+                                                        final String key) {
+        final long length = file.length();
+        final long size = getPartSize(length, partSize);
+
+        return CompletableFuture.supplyAsync(() -> {
+            final Optional<UploadJournal.MultipartUpload> resumed =
+                    getResumableUpload(key, size);
+            if (resumed.isPresent()) {
+                LOGGER.info("Resuming multipart upload for file: {} | " +
+                                "bucket: {} | key: {} | finished parts: {}",
+                        file.getAbsolutePath(), bucketName, key,
+                        resumed.get().getParts().size());
+                return resumed.get();
+            }
+            LOGGER.info("Initiating multipart upload for file: {} | " +
+                            "bucket: {} | key: {} | part size: {}",
+                    file.getAbsolutePath(), bucketName, key, size);
+            return startUpload(key, size, new InitiateMultipartUploadRequest(
+                    bucketName, key));
+        }, executor).thenCompose(upload -> {
+            final String uploadId = upload.getUploadId();
+            final Map<Integer, String> finished = upload.getParts();
+            final List<CompletableFuture<Part>> parts = new ArrayList<>();
+            int partNumber = 1;
+            for (long offset = 0; offset < length; offset += size) {
+                final long partLength = Math.min(size, length - offset);
+                if (finished.containsKey(partNumber)) {
+                    parts.add(checksumPart(file, partNumber,
+                            finished.get(partNumber), offset, partLength));
+                    partNumber++;
+                    continue;
+                }
+                parts.add(uploadPart(file, key, uploadId, partNumber++,
+                        offset, partLength));
+            }
+            return CompletableFuture.allOf(
+                    parts.toArray(new CompletableFuture[parts.size()]))
+                    .thenApply(done -> {
+                        final List<Part> uploaded = parts.stream()
+                                .map(CompletableFuture::join)
+                                .collect(Collectors.toList());
+                        final String etag = amazonS3Client
+                                .completeMultipartUpload(
+                                        new CompleteMultipartUploadRequest(
+                                                bucketName,
+                                                key,
+                                                uploadId,
+                                                getETags(uploaded)))
+                                .getETag();
+                        journal.uploadFinished(key);
+                        return new Uploaded(getChecksum(uploaded), etag);
+                    })
+                    .whenComplete((result, error) -> {
+                        if (error != null) {
+                            failed(key, uploadId, error);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Gets the multipart upload of a previous attempt that can be resumed.
+     * An upload that used a different part size can not be resumed and is
+     * aborted.
+     */
+    private Optional<UploadJournal.MultipartUpload> getResumableUpload(
+            final String key,
+            final long size) {
+        final Optional<UploadJournal.MultipartUpload> upload =
+                journal.getMultipartUpload(key);
+        if (upload.isPresent() && upload.get().getPartSize() != size) {
+            abort(key, upload.get().getUploadId());
+            journal.uploadFinished(key);
+            return Optional.empty();
+        }
+        return upload;
+    }
+
+    private UploadJournal.MultipartUpload startUpload(
+            final String key,
+            final long size,
+            final InitiateMultipartUploadRequest request) {
+        final String uploadId = amazonS3Client.initiateMultipartUpload(request)
+                .getUploadId();
+        journal.uploadStarted(key, uploadId, size);
+        return journal.getMultipartUpload(key).get();
+    }
+
+    /**
+     * Handles the failure of a multipart upload. If the journal is
+     * persistent the upload is kept so that the next attempt can resume it,
+     * unless S3 no longer knows the upload.
+     */
+    private void failed(final String key,
+                        final String uploadId,
+                        final Throwable error) {
+        final Throwable cause = (error instanceof CompletionException &&
+                error.getCause() != null) ? error.getCause() : error;
+        final boolean unknownUpload = cause instanceof AmazonS3Exception &&
+                ((AmazonS3Exception) cause).getStatusCode() == 404;
+        if (journal.isPersistent() && !unknownUpload) {
+            LOGGER.warn("Multipart upload failed, keeping it to resume: " +
+                    "key: {} | upload id: {}", key, uploadId);
+            return;
+        }
+        abort(key, uploadId);
+        journal.uploadFinished(key);
+    }
+
+    private static List<PartETag> getETags(final List<Part> parts) {
+        return parts.stream().map(part -> part.etag)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Combines the checksums of the parts of a file into the checksum of the
+     * file.
+     */
+    private static String getChecksum(final List<Part> parts) {
+        int checksum = 0;
+        for (Part part : parts) {
+            checksum = Crc32c.combine(checksum, part.checksum, part.size);
+        }
+        return Crc32c.toString(checksum);
+    }
+
+    /**
+     * Reads a part that was uploaded by a previous attempt, only to
+     * checksum it.
+     */
+    private CompletableFuture<Part> checksumPart(final File file,
+                                                 final int partNumber,
+                                                 final String etag,
+                                                 final long offset,
+                                                 final long size) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (FileRangeInputStream input =
+                         new FileRangeInputStream(file, offset, size)) {
+                ByteStreams.copy(input, ByteStreams.nullOutputStream());
+                return new Part(new PartETag(partNumber, etag),
+                        input.getChecksum(), size);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }, executor);
+    }
+
+    private CompletableFuture<Part> uploadPart(final File file,
+                                               final String key,
+                                               final String uploadId,
+                                               final int partNumber,
+                                               final long offset,
+                                               final long size) {
+        return CompletableFuture.supplyAsync(() -> {
+            LOGGER.debug("Uploading part: {} | key: {} | offset: {} | " +
+                    "size: {}", partNumber, key, offset, size);
+            try (FileRangeInputStream range =
+                         new FileRangeInputStream(file, offset, size);
+                 InputStream input = throttle.throttle(range)) {
+                final PartETag etag = amazonS3Client.uploadPart(
+                        new UploadPartRequest()
+                                .withBucketName(bucketName)
+                                .withKey(key)
+                                .withUploadId(uploadId)
+                                .withPartNumber(partNumber)
+                                .withInputStream(input)
+                                .withPartSize(size))
+                        .getPartETag();
+                journal.partUploaded(key, uploadId, partNumber,
+                        etag.getETag());
+                return new Part(etag, range.getChecksum(), size);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }, executor);
+    }
+
+    private Uploaded uploadCompressed(final File file,
+                                      final String key,
+                                      final CompressionDriver compression) {
+        LOGGER.info("Uploading file: {} | bucket: {} | key: {} | " +
+                        "compression: {}",
+                file.getAbsolutePath(), bucketName, key,
+                compression.getName());
+        final ObjectMetadata metadata = new ObjectMetadata();
+        metadata.addUserMetadata(CompressionDriver.METADATA_KEY,
+                compression.getName());
+        final BufferPool pool = getPartBuffers(getCompressedPartSize(
+                file.length(), buffers.getBufferSize()));
+        PartOutputStream parts = null;
+        // The checksum is of the file contents, before they are compressed.
+        try (HashingInputStream hashing = new HashingInputStream(
+                Hashing.crc32c(), new FileInputStream(file));
+             InputStream input = throttle.throttle(hashing)) {
+            parts = new PartOutputStream(key, metadata, pool);
+            final OutputStream output = compression.compress(parts);
+            buffers.copy(input, output);
+            // Flushes the codec and completes the upload.
+            output.close();
+            return new Uploaded(hashing.hash().toString(), parts.getETag());
+        } catch (IOException | RuntimeException ex) {
+            if (parts != null) {
+                parts.abort(ex);
+            }
+            throw (ex instanceof IOException) ?
+                    new UncheckedIOException((IOException) ex) :
+                    (RuntimeException) ex;
+        }
+    }
+
+    /**
+     * PartOutputStream uploads the data written to it as an S3 object. Data
+     * is collected in pooled buffers. When a buffer is full a multipart
+     * upload is initiated, if necessary, and the buffer is uploaded as a
+     * part by the worker threads. Objects that fit in a single buffer are
+     * uploaded with a single PUT when the stream is closed.
+     *
+     * Compression is deterministic, so when a journaled upload is resumed
+     * the file is compressed again and only the parts that are missing are
+     * sent.
+     */
+    private class PartOutputStream extends OutputStream {
+        private final String key;
+        private final ObjectMetadata metadata;
+        private final BufferPool pool;
+        private final List<CompletableFuture<PartETag>> parts =
+                new ArrayList<>();
+        private volatile String uploadId;
+        private String etag;
+        private Map<Integer, String> finished;
+        private byte[] buffer;
+        private int position = 0;
+        private boolean closed = false;
+
+        PartOutputStream(final String key,
+                         final ObjectMetadata metadata,
+                         final BufferPool pool) throws IOException {
+            this.key = key;
+            this.metadata = metadata;
+            this.pool = pool;
+            this.buffer = pool.acquire();
+        }
+
+        /**
+         * Gets the ETag of the object.
+         *
+         * @return The ETag that S3 assigned to the object, once the stream
+         * is closed.
+         */
+        String getETag() {
+            return etag;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            while (len > 0) {
+                if (position == buffer.length) {
+                    uploadBuffer();
+                    buffer = pool.acquire();
+                    position = 0;
+                }
+                final int count = Math.min(len, buffer.length - position);
+                System.arraycopy(b, off, buffer, position, count);
+                position += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        /**
+         * Uploads the remaining data and completes the object.
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (uploadId == null) {
+                try {
+                    metadata.setContentLength(position);
+                    etag = amazonS3Client.putObject(bucketName, key,
+                            new ByteArrayInputStream(buffer, 0, position),
+                            metadata).getETag();
+                } finally {
+                    releaseBuffer();
+                }
+                return;
+            }
+            uploadBuffer();
+            final List<PartETag> etags = new ArrayList<>(parts.size());
+            try {
+                for (CompletableFuture<PartETag> part : parts) {
+                    etags.add(part.get());
+                }
+            } catch (ExecutionException ex) {
+                throw new IOException("Failed to upload part of key: " +
+                        key, ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Upload interrupted");
+            }
+            etag = amazonS3Client.completeMultipartUpload(
+                    new CompleteMultipartUploadRequest(bucketName, key,
+                            uploadId, etags)).getETag();
+            journal.uploadFinished(key);
+            uploadId = null;
+        }
+
+        /**
+         * Discards the data written and fails the multipart upload, if any.
+         *
+         * @param error The cause of the failure.
+         */
+        void abort(final Throwable error) {
+            closed = true;
+            releaseBuffer();
+            if (uploadId != null) {
+                failed(key, uploadId, error);
+                uploadId = null;
+            }
+        }
+
+        private void releaseBuffer() {
+            if (buffer != null) {
+                pool.release(buffer);
+                buffer = null;
+            }
+        }
+
+        private void uploadBuffer() throws IOException {
+            if (parts.size() == MAX_PARTS) {
+                throw new IOException("Compressed key: " + key +
+                        " exceeds " + MAX_PARTS + " parts");
+            }
+            if (uploadId == null) {
+                final UploadJournal.MultipartUpload upload =
+                        getResumableUpload(key, buffer.length)
+                                .orElseGet(() -> startUpload(key, buffer.length,
+                                        new InitiateMultipartUploadRequest(
+                                                bucketName, key, metadata)));
+                uploadId = upload.getUploadId();
+                finished = upload.getParts();
+            }
+            final String id = uploadId;
+            final byte[] part = buffer;
+            final int size = position;
+            final int partNumber = parts.size() + 1;
+            // The part's buffer is released by the worker once it is sent.
+            buffer = null;
+            if (finished.containsKey(partNumber)) {
+                LOGGER.debug("Skipping finished part: {} | key: {}",
+                        partNumber, key);
+                pool.release(part);
+                parts.add(CompletableFuture.completedFuture(
+                        new PartETag(partNumber, finished.get(partNumber))));
+                return;
+            }
+            parts.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    LOGGER.debug("Uploading part: {} | key: {} | size: {}",
+                            partNumber, key, size);
+                    final PartETag etag = amazonS3Client.uploadPart(
+                            new UploadPartRequest()
+                                    .withBucketName(bucketName)
+                                    .withKey(key)
+                                    .withUploadId(id)
+                                    .withPartNumber(partNumber)
+                                    .withInputStream(new ByteArrayInputStream(
+                                            part, 0, size))
+                                    .withPartSize(size))
+                            .getPartETag();
+                    journal.partUploaded(key, id, partNumber, etag.getETag());
+                    return etag;
+                } finally {
+                    pool.release(part);
+                }
+            }, executor));
+        }
+    }
+
+    private void abort(final String key, final String uploadId) {
+        try {
+            LOGGER.warn("Aborting multipart upload: key: {} | upload id: {}",
+                    key, uploadId);
+            amazonS3Client.abortMultipartUpload(
+                    new AbortMultipartUploadRequest(bucketName, key, uploadId));
+        } catch (Exception ex) {
+            LOGGER.error("Failed to abort multipart upload: key = " + key, ex);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.executor.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * BufferPool recycles fixed size byte arrays so that streaming transfers do
+ * not allocate a new buffer for every file or part. A bounded pool also
+ * limits the memory held by in flight transfers: acquire blocks until a
+ * buffer is released.
+ */
+public class BufferPool {
+
+    private final int bufferSize;
+    private final Semaphore available;
+    private final Queue<byte[]> free = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Constructs a new BufferPool. Buffers are allocated on first use.
+     *
+     * @param bufferSize The size of each buffer in bytes.
+     * @param maxBuffers The maximum number of buffers acquired at once. If
+     *                   zero or negative, the number of buffers is not
+     *                   bounded.
+     */
+    public BufferPool(final int bufferSize, final int maxBuffers) {
+        this.bufferSize = bufferSize;
+        this.available = (maxBuffers > 0) ? new Semaphore(maxBuffers) : null;
+    }
+
+    /**
+     * Gets the size of the buffers.
+     *
+     * @return The size of each buffer in bytes.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Acquires a buffer, blocking until one is available.
+     *
+     * @return A buffer of the pool's buffer size. Its contents are undefined.
+     * @throws InterruptedIOException If interrupted while waiting.
+     */
+    public byte[] acquire() throws InterruptedIOException {
+        if (available != null) {
+            try {
+                available.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(
+                        "Interrupted waiting for a buffer");
+            }
+        }
+        final byte[] buffer = free.poll();
+        return (buffer != null) ? buffer : new byte[bufferSize];
+    }
+
+    /**
+     * Acquires a buffer if one is available without blocking.
+     *
+     * @return A buffer of the pool's buffer size, or null if all buffers are
+     * acquired.
+     */
+    public byte[] tryAcquire() {
+        if (available != null && !available.tryAcquire()) {
+            return null;
+        }
+        final byte[] buffer = free.poll();
+        return (buffer != null) ? buffer : new byte[bufferSize];
+    }
+
+    /**
+     * Returns a buffer to the pool.
+     *
+     * @param buffer A buffer previously acquired from this pool.
+     */
+    public void release(final byte[] buffer) {
+        free.offer(buffer);
+        if (available != null) {
+            available.release();
+        }
+    }
+
+    /**
+     * Copies all bytes from source to destination using a pooled buffer.
+     * Neither stream is closed.
+     *
+     * @param source      The stream to read.
+     * @param destination The stream to write.
+     * @return The number of bytes copied.
+     * @throws IOException If reading or writing fails.
+     */
+    public long copy(final InputStream source, final OutputStream destination)
+            throws IOException {
+        final byte[] buffer = acquire();
+        try {
+            long count = 0;
+            int read;
+            while ((read = source.read(buffer)) != -1) {
+                destination.write(buffer, 0, read);
+                count += read;
+            }
+            return count;
+        } finally {
+            release(buffer);
+        }
+    }
+}
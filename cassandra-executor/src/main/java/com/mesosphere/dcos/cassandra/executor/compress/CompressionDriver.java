@@ -21,24 +21,85 @@ import java.io.OutputStream;
 
 /**
  * CompressionDriver is the interface to all Compression implementations that
- * compress and decompress snapshots during a Cassandra backup.
+ * compress and decompress snapshots during a Cassandra backup. Drivers are
+ * streaming codecs, so files are compressed on their way to, and
+ * decompressed on their way from, the backup location without temporary
+ * copies.
  */
 public interface CompressionDriver {
+
+    /**
+     * The key of the object metadata that records the name of the driver
+     * used to compress the object.
+     */
+    String METADATA_KEY = "compression";
+
+    /**
+     * The size of the blocks compressed by the block based drivers.
+     */
+    int BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * The buffers shared by all drivers to copy between streams.
+     */
+    BufferPool BUFFERS = new BufferPool(BLOCK_SIZE, 0);
+
     /**
-     * Compresses the file/directory denoted by {@code sourcePath}, and produces an archive at {@code destinationPath}.
+     * Gets the name of the driver.
      *
-     * @param sourcePath      Source path to compress.
-     * @param destinationPath Destination path.
+     * @return The name recorded with compressed objects, used to select the
+     * driver that decompresses them.
      */
-    void compress(String sourcePath, String destinationPath) throws IOException;
+    String getName();
 
     /**
-     * Decompresses the file/directory from source and stores it at destination.
-     * @param source The InputStream containing the source data to compress.
+     * Wraps an OutputStream so that data written to it is compressed.
+     *
+     * @param destination The stream the compressed data is written to.
+     * @return A stream that compresses the data written to it. Closing it
+     * closes destination.
+     * @throws IOException If the stream can not be created.
+     */
+    OutputStream compress(OutputStream destination) throws IOException;
+
+    /**
+     * Wraps an InputStream so that data read from it is decompressed.
+     *
+     * @param source The stream containing the compressed data.
+     * @return A stream of the decompressed data. Closing it closes source.
+     * @throws IOException If the stream can not be created.
+     */
+    InputStream decompress(InputStream source) throws IOException;
+
+    /**
+     * Compresses source and writes it to destination.
+     *
+     * @param source      The InputStream containing the data to compress.
+     * @param destination The OutputStream the compressed output is written
+     *                    to. It is closed when compression completes.
+     * @throws IOException If compression fails.
+     */
+    default void compress(InputStream source, OutputStream destination)
+            throws IOException {
+        try (OutputStream output = compress(destination)) {
+            BUFFERS.copy(source, output);
+        }
+    }
+
+    /**
+     * Decompresses source and writes it to destination.
+     *
+     * @param source      The InputStream containing the source data to
+     *                    decompress. It is closed when decompression
+     *                    completes.
      * @param destination The OutputStream containing the destination to
      *                    write the decompressed output.
      * @throws IOException If decompression fails.
      */
-    void decompress(InputStream source, OutputStream destination)
-            throws IOException;
+    default void decompress(InputStream source, OutputStream destination)
+            throws IOException {
+        try (InputStream input = decompress(source)) {
+            BUFFERS.copy(input, destination);
+        }
+    }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.executor.compress;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * CompressionDriverFactory selects the CompressionDriver for a codec name.
+ */
+public class CompressionDriverFactory {
+
+    private CompressionDriverFactory() {
+    }
+
+    /**
+     * Creates the CompressionDriver with the given name.
+     *
+     * @param name          The name of the driver. One of none, snappy, lz4
+     *                      or zstd.
+     * @param defaultDriver The driver returned if name is empty.
+     * @return The CompressionDriver for name.
+     * @throws IllegalArgumentException If name is not a known driver.
+     */
+    public static CompressionDriver createCompressionDriver(
+            final String name,
+            final CompressionDriver defaultDriver) {
+        if (StringUtils.isBlank(name)) {
+            return defaultDriver;
+        }
+        switch (name.toLowerCase()) {
+            case NoCompressionDriver.NAME:
+                return new NoCompressionDriver();
+            case SnappyCompressionDriver.NAME:
+                return new SnappyCompressionDriver();
+            case LZ4CompressionDriver.NAME:
+                return new LZ4CompressionDriver();
+            case ZstdCompressionDriver.NAME:
+                return new ZstdCompressionDriver();
+            default:
+                throw new IllegalArgumentException(
+                        "Unknown compression: " + name);
+        }
+    }
+}
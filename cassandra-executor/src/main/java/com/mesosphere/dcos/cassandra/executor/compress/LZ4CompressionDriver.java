@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.executor.compress;
+
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * LZ4CompressionDriver implements CompressionDriver to implement LZ4
+ * compression for Cassandra Backup and Restore. LZ4 trades a lower
+ * compression ratio for very fast compression and decompression.
+ */
+public class LZ4CompressionDriver implements CompressionDriver {
+
+    public static final String NAME = "lz4";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public OutputStream compress(final OutputStream destination) {
+        return new LZ4BlockOutputStream(destination, BLOCK_SIZE);
+    }
+
+    @Override
+    public InputStream decompress(final InputStream source) {
+        return new LZ4BlockInputStream(source);
+    }
+}
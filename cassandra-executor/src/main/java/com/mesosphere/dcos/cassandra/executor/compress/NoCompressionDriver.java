@@ -0,0 +1,43 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.executor.compress;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * NoCompressionDriver implements CompressionDriver for objects that hold
+ * the contents of the files as is.
+ */
+public class NoCompressionDriver implements CompressionDriver {
+
+    public static final String NAME = "none";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public OutputStream compress(final OutputStream destination) {
+        return destination;
+    }
+
+    @Override
+    public InputStream decompress(final InputStream source) {
+        return source;
+    }
+}
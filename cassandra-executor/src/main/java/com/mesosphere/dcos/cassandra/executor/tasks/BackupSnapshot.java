@@ -15,8 +15,10 @@
  */
 package com.mesosphere.dcos.cassandra.executor.tasks;
 
+import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupSnapshotTask;
 import com.mesosphere.dcos.cassandra.executor.CassandraDaemonProcess;
+import com.mesosphere.dcos.cassandra.executor.backup.IncrementalShipper;
 import org.apache.mesos.ExecutorDriver;
 import org.apache.mesos.Protos;
 import org.apache.mesos.executor.ExecutorTask;
@@ -26,6 +28,7 @@ import org.slf4j.LoggerFactory;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 /**
  * Implements the execution of BackupSnapshot by executing the snapshot
@@ -38,6 +41,7 @@ public class BackupSnapshot implements ExecutorTask {
     private CassandraDaemonProcess daemon;
     private ExecutorDriver driver;
     private BackupSnapshotTask cassandraTask;
+    private IncrementalShipper shipper;
 
     private void sendStatus(ExecutorDriver driver,
                             Protos.TaskState state,
@@ -53,13 +57,17 @@ public class BackupSnapshot implements ExecutorTask {
      * @param daemon The CassandraDaemonProcess used to perform the snapshot.
      * @param cassandraTask The CassandraTask that will be executed by the
      *                      BackupSnapshot.
+     * @param shipper The IncrementalShipper that is reset before a
+     *                continuous backup's snapshot.
      */
     public BackupSnapshot(ExecutorDriver driver,
                           CassandraDaemonProcess daemon,
-                          BackupSnapshotTask cassandraTask) {
+                          BackupSnapshotTask cassandraTask,
+                          IncrementalShipper shipper) {
         this.daemon = daemon;
         this.driver = driver;
         this.cassandraTask = cassandraTask;
+        this.shipper = shipper;
     }
 
     @Override
@@ -68,20 +76,55 @@ public class BackupSnapshot implements ExecutorTask {
             // Send TASK_RUNNING
             sendStatus(driver, Protos.TaskState.TASK_RUNNING, "Started taking snapshot");
 
-            final String snapshotName = this.cassandraTask.getBackupRestoreContext().getName();
+            final BackupRestoreContext context =
+                    this.cassandraTask.getBackupRestoreContext();
+            final String snapshotName = context.getName();
+            if (context.isContinuous()) {
+                // The SSTables linked so far are part of the snapshot, only
+                // the ones flushed after it are shipped.
+                shipper.reset(context);
+            }
             final List<String> nonSystemKeyspaces = daemon.getNonSystemKeySpaces();
-            LOGGER.info("Started taking snapshot for non system keyspaces: {}", nonSystemKeyspaces);
+            final boolean selective = !context.getKeyspaces().isEmpty() ||
+                    !context.getColumnFamilies().isEmpty();
+
+            // Only the selected keyspaces are snapshotted whole, and only
+            // the selected tables of the others, so that the snapshot only
+            // flushes and links the data that is backed up.
+            final List<String> keyspaces = selective ?
+                    nonSystemKeyspaces.stream()
+                            .filter(context.getKeyspaces()::contains)
+                            .collect(Collectors.toList()) :
+                    nonSystemKeyspaces;
+            final List<String> columnFamilies = context.getColumnFamilies()
+                    .stream()
+                    .filter(columnFamily -> {
+                        final int dot = columnFamily.indexOf('.');
+                        final String keyspace = (dot < 0) ? columnFamily :
+                                columnFamily.substring(0, dot);
+                        return nonSystemKeyspaces.contains(keyspace) &&
+                                !keyspaces.contains(keyspace);
+                    })
+                    .collect(Collectors.toList());
+            LOGGER.info("Started taking snapshot for keyspaces: {}, " +
+                    "column families: {}", keyspaces, columnFamilies);
 
-            for (String keyspace : nonSystemKeyspaces) {
-                LOGGER.info("Taking snapshot for keyspace: {}", keyspace);
-                daemon.takeSnapShot(snapshotName, keyspace);
+            // Snapshot all keyspaces in one call so that they are flushed
+            // and linked together, rather than one keyspace at a time.
+            if (!keyspaces.isEmpty()) {
+                daemon.takeSnapShot(snapshotName, keyspaces);
+            }
+            if (!columnFamilies.isEmpty()) {
+                daemon.takeColumnFamilySnapShot(snapshotName, columnFamilies);
             }
 
             // Send TASK_FINISHED
             sendStatus(driver, Protos.TaskState.TASK_FINISHED,
-                    "Finished taking snapshot for non system keyspaces: " + nonSystemKeyspaces);
+                    "Finished taking snapshot for keyspaces: " + keyspaces +
+                            ", column families: " + columnFamilies);
         } catch (Throwable t) {
             LOGGER.error("Snapshot failed",t);
+            shipper.cancel(cassandraTask.getBackupRestoreContext());
             sendStatus(driver, Protos.TaskState.TASK_FAILED, t.getMessage());
         }
     }
@@ -3,12 +3,15 @@ package com.mesosphere.dcos.cassandra.executor.tasks;
 import com.mesosphere.dcos.cassandra.common.tasks.CassandraTask;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupSnapshotTask;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupUploadTask;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupVerifyTask;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.DownloadSnapshotTask;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.RestoreSnapshotTask;
 import com.mesosphere.dcos.cassandra.common.tasks.cleanup.CleanupTask;
 import com.mesosphere.dcos.cassandra.common.tasks.repair.RepairTask;
 import com.mesosphere.dcos.cassandra.executor.CassandraDaemonProcess;
+import com.mesosphere.dcos.cassandra.executor.backup.IncrementalShipper;
 import com.mesosphere.dcos.cassandra.executor.backup.StorageDriverFactory;
+import com.mesosphere.dcos.cassandra.executor.backup.TransferMetrics;
 import org.apache.mesos.ExecutorDriver;
 import org.apache.mesos.Protos;
 import org.apache.mesos.executor.ExecutorTask;
@@ -17,6 +20,7 @@ import org.apache.mesos.executor.ExecutorTaskFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -30,10 +34,22 @@ public class CassandraTaskFactory implements ExecutorTaskFactory {
     private final ScheduledExecutorService scheduledExecutorService =
             Executors.newScheduledThreadPool(DEFAULT_CORE_THREAD_POOL_SIZE);
     private final ExecutorDriver driver;
+    private final IncrementalShipper shipper =
+            new IncrementalShipper(scheduledExecutorService);
+    private final TransferMetrics metrics;
     private CassandraDaemonProcess cassandra;
 
     public CassandraTaskFactory(ExecutorDriver driver) {
+       this(driver, new TransferMetrics());
+    }
+
+    public CassandraTaskFactory(ExecutorDriver driver, TransferMetrics metrics) {
        this.driver = driver;
+       this.metrics = metrics;
+    }
+
+    public IncrementalShipper getShipper() {
+        return shipper;
     }
 
     public CassandraDaemonProcess getCassandra() {
@@ -54,6 +70,9 @@ public class CassandraTaskFactory implements ExecutorTaskFactory {
             case CASSANDRA_DAEMON:
                 try {
                     cassandra = CassandraDaemonProcess.create(scheduledExecutorService, taskInfo, driver);
+                    // Continue shipping the SSTables of a continuous backup
+                    // across restarts of the executor.
+                    shipper.resume(new File(cassandra.getTask().getVolumePath()));
                     return cassandra;
                 } catch (IOException e) {
                     throw new ExecutorTaskException(e);
@@ -71,25 +90,39 @@ public class CassandraTaskFactory implements ExecutorTaskFactory {
 
         switch (cassandraTask.getType()) {
             case BACKUP_SNAPSHOT:
-                return new BackupSnapshot(driver, cassandra, (BackupSnapshotTask) cassandraTask);
+                return new BackupSnapshot(driver, cassandra, (BackupSnapshotTask) cassandraTask, shipper);
             case BACKUP_UPLOAD:
                 return new UploadSnapshot(
                     driver,
                     cassandra,
                     (BackupUploadTask) cassandraTask,
                     StorageDriverFactory.createStorageDriver(
-                            (BackupUploadTask) cassandraTask));
+                            (BackupUploadTask) cassandraTask),
+                    shipper,
+                    scheduledExecutorService,
+                    metrics);
+            case BACKUP_VERIFY:
+                return new VerifyBackup(
+                        driver,
+                        (BackupVerifyTask) cassandraTask,
+                        StorageDriverFactory.createStorageDriver(
+                                (BackupVerifyTask) cassandraTask));
             case SNAPSHOT_DOWNLOAD:
                 return new DownloadSnapshot(
                         driver,
                         (DownloadSnapshotTask) cassandraTask,
                         StorageDriverFactory.createStorageDriver(
-                                (DownloadSnapshotTask) cassandraTask));
+                                (DownloadSnapshotTask) cassandraTask),
+                        scheduledExecutorService,
+                        metrics);
             case SNAPSHOT_RESTORE:
                 return new RestoreSnapshot(
                         driver,
+                        cassandra,
                         (RestoreSnapshotTask) cassandraTask,
-                        cassandra.getTask().getConfig().getVersion());
+                        StorageDriverFactory.createStorageDriver(
+                                (RestoreSnapshotTask) cassandraTask),
+                        metrics);
             case CLEANUP:
                 return new Cleanup(driver, cassandra, (CleanupTask) cassandraTask);
             case REPAIR:
@@ -17,7 +17,10 @@ package com.mesosphere.dcos.cassandra.executor.tasks;
 
 import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.DownloadSnapshotTask;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.TransferProgress;
 import com.mesosphere.dcos.cassandra.executor.backup.BackupStorageDriver;
+import com.mesosphere.dcos.cassandra.executor.backup.BandwidthThrottle;
+import com.mesosphere.dcos.cassandra.executor.backup.TransferMetrics;
 import org.apache.mesos.ExecutorDriver;
 import org.apache.mesos.Protos;
 import org.apache.mesos.executor.ExecutorTask;
@@ -26,11 +29,13 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Optional;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * DownloadSnapshot implements the execution of the DownloadSnapshotTask by
  * delegating download of the snapshotted tables to a BackupStorageDriver
- * implementation.
+ * implementation. The progress of the download is reported in TASK_RUNNING
+ * status updates.
  */
 public class DownloadSnapshot implements ExecutorTask {
     private static final Logger LOGGER = LoggerFactory.getLogger(
@@ -39,6 +44,8 @@ public class DownloadSnapshot implements ExecutorTask {
     private BackupRestoreContext context;
     private DownloadSnapshotTask cassandraTask;
     private BackupStorageDriver backupStorageDriver;
+    private ScheduledExecutorService executor;
+    private TransferMetrics metrics;
 
     private void sendStatus(ExecutorDriver driver,
                             Protos.TaskState state,
@@ -48,6 +55,15 @@ public class DownloadSnapshot implements ExecutorTask {
         driver.sendStatusUpdate(status);
     }
 
+    private void sendStatus(ExecutorDriver driver,
+                            Protos.TaskState state,
+                            String message,
+                            TransferProgress progress) {
+        Protos.TaskStatus status = cassandraTask.createStatus(state,
+            Optional.of(message)).getTaskStatus(progress);
+        driver.sendStatusUpdate(status);
+    }
+
     /**
      * Constructs a DownloadSnapshot.
      *
@@ -55,12 +71,19 @@ public class DownloadSnapshot implements ExecutorTask {
      * @param task                The DownloadSnapshotTask that will be executed.
      * @param backupStorageDriver The BackupStorageDriver that implements
      *                            downloading the snapshot.
+     * @param executor            The executor that reports the progress of
+     *                            the download.
+     * @param metrics             The metrics the progress is recorded in.
      */
     public DownloadSnapshot(ExecutorDriver driver,
                             DownloadSnapshotTask task,
-                            BackupStorageDriver backupStorageDriver) {
+                            BackupStorageDriver backupStorageDriver,
+                            ScheduledExecutorService executor,
+                            TransferMetrics metrics) {
         this.driver = driver;
         this.backupStorageDriver = backupStorageDriver;
+        this.executor = executor;
+        this.metrics = metrics;
         this.cassandraTask = task;
         this.context = task.getBackupRestoreContext();
     }
@@ -74,13 +97,49 @@ public class DownloadSnapshot implements ExecutorTask {
             sendStatus(driver, Protos.TaskState.TASK_RUNNING,
                     "Started downloading snapshot");
 
-            backupStorageDriver.download(context);
+            if (context.getStagingBudgetMb() > 0) {
+                // The restore downloads each column family just before it
+                // is loaded.
+                sendStatus(driver, Protos.TaskState.TASK_FINISHED,
+                        "Skipped downloading snapshot: column families are " +
+                                "downloaded while restoring, staging budget: " +
+                                context.getStagingBudgetMb() + " MB");
+                return;
+            }
+
+            final BandwidthThrottle throttle =
+                    BandwidthThrottle.create(context.getThrottleMbPerSec());
+            final TransferProgress progress;
+            try (ProgressReporter reporter = ProgressReporter.start(
+                    executor,
+                    metrics,
+                    TransferMetrics.Operation.DOWNLOAD,
+                    throttle::getProgress,
+                    sample -> sendStatus(driver,
+                            Protos.TaskState.TASK_RUNNING,
+                            ProgressReporter.describe(
+                                    "Downloading snapshot", sample),
+                            sample))) {
+                if (context.getPointInTime() > 0) {
+                    // Recovers the snapshot and the SSTables shipped after
+                    // it.
+                    backupStorageDriver.download(context,
+                            backupStorageDriver.getRestoreManifest(context)
+                                    .get().getFiles(),
+                            throttle);
+                } else {
+                    backupStorageDriver.download(context, throttle);
+                }
+                progress = reporter.sample();
+            }
 
             // TODO: Do cleanup (So, that we are good when we start restoring the snapshots)
 
             // Send TASK_FINISHED
             sendStatus(driver, Protos.TaskState.TASK_FINISHED,
-                    "Finished downloading snapshots");
+                    "Finished downloading snapshots: " +
+                            throttle.getSummary(),
+                    progress);
         } catch (Throwable t) {
 
             LOGGER.error("Download snapshot failed",t);
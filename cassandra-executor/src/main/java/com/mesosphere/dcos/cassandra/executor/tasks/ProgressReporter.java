@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.executor.tasks;
+
+import com.mesosphere.dcos.cassandra.common.tasks.backup.TransferProgress;
+import com.mesosphere.dcos.cassandra.executor.backup.TransferMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * ProgressReporter periodically samples the progress of a task's transfer,
+ * records it in the executor's TransferMetrics and passes it to the task,
+ * which reports it to the scheduler in a TASK_RUNNING status update.
+ */
+public class ProgressReporter implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+        ProgressReporter.class);
+
+    /**
+     * The interval between progress reports.
+     */
+    public static final long INTERVAL_MS = TimeUnit.SECONDS.toMillis(10);
+
+    private static final double MB = 1024 * 1024;
+
+    private final TransferMetrics metrics;
+    private final TransferMetrics.Operation operation;
+    private final Supplier<TransferProgress> progress;
+    private final ScheduledFuture<?> future;
+
+    /**
+     * Starts reporting the progress of a transfer.
+     *
+     * @param executor  The executor that samples the progress.
+     * @param metrics   The metrics the progress is recorded in.
+     * @param operation The operation of the transfer.
+     * @param progress  Samples the progress of the transfer.
+     * @param report    Reports a sample of the progress.
+     * @return The reporter, which must be closed once the transfer is done.
+     */
+    public static ProgressReporter start(
+        final ScheduledExecutorService executor,
+        final TransferMetrics metrics,
+        final TransferMetrics.Operation operation,
+        final Supplier<TransferProgress> progress,
+        final Consumer<TransferProgress> report) {
+        return new ProgressReporter(executor, metrics, operation, progress,
+            report);
+    }
+
+    /**
+     * Describes the progress of a transfer.
+     *
+     * @param action   The action the transfer performs, e.g. "Uploading
+     *                 snapshots".
+     * @param progress The progress of the transfer.
+     * @return A status message e.g. "Uploading snapshots: 3/10 files,
+     * 120.0/800.0 MB at 25.0 MB/s, 28 s remaining".
+     */
+    public static String describe(final String action,
+                                  final TransferProgress progress) {
+        final long eta = progress.getEtaSeconds();
+        return String.format("%s: %d/%d files, %.1f/%.1f MB at %.1f MB/s%s",
+            action,
+            progress.getFiles(),
+            progress.getTotalFiles(),
+            progress.getBytes() / MB,
+            progress.getTotalBytes() / MB,
+            progress.getBytesPerSec() / MB,
+            eta < 0 ? "" : ", " + eta + " s remaining");
+    }
+
+    private ProgressReporter(final ScheduledExecutorService executor,
+                             final TransferMetrics metrics,
+                             final TransferMetrics.Operation operation,
+                             final Supplier<TransferProgress> progress,
+                             final Consumer<TransferProgress> report) {
+        this.metrics = metrics;
+        this.operation = operation;
+        this.progress = progress;
+        metrics.update(operation, TransferProgress.NONE);
+        this.future = executor.scheduleAtFixedRate(() -> {
+            try {
+                report.accept(sample());
+            } catch (RuntimeException ex) {
+                // An exception would cancel the following reports.
+                LOGGER.warn("Failed to report {} progress",
+                    operation.getName(), ex);
+            }
+        }, INTERVAL_MS, INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Samples the progress of the transfer and records it in the metrics.
+     *
+     * @return The progress of the transfer.
+     */
+    public TransferProgress sample() {
+        final TransferProgress sample = progress.get();
+        metrics.update(operation, sample);
+        return sample;
+    }
+
+    /**
+     * Stops reporting progress. The metrics keep the final progress.
+     */
+    @Override
+    public void close() {
+        future.cancel(false);
+        sample();
+    }
+}
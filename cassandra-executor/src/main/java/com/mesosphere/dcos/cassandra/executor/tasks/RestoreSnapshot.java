@@ -17,7 +17,14 @@ package com.mesosphere.dcos.cassandra.executor.tasks;
 
 import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.RestoreSnapshotTask;
-import com.mesosphere.dcos.cassandra.executor.CassandraPaths;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.TransferProgress;
+import com.mesosphere.dcos.cassandra.executor.CassandraDaemonProcess;
+import com.mesosphere.dcos.cassandra.executor.backup.BackupManifest;
+import com.mesosphere.dcos.cassandra.executor.backup.BackupStorageDriver;
+import com.mesosphere.dcos.cassandra.executor.backup.BandwidthThrottle;
+import com.mesosphere.dcos.cassandra.executor.backup.ParallelSSTableLoader;
+import com.mesosphere.dcos.cassandra.executor.backup.PipelinedRestore;
+import com.mesosphere.dcos.cassandra.executor.backup.TransferMetrics;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.mesos.ExecutorDriver;
 import org.apache.mesos.Protos;
@@ -25,51 +32,75 @@ import org.apache.mesos.executor.ExecutorTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.IOException;
 import java.net.InetAddress;
-import java.util.Arrays;
+import java.net.URISyntaxException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
- * Implements RestoreSnapshotTask by invoking the SSTableLoader binary that is
- * packaged with the Cassandra distribution.
- *
- * @TODO Why not just invoke the SSTableLoader class directly ins
+ * Implements RestoreSnapshotTask by bulk loading the downloaded SSTables
+ * with a ParallelSSTableLoader running within the executor. The progress of
+ * each column family is reported in TASK_RUNNING status updates, and the
+ * progress of the whole restore, counted in column families and streamed
+ * bytes, is attached to them and recorded in TransferMetrics. When the
+ * context has a staging budget, the snapshot has not been downloaded yet:
+ * a PipelinedRestore downloads each column family just before loading it.
  */
 public class RestoreSnapshot implements ExecutorTask {
     private static final Logger LOGGER = LoggerFactory.getLogger(
         RestoreSnapshot.class);
 
+    private static final long PROGRESS_INTERVAL_MS =
+        TimeUnit.SECONDS.toMillis(10);
+
     private final ExecutorDriver driver;
     private final BackupRestoreContext context;
     private final RestoreSnapshotTask cassandraTask;
-    private final String version;
+    private final CassandraDaemonProcess daemon;
+    private final BackupStorageDriver backupStorageDriver;
+    private final TransferMetrics metrics;
+
+    private long started = 0;
+    private long lastProgress = 0;
+    private int lastLoaded = 0;
 
     /**
      * Constructs a new RestoreSnapshot.
      *
      * @param driver        The ExecutorDriver used to send task status.
+     * @param daemon        The Cassandra daemon the SSTables are loaded into.
      * @param cassandraTask The RestoreSnapshotTask that will be executed.
-     * @param version       The version of Cassandra that will be restored.
+     * @param backupStorageDriver The BackupStorageDriver that downloads the
+     *                            snapshot when it is restored with a staging
+     *                            budget.
+     * @param metrics       The metrics the progress is recorded in.
      */
     public RestoreSnapshot(
         ExecutorDriver driver,
+        CassandraDaemonProcess daemon,
         RestoreSnapshotTask cassandraTask,
-        String version) {
+        BackupStorageDriver backupStorageDriver,
+        TransferMetrics metrics) {
         this.driver = driver;
-        this.version = version;
+        this.daemon = daemon;
         this.cassandraTask = cassandraTask;
+        this.backupStorageDriver = backupStorageDriver;
+        this.metrics = metrics;
         this.context = cassandraTask.getBackupRestoreContext();
     }
 
     @Override
     public void run() {
         try {
+            started = System.currentTimeMillis();
+            metrics.update(TransferMetrics.Operation.RESTORE,
+                TransferProgress.NONE);
             // Send TASK_RUNNING
             sendStatus(driver, Protos.TaskState.TASK_RUNNING,
                 "Started restoring snapshot");
@@ -78,74 +109,25 @@ public class RestoreSnapshot implements ExecutorTask {
                     context.getName() + File.separator +
                     context.getNodeId();
 
-            final String ssTableLoaderBinary =
-                CassandraPaths.create(version).bin()
-                    .resolve("sstableloader").toString();
-            final String cassandraYaml =
-                CassandraPaths.create(version).cassandraConfig().toString();
-
             final File keyspacesDirectory = new File(keyspaceDirectory);
             LOGGER.info("Keyspace Directory {} exists: {}", keyspaceDirectory, keyspacesDirectory.exists());
 
-            final File[] keyspaces = keyspacesDirectory.listFiles();
-
-            String libProcessAddress = System.getenv("LIBPROCESS_IP");
-            libProcessAddress = StringUtils.isBlank(
-                libProcessAddress) ? InetAddress.getLocalHost().getHostAddress() : libProcessAddress;
-
-            for (File keyspace : keyspaces) {
-                final File[] columnFamilies = keyspace.listFiles();
-
-                final String keyspaceName = keyspace.getName();
-                LOGGER.info("Going to bulk load keyspace: {}", keyspaceName);
-
-
-                for (File columnFamily : columnFamilies) {
-                    final String columnFamilyName = columnFamily.getName();
-                    LOGGER.info(
-                        "Bulk loading... keyspace: {} column family: {}",
-                        keyspaceName, columnFamilyName);
-
-                    final String columnFamilyPath = columnFamily.getAbsolutePath();
-                    final List<String> command = Arrays.asList(
-                        ssTableLoaderBinary, "-d", libProcessAddress, "-f",
-                        cassandraYaml, columnFamilyPath);
-                    LOGGER.info("Executing command: {}", command);
-
-                    final ProcessBuilder processBuilder = new ProcessBuilder(
-                        command);
-                    Process process = processBuilder.start();
-                    int exitCode = process.waitFor();
-
-                    String stdout = streamToString(process.getInputStream());
-                    String stderr = streamToString(process.getErrorStream());
+            final Optional<BackupManifest> manifest =
+                backupStorageDriver.getRestoreManifest(context);
+            final boolean importSSTables = isImportable(manifest);
+            final ParallelSSTableLoader loader = createLoader(importSSTables);
+            final List<ParallelSSTableLoader.TableProgress> tables =
+                (context.getStagingBudgetMb() > 0) ?
+                    downloadAndLoad(loader, keyspacesDirectory, manifest) :
+                    loader.load(keyspacesDirectory, context::isSelected,
+                        this::progress);
 
-                    LOGGER.info("Command exit code: {}", exitCode);
-                    LOGGER.info("Command stdout: {}", stdout);
-                    LOGGER.info("Command stderr: {}", stderr);
-
-                    // Send TASK_ERROR
-                    if (exitCode != 0) {
-                        final String errMessage = String.format(
-                            "Error restoring snapshot. Exit code: %s Stdout: %s Stderr: %s",
-                            (exitCode + ""), stdout, stderr);
-                        LOGGER.error(errMessage);
-                        sendStatus(driver, Protos.TaskState.TASK_ERROR,
-                            errMessage);
-                    }
-
-                    LOGGER.info(
-                        "Done bulk loading! keyspace: {} column family: {}",
-                        keyspaceName, columnFamilyName);
-                }
-
-                LOGGER.info("Successfully bulk loaded keyspace: {}",
-                    keyspaceName);
-            }
-
-            final String message = "Finished restoring snapshot";
+            final String message = "Finished restoring snapshot: " +
+                tables.size() + " column families " +
+                (importSSTables ? "imported" : "loaded");
             LOGGER.info(message);
-            sendStatus(driver, Protos.TaskState.TASK_FINISHED, message);
+            sendStatus(driver, Protos.TaskState.TASK_FINISHED, message,
+                getProgress(tables));
         } catch (Throwable t) {
             // Send TASK_FAILED
             final String errorMessage = "Failed restoring snapshot. Reason: "
@@ -155,17 +137,135 @@ public class RestoreSnapshot implements ExecutorTask {
         }
     }
 
-    private static String streamToString(InputStream stream) throws Exception {
-        BufferedReader reader = new BufferedReader(
-            new InputStreamReader(stream));
-        StringBuilder builder = new StringBuilder();
-        String line = null;
-        while ((line = reader.readLine()) != null) {
-            builder.append(line);
-            builder.append(System.getProperty("line.separator"));
+    /**
+     * Checks whether the SSTables of the backup can be imported. When the
+     * node and the ring have the same tokens as when the backup was taken,
+     * in this cluster or another one, the node owns the data of its own
+     * backup.
+     */
+    private boolean isImportable(Optional<BackupManifest> manifest) {
+        if (!context.isImportSSTables()) {
+            return false;
         }
+        final Optional<BackupManifest.Topology> backedUp =
+            manifest.flatMap(BackupManifest::getTopology);
+        if (!backedUp.isPresent()) {
+            LOGGER.info("No topology recorded for backup: {}",
+                context.getName());
+            return false;
+        }
+        final BackupManifest.Topology topology = daemon.getTopology();
+        LOGGER.info("Topology of backup: {} | node: {}", backedUp.get(),
+            topology);
+        return backedUp.get().equals(topology);
+    }
 
-        return builder.toString();
+    /**
+     * Creates the loader of the restore. When the node owns the data of its
+     * own backup, the SSTables are imported into the node's data
+     * directories instead of being streamed through the ring.
+     */
+    private ParallelSSTableLoader createLoader(boolean importSSTables)
+        throws IOException {
+        if (importSSTables) {
+            LOGGER.info("Importing SSTables into data directory: {}",
+                context.getLocalLocation());
+            return ParallelSSTableLoader.createImporter(
+                new File(context.getLocalLocation()),
+                daemon::loadNewSSTables,
+                context.getLoadConcurrency());
+        }
+
+        String libProcessAddress = System.getenv("LIBPROCESS_IP");
+        libProcessAddress = StringUtils.isBlank(
+            libProcessAddress) ? InetAddress.getLocalHost().getHostAddress() : libProcessAddress;
+
+        // The cap applies to all streaming of the executor, which only runs
+        // one restore at a time.
+        ParallelSSTableLoader.setStreamThroughput(
+            context.getThrottleMbPerSec());
+        return ParallelSSTableLoader.create(
+            Collections.singleton(InetAddress.getByName(libProcessAddress)),
+            daemon.getTask().getConfig().getApplication()
+                .getNativeTransportPort(),
+            context.getLoadConcurrency());
+    }
+
+    private List<ParallelSSTableLoader.TableProgress> downloadAndLoad(
+        ParallelSSTableLoader loader,
+        File keyspacesDirectory,
+        Optional<BackupManifest> manifest)
+        throws IOException, URISyntaxException {
+        final BandwidthThrottle throttle =
+            BandwidthThrottle.create(context.getThrottleMbPerSec());
+        if (!manifest.isPresent()) {
+            // Without a manifest the files of a table are not known until
+            // the whole backup has been listed, so it is staged at once.
+            LOGGER.info("No manifest found, downloading the whole snapshot");
+            backupStorageDriver.download(context, throttle);
+            return loader.load(keyspacesDirectory, context::isSelected,
+                this::progress);
+        }
+        final List<ParallelSSTableLoader.TableProgress> tables =
+            PipelinedRestore.create(backupStorageDriver, context, throttle,
+                loader).restore(manifest.get().getFiles(), this::progress);
+        LOGGER.info("Downloaded snapshot: {}", throttle.getSummary());
+        return tables;
+    }
+
+    /**
+     * Reports the progress of the tables being loaded when a table completes
+     * and otherwise at most once per PROGRESS_INTERVAL_MS.
+     */
+    private synchronized void progress(
+        List<ParallelSSTableLoader.TableProgress> tables) {
+        final int loaded = (int) tables.stream()
+            .filter(ParallelSSTableLoader.TableProgress::isDone)
+            .count();
+        final long now = System.currentTimeMillis();
+        if (loaded == lastLoaded && now - lastProgress < PROGRESS_INTERVAL_MS) {
+            return;
+        }
+        lastLoaded = loaded;
+        lastProgress = now;
+
+        final String loading = tables.stream()
+            .filter(table -> !table.isDone() && table.getTotalBytes() > 0)
+            .map(ParallelSSTableLoader.TableProgress::toString)
+            .collect(Collectors.joining(", "));
+        final String message = String.format(
+            "Restoring snapshot: %d/%d column families loaded%s",
+            loaded, tables.size(),
+            loading.isEmpty() ? "" : ", loading " + loading);
+        LOGGER.info(message);
+        sendStatus(driver, Protos.TaskState.TASK_RUNNING, message,
+            getProgress(tables));
+    }
+
+    /**
+     * Gets the progress of the restore, counting loaded column families as
+     * the files transferred, and records it in the metrics.
+     */
+    private TransferProgress getProgress(
+        List<ParallelSSTableLoader.TableProgress> tables) {
+        int loaded = 0;
+        long bytes = 0;
+        long totalBytes = 0;
+        for (ParallelSSTableLoader.TableProgress table : tables) {
+            loaded += table.isDone() ? 1 : 0;
+            bytes += table.getBytes();
+            totalBytes += table.getTotalBytes();
+        }
+        final long elapsed = Math.max(1,
+            System.currentTimeMillis() - started);
+        final TransferProgress progress = TransferProgress.create(
+            loaded,
+            tables.size(),
+            bytes,
+            Math.max(bytes, totalBytes),
+            bytes / (elapsed / 1000.0));
+        metrics.update(TransferMetrics.Operation.RESTORE, progress);
+        return progress;
     }
 
     private void sendStatus(ExecutorDriver driver,
@@ -176,6 +276,15 @@ public class RestoreSnapshot implements ExecutorTask {
         driver.sendStatusUpdate(status);
     }
 
+    private void sendStatus(ExecutorDriver driver,
+                            Protos.TaskState state,
+                            String message,
+                            TransferProgress progress) {
+        Protos.TaskStatus status = cassandraTask
+            .createStatus(state, Optional.of(message)).getTaskStatus(progress);
+        driver.sendStatusUpdate(status);
+    }
+
     @Override
     public void stop(Future<?> future) {
         future.cancel(true);
@@ -17,8 +17,13 @@ package com.mesosphere.dcos.cassandra.executor.tasks;
 
 import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupUploadTask;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.TransferProgress;
 import com.mesosphere.dcos.cassandra.executor.CassandraDaemonProcess;
+import com.mesosphere.dcos.cassandra.executor.backup.BackupManifest;
+import com.mesosphere.dcos.cassandra.executor.backup.BandwidthThrottle;
 import com.mesosphere.dcos.cassandra.executor.backup.BackupStorageDriver;
+import com.mesosphere.dcos.cassandra.executor.backup.IncrementalShipper;
+import com.mesosphere.dcos.cassandra.executor.backup.TransferMetrics;
 import org.apache.mesos.ExecutorDriver;
 import org.apache.mesos.Protos;
 import org.apache.mesos.executor.ExecutorTask;
@@ -27,11 +32,13 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Optional;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * UploadSnapshot implements UploadSnapshotTask by delegating the upload of
  * the snapshot to a BackupStorageDriver implementation and the clearing of
- * the local snapshot to CassandraDaemonProcess.
+ * the local snapshot to CassandraDaemonProcess. The progress of the upload
+ * is reported in TASK_RUNNING status updates.
  */
 public class UploadSnapshot implements ExecutorTask {
     private static final Logger LOGGER = LoggerFactory.getLogger(
@@ -41,6 +48,9 @@ public class UploadSnapshot implements ExecutorTask {
     private final BackupRestoreContext context;
     private final BackupUploadTask cassandraTask;
     private final BackupStorageDriver backupStorageDriver;
+    private final IncrementalShipper shipper;
+    private final ScheduledExecutorService executor;
+    private final TransferMetrics metrics;
 
     /**
      * Constructs a new UploadSnapshot
@@ -50,16 +60,27 @@ public class UploadSnapshot implements ExecutorTask {
      * @param cassandraTask       The BackUploadTask that will be executed.
      * @param backupStorageDriver The BackupStorageDriver used to upload the
      *                            snapshot.
+     * @param shipper             The IncrementalShipper that ships the
+     *                            SSTables flushed after a continuous backup.
+     * @param executor            The executor that reports the progress of
+     *                            the upload.
+     * @param metrics             The metrics the progress is recorded in.
      */
     public UploadSnapshot(
         ExecutorDriver driver,
         CassandraDaemonProcess daemon,
         BackupUploadTask cassandraTask,
-        BackupStorageDriver backupStorageDriver) {
+        BackupStorageDriver backupStorageDriver,
+        IncrementalShipper shipper,
+        ScheduledExecutorService executor,
+        TransferMetrics metrics) {
         this.daemon = daemon;
         this.driver = driver;
         this.cassandraTask = cassandraTask;
         this.backupStorageDriver = backupStorageDriver;
+        this.shipper = shipper;
+        this.executor = executor;
+        this.metrics = metrics;
         context = cassandraTask.getBackupRestoreContext();
     }
 
@@ -71,6 +92,15 @@ public class UploadSnapshot implements ExecutorTask {
         driver.sendStatusUpdate(status);
     }
 
+    private void sendStatus(ExecutorDriver driver,
+                            Protos.TaskState state,
+                            String message,
+                            TransferProgress progress) {
+        Protos.TaskStatus status = cassandraTask.createStatus(state,
+            Optional.of(message)).getTaskStatus(progress);
+        driver.sendStatusUpdate(status);
+    }
+
     @Override
     public void run() {
         try {
@@ -79,20 +109,52 @@ public class UploadSnapshot implements ExecutorTask {
                 "Started uploading snapshots");
 
             // Upload snapshots to external location.
-            backupStorageDriver.upload(context);
+            final BandwidthThrottle throttle =
+                BandwidthThrottle.create(context.getThrottleMbPerSec());
+            final TransferProgress progress;
+            try (ProgressReporter reporter = ProgressReporter.start(
+                executor,
+                metrics,
+                TransferMetrics.Operation.UPLOAD,
+                throttle::getProgress,
+                sample -> sendStatus(driver, Protos.TaskState.TASK_RUNNING,
+                    ProgressReporter.describe("Uploading snapshots", sample),
+                    sample))) {
+                backupStorageDriver.upload(context, throttle, getTopology());
+                progress = reporter.sample();
+            }
 
             // Once we have uploaded all existing snapshots, let's clear on-disk snapshots
             daemon.clearSnapShot(context.getName());
 
+            if (context.isContinuous()) {
+                shipper.start(context);
+            }
+
             // Send TASK_FINISHED
             sendStatus(driver, Protos.TaskState.TASK_FINISHED,
-                "Finished uploading snapshots");
+                "Finished uploading snapshots: " + throttle.getSummary(),
+                progress);
         } catch (Throwable t) {
             LOGGER.error("Upload snapshot failed", t);
+            shipper.cancel(context);
             sendStatus(driver, Protos.TaskState.TASK_FAILED, t.getMessage());
         }
     }
 
+    /**
+     * Gets the topology of the node, which is recorded in the manifest of
+     * the backup. A backup without a topology is restored by streaming.
+     */
+    private Optional<BackupManifest.Topology> getTopology() {
+        try {
+            return Optional.of(daemon.getTopology());
+        } catch (Throwable t) {
+            LOGGER.warn("Unable to get the topology of the node", t);
+            return Optional.empty();
+        }
+    }
+
     @Override
     public void stop(Future<?> future) {
         future.cancel(true);
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.executor.tasks;
+
+import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupVerifyTask;
+import com.mesosphere.dcos.cassandra.executor.backup.BackupManifest;
+import com.mesosphere.dcos.cassandra.executor.backup.BackupStorageDriver;
+import org.apache.mesos.ExecutorDriver;
+import org.apache.mesos.Protos;
+import org.apache.mesos.executor.ExecutorTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * VerifyBackup implements BackupVerifyTask by delegating the verification of
+ * the uploaded backup to a BackupStorageDriver implementation. The task fails
+ * if any object recorded in the manifest of the backup is missing, or its
+ * size or ETag differs.
+ */
+public class VerifyBackup implements ExecutorTask {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+        VerifyBackup.class);
+    private final ExecutorDriver driver;
+    private final BackupRestoreContext context;
+    private final BackupVerifyTask cassandraTask;
+    private final BackupStorageDriver backupStorageDriver;
+
+    /**
+     * Constructs a new VerifyBackup
+     *
+     * @param driver              The ExecutorDriver used to send task status.
+     * @param cassandraTask       The BackupVerifyTask that will be executed.
+     * @param backupStorageDriver The BackupStorageDriver used to verify the
+     *                            backup.
+     */
+    public VerifyBackup(
+        ExecutorDriver driver,
+        BackupVerifyTask cassandraTask,
+        BackupStorageDriver backupStorageDriver) {
+        this.driver = driver;
+        this.cassandraTask = cassandraTask;
+        this.backupStorageDriver = backupStorageDriver;
+        context = cassandraTask.getBackupRestoreContext();
+    }
+
+    private void sendStatus(ExecutorDriver driver,
+                            Protos.TaskState state,
+                            String message) {
+        Protos.TaskStatus status = cassandraTask.createStatus(state,
+            Optional.of(message)).getTaskStatus();
+        driver.sendStatusUpdate(status);
+    }
+
+    @Override
+    public void run() {
+        try {
+            // Send TASK_RUNNING
+            sendStatus(driver, Protos.TaskState.TASK_RUNNING,
+                "Started verifying backup");
+
+            final List<BackupManifest.Entry> failed =
+                backupStorageDriver.verify(context);
+
+            if (failed.isEmpty()) {
+                // Send TASK_FINISHED
+                sendStatus(driver, Protos.TaskState.TASK_FINISHED,
+                    "Finished verifying backup");
+            } else {
+                sendStatus(driver, Protos.TaskState.TASK_FAILED,
+                    "Backup verification failed for " + failed.size() +
+                        " files: " + failed.stream()
+                        .map(BackupManifest.Entry::getPath)
+                        .collect(Collectors.joining(", ")));
+            }
+        } catch (Throwable t) {
+            LOGGER.error("Verify backup failed", t);
+            sendStatus(driver, Protos.TaskState.TASK_FAILED, t.getMessage());
+        }
+    }
+
+    @Override
+    public void stop(Future<?> future) {
+        future.cancel(true);
+    }
+}
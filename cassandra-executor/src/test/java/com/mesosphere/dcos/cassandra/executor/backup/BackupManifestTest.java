@@ -0,0 +1,179 @@
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import com.mesosphere.dcos.cassandra.executor.compress.LZ4CompressionDriver;
+import com.mesosphere.dcos.cassandra.executor.compress.NoCompressionDriver;
+import com.mesosphere.dcos.cassandra.executor.compress.SnappyCompressionDriver;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * This class tests the BackupManifest class and the content addressed store
+ * keys used by incremental backups.
+ */
+public class BackupManifestTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testJsonSerialization() throws IOException {
+        BackupManifest manifest = BackupManifest.create(
+                "backup-name",
+                "node-0",
+                Arrays.asList(
+                        BackupManifest.Entry.create(
+                                "ks/cf/mc-1-big-Data.db",
+                                "store/ks/cf/mc-1-big-Data.db.1024.abcd",
+                                1024,
+                                "abcd",
+                                BackupManifest.NO_COMPRESSION),
+                        BackupManifest.Entry.create(
+                                "ks/cf/mc-1-big-Index.db",
+                                "store/ks/cf/mc-1-big-Index.db.16.ef01",
+                                16,
+                                "ef01",
+                                SnappyCompressionDriver.NAME)));
+
+        Assert.assertEquals(manifest,
+                BackupManifest.JSON_SERIALIZER.deserialize(
+                        BackupManifest.JSON_SERIALIZER.serialize(manifest)));
+    }
+
+    @Test
+    public void testMissingCompressionDefaultsToNone() throws IOException {
+        BackupManifest manifest = BackupManifest.JSON_SERIALIZER.deserialize(
+                ("{\"name\":\"backup-name\",\"node_id\":\"node-0\"," +
+                        "\"files\":[{\"path\":\"ks/cf/mc-1-big-Data.db\"," +
+                        "\"key\":\"backup-name/node-0/ks/cf/mc-1-big-Data.db\"," +
+                        "\"size\":1024,\"checksum\":\"abcd\"}]}").getBytes());
+
+        Assert.assertEquals(1, manifest.getFiles().size());
+        Assert.assertEquals(BackupManifest.NO_COMPRESSION,
+                manifest.getFiles().get(0).getCompression());
+    }
+
+    @Test
+    public void testStoreKeyDependsOnContent() throws IOException {
+        File first = new File(folder.newFolder("first"), "mc-1-big-Data.db");
+        File second = new File(folder.newFolder("second"), "mc-1-big-Data.db");
+        File third = new File(folder.newFolder("third"), "mc-1-big-Data.db");
+        Files.write(first.toPath(), new byte[]{1, 2, 3, 4});
+        Files.write(second.toPath(), new byte[]{1, 2, 3, 4});
+        Files.write(third.toPath(), new byte[]{4, 3, 2, 1});
+
+        String firstKey = StorageUtil.getStoreKey("ks", "cf", first,
+                StorageUtil.getChecksum(first), NoCompressionDriver.NAME);
+        Assert.assertTrue(firstKey.startsWith(
+                StorageUtil.STORE_PREFIX + "ks/cf/mc-1-big-Data.db.4."));
+        Assert.assertEquals(firstKey, StorageUtil.getStoreKey("ks", "cf",
+                second, StorageUtil.getChecksum(second),
+                NoCompressionDriver.NAME));
+        Assert.assertNotEquals(firstKey, StorageUtil.getStoreKey("ks", "cf",
+                third, StorageUtil.getChecksum(third),
+                NoCompressionDriver.NAME));
+        Assert.assertEquals(firstKey + "." + LZ4CompressionDriver.NAME,
+                StorageUtil.getStoreKey("ks", "cf", first,
+                        StorageUtil.getChecksum(first),
+                        LZ4CompressionDriver.NAME));
+    }
+
+    private static BackupManifest.Entry entry(String path, long time) {
+        return BackupManifest.Entry.create(path, "store/" + path, 16, "abcd",
+                BackupManifest.NO_COMPRESSION, time);
+    }
+
+    @Test
+    public void testStoredKeysOfPreviousBackup() {
+        Assert.assertTrue(StorageUtil.getStoredKeys(Optional.empty())
+                .isEmpty());
+        BackupManifest previous = BackupManifest.create("backup-name",
+                "node-0", Arrays.asList(entry("ks/cf/mc-1-big-Data.db", 0),
+                        entry("ks/cf/mc-1-big-Index.db", 0)));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(
+                "store/ks/cf/mc-1-big-Data.db",
+                "store/ks/cf/mc-1-big-Index.db")),
+                StorageUtil.getStoredKeys(Optional.of(previous)));
+        // The copy of the latest manifest is never taken for a stored file.
+        Assert.assertTrue(StorageUtil.getLatestManifestKey("node-0")
+                .startsWith(StorageUtil.STORE_PREFIX + "."));
+    }
+
+    @Test
+    public void testWithIncrementalsUpToPointInTime() {
+        BackupManifest snapshot = BackupManifest.create("backup-name",
+                "node-0", Arrays.asList(
+                        entry("ks/cf/mc-1-big-Data.db", 0),
+                        entry("ks/cf/mc-1-big-TOC.txt", 0)));
+        BackupManifest incremental = BackupManifest.create("backup-name",
+                "node-0", Arrays.asList(
+                        // Flushed while the snapshot was taken.
+                        entry("ks/cf/mc-1-big-Data.db", 50),
+                        entry("ks/cf/mc-2-big-Data.db", 100),
+                        entry("ks/cf/mc-2-big-TOC.txt", 100),
+                        // Written across the point in time.
+                        entry("ks/cf/mc-3-big-Data.db", 200),
+                        entry("ks/cf/mc-3-big-TOC.txt", 300),
+                        entry("ks/cf/mc-4-big-Data.db", 400)));
+
+        List<String> paths = snapshot.withIncrementals(incremental, 250)
+                .getFiles().stream()
+                .map(BackupManifest.Entry::getPath)
+                .collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList(
+                "ks/cf/mc-1-big-Data.db",
+                "ks/cf/mc-1-big-TOC.txt",
+                "ks/cf/mc-2-big-Data.db",
+                "ks/cf/mc-2-big-TOC.txt"), paths);
+        Assert.assertEquals(snapshot.getFiles(),
+                snapshot.withIncrementals(incremental, 10).getFiles());
+    }
+
+    @Test
+    public void testMissingTimeDefaultsToZero() throws IOException {
+        BackupManifest.Entry entry = entry("ks/cf/mc-1-big-Data.db", 100);
+        Assert.assertEquals(entry,
+                BackupManifest.JSON_SERIALIZER.deserialize(
+                        BackupManifest.JSON_SERIALIZER.serialize(
+                                BackupManifest.create("backup-name", "node-0",
+                                        Arrays.asList(entry)))).getFiles().get(0));
+        Assert.assertEquals(0, BackupManifest.JSON_SERIALIZER.deserialize(
+                ("{\"files\":[{\"path\":\"ks/cf/mc-1-big-Data.db\"," +
+                        "\"size\":1024}]}").getBytes())
+                .getFiles().get(0).getTime());
+    }
+
+    @Test
+    public void testTopologyIsKeptBySelectedManifests() throws IOException {
+        final BackupManifest.Topology topology = BackupManifest.Topology.of(
+                Arrays.asList("1", "2"), Arrays.asList("2", "3", "1"));
+        Assert.assertEquals(topology, BackupManifest.Topology.of(
+                Arrays.asList("2", "1"), Arrays.asList("1", "2", "3")));
+        Assert.assertNotEquals(topology, BackupManifest.Topology.of(
+                Arrays.asList("1", "2"), Arrays.asList("1", "2", "4")));
+        Assert.assertNotEquals(topology, BackupManifest.Topology.of(
+                Arrays.asList("12"), Arrays.asList("1", "2", "3")));
+
+        final BackupManifest manifest = BackupManifest.create("backup-name",
+                "node-0", Arrays.asList(entry("ks/cf/mc-1-big-Data.db", 100)),
+                topology);
+        final BackupManifest read = BackupManifest.JSON_SERIALIZER.deserialize(
+                BackupManifest.JSON_SERIALIZER.serialize(manifest));
+        Assert.assertEquals(manifest, read);
+        Assert.assertEquals(Optional.of(topology), read.getTopology());
+        Assert.assertEquals(Optional.of(topology), read.withIncrementals(
+                BackupManifest.create(null, null, Arrays.asList()), 0)
+                .getTopology());
+        Assert.assertFalse(BackupManifest.create("backup-name", "node-0",
+                Arrays.asList()).getTopology().isPresent());
+    }
+}
@@ -0,0 +1,81 @@
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import com.mesosphere.dcos.cassandra.common.tasks.backup.TransferProgress;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This class tests the BandwidthThrottle class.
+ */
+public class BandwidthThrottleTest {
+    private static final int MB = 1024 * 1024;
+
+    @Test
+    public void testUnlimitedThrottleCountsBytes() throws IOException {
+        final BandwidthThrottle throttle = BandwidthThrottle.create(0);
+        final InputStream input = throttle.throttle(
+                new ByteArrayInputStream(new byte[3 * MB]));
+        Assert.assertEquals(3 * MB, IOUtils.toByteArray(input).length);
+        Assert.assertEquals(3 * MB, throttle.getBytes());
+        Assert.assertEquals(0, throttle.getMbPerSec());
+    }
+
+    @Test
+    public void testThrottleLimitsRate() throws IOException {
+        final BandwidthThrottle throttle = BandwidthThrottle.create(4);
+        final InputStream input = throttle.throttle(
+                new ByteArrayInputStream(new byte[3 * MB]));
+        final long start = System.nanoTime();
+        final byte[] buffer = new byte[64 * 1024];
+        while (input.read(buffer) != -1) {
+        }
+        final long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        // 3MB at 4MB/s takes at least 0.75s, less the first 64KB read.
+        Assert.assertTrue("Elapsed: " + elapsedMillis, elapsedMillis >= 600);
+        Assert.assertEquals(3 * MB, throttle.getBytes());
+        Assert.assertTrue(throttle.getSummary().contains("limit 4 MB/s"));
+    }
+
+    @Test
+    public void testResetBytesAreCountedAgain() throws IOException {
+        final BandwidthThrottle throttle = BandwidthThrottle.create(0);
+        final InputStream input = throttle.throttle(
+                new ByteArrayInputStream(new byte[100]));
+        input.mark(100);
+        Assert.assertEquals(100, input.read(new byte[100]));
+        input.reset();
+        Assert.assertEquals(100, input.read(new byte[100]));
+        Assert.assertEquals(200, throttle.getBytes());
+    }
+
+    @Test
+    public void testReportsProgress() throws IOException {
+        final BandwidthThrottle throttle = BandwidthThrottle.create(0);
+        throttle.expect(100);
+        throttle.expect(300);
+        IOUtils.toByteArray(throttle.throttle(
+                new ByteArrayInputStream(new byte[100])));
+        throttle.transferred();
+
+        final TransferProgress progress = throttle.getProgress();
+        Assert.assertEquals(1, progress.getFiles());
+        Assert.assertEquals(2, progress.getTotalFiles());
+        Assert.assertEquals(100, progress.getBytes());
+        Assert.assertEquals(400, progress.getTotalBytes());
+        Assert.assertTrue(progress.getBytesPerSec() > 0);
+        Assert.assertTrue(progress.getEtaSeconds() >= 0);
+
+        // Bytes read again on a retry are added to the total.
+        IOUtils.toByteArray(throttle.throttle(
+                new ByteArrayInputStream(new byte[400])));
+        throttle.transferred();
+        Assert.assertEquals(500, throttle.getProgress().getTotalBytes());
+        Assert.assertEquals(0, throttle.getProgress().getEtaSeconds());
+    }
+}
@@ -0,0 +1,49 @@
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import com.google.common.hash.Hashing;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This class tests the Crc32c class.
+ */
+public class Crc32cTest {
+
+    private static int crc(byte[] bytes, int from, int to) {
+        return Hashing.crc32c().hashBytes(Arrays.copyOfRange(bytes, from, to))
+                .asInt();
+    }
+
+    @Test
+    public void testCombinesRanges() {
+        final byte[] content = new byte[100000];
+        new Random(42).nextBytes(content);
+        final int whole = crc(content, 0, content.length);
+
+        for (int split : new int[]{0, 1, 7, 4096, 65536, content.length}) {
+            Assert.assertEquals(whole, Crc32c.combine(
+                    crc(content, 0, split),
+                    crc(content, split, content.length),
+                    content.length - split));
+        }
+
+        int combined = crc(content, 0, 0);
+        for (int offset = 0; offset < content.length; offset += 30000) {
+            final int end = Math.min(content.length, offset + 30000);
+            combined = Crc32c.combine(combined, crc(content, offset, end),
+                    end - offset);
+        }
+        Assert.assertEquals(whole, combined);
+    }
+
+    @Test
+    public void testFormatsAsGuava() {
+        final byte[] content = "checksum".getBytes();
+        Assert.assertEquals(
+                Hashing.crc32c().hashBytes(content).toString(),
+                Crc32c.toString(crc(content, 0, content.length)));
+    }
+}
@@ -0,0 +1,216 @@
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * This class tests the IncrementalShipper class.
+ */
+public class IncrementalShipperTest {
+    private static final String BACKUP_NAME = "backup";
+    private static final String NODE_ID = "node-0";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ScheduledExecutorService executor;
+    private File volume;
+    private File data;
+    private File location;
+    private IncrementalShipper shipper;
+
+    @Before
+    public void beforeEach() throws IOException {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        volume = folder.newFolder("volume");
+        data = new File(volume, "data");
+        location = folder.newFolder("location");
+        Assert.assertTrue(new File(data, "ks/cf/backups").mkdirs());
+        shipper = new IncrementalShipper(executor,
+                StorageDriverFactory::createStorageDriver,
+                TimeUnit.HOURS.toMillis(1));
+    }
+
+    @After
+    public void afterEach() {
+        shipper.close();
+        executor.shutdownNow();
+    }
+
+    private BackupRestoreContext context(long pointInTime) {
+        return BackupRestoreContext.create(NODE_ID, BACKUP_NAME,
+                "file://" + location.getAbsolutePath(), data.getAbsolutePath(),
+                "", "", false, 0, 2, true, "", 0, "", 0, false, 1, 0, true,
+                pointInTime, null, null, false, 0, 0);
+    }
+
+    /**
+     * Links an SSTable into a backups directory, writing its TOC last.
+     */
+    private static void sstable(File backups, String sstable, long time,
+                                String... components) throws IOException {
+        for (String component : components) {
+            final File file = new File(backups, sstable + "-" + component);
+            Files.write(file.toPath(), component.getBytes());
+            Assert.assertTrue(file.setLastModified(time));
+        }
+        final File toc = new File(backups, sstable + "-TOC.txt");
+        Files.write(toc.toPath(), (String.join("\n", components) +
+                "\nTOC.txt\n").getBytes());
+        Assert.assertTrue(toc.setLastModified(time));
+    }
+
+    private static Set<String> list(File directory) {
+        return new HashSet<>(Arrays.asList(directory.list()));
+    }
+
+    private List<String> shippedPaths() throws Exception {
+        return new LocalStorageDriver().getIncrementalManifest(context(0))
+                .get().getFiles().stream()
+                .map(BackupManifest.Entry::getPath)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testShipsCompleteSSTables() throws Exception {
+        final File backups = new File(data, "ks/cf/backups");
+        sstable(backups, "mc-1-big", 1000, "Data.db");
+        sstable(backups, "mc-2-big", 2000, "Data.db", "Index.db");
+        Files.delete(new File(backups, "mc-2-big-Index.db").toPath());
+
+        shipper.start(context(0));
+        Assert.assertEquals(2, shipper.ship());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("mc-2-big-Data.db",
+                "mc-2-big-TOC.txt")), list(backups));
+        Assert.assertEquals(Arrays.asList("ks/cf/mc-1-big-Data.db",
+                "ks/cf/mc-1-big-TOC.txt"), shippedPaths());
+
+        // The incomplete SSTable is shipped once all of its components are
+        // linked.
+        Files.write(new File(backups, "mc-2-big-Index.db").toPath(),
+                new byte[]{1});
+        Assert.assertEquals(3, shipper.ship());
+        Assert.assertTrue(list(backups).isEmpty());
+        Assert.assertEquals(5, shippedPaths().size());
+        Assert.assertEquals(0, shipper.ship());
+
+        // Each batch is appended as a segment of its own.
+        final List<BackupManifest> segments =
+                new LocalStorageDriver().getIncrementalSegments(context(0));
+        Assert.assertEquals(2, segments.size());
+        Assert.assertEquals(3, segments.get(1).getFiles().size());
+    }
+
+    @Test
+    public void testWatchesNewTables() throws Exception {
+        shipper.start(context(0));
+        Assert.assertEquals(0, shipper.ship());
+
+        final File backups = new File(data, "ks/cf2/backups");
+        Assert.assertTrue(backups.mkdirs());
+        sstable(backups, "mc-1-big", 1000, "Data.db");
+        final File system = new File(data, "system/local/backups");
+        Assert.assertTrue(system.mkdirs());
+        sstable(system, "mc-1-big", 1000, "Data.db");
+
+        int shipped = 0;
+        for (int i = 0; i < 100 && shipped == 0; i++) {
+            TimeUnit.MILLISECONDS.sleep(100);
+            shipped = shipper.ship();
+        }
+        Assert.assertEquals(2, shipped);
+        Assert.assertTrue(list(backups).isEmpty());
+        // The tables that are not backed up are not shipped, but their links
+        // are removed.
+        Assert.assertTrue(list(system).isEmpty());
+        Assert.assertEquals(2, shippedPaths().size());
+    }
+
+    @Test
+    public void testResumeAndReset() throws Exception {
+        shipper.start(context(0));
+        Assert.assertTrue(IncrementalShipper.getStateFile(volume).isFile());
+
+        final IncrementalShipper resumed = new IncrementalShipper(executor);
+        try {
+            resumed.resume(volume);
+            Assert.assertEquals(BACKUP_NAME, resumed.getBackupName());
+        } finally {
+            resumed.close();
+        }
+
+        final File backups = new File(data, "ks/cf/backups");
+        sstable(backups, "mc-1-big", 1000, "Data.db");
+        shipper.reset(context(0));
+        Assert.assertNull(shipper.getBackupName());
+        Assert.assertFalse(IncrementalShipper.getStateFile(volume).exists());
+        Assert.assertTrue(list(backups).isEmpty());
+    }
+
+    @Test
+    public void testCleansWhileNotShipping() throws Exception {
+        final File backups = new File(data, "ks/cf/backups");
+        shipper.resume(volume);
+        Assert.assertNull(shipper.getBackupName());
+        sstable(backups, "mc-1-big", 1000, "Data.db");
+        shipper.clean();
+        Assert.assertTrue(list(backups).isEmpty());
+
+        // The SSTables linked while a continuous backup is taken are kept
+        // until it ships them, or fails.
+        shipper.reset(context(0));
+        sstable(backups, "mc-2-big", 2000, "Data.db");
+        shipper.clean();
+        Assert.assertEquals(2, list(backups).size());
+        shipper.cancel(context(0));
+        shipper.clean();
+        Assert.assertTrue(list(backups).isEmpty());
+
+        shipper.reset(context(0));
+        sstable(backups, "mc-3-big", 3000, "Data.db");
+        shipper.start(context(0));
+        shipper.clean();
+        Assert.assertEquals(2, list(backups).size());
+        Assert.assertEquals(2, shipper.ship());
+    }
+
+    @Test
+    public void testRestoresPointInTime() throws Exception {
+        final File snapshot = new File(data, "ks/cf/snapshots/" + BACKUP_NAME);
+        Assert.assertTrue(snapshot.mkdirs());
+        Files.write(new File(snapshot, "mc-1-big-Data.db").toPath(),
+                new byte[]{1, 2, 3});
+        final LocalStorageDriver driver = new LocalStorageDriver();
+        driver.upload(context(0));
+
+        final File backups = new File(data, "ks/cf/backups");
+        sstable(backups, "mc-2-big", 2000, "Data.db");
+        sstable(backups, "mc-3-big", 3000, "Data.db");
+        shipper.start(context(0));
+        Assert.assertEquals(4, shipper.ship());
+
+        Assert.assertEquals(1,
+                driver.getRestoreManifest(context(0)).get().getFiles().size());
+        Assert.assertEquals(3,
+                driver.getRestoreManifest(context(2500)).get().getFiles().size());
+        Assert.assertEquals(5,
+                driver.getRestoreManifest(context(3000)).get().getFiles().size());
+    }
+}
@@ -0,0 +1,187 @@
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * This class tests the LocalStorageDriver class.
+ */
+public class LocalStorageDriverTest {
+    private static final String BACKUP_NAME = "backup";
+    private static final String NODE_ID = "node-0";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private byte[] content;
+    private File data;
+    private File backups;
+    private File restore;
+
+    @Before
+    public void beforeEach() throws IOException {
+        content = new byte[100 * 1024];
+        new Random(42).nextBytes(content);
+        data = folder.newFolder("volume", "data");
+        backups = folder.newFolder("backups");
+        restore = folder.newFolder("restore");
+        final File snapshot = new File(data,
+                "ks/cf/snapshots/" + BACKUP_NAME);
+        Assert.assertTrue(snapshot.mkdirs());
+        Files.write(new File(snapshot, "mc-1-big-Data.db").toPath(), content);
+        Files.write(new File(snapshot, "mc-1-big-Index.db").toPath(),
+                new byte[]{1, 2, 3});
+    }
+
+    private BackupRestoreContext context(String localLocation,
+                                         boolean incremental,
+                                         String compression) {
+        return context(localLocation, incremental, compression,
+                Collections.emptyList());
+    }
+
+    private BackupRestoreContext context(String localLocation,
+                                         boolean incremental,
+                                         String compression,
+                                         List<String> columnFamilies) {
+        return BackupRestoreContext.create(NODE_ID, BACKUP_NAME,
+                "file://" + backups.getAbsolutePath(), localLocation, "", "",
+                false, 0, 2, incremental, compression, 0, "", 0, false, 1, 0,
+                false, 0, Collections.emptyList(), columnFamilies, false, 0, 0);
+    }
+
+    private void assertRestored() {
+        final File node = new File(restore, BACKUP_NAME + "/" + NODE_ID);
+        try {
+            Assert.assertArrayEquals(content, Files.readAllBytes(
+                    new File(node, "ks/cf/mc-1-big-Data.db").toPath()));
+            Assert.assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(
+                    new File(node, "ks/cf/mc-1-big-Index.db").toPath()));
+        } catch (IOException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    @Test
+    public void testUploadAndDownload() throws IOException, URISyntaxException {
+        final LocalStorageDriver driver = new LocalStorageDriver();
+        driver.upload(context(data.getAbsolutePath(), false, ""));
+
+        final File node = new File(backups, BACKUP_NAME + "/" + NODE_ID);
+        Assert.assertTrue(new File(node, BackupManifest.MANIFEST_NAME).isFile());
+        Assert.assertArrayEquals(content, Files.readAllBytes(
+                new File(node, "ks/cf/mc-1-big-Data.db").toPath()));
+        Assert.assertFalse(UploadJournal.getJournalFile(
+                context(data.getAbsolutePath(), false, "")).exists());
+
+        driver.download(context(restore.getAbsolutePath(), false, ""));
+        assertRestored();
+    }
+
+    @Test
+    public void testCompressedIncrementalUploadAndDownload()
+            throws IOException, URISyntaxException {
+        final LocalStorageDriver driver = new LocalStorageDriver();
+        driver.upload(context(data.getAbsolutePath(), true, "lz4"));
+
+        final File store = new File(backups, "store/ks/cf");
+        Assert.assertEquals(2, store.list().length);
+        for (String name : store.list()) {
+            Assert.assertTrue(name.endsWith(".lz4"));
+        }
+
+        driver.download(context(restore.getAbsolutePath(), true, "lz4"));
+        assertRestored();
+    }
+
+    @Test
+    public void testSelectedColumnFamilies()
+            throws IOException, URISyntaxException {
+        final File other = new File(data,
+                "ks/other-1234/snapshots/" + BACKUP_NAME);
+        Assert.assertTrue(other.mkdirs());
+        Files.write(new File(other, "mc-1-big-Data.db").toPath(),
+                new byte[]{4, 5, 6});
+        final LocalStorageDriver driver = new LocalStorageDriver();
+        driver.upload(context(data.getAbsolutePath(), false, ""));
+
+        final File node = new File(restore, BACKUP_NAME + "/" + NODE_ID);
+        driver.download(context(restore.getAbsolutePath(), false, "",
+                Arrays.asList("ks.cf")));
+        assertRestored();
+        Assert.assertFalse(new File(node, "ks/other-1234").exists());
+
+        Assert.assertEquals(1, driver.getRestoreManifest(context(
+                restore.getAbsolutePath(), false, "",
+                Arrays.asList("ks.other"))).get().getFiles().size());
+    }
+
+    @Test
+    public void testDownloadWithoutManifest()
+            throws IOException, URISyntaxException {
+        final File node = new File(backups, BACKUP_NAME + "/" + NODE_ID);
+        Assert.assertTrue(new File(node, "ks/cf").mkdirs());
+        Files.write(new File(node, "ks/cf/mc-1-big-Data.db").toPath(), content);
+        Files.write(new File(node, "ks/cf/mc-1-big-Index.db").toPath(),
+                new byte[]{1, 2, 3});
+
+        new LocalStorageDriver().download(
+                context(restore.getAbsolutePath(), false, ""));
+        assertRestored();
+    }
+
+    @Test
+    public void testVerify() throws IOException, URISyntaxException {
+        final LocalStorageDriver driver = new LocalStorageDriver();
+        final BackupRestoreContext ctx =
+                context(data.getAbsolutePath(), false, "");
+        driver.upload(ctx);
+        Assert.assertTrue(driver.verify(ctx).isEmpty());
+
+        final File node = new File(backups, BACKUP_NAME + "/" + NODE_ID);
+        Files.write(new File(node, "ks/cf/mc-1-big-Index.db").toPath(),
+                new byte[]{1, 2});
+        Assert.assertEquals(Collections.singletonList("ks/cf/mc-1-big-Index.db"),
+                driver.verify(ctx).stream().map(BackupManifest.Entry::getPath)
+                        .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testCompressedDownloadVerifiesChecksum()
+            throws IOException, URISyntaxException {
+        final LocalStorageDriver driver = new LocalStorageDriver();
+        driver.upload(context(data.getAbsolutePath(), true, "lz4"));
+
+        // Replaces the stored Data.db component with another, valid, object.
+        final File store = new File(backups, "store/ks/cf");
+        final File[] stored = store.listFiles();
+        final File dataFile = stored[0].getName().contains("Data.db") ?
+                stored[0] : stored[1];
+        final File indexFile = (dataFile == stored[0]) ? stored[1] : stored[0];
+        Files.copy(indexFile.toPath(), dataFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        try {
+            driver.download(context(restore.getAbsolutePath(), true, "lz4"));
+            Assert.fail("Expected a checksum mismatch");
+        } catch (IOException ex) {
+            Assert.assertTrue(ex.getMessage(), ex.getCause().getMessage()
+                    .startsWith("Checksum mismatch"));
+        }
+    }
+}
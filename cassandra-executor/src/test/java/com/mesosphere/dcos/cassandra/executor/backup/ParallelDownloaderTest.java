@@ -0,0 +1,96 @@
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import com.google.common.hash.Hashing;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class tests the ParallelDownloader class.
+ */
+public class ParallelDownloaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDownloadWritesRangesAtOffsets() throws IOException {
+        final byte[] content = new byte[10 * 1024 + 17];
+        new Random(42).nextBytes(content);
+        final File file = new File(folder.getRoot(), "data.db");
+        final AtomicInteger ranges = new AtomicInteger();
+
+        try (ParallelDownloader downloader = new ParallelDownloader(1024, 4)) {
+            downloader.download(file, content.length, (offset, length) -> {
+                ranges.incrementAndGet();
+                return new ByteArrayInputStream(content, (int) offset,
+                        (int) length);
+            });
+            downloader.await();
+        }
+
+        Assert.assertEquals(11, ranges.get());
+        Assert.assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void testDownloadEmptyFile() throws IOException {
+        final File file = new File(folder.getRoot(), "empty.db");
+
+        try (ParallelDownloader downloader = new ParallelDownloader(1024, 4)) {
+            downloader.download(file, 0, (offset, length) -> {
+                throw new IOException("No range expected");
+            });
+            downloader.await();
+        }
+
+        Assert.assertTrue(file.isFile());
+        Assert.assertEquals(0, file.length());
+    }
+
+    @Test(expected = IOException.class)
+    public void testDownloadFailsOnShortRange() throws IOException {
+        final File file = new File(folder.getRoot(), "short.db");
+
+        try (ParallelDownloader downloader = new ParallelDownloader(1024, 4)) {
+            downloader.download(file, 2048, (offset, length) ->
+                    new ByteArrayInputStream(new byte[(int) length - 1]));
+            downloader.await();
+        }
+    }
+
+    @Test
+    public void testDownloadVerifiesChecksum() throws IOException {
+        final byte[] content = new byte[10 * 1024 + 17];
+        new Random(42).nextBytes(content);
+        final String checksum = Hashing.crc32c().hashBytes(content).toString();
+        final File file = new File(folder.getRoot(), "data.db");
+
+        try (ParallelDownloader downloader = new ParallelDownloader(1024, 4)) {
+            downloader.download(file, content.length, checksum,
+                    (offset, length) -> new ByteArrayInputStream(content,
+                            (int) offset, (int) length));
+            downloader.await();
+        }
+        Assert.assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+
+        content[5000] ^= 1;
+        try (ParallelDownloader downloader = new ParallelDownloader(1024, 4)) {
+            downloader.download(file, content.length, checksum,
+                    (offset, length) -> new ByteArrayInputStream(content,
+                            (int) offset, (int) length));
+            downloader.await();
+            Assert.fail("Expected a checksum mismatch");
+        } catch (IOException ex) {
+            Assert.assertTrue(ex.getCause().getMessage()
+                    .startsWith("Checksum mismatch"));
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class tests the ParallelSSTableLoader class.
+ */
+public class ParallelSSTableLoaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File node;
+
+    @Before
+    public void beforeEach() throws IOException {
+        node = folder.newFolder("node-0");
+        for (String table : new String[]{"ks1/cf1", "ks1/cf2", "ks2/cf1",
+                "ks2/cf2", "ks2/cf3"}) {
+            Assert.assertTrue(new File(node, table).mkdirs());
+        }
+        // Files in the node and keyspace directories are not tables.
+        Assert.assertTrue(new File(node, "manifest.json").createNewFile());
+        Assert.assertTrue(new File(node, "ks1/file").createNewFile());
+    }
+
+    @Test
+    public void testLoadsTablesWithinConcurrency() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final Set<String> loaded = ConcurrentHashMap.newKeySet();
+
+        final ParallelSSTableLoader loader = new ParallelSSTableLoader(
+                (directory, progress) -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(),
+                            Math::max);
+                    try {
+                        progress.update("a-Data.db", 50, 100);
+                        progress.update("b-Data.db", 100, 100);
+                        Assert.assertEquals(75, progress.getPercent());
+                        TimeUnit.MILLISECONDS.sleep(20);
+                        loaded.add(directory.getParentFile().getName() + "." +
+                                directory.getName());
+                    } catch (InterruptedException ex) {
+                        throw new IOException(ex);
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                }, 2);
+
+        final AtomicInteger updates = new AtomicInteger();
+        final List<ParallelSSTableLoader.TableProgress> tables =
+                loader.load(node, progress -> updates.incrementAndGet());
+
+        Assert.assertEquals(5, tables.size());
+        Assert.assertEquals(5, loaded.size());
+        Assert.assertTrue(loaded.contains("ks2.cf3"));
+        Assert.assertTrue(maxRunning.get() <= 2);
+        // Two file updates and the completion of each table.
+        Assert.assertEquals(15, updates.get());
+        for (ParallelSSTableLoader.TableProgress table : tables) {
+            Assert.assertTrue(table.isDone());
+            Assert.assertEquals(100, table.getPercent());
+            Assert.assertEquals(150, table.getBytes());
+            Assert.assertEquals(200, table.getTotalBytes());
+        }
+    }
+
+    @Test
+    public void testFailedTableDoesNotStopOthers() throws Exception {
+        final Set<String> loaded = ConcurrentHashMap.newKeySet();
+        final ParallelSSTableLoader loader = new ParallelSSTableLoader(
+                (directory, progress) -> {
+                    final String table = directory.getParentFile().getName() +
+                            "." + directory.getName();
+                    if (table.equals("ks1.cf2")) {
+                        throw new IOException("Stream failed");
+                    }
+                    loaded.add(table);
+                }, 1);
+
+        try {
+            loader.load(node, progress -> {
+            });
+            Assert.fail("Expected the load to fail");
+        } catch (IOException ex) {
+            Assert.assertEquals("Failed to load column families: ks1.cf2",
+                    ex.getMessage());
+            Assert.assertEquals(1, ex.getSuppressed().length);
+        }
+        Assert.assertEquals(4, loaded.size());
+    }
+
+    @Test
+    public void testImportsIntoLiveDirectories() throws Exception {
+        final String oldId = "-0123456789abcdef0123456789abcdef";
+        final String newId = "-fedcba9876543210fedcba9876543210";
+        final File data = folder.newFolder("data");
+        final File backup = new File(data, "backup/node-0");
+        // The table was created again since the backup, so it has a new id.
+        Assert.assertTrue(new File(data, "ks/cf" + newId).mkdirs());
+        Assert.assertTrue(new File(backup, "ks/cf" + oldId).mkdirs());
+        Files.write(new File(backup, "ks/cf" + oldId + "/mc-1-big-Data.db")
+                .toPath(), new byte[]{1, 2, 3});
+
+        final Set<String> refreshed = ConcurrentHashMap.newKeySet();
+        final List<ParallelSSTableLoader.TableProgress> tables =
+                ParallelSSTableLoader.createImporter(data,
+                        (keyspace, table) -> refreshed.add(keyspace + "." + table),
+                        1).load(backup, progress -> {
+                });
+
+        Assert.assertEquals(1, tables.size());
+        Assert.assertEquals(3, tables.get(0).getBytes());
+        Assert.assertEquals(Collections.singleton("ks.cf"), refreshed);
+        Assert.assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(
+                new File(data, "ks/cf" + newId + "/mc-1-big-Data.db").toPath()));
+    }
+
+    @Test
+    public void testImportRenamesTakenGenerations() throws Exception {
+        final File data = folder.newFolder("data");
+        final File backup = new File(data, "backup/node-0");
+        Assert.assertTrue(new File(data, "ks/cf").mkdirs());
+        Assert.assertTrue(new File(backup, "ks/cf").mkdirs());
+        // The snapshot was linked from the live SSTables, so its names are
+        // taken.
+        Files.write(new File(data, "ks/cf/mc-1-big-Data.db").toPath(),
+                new byte[]{1});
+        Files.write(new File(data, "ks/cf/mc-7-big-Data.db").toPath(),
+                new byte[]{7});
+        Files.write(new File(backup, "ks/cf/mc-1-big-Data.db").toPath(),
+                new byte[]{1, 1});
+        Files.write(new File(backup, "ks/cf/mc-1-big-Index.db").toPath(),
+                new byte[]{1, 2});
+        Files.write(new File(backup, "ks/cf/mc-2-big-Data.db").toPath(),
+                new byte[]{2, 1});
+
+        final Set<String> refreshed = ConcurrentHashMap.newKeySet();
+        ParallelSSTableLoader.createImporter(data,
+                (keyspace, table) -> refreshed.add(keyspace + "." + table), 1)
+                .load(backup, progress -> {
+                });
+
+        Assert.assertEquals(Collections.singleton("ks.cf"), refreshed);
+        final File live = new File(data, "ks/cf");
+        Assert.assertArrayEquals(new byte[]{1}, Files.readAllBytes(
+                new File(live, "mc-1-big-Data.db").toPath()));
+        Assert.assertArrayEquals(new byte[]{7}, Files.readAllBytes(
+                new File(live, "mc-7-big-Data.db").toPath()));
+        Assert.assertArrayEquals(new byte[]{1, 1}, Files.readAllBytes(
+                new File(live, "mc-8-big-Data.db").toPath()));
+        Assert.assertArrayEquals(new byte[]{1, 2}, Files.readAllBytes(
+                new File(live, "mc-8-big-Index.db").toPath()));
+        Assert.assertArrayEquals(new byte[]{2, 1}, Files.readAllBytes(
+                new File(live, "mc-9-big-Data.db").toPath()));
+        Assert.assertEquals(5, live.list().length);
+    }
+
+    @Test
+    public void testImportNamesKeepLegacyPrefix() throws Exception {
+        final Map<String, String> names =
+                ParallelSSTableLoader.SSTableImporter.getImportNames(
+                        "ks-cf-",
+                        Arrays.asList("ks-cf-ka-10-Data.db",
+                                "ks-cf-ka-2-Data.db", "manifest.json"),
+                        Arrays.asList("ks-cf-ka-3-Data.db"));
+        Assert.assertEquals("ks-cf-ka-4-Data.db",
+                names.get("ks-cf-ka-2-Data.db"));
+        Assert.assertEquals("ks-cf-ka-5-Data.db",
+                names.get("ks-cf-ka-10-Data.db"));
+        Assert.assertEquals("manifest.json", names.get("manifest.json"));
+    }
+
+    @Test
+    public void testImportRequiresSchema() throws Exception {
+        final File data = folder.newFolder("data");
+        Assert.assertTrue(new File(data, "ks").mkdirs());
+        final ParallelSSTableLoader.SSTableImporter importer =
+                new ParallelSSTableLoader.SSTableImporter(data,
+                        (keyspace, table) -> {
+                        });
+        try {
+            importer.getTableDirectory("ks", "cf");
+            Assert.fail("Expected the table to be missing");
+        } catch (IOException ex) {
+            Assert.assertTrue(ex.getMessage().startsWith(
+                    "No data directory for column family ks.cf"));
+        }
+    }
+}
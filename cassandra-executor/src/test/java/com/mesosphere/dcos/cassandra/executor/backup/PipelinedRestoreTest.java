@@ -0,0 +1,172 @@
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import com.mesosphere.dcos.cassandra.executor.compress.NoCompressionDriver;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class tests the PipelinedRestore class.
+ */
+public class PipelinedRestoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File node;
+    private List<BackupManifest.Entry> files;
+
+    @Before
+    public void beforeEach() throws IOException {
+        node = folder.newFolder("node-0");
+        files = new ArrayList<>();
+        for (String table : new String[]{"ks1/cf1", "ks1/cf2", "ks2/cf1",
+                "ks2/cf2"}) {
+            files.add(entry(table + "/mc-1-big-Data.db", 60));
+            files.add(entry(table + "/mc-1-big-Index.db", 40));
+        }
+        files.add(entry("ks1/file", 1000));
+    }
+
+    private static BackupManifest.Entry entry(String path, long size) {
+        return BackupManifest.Entry.create(path, "backup/node-0/" + path,
+                size, null, NoCompressionDriver.NAME);
+    }
+
+    private long stagedBytes() throws IOException {
+        return Files.walk(node.toPath())
+                .filter(Files::isRegularFile)
+                .mapToLong(path -> path.toFile().length())
+                .sum();
+    }
+
+    /**
+     * Writes the files of a table and counts them as staged until the table
+     * is loaded.
+     */
+    private PipelinedRestore.TableDownloader downloader(AtomicLong staged,
+                                                        AtomicLong maxStaged) {
+        return entries -> {
+            long size = 0;
+            for (BackupManifest.Entry entry : entries) {
+                final File file = new File(node, entry.getPath());
+                Assert.assertTrue(file.getParentFile().mkdirs() ||
+                        file.getParentFile().isDirectory());
+                Files.write(file.toPath(), new byte[(int) entry.getSize()]);
+                size += entry.getSize();
+            }
+            maxStaged.accumulateAndGet(staged.addAndGet(size), Math::max);
+        };
+    }
+
+    private static long size(File directory) {
+        final File[] files = directory.listFiles();
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    @Test
+    public void testStagedBytesStayWithinBudget() throws Exception {
+        final AtomicLong staged = new AtomicLong();
+        final AtomicLong maxStaged = new AtomicLong();
+        final Set<String> loaded = ConcurrentHashMap.newKeySet();
+        final ParallelSSTableLoader loader = new ParallelSSTableLoader(
+                (directory, progress) -> {
+                    Assert.assertEquals(2, directory.list().length);
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(20);
+                    } catch (InterruptedException ex) {
+                        throw new IOException(ex);
+                    }
+                    loaded.add(directory.getParentFile().getName() + "." +
+                            directory.getName());
+                    staged.addAndGet(-size(directory));
+                }, 2);
+
+        final List<ParallelSSTableLoader.TableProgress> tables =
+                new PipelinedRestore(downloader(staged, maxStaged), node, 250,
+                        loader)
+                        .restore(files, progress -> {
+                        });
+
+        Assert.assertEquals(4, tables.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("ks1.cf1", "ks1.cf2",
+                "ks2.cf1", "ks2.cf2")), loaded);
+        // At most two tables of 100 bytes fit within the budget at once.
+        Assert.assertTrue(maxStaged.get() <= 200);
+        Assert.assertEquals(0, stagedBytes());
+        for (ParallelSSTableLoader.TableProgress table : tables) {
+            Assert.assertTrue(table.isDone());
+        }
+        Assert.assertFalse(new File(node, "ks1/file").exists());
+    }
+
+    @Test
+    public void testTableLargerThanBudgetIsStagedAlone() throws Exception {
+        final AtomicLong staged = new AtomicLong();
+        final AtomicLong maxStaged = new AtomicLong();
+        final ParallelSSTableLoader loader = new ParallelSSTableLoader(
+                (directory, progress) -> staged.addAndGet(-size(directory)),
+                4);
+
+        final List<ParallelSSTableLoader.TableProgress> tables =
+                new PipelinedRestore(downloader(staged, maxStaged), node, 50,
+                        loader)
+                        .restore(files, progress -> {
+                        });
+
+        Assert.assertEquals(4, tables.size());
+        Assert.assertEquals(100, maxStaged.get());
+        Assert.assertEquals(0, stagedBytes());
+    }
+
+    @Test
+    public void testFailedDownloadStopsRestore() throws Exception {
+        final PipelinedRestore.TableDownloader download = downloader(
+                new AtomicLong(), new AtomicLong());
+        final Set<String> loaded = ConcurrentHashMap.newKeySet();
+        final ParallelSSTableLoader loader = new ParallelSSTableLoader(
+                (directory, progress) -> loaded.add(directory.getName()), 1);
+
+        try {
+            new PipelinedRestore(entries -> {
+                if (entries.get(0).getPath().startsWith("ks2/cf1")) {
+                    throw new IOException("Connection reset");
+                }
+                download.download(entries);
+            }, node, 1000, loader).restore(files, progress -> {
+            });
+            Assert.fail("Expected the restore to fail");
+        } catch (IOException ex) {
+            Assert.assertEquals("Failed to download column family: ks2/cf1",
+                    ex.getMessage());
+        }
+        // ks1/cf1 and ks1/cf2 were downloaded before the failure.
+        Assert.assertEquals(new HashSet<>(Arrays.asList("cf1", "cf2")),
+                loaded);
+        Assert.assertEquals(0, stagedBytes());
+    }
+
+    @Test
+    public void testGroupByTable() {
+        Assert.assertEquals(Arrays.asList("ks1/cf1", "ks1/cf2", "ks2/cf1",
+                "ks2/cf2"),
+                new ArrayList<>(PipelinedRestore.groupByTable(files).keySet()));
+    }
+}
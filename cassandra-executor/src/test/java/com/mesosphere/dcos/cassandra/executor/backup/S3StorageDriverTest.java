@@ -90,6 +90,33 @@ public class S3StorageDriverTest {
         Assert.assertEquals(nestedPath + "/" + backupName, s3StorageDriver.getPrefixKey(backupRestoreContext));
     }
 
+    @Test
+    public void testGetRootKeyS3Protocol() throws URISyntaxException {
+        BackupRestoreContext backupRestoreContext = BackupRestoreContext.create(
+                "node-id",
+                "backup-name",
+                "s3://cassandrabackup",
+                "local-location",
+                "account-id",
+                "secret-key",
+                false);
+        Assert.assertEquals("", s3StorageDriver.getRootKey(backupRestoreContext));
+    }
+
+    @Test
+    public void testGetNestedRootKeyHTTPSProtocol() throws URISyntaxException {
+        String nestedPath = "nested-path/hi/yah";
+        BackupRestoreContext backupRestoreContext = BackupRestoreContext.create(
+                "node-id",
+                "backup-name",
+                "https://s3-us-west-2.amazonaws.com/cassandrabackup/" + nestedPath,
+                "local-location",
+                "account-id",
+                "secret-key",
+                false);
+        Assert.assertEquals(nestedPath + "/", s3StorageDriver.getRootKey(backupRestoreContext));
+    }
+
     @Test
     public void testGetEmptyPrefixKeyHTTPSProtocol() throws URISyntaxException {
         String backupName = "backup-name";
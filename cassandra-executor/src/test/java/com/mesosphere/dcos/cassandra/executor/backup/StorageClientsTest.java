@@ -0,0 +1,91 @@
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class tests the StorageClients class.
+ */
+public class StorageClientsTest {
+    private static final StorageClients.Key KEY = new StorageClients.Key(
+            "s3", "https://endpoint", "account", "secret", "");
+
+    private final AtomicInteger created = new AtomicInteger();
+    private final List<String> closed = new ArrayList<>();
+
+    private StorageClients.Lease<String> lease(StorageClients clients,
+                                               StorageClients.Key key)
+            throws IOException {
+        return clients.lease(key,
+                () -> "client-" + created.incrementAndGet(), closed::add);
+    }
+
+    @Test
+    public void testReusesClients() throws IOException {
+        final StorageClients clients = new StorageClients(0);
+        try (StorageClients.Lease<String> first = lease(clients, KEY)) {
+            Assert.assertEquals("client-1", first.get());
+        }
+        try (StorageClients.Lease<String> second = lease(clients, KEY);
+             StorageClients.Lease<String> third = lease(clients,
+                     new StorageClients.Key("s3", "https://endpoint",
+                             "account", "secret", ""))) {
+            Assert.assertEquals("client-1", second.get());
+            Assert.assertEquals("client-1", third.get());
+        }
+        Assert.assertEquals(1, created.get());
+
+        // Other credentials get another client.
+        try (StorageClients.Lease<String> other = lease(clients,
+                new StorageClients.Key("s3", "https://endpoint", "account",
+                        "other", ""))) {
+            Assert.assertEquals("client-2", other.get());
+        }
+        Assert.assertEquals(2, clients.size());
+        Assert.assertFalse(KEY.toString().contains("secret"));
+    }
+
+    @Test
+    public void testEvictsIdleClients() throws IOException {
+        final StorageClients clients = new StorageClients(0);
+        final StorageClients.Lease<String> lease = lease(clients, KEY);
+
+        // A leased client is not evicted.
+        Assert.assertEquals(0, clients.evictIdle());
+        lease.close();
+        lease.close();
+        Assert.assertEquals(1, clients.evictIdle());
+        Assert.assertEquals(0, clients.size());
+        Assert.assertEquals(1, closed.size());
+
+        try (StorageClients.Lease<String> next = lease(clients, KEY)) {
+            Assert.assertEquals("client-2", next.get());
+        }
+    }
+
+    @Test
+    public void testCloseWaitsForLeases() throws IOException {
+        final StorageClients clients = new StorageClients(0);
+        final StorageClients.Lease<String> lease = lease(clients, KEY);
+        clients.close();
+        Assert.assertTrue(closed.isEmpty());
+        lease.close();
+        Assert.assertEquals(1, closed.size());
+        Assert.assertEquals(0, clients.size());
+    }
+
+    @Test
+    public void testDoesNotCacheFailures() throws IOException {
+        final StorageClients clients = new StorageClients(0);
+        try (StorageClients.Lease<String> lease = clients.lease(KEY,
+                () -> null, closed::add)) {
+            Assert.assertNull(lease.get());
+        }
+        Assert.assertEquals(0, clients.size());
+    }
+}
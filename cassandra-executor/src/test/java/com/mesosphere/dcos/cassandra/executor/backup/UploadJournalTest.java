@@ -0,0 +1,90 @@
+package com.mesosphere.dcos.cassandra.executor.backup;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class tests the UploadJournal class.
+ */
+public class UploadJournalTest {
+    private static final String LOCATION = "s3://bucket/backup/node-0";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static BackupManifest.Entry entry(String path) {
+        return BackupManifest.Entry.create(path, "backup/node-0/" + path, 10,
+                "checksum", BackupManifest.NO_COMPRESSION);
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+        final File file = new File(folder.getRoot(), "journal/backup.journal");
+        try (UploadJournal journal = UploadJournal.open(file, LOCATION)) {
+            journal.fileUploaded(entry("ks/cf/a-Data.db"));
+            journal.uploadStarted("key", "upload-1", 100);
+            journal.partUploaded("key", "upload-1", 1, "etag-1");
+            journal.partUploaded("key", "upload-1", 2, "etag-2");
+            journal.uploadStarted("done", "upload-2", 100);
+            journal.uploadFinished("done");
+        }
+
+        try (UploadJournal journal = UploadJournal.open(file, LOCATION)) {
+            Assert.assertEquals(entry("ks/cf/a-Data.db"),
+                    journal.getFile("ks/cf/a-Data.db").get());
+            Assert.assertFalse(journal.getFile("ks/cf/b-Data.db").isPresent());
+            final UploadJournal.MultipartUpload upload =
+                    journal.getMultipartUpload("key").get();
+            Assert.assertEquals("upload-1", upload.getUploadId());
+            Assert.assertEquals(100, upload.getPartSize());
+            Assert.assertEquals(2, upload.getParts().size());
+            Assert.assertEquals("etag-2", upload.getParts().get(2));
+            Assert.assertFalse(journal.getMultipartUpload("done").isPresent());
+        }
+    }
+
+    @Test
+    public void testReplayIgnoresTruncatedRecord() throws IOException {
+        final File file = new File(folder.getRoot(), "backup.journal");
+        try (UploadJournal journal = UploadJournal.open(file, LOCATION)) {
+            journal.fileUploaded(entry("ks/cf/a-Data.db"));
+        }
+        Files.write(file.toPath(), "{\"type\":\"file\",\"ent".getBytes(
+                StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (UploadJournal journal = UploadJournal.open(file, LOCATION)) {
+            Assert.assertEquals(1, journal.getFiles().size());
+        }
+    }
+
+    @Test
+    public void testJournalForAnotherLocationIsDiscarded() throws IOException {
+        final File file = new File(folder.getRoot(), "backup.journal");
+        try (UploadJournal journal = UploadJournal.open(file, LOCATION)) {
+            journal.fileUploaded(entry("ks/cf/a-Data.db"));
+        }
+
+        try (UploadJournal journal = UploadJournal.open(file,
+                "s3://other/backup/node-0")) {
+            Assert.assertTrue(journal.getFiles().isEmpty());
+        }
+    }
+
+    @Test
+    public void testDelete() throws IOException {
+        final File file = new File(folder.getRoot(), "backup.journal");
+        final UploadJournal journal = UploadJournal.open(file, LOCATION);
+        journal.fileUploaded(entry("ks/cf/a-Data.db"));
+        Assert.assertTrue(file.isFile());
+        journal.delete();
+        Assert.assertFalse(file.exists());
+    }
+}
@@ -0,0 +1,130 @@
+package com.mesosphere.dcos.cassandra.executor.backup.azure;
+
+import com.mesosphere.dcos.cassandra.executor.compress.BufferPool;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class tests the PrefetchingBlobInputStream class.
+ */
+public class PrefetchingBlobInputStreamTest {
+    private byte[] content;
+    private ExecutorService executor;
+
+    @Before
+    public void beforeEach() {
+        // The blob is padded like a page blob, only the original size is read.
+        content = new byte[10 * 1024 + 512];
+        new Random(42).nextBytes(content);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void afterEach() {
+        executor.shutdownNow();
+    }
+
+    private int readRange(long offset, int length, byte[] buffer) {
+        System.arraycopy(content, (int) offset, buffer, 0, length);
+        return length;
+    }
+
+    @Test
+    public void testReadsOriginalSizeAheadOfReader() throws IOException {
+        final long length = 10 * 1024 + 17;
+        final AtomicInteger ranges = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final BufferPool buffers = new BufferPool(1024, 8);
+
+        final byte[] read;
+        try (InputStream stream = new PrefetchingBlobInputStream("blob",
+                (offset, size, buffer) -> {
+                    ranges.incrementAndGet();
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(),
+                            Math::max);
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(5);
+                        return readRange(offset, size, buffer);
+                    } catch (InterruptedException ex) {
+                        throw new InterruptedIOException();
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                }, length, buffers, executor, 3)) {
+            read = IOUtils.toByteArray(stream);
+        }
+
+        Assert.assertEquals(11, ranges.get());
+        Assert.assertTrue(maxInFlight.get() <= 3);
+        Assert.assertEquals(length, read.length);
+        for (int i = 0; i < length; i++) {
+            Assert.assertEquals(content[i], read[i]);
+        }
+    }
+
+    private byte[] readAll(BufferPool buffers) {
+        try (InputStream stream = new PrefetchingBlobInputStream("blob",
+                this::readRange, content.length, buffers, executor, 4)) {
+            return IOUtils.toByteArray(stream);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Test
+    public void testStreamsShareABoundedPool() throws Exception {
+        final BufferPool buffers = new BufferPool(1024, 2);
+        final ExecutorService readers = Executors.newFixedThreadPool(3);
+        try {
+            final List<Future<byte[]>> reads = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                reads.add(readers.submit(() -> readAll(buffers)));
+            }
+            for (Future<byte[]> read : reads) {
+                Assert.assertArrayEquals(content, read.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            readers.shutdownNow();
+        }
+
+        // All buffers are back in the pool.
+        Assert.assertNotNull(buffers.tryAcquire());
+        Assert.assertNotNull(buffers.tryAcquire());
+    }
+
+    @Test
+    public void testEmptyBlob() throws IOException {
+        try (InputStream stream = new PrefetchingBlobInputStream("empty",
+                (offset, size, buffer) -> {
+                    throw new IOException("No range expected");
+                }, 0, new BufferPool(1024, 1), executor, 4)) {
+            Assert.assertEquals(-1, stream.read());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testFailedRangeFailsRead() throws IOException {
+        try (InputStream stream = new PrefetchingBlobInputStream("short",
+                (offset, size, buffer) -> size - 1, content.length,
+                new BufferPool(1024, 4), executor, 4)) {
+            IOUtils.toByteArray(stream);
+        }
+    }
+}
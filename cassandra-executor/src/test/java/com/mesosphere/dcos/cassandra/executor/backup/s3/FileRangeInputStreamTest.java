@@ -0,0 +1,62 @@
+package com.mesosphere.dcos.cassandra.executor.backup.s3;
+
+import com.google.common.hash.Hashing;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This class tests the FileRangeInputStream class.
+ */
+public class FileRangeInputStreamTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadRangeWithMarkAndReset() throws IOException {
+        final byte[] content = new byte[4096];
+        new Random(42).nextBytes(content);
+        final File file = folder.newFile("data.db");
+        Files.write(file.toPath(), content);
+
+        try (InputStream input = new FileRangeInputStream(file, 1000, 2000)) {
+            Assert.assertTrue(input.markSupported());
+            input.mark(0);
+            final byte[] first = IOUtils.toByteArray(input);
+            Assert.assertArrayEquals(
+                    Arrays.copyOfRange(content, 1000, 3000), first);
+            Assert.assertEquals(-1, input.read());
+
+            input.reset();
+            Assert.assertArrayEquals(first, IOUtils.toByteArray(input));
+        }
+    }
+
+    @Test
+    public void testChecksumsRangeOnce() throws IOException {
+        final byte[] content = new byte[4096];
+        new Random(42).nextBytes(content);
+        final File file = folder.newFile("data.db");
+        Files.write(file.toPath(), content);
+
+        try (FileRangeInputStream input =
+                     new FileRangeInputStream(file, 1000, 2000)) {
+            input.mark(0);
+            final byte[] partial = new byte[500];
+            Assert.assertEquals(500, input.read(partial, 0, 500));
+            input.reset();
+            IOUtils.toByteArray(input);
+            Assert.assertEquals(Hashing.crc32c().hashBytes(content, 1000, 2000)
+                    .asInt(), input.getChecksum());
+        }
+    }
+}
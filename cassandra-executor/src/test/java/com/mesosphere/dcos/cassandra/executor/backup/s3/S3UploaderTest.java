@@ -0,0 +1,199 @@
+package com.mesosphere.dcos.cassandra.executor.backup.s3;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.google.common.hash.Hashing;
+import com.mesosphere.dcos.cassandra.executor.backup.BandwidthThrottle;
+import com.mesosphere.dcos.cassandra.executor.backup.UploadJournal;
+import com.mesosphere.dcos.cassandra.executor.compress.CompressionDriver;
+import com.mesosphere.dcos.cassandra.executor.compress.LZ4CompressionDriver;
+import com.mesosphere.dcos.cassandra.executor.compress.NoCompressionDriver;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * This class tests the S3Uploader class.
+ */
+public class S3UploaderTest {
+    private static final long MB = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void completesUploads(AmazonS3Client client) {
+        final CompleteMultipartUploadResult result =
+                new CompleteMultipartUploadResult();
+        result.setETag("object-etag");
+        Mockito.when(client.completeMultipartUpload(
+                Mockito.any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(result);
+    }
+
+    @Test
+    public void testGetPartSizeUsesConfiguredSize() {
+        Assert.assertEquals(64 * MB, S3Uploader.getPartSize(1024 * MB, 64 * MB));
+    }
+
+    @Test
+    public void testGetPartSizeRespectsMaxParts() {
+        final long length = 1024 * 1024 * MB; // 1TB
+        final long partSize = S3Uploader.getPartSize(length, 64 * MB);
+        Assert.assertTrue(partSize > 64 * MB);
+        Assert.assertTrue((length + partSize - 1) / partSize <= S3Uploader.MAX_PARTS);
+    }
+
+    @Test
+    public void testGetCompressedPartSizeRespectsMaxParts() {
+        final int partSize = S3Uploader.MAX_COMPRESSED_PART_SIZE;
+        Assert.assertEquals(partSize,
+                S3Uploader.getCompressedPartSize(1024 * MB, partSize));
+        for (long length : new long[]{80 * 1024 * MB, 1024 * 1024 * MB}) {
+            final int size = S3Uploader.getCompressedPartSize(length, partSize);
+            Assert.assertTrue(size > partSize);
+            Assert.assertEquals(0, size % partSize);
+            // Holds even if the file expands by a sixth when compressed.
+            Assert.assertTrue((length + length / 6 + size - 1) / size
+                    <= S3Uploader.MAX_PARTS);
+        }
+    }
+
+    @Test
+    public void testCompressedUploadStreamsParts() throws IOException {
+        final byte[] content = new byte[(int) (12 * MB)];
+        new Random(42).nextBytes(content);
+        final File file = folder.newFile("mc-1-big-Data.db");
+        Files.write(file.toPath(), content);
+
+        final Map<Integer, byte[]> parts = new ConcurrentSkipListMap<>();
+        final AmazonS3Client client = Mockito.mock(AmazonS3Client.class);
+        final InitiateMultipartUploadResult initiated =
+                new InitiateMultipartUploadResult();
+        initiated.setUploadId("upload-id");
+        Mockito.when(client.initiateMultipartUpload(
+                Mockito.any(InitiateMultipartUploadRequest.class)))
+                .thenReturn(initiated);
+        Mockito.when(client.uploadPart(Mockito.any(UploadPartRequest.class)))
+                .thenAnswer(invocation -> {
+                    final UploadPartRequest request =
+                            (UploadPartRequest) invocation.getArguments()[0];
+                    parts.put(request.getPartNumber(),
+                            IOUtils.toByteArray(request.getInputStream()));
+                    final UploadPartResult result = new UploadPartResult();
+                    result.setPartNumber(request.getPartNumber());
+                    result.setETag("etag-" + request.getPartNumber());
+                    return result;
+                });
+        completesUploads(client);
+
+        final CompressionDriver compression = new LZ4CompressionDriver();
+        final AtomicReference<S3Uploader.Uploaded> uploaded =
+                new AtomicReference<>();
+        try (S3Uploader uploader = new S3Uploader(client, "bucket",
+                S3Uploader.MIN_PART_SIZE, 2)) {
+            uploader.upload(file, "key", compression, uploaded::set);
+            uploader.await();
+        }
+        Assert.assertEquals(Hashing.crc32c().hashBytes(content).toString(),
+                uploaded.get().getChecksum());
+        Assert.assertEquals("object-etag", uploaded.get().getETag());
+
+        final ArgumentCaptor<CompleteMultipartUploadRequest> completed =
+                ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        Mockito.verify(client).completeMultipartUpload(completed.capture());
+        Assert.assertEquals(parts.size(), completed.getValue().getPartETags().size());
+        Assert.assertTrue(parts.size() > 1);
+
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        for (byte[] part : parts.values()) {
+            compressed.write(part);
+        }
+        final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        compression.decompress(
+                new ByteArrayInputStream(compressed.toByteArray()),
+                decompressed);
+        Assert.assertArrayEquals(content, decompressed.toByteArray());
+    }
+
+    @Test
+    public void testMultipartUploadResumesFromJournal() throws IOException {
+        final byte[] content = new byte[(int) (12 * MB)];
+        new Random(42).nextBytes(content);
+        final File file = folder.newFile("mc-2-big-Data.db");
+        Files.write(file.toPath(), content);
+
+        final File journalFile = new File(folder.getRoot(), "backup.journal");
+        try (UploadJournal journal = UploadJournal.open(journalFile, "location")) {
+            journal.uploadStarted("key", "upload-id", S3Uploader.MIN_PART_SIZE);
+            journal.partUploaded("key", "upload-id", 1, "etag-1");
+        }
+
+        final Map<Integer, byte[]> parts = new ConcurrentSkipListMap<>();
+        final AmazonS3Client client = Mockito.mock(AmazonS3Client.class);
+        Mockito.when(client.uploadPart(Mockito.any(UploadPartRequest.class)))
+                .thenAnswer(invocation -> {
+                    final UploadPartRequest request =
+                            (UploadPartRequest) invocation.getArguments()[0];
+                    Assert.assertEquals("upload-id", request.getUploadId());
+                    parts.put(request.getPartNumber(),
+                            IOUtils.toByteArray(request.getInputStream()));
+                    final UploadPartResult result = new UploadPartResult();
+                    result.setPartNumber(request.getPartNumber());
+                    result.setETag("etag-" + request.getPartNumber());
+                    return result;
+                });
+        completesUploads(client);
+
+        final AtomicReference<S3Uploader.Uploaded> uploaded =
+                new AtomicReference<>();
+        try (UploadJournal journal = UploadJournal.open(journalFile, "location");
+             S3Uploader uploader = new S3Uploader(client, "bucket",
+                     S3Uploader.MIN_PART_SIZE, 2, BandwidthThrottle.create(0),
+                     journal)) {
+            uploader.upload(file, "key", new NoCompressionDriver(),
+                    uploaded::set);
+            uploader.await();
+            Assert.assertFalse(journal.getMultipartUpload("key").isPresent());
+        }
+
+        Mockito.verify(client, Mockito.never()).initiateMultipartUpload(
+                Mockito.any(InitiateMultipartUploadRequest.class));
+        Assert.assertEquals(2, parts.size());
+        final int partSize = (int) S3Uploader.MIN_PART_SIZE;
+        Assert.assertArrayEquals(
+                Arrays.copyOfRange(content, partSize, 2 * partSize),
+                parts.get(2));
+
+        final ArgumentCaptor<CompleteMultipartUploadRequest> completed =
+                ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        Mockito.verify(client).completeMultipartUpload(completed.capture());
+        Assert.assertEquals(Arrays.asList("etag-1", "etag-2", "etag-3"),
+                completed.getValue().getPartETags().stream()
+                        .map(etag -> etag.getETag())
+                        .collect(Collectors.toList()));
+        // The part of the previous attempt is read again to checksum it.
+        Assert.assertEquals(Hashing.crc32c().hashBytes(content).toString(),
+                uploaded.get().getChecksum());
+    }
+}
@@ -0,0 +1,48 @@
+package com.mesosphere.dcos.cassandra.executor.compress;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * This class tests the BufferPool class.
+ */
+public class BufferPoolTest {
+
+    @Test
+    public void testReleasedBuffersAreReused() throws IOException {
+        final BufferPool pool = new BufferPool(16, 1);
+        final byte[] buffer = pool.acquire();
+        Assert.assertEquals(16, buffer.length);
+        pool.release(buffer);
+        Assert.assertSame(buffer, pool.acquire());
+    }
+
+    @Test
+    public void testAcquireBlocksUntilRelease() throws Exception {
+        final BufferPool pool = new BufferPool(16, 1);
+        final byte[] buffer = pool.acquire();
+        final Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            pool.release(buffer);
+        });
+        releaser.start();
+        Assert.assertSame(buffer, pool.acquire());
+        releaser.join();
+    }
+
+    @Test
+    public void testTryAcquireDoesNotBlock() throws IOException {
+        final BufferPool pool = new BufferPool(16, 1);
+        final byte[] buffer = pool.tryAcquire();
+        Assert.assertNotNull(buffer);
+        Assert.assertNull(pool.tryAcquire());
+        pool.release(buffer);
+        Assert.assertSame(buffer, pool.tryAcquire());
+    }
+}
@@ -0,0 +1,80 @@
+package com.mesosphere.dcos.cassandra.executor.compress;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This class tests the CompressionDriver implementations.
+ */
+public class CompressionDriverTest {
+
+    private static byte[] content() {
+        final byte[] content = new byte[1024 * 1024 + 17];
+        final Random random = new Random(42);
+        // Half random and half repeated data, so that it is compressible.
+        random.nextBytes(content);
+        Arrays.fill(content, content.length / 2, content.length, (byte) 7);
+        return content;
+    }
+
+    private static void assertRoundTrip(final CompressionDriver driver)
+            throws IOException {
+        final byte[] content = content();
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        driver.compress(new ByteArrayInputStream(content), compressed);
+
+        final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        driver.decompress(new ByteArrayInputStream(compressed.toByteArray()),
+                decompressed);
+        Assert.assertArrayEquals(content, decompressed.toByteArray());
+    }
+
+    @Test
+    public void testSnappyRoundTrip() throws IOException {
+        assertRoundTrip(new SnappyCompressionDriver());
+    }
+
+    @Test
+    public void testLZ4RoundTrip() throws IOException {
+        assertRoundTrip(new LZ4CompressionDriver());
+    }
+
+    @Test
+    public void testZstdRoundTrip() throws IOException {
+        assertRoundTrip(new ZstdCompressionDriver());
+    }
+
+    @Test
+    public void testNoCompressionRoundTrip() throws IOException {
+        assertRoundTrip(new NoCompressionDriver());
+    }
+
+    @Test
+    public void testFactory() {
+        final CompressionDriver defaultDriver = new SnappyCompressionDriver();
+        Assert.assertSame(defaultDriver,
+                CompressionDriverFactory.createCompressionDriver("",
+                        defaultDriver));
+        Assert.assertEquals(LZ4CompressionDriver.NAME,
+                CompressionDriverFactory.createCompressionDriver("LZ4",
+                        defaultDriver).getName());
+        Assert.assertEquals(ZstdCompressionDriver.NAME,
+                CompressionDriverFactory.createCompressionDriver("zstd",
+                        defaultDriver).getName());
+        Assert.assertEquals(NoCompressionDriver.NAME,
+                CompressionDriverFactory.createCompressionDriver("none",
+                        defaultDriver).getName());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFactoryRejectsUnknownCompression() {
+        CompressionDriverFactory.createCompressionDriver("gzip",
+                new SnappyCompressionDriver());
+    }
+}
@@ -90,7 +90,6 @@ public class CassandraRecoveryScheduler extends ChainedObserver {
     private Optional<CassandraDaemonTask> getTerminatedTask(
             final Set<String> ignore) {
         LOGGER.info("Ignoring blocks: {}", ignore);
-        cassandraState.refreshTasks();
         List<CassandraDaemonTask> terminated =
                 cassandraState.getDaemons().values().stream()
                         .filter(task -> cassandraState.isTerminated(task))
@@ -2,6 +2,7 @@ package com.mesosphere.dcos.cassandra.scheduler;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.inject.Inject;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.TextFormat;
@@ -19,6 +20,7 @@ import com.mesosphere.dcos.cassandra.scheduler.plan.cleanup.CleanupManager;
 import com.mesosphere.dcos.cassandra.scheduler.plan.repair.RepairManager;
 import com.mesosphere.dcos.cassandra.scheduler.seeds.SeedsManager;
 import io.dropwizard.lifecycle.Managed;
+import org.apache.mesos.MesosSchedulerDriver;
 import org.apache.mesos.Protos;
 import org.apache.mesos.Scheduler;
 import org.apache.mesos.SchedulerDriver;
@@ -31,7 +33,6 @@ import org.apache.mesos.reconciliation.Reconciler;
 import org.apache.mesos.scheduler.DefaultTaskKiller;
 import org.apache.mesos.scheduler.Observable;
 import org.apache.mesos.scheduler.Observer;
-import org.apache.mesos.scheduler.SchedulerDriverFactory;
 import org.apache.mesos.scheduler.plan.*;
 import org.apache.mesos.scheduler.recovery.DefaultTaskFailureListener;
 import org.apache.mesos.state.StateStore;
@@ -67,10 +68,10 @@ public class CassandraScheduler implements Scheduler, Managed, Observer {
     private final StateStore stateStore;
     private final DefaultConfigurationManager defaultConfigurationManager;
     private final Protos.Filters offerFilters;
+    private final StatusUpdatePipeline statusUpdates;
     private PlanScheduler planScheduler;
     private static DefaultTaskKiller taskKiller;
 
-    @Inject
     public CassandraScheduler(
             final ConfigurationManager configurationManager,
             final MesosConfig mesosConfig,
@@ -87,6 +88,32 @@ public class CassandraScheduler implements Scheduler, Managed, Observer {
             final ExecutorService executor,
             final StateStore stateStore,
             final DefaultConfigurationManager defaultConfigurationManager) {
+        this(configurationManager, mesosConfig, offerRequirementProvider,
+                planManager, cassandraState, client, eventBus, backup,
+                restore, cleanup, repair, seeds, executor, stateStore,
+                defaultConfigurationManager,
+                new StatusUpdatePipeline(cassandraState, planManager,
+                        MoreExecutors.directExecutor()));
+    }
+
+    @Inject
+    public CassandraScheduler(
+            final ConfigurationManager configurationManager,
+            final MesosConfig mesosConfig,
+            final PersistentOfferRequirementProvider offerRequirementProvider,
+            final PlanManager planManager,
+            final CassandraState cassandraState,
+            final SchedulerClient client,
+            final EventBus eventBus,
+            final BackupManager backup,
+            final RestoreManager restore,
+            final CleanupManager cleanup,
+            final RepairManager repair,
+            final SeedsManager seeds,
+            final ExecutorService executor,
+            final StateStore stateStore,
+            final DefaultConfigurationManager defaultConfigurationManager,
+            final StatusUpdatePipeline statusUpdates) {
         this.eventBus = eventBus;
         this.mesosConfig = mesosConfig;
         this.cassandraState = cassandraState;
@@ -111,6 +138,7 @@ public class CassandraScheduler implements Scheduler, Managed, Observer {
         this.executor = executor;
         this.stateStore = stateStore;
         this.defaultConfigurationManager = defaultConfigurationManager;
+        this.statusUpdates = statusUpdates;
 
         this.offerFilters = Protos.Filters.newBuilder().setRefuseSeconds(mesosConfig.getRefuseSeconds()).build();
         LOGGER.info("Creating an offer filter with refuse_seconds = {}", mesosConfig.getRefuseSeconds());
@@ -193,18 +221,23 @@ public class CassandraScheduler implements Scheduler, Managed, Observer {
         try {
             final List<Protos.OfferID> acceptedOffers = new ArrayList<>();
 
-            final Optional<Block> currentBlock = planManager.getCurrentBlock();
-
-            if (currentBlock.isPresent()) {
-                LOGGER.info("Current execution block = {}", currentBlock.toString());
-                try {
-                    acceptedOffers.addAll(planScheduler.resourceOffers(driver, offers, currentBlock.get()));
-                } catch (Throwable t) {
-                    LOGGER.error("Error occured with plan scheduler: {}", t);
+            final Optional<Block> currentBlock;
+            // The plan is updated by the status update workers under the
+            // same lock, so a block is not advanced while it is offered.
+            synchronized (statusUpdates.getPlanLock()) {
+                currentBlock = planManager.getCurrentBlock();
+
+                if (currentBlock.isPresent()) {
+                    LOGGER.info("Current execution block = {}", currentBlock.toString());
+                    try {
+                        acceptedOffers.addAll(planScheduler.resourceOffers(driver, offers, currentBlock.get()));
+                    } catch (Throwable t) {
+                        LOGGER.error("Error occured with plan scheduler: {}", t);
+                    }
+                } else {
+                    LOGGER.info("Current execution block = No block");
+                    LOGGER.info("Current plan {} interrupted.", (planManager.isInterrupted()) ? "is" : "is not");
                 }
-            } else {
-                LOGGER.info("Current execution block = No block");
-                LOGGER.info("Current plan {} interrupted.", (planManager.isInterrupted()) ? "is" : "is not");
             }
             // Perform any required repairs
             final List<Protos.Offer> unacceptedOffers = filterAcceptedOffers(
@@ -262,16 +295,7 @@ public class CassandraScheduler implements Scheduler, Managed, Observer {
                 status.getSource().name(),
                 status.getReason().name(),
                 status.getMessage());
-        try {
-            cassandraState.update(status);
-        } catch (Exception ex) {
-            LOGGER.error("Error updating Tasks with status: {} reason: {}", status, ex);
-        }
-        try {
-            planManager.update(status);
-        } catch (Exception ex) {
-            LOGGER.error("Error updating Stage Manager with status: {} reason: {}", status, ex);
-        }
+        statusUpdates.submit(driver, status);
     }
 
     @Override
@@ -322,7 +346,6 @@ public class CassandraScheduler implements Scheduler, Managed, Observer {
     }
 
     private void registerFramework() throws IOException {
-        final SchedulerDriverFactory factory = new SchedulerDriverFactory();
         final CassandraSchedulerConfiguration targetConfig =
                 (CassandraSchedulerConfiguration) defaultConfigurationManager.getTargetConfig();
         final ServiceConfig serviceConfig = targetConfig.getServiceConfig();
@@ -344,18 +367,26 @@ public class CassandraScheduler implements Scheduler, Managed, Observer {
 
         final Protos.FrameworkInfo frameworkInfo = builder.build();
 
+        // Status updates are acknowledged by the StatusUpdatePipeline once
+        // they are persisted, rather than by the driver when they are
+        // received.
         if (secretBytes.isPresent()) {
             // Authenticated if a non empty secret is provided.
-            setSchedulerDriver(factory.create(
+            setSchedulerDriver(new MesosSchedulerDriver(
                     this,
                     frameworkInfo,
                     mesosConfig.toZooKeeperUrl(),
-                    secretBytes.get().toByteArray()));
+                    false,
+                    Protos.Credential.newBuilder()
+                            .setPrincipal(frameworkInfo.getPrincipal())
+                            .setSecretBytes(secretBytes.get())
+                            .build()));
         } else {
-            setSchedulerDriver(factory.create(
+            setSchedulerDriver(new MesosSchedulerDriver(
                     this,
                     frameworkInfo,
-                    mesosConfig.toZooKeeperUrl()));
+                    mesosConfig.toZooKeeperUrl(),
+                    false));
         }
         LOGGER.info("Starting driver...");
         final Protos.Status startStatus = this.driver.start();
@@ -4,6 +4,7 @@ import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.mesosphere.dcos.cassandra.common.config.ConfigurationManager;
 import com.mesosphere.dcos.cassandra.common.config.MutableSchedulerConfiguration;
+import com.mesosphere.dcos.cassandra.common.persistence.BatchingStateStore;
 import com.mesosphere.dcos.cassandra.common.tasks.CassandraState;
 import com.mesosphere.dcos.cassandra.scheduler.health.RegisteredCheck;
 import com.mesosphere.dcos.cassandra.scheduler.health.ServersCheck;
@@ -69,6 +70,7 @@ public class Main extends Application<MutableSchedulerConfiguration> {
     registerManagedObjects(environment, injector);
     registerJerseyResources(environment, injector);
     registerHealthChecks(environment, injector);
+    registerMetrics(environment, injector);
   }
 
   private void registerJerseyResources(Environment environment, Injector injector) {
@@ -99,10 +101,16 @@ public class Main extends Application<MutableSchedulerConfiguration> {
   }
 
   private void registerManagedObjects(Environment environment, Injector injector) {
+    // Managed objects are stopped in reverse order, so pending writes are
+    // flushed once the scheduler has stopped.
+    environment.lifecycle().manage(
+      injector.getInstance(BatchingStateStore.class));
     environment.lifecycle().manage(
       injector.getInstance(ConfigurationManager.class));
     environment.lifecycle().manage(
       injector.getInstance(CassandraState.class));
+    environment.lifecycle().manage(
+      injector.getInstance(StatusUpdatePipeline.class));
     environment.lifecycle().manage(
       injector.getInstance(CassandraScheduler.class));
   }
@@ -115,6 +123,11 @@ public class Main extends Application<MutableSchedulerConfiguration> {
       injector.getInstance(ServersCheck.class));
   }
 
+  private void registerMetrics(Environment environment, Injector injector) {
+    environment.metrics().registerAll(
+      injector.getInstance(StatusUpdatePipeline.class));
+  }
+
 
   private void logConfiguration(MutableSchedulerConfiguration config) {
 
@@ -1,12 +1,15 @@
 package com.mesosphere.dcos.cassandra.scheduler;
 
 import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.AbstractModule;
 import com.google.inject.TypeLiteral;
 import com.google.inject.name.Names;
 import com.mesosphere.dcos.cassandra.common.config.*;
 import com.mesosphere.dcos.cassandra.common.offer.ClusterTaskOfferRequirementProvider;
 import com.mesosphere.dcos.cassandra.common.offer.PersistentOfferRequirementProvider;
+import com.mesosphere.dcos.cassandra.common.persistence.BatchingStateStore;
+import com.mesosphere.dcos.cassandra.common.persistence.CuratorTransactionWriter;
 import com.mesosphere.dcos.cassandra.common.serialization.BooleanStringSerializer;
 import com.mesosphere.dcos.cassandra.common.serialization.IntegerStringSerializer;
 import com.mesosphere.dcos.cassandra.common.serialization.Serializer;
@@ -28,6 +31,8 @@ import io.dropwizard.client.HttpClientBuilder;
 import io.dropwizard.client.HttpClientConfiguration;
 import io.dropwizard.setup.Environment;
 import org.apache.curator.RetryPolicy;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
 import org.apache.curator.retry.RetryForever;
 import org.apache.curator.retry.RetryUntilElapsed;
 import org.apache.http.client.HttpClient;
@@ -84,7 +89,23 @@ public class SchedulerModule extends AbstractModule {
                 configuration.getServiceConfig().getName(),
                 curatorConfig.getServers(),
                 retryPolicy);
-        bind(StateStore.class).toInstance(curatorStateStore);
+        // Flushes write the tasks and statuses read by the CuratorStateStore
+        // in a single transaction.
+        final CuratorFramework curator = CuratorFrameworkFactory.newClient(
+                curatorConfig.getServers(),
+                retryPolicy);
+        curator.start();
+        final BatchingStateStore stateStore = new BatchingStateStore(
+                curatorStateStore,
+                new CuratorTransactionWriter(curator,
+                        configuration.getServiceConfig().getName()),
+                Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder()
+                                .setNameFormat("state-store-flush-%d")
+                                .build()),
+                BatchingStateStore.DEFAULT_WINDOW_MS);
+        bind(BatchingStateStore.class).toInstance(stateStore);
+        bind(StateStore.class).toInstance(stateStore);
 
         try {
             Capabilities capabilities = new Capabilities(new DcosCluster());
@@ -101,7 +122,7 @@ public class SchedulerModule extends AbstractModule {
                     curatorConfig.getServers(),
                     configuration,
                     configValidator,
-                    curatorStateStore);
+                    stateStore);
             bind(DefaultConfigurationManager.class).toInstance(configurationManager);
         } catch (ConfigStoreException e) {
             throw new RuntimeException(e);
@@ -206,6 +227,7 @@ public class SchedulerModule extends AbstractModule {
         bind(CleanupManager.class).asEagerSingleton();
         bind(RepairManager.class).asEagerSingleton();
         bind(SeedsManager.class).asEagerSingleton();
+        bind(StatusUpdatePipeline.class).asEagerSingleton();
         bind(PropertyDeserializer.class).to(JsonPropertyDeserializer.class);
     }
 }
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.scheduler;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.mesosphere.dcos.cassandra.common.tasks.CassandraState;
+import io.dropwizard.lifecycle.Managed;
+import org.apache.mesos.Protos;
+import org.apache.mesos.SchedulerDriver;
+import org.apache.mesos.offer.TaskException;
+import org.apache.mesos.offer.TaskUtils;
+import org.apache.mesos.scheduler.plan.PlanManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * StatusUpdatePipeline applies the status updates the scheduler receives to
+ * the CassandraState and the plan on a pool of workers, so that persisting
+ * them does not block the driver's callback thread, which also delivers
+ * offers. Updates are queued per task and the updates of a task are applied
+ * in the order they were received, one at a time, while the updates of
+ * different tasks are applied concurrently. A TASK_RUNNING update that is
+ * still queued when a newer TASK_RUNNING update of the same task arrives is
+ * replaced by it.
+ *
+ * The driver must not acknowledge status updates implicitly. A status update
+ * is acknowledged once it has been stored and the write batch holding it has
+ * been persisted, along with the updates it replaced, so that an update that
+ * is rejected, or lost because the scheduler fails or its state fails to
+ * persist, is resent by Mesos. The plan is updated under the lock returned
+ * by getPlanLock(), which the scheduler also holds while it offers
+ * resources to the plan.
+ */
+public class StatusUpdatePipeline implements Managed, MetricSet {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            StatusUpdatePipeline.class);
+
+    /**
+     * The number of workers applying status updates.
+     */
+    public static final int WORKERS = 8;
+
+    private static final long STOP_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+
+    /**
+     * Checks whether a queued status update can be replaced by a newer one.
+     *
+     * @param update The newer status update of the same task.
+     * @param queued The queued status update.
+     * @return True if both are TASK_RUNNING updates of the same task id and
+     * the newer one does not drop the data of the queued one.
+     */
+    static boolean supersedes(final Protos.TaskStatus update,
+                              final Protos.TaskStatus queued) {
+        return update.getState() == Protos.TaskState.TASK_RUNNING
+                && queued.getState() == Protos.TaskState.TASK_RUNNING
+                && update.getTaskId().equals(queued.getTaskId())
+                && (update.hasData() || !queued.hasData());
+    }
+
+    private static String getKey(final Protos.TaskStatus status) {
+        try {
+            return TaskUtils.toTaskName(status.getTaskId());
+        } catch (TaskException e) {
+            return status.getTaskId().getValue();
+        }
+    }
+
+    private static final class Update {
+        private final SchedulerDriver driver;
+        private final Protos.TaskStatus status;
+        private final long received;
+        // The status updates acknowledged once the update is applied, which
+        // include those of the updates it replaced
+        private final List<Protos.TaskStatus> acknowledged;
+
+        private Update(final SchedulerDriver driver,
+                       final Protos.TaskStatus status,
+                       final long received,
+                       final List<Protos.TaskStatus> replaced) {
+            this.driver = driver;
+            this.status = status;
+            this.received = received;
+            this.acknowledged = new ArrayList<>(replaced);
+            this.acknowledged.add(status);
+        }
+    }
+
+    /**
+     * The queue of a task's status updates. It is scheduled on the executor
+     * when an update is added to it while it is empty, and applies updates
+     * until it is empty again.
+     */
+    private final class TaskQueue implements Runnable {
+        private final Deque<Update> updates = new ArrayDeque<>();
+        private boolean scheduled = false;
+
+        private void add(final SchedulerDriver driver,
+                         final Protos.TaskStatus status) {
+            synchronized (this) {
+                final Update last = updates.peekLast();
+                if (last != null && supersedes(status, last.status)) {
+                    LOGGER.debug("Replacing queued status update: {}",
+                            last.status.getTaskId().getValue());
+                    updates.pollLast();
+                    updates.addLast(new Update(driver, status, last.received,
+                            last.acknowledged));
+                    coalesced.mark();
+                    return;
+                }
+                updates.addLast(new Update(driver, status, System.nanoTime(),
+                        Collections.emptyList()));
+                backlog.incrementAndGet();
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                LOGGER.error("Status update pipeline is stopped, dropping " +
+                        "status update, it will be resent: {}", status, e);
+                synchronized (this) {
+                    backlog.addAndGet(-updates.size());
+                    updates.clear();
+                    scheduled = false;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                final Update update;
+                synchronized (this) {
+                    update = updates.pollFirst();
+                    if (update == null) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+                backlog.decrementAndGet();
+                apply(update);
+                latency.update(System.nanoTime() - update.received,
+                        TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private final CassandraState cassandraState;
+    private final PlanManager planManager;
+    private final Executor executor;
+    // Maps Task Name -> queue of its status updates
+    private final ConcurrentMap<String, TaskQueue> queues =
+            new ConcurrentHashMap<>();
+    // Serializes the updates of the plan, which were applied by a single
+    // thread before the pipeline
+    private final Object planLock = new Object();
+    private final AtomicInteger backlog = new AtomicInteger(0);
+    private final Meter coalesced = new Meter();
+    private final Timer latency = new Timer();
+
+    @Inject
+    public StatusUpdatePipeline(final CassandraState cassandraState,
+                                final PlanManager planManager) {
+        this(cassandraState, planManager, Executors.newFixedThreadPool(
+                WORKERS,
+                new ThreadFactoryBuilder()
+                        .setNameFormat("status-update-%d")
+                        .setDaemon(true)
+                        .build()));
+    }
+
+    /**
+     * Creates a StatusUpdatePipeline.
+     *
+     * @param cassandraState The state status updates are applied to.
+     * @param planManager    The plan status updates are applied to.
+     * @param executor       The executor that applies the status updates.
+     */
+    public StatusUpdatePipeline(final CassandraState cassandraState,
+                                final PlanManager planManager,
+                                final Executor executor) {
+        this.cassandraState = cassandraState;
+        this.planManager = planManager;
+        this.executor = executor;
+    }
+
+    /**
+     * Queues a status update to be applied.
+     *
+     * @param driver The driver the status update is acknowledged to once it
+     *               is applied.
+     * @param status The status update.
+     */
+    public void submit(final SchedulerDriver driver,
+                       final Protos.TaskStatus status) {
+        queues.computeIfAbsent(getKey(status), key -> new TaskQueue())
+                .add(driver, status);
+    }
+
+    /**
+     * Gets the lock the plan is updated under. It must be held by any other
+     * thread that reads or advances the plan's blocks.
+     *
+     * @return The lock of the plan.
+     */
+    public Object getPlanLock() {
+        return planLock;
+    }
+
+    /**
+     * Gets the number of queued status updates.
+     *
+     * @return The number of status updates that have not been applied yet.
+     */
+    public int getBacklog() {
+        return backlog.get();
+    }
+
+    private void apply(final Update update) {
+        final Protos.TaskStatus status = update.status;
+        boolean stored = true;
+        try {
+            cassandraState.update(status);
+        } catch (Exception ex) {
+            LOGGER.error("Failed to store status, it will be resent: {}",
+                    status, ex);
+            stored = false;
+        }
+        synchronized (planLock) {
+            try {
+                planManager.update(status);
+            } catch (Exception ex) {
+                LOGGER.error("Error updating Stage Manager with status: {} reason: {}", status, ex);
+            }
+        }
+        if (stored) {
+            // Acknowledged once the write batch holding the status is
+            // persisted, rather than flushing a batch per status.
+            cassandraState.whenPersisted(() -> acknowledge(update));
+        }
+    }
+
+    private void acknowledge(final Update update) {
+        for (Protos.TaskStatus status : update.acknowledged) {
+            // Status updates without a uuid, e.g. those sent for
+            // reconciliation, are not acknowledged.
+            if (status.hasUuid()) {
+                update.driver.acknowledgeStatusUpdate(status);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        final Map<String, Metric> metrics = new HashMap<>();
+        metrics.put("status_updates.backlog",
+                (Gauge<Integer>) this::getBacklog);
+        metrics.put("status_updates.coalesced", coalesced);
+        metrics.put("status_updates.latency", latency);
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    @Override
+    public void start() throws Exception {
+
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (executor instanceof ExecutorService) {
+            final ExecutorService service = (ExecutorService) executor;
+            service.shutdown();
+            if (!service.awaitTermination(STOP_TIMEOUT_MS,
+                    TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Stopped with {} status updates queued",
+                        getBacklog());
+                service.shutdownNow();
+            }
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.mesosphere.dcos.cassandra.scheduler.plan;
 
+import com.mesosphere.dcos.cassandra.common.config.Location;
 import com.mesosphere.dcos.cassandra.common.offer.CassandraOfferRequirementProvider;
 import com.mesosphere.dcos.cassandra.common.persistence.PersistenceException;
+import com.mesosphere.dcos.cassandra.common.tasks.CassandraDaemonTask;
 import com.mesosphere.dcos.cassandra.common.tasks.CassandraTask;
 import com.mesosphere.dcos.cassandra.common.tasks.ClusterTaskContext;
 import com.mesosphere.dcos.cassandra.common.tasks.CassandraState;
@@ -218,6 +220,29 @@ public abstract class AbstractClusterTaskBlock<C extends ClusterTaskContext> ext
         return daemon;
     }
 
+    /**
+     * Gets the rack of the node the block's task runs on.
+     *
+     * @return The data center and rack of the node, or an empty string if
+     * the node is unknown.
+     */
+    public String getRack() {
+        final CassandraDaemonTask task = cassandraState.getDaemons().get(daemon);
+        return task != null ? getRack(task) : "";
+    }
+
+    /**
+     * Gets the rack of a node. Racks of different data centers with the
+     * same name are different racks.
+     *
+     * @param task The daemon task of the node.
+     * @return The data center and rack of the node.
+     */
+    public static String getRack(CassandraDaemonTask task) {
+        final Location location = task.getConfig().getLocation();
+        return location.getDataCenter() + "/" + location.getRack();
+    }
+
     protected void setStatus(Status newStatus) {
         LOGGER.info("{}: changing status from: {} to: {}", getName(), status, newStatus);
         Status oldStatus = status;
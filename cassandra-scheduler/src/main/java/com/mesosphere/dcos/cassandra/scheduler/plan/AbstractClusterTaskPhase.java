@@ -50,6 +50,10 @@ public abstract class AbstractClusterTaskPhase<B extends Block, C extends Cluste
         return currentBlock;
     }
 
+    public C getContext() {
+        return context;
+    }
+
     @Override
     public UUID getId() {
         return id;
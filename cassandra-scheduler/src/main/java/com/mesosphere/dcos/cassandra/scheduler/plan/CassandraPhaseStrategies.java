@@ -2,10 +2,12 @@ package com.mesosphere.dcos.cassandra.scheduler.plan;
 
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
 import com.mesosphere.dcos.cassandra.scheduler.plan.backup.BackupSnapshotPhase;
 import com.mesosphere.dcos.cassandra.scheduler.plan.backup.DownloadSnapshotPhase;
 import com.mesosphere.dcos.cassandra.scheduler.plan.backup.RestoreSnapshotPhase;
 import com.mesosphere.dcos.cassandra.scheduler.plan.backup.UploadBackupPhase;
+import com.mesosphere.dcos.cassandra.scheduler.plan.backup.VerifyBackupPhase;
 import org.apache.mesos.scheduler.plan.*;
 
 public class CassandraPhaseStrategies implements PhaseStrategyFactory {
@@ -35,10 +37,21 @@ public class CassandraPhaseStrategies implements PhaseStrategyFactory {
         } else if (phase instanceof ReconciliationPhase) {
             return ReconciliationStrategy.create((ReconciliationPhase) phase);
         } else if (phase instanceof BackupSnapshotPhase ||
-                phase instanceof UploadBackupPhase ||
+                phase instanceof VerifyBackupPhase) {
+            // Snapshots, and verifying objects by their metadata, are cheap,
+            // so all nodes do them at the same time.
+            return new ParallelPhaseStrategy(phase);
+        } else if (phase instanceof UploadBackupPhase ||
                 phase instanceof DownloadSnapshotPhase ||
                 phase instanceof RestoreSnapshotPhase) {
-            return new DefaultInstallStrategy(phase);
+            final BackupRestoreContext context =
+                    ((AbstractClusterTaskPhase<?, BackupRestoreContext>) phase)
+                            .getContext();
+            return new ParallelPhaseStrategy(
+                    phase,
+                    context.getConcurrentNodes(),
+                    CassandraPhaseStrategies::getRack,
+                    context.getConcurrentNodesPerRack());
         } else {
             try {
                 return (PhaseStrategy)
@@ -49,4 +62,9 @@ public class CassandraPhaseStrategies implements PhaseStrategyFactory {
             }
         }
     }
+
+    private static String getRack(Block block) {
+        return (block instanceof AbstractClusterTaskBlock) ?
+                ((AbstractClusterTaskBlock<?>) block).getRack() : "";
+    }
 }
@@ -0,0 +1,177 @@
+package com.mesosphere.dcos.cassandra.scheduler.plan;
+
+import org.apache.mesos.scheduler.plan.Block;
+import org.apache.mesos.scheduler.plan.Phase;
+import org.apache.mesos.scheduler.plan.PhaseStrategy;
+import org.apache.mesos.scheduler.plan.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * A strategy that executes the blocks of a phase at the same time. The plan
+ * scheduler starts the current block of each offer cycle, so the current
+ * block is the next pending block, in turn, until the number of blocks in
+ * progress reaches the concurrency of the strategy. When no further block may
+ * be started, the current block is one already in progress, which has no
+ * offer requirement. The blocks may also be grouped, by rack for instance,
+ * with a limit on the number of blocks of each group in progress at once.
+ * The phase is complete when all of its blocks are.
+ */
+public class ParallelPhaseStrategy implements PhaseStrategy {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            ParallelPhaseStrategy.class);
+
+    private final Phase phase;
+    private final int concurrency;
+    private final Function<Block, String> group;
+    private final int concurrencyPerGroup;
+    private volatile boolean interrupted = false;
+    private int next = 0;
+
+    /**
+     * Constructs a strategy that executes all blocks of a phase at once.
+     *
+     * @param phase The phase executed by the strategy.
+     */
+    public ParallelPhaseStrategy(final Phase phase) {
+        this(phase, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructs a strategy that executes some blocks of a phase at once.
+     *
+     * @param phase       The phase executed by the strategy.
+     * @param concurrency The maximum number of blocks in progress at once.
+     */
+    public ParallelPhaseStrategy(final Phase phase, final int concurrency) {
+        this(phase, concurrency, block -> "", 0);
+    }
+
+    /**
+     * Constructs a strategy that executes some blocks of a phase at once,
+     * and some blocks of each group at once.
+     *
+     * @param phase               The phase executed by the strategy.
+     * @param concurrency         The maximum number of blocks in progress at
+     *                            once.
+     * @param group               Gets the group of a block.
+     * @param concurrencyPerGroup The maximum number of blocks of a group in
+     *                            progress at once, or zero for no limit.
+     */
+    public ParallelPhaseStrategy(final Phase phase,
+                                 final int concurrency,
+                                 final Function<Block, String> group,
+                                 final int concurrencyPerGroup) {
+        this.phase = phase;
+        this.concurrency = Math.max(1, concurrency);
+        this.group = group;
+        this.concurrencyPerGroup = concurrencyPerGroup > 0 ?
+                concurrencyPerGroup : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public synchronized Optional<Block> getCurrentBlock() {
+        if (interrupted) {
+            return Optional.empty();
+        }
+        final List<? extends Block> blocks = phase.getBlocks();
+        final int size = blocks.size();
+        final Map<String, Integer> runningPerGroup = new HashMap<>();
+        Block inProgress = null;
+        int running = 0;
+        for (Block block : blocks) {
+            if (block.isInProgress()) {
+                running++;
+                runningPerGroup.merge(group.apply(block), 1, Integer::sum);
+                if (inProgress == null) {
+                    inProgress = block;
+                }
+            }
+        }
+        if (running < concurrency) {
+            // Pending blocks are taken in turn, so a block that cannot start
+            // does not hold back the blocks after it.
+            for (int i = 0; i < size; i++) {
+                final Block block = blocks.get((next + i) % size);
+                if (block.isPending() && runningPerGroup.getOrDefault(
+                        group.apply(block), 0) < concurrencyPerGroup) {
+                    next = (next + i + 1) % size;
+                    LOGGER.debug("Phase {}: starting block {}, blocks in " +
+                            "progress: {}", phase.getName(), block.getName(),
+                            running);
+                    return Optional.of(block);
+                }
+            }
+        }
+        return Optional.ofNullable(inProgress);
+    }
+
+    @Override
+    public void proceed() {
+        interrupted = false;
+    }
+
+    @Override
+    public void interrupt() {
+        interrupted = true;
+    }
+
+    @Override
+    public void restart(UUID blockId) {
+        final Block block = phase.getBlock(blockId);
+        if (block != null) {
+            block.restart();
+        }
+    }
+
+    @Override
+    public void forceComplete(UUID blockId) {
+        final Block block = phase.getBlock(blockId);
+        if (block != null) {
+            block.forceComplete();
+        }
+    }
+
+    @Override
+    public Status getStatus() {
+        if (phase.isComplete()) {
+            return Status.COMPLETE;
+        }
+        for (Block block : phase.getBlocks()) {
+            if (block.isInProgress()) {
+                return Status.IN_PROGRESS;
+            }
+        }
+        return interrupted ? Status.WAITING : Status.PENDING;
+    }
+
+    @Override
+    public Phase getPhase() {
+        return phase;
+    }
+
+    @Override
+    public boolean isInterrupted() {
+        return interrupted;
+    }
+
+    @Override
+    public boolean hasDecisionPoint(Block block) {
+        return false;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getConcurrencyPerGroup() {
+        return concurrencyPerGroup;
+    }
+}
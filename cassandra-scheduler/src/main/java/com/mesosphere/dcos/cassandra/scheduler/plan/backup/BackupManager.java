@@ -3,9 +3,11 @@ package com.mesosphere.dcos.cassandra.scheduler.plan.backup;
 import com.google.inject.Inject;
 import com.mesosphere.dcos.cassandra.common.persistence.PersistenceException;
 import com.mesosphere.dcos.cassandra.common.serialization.SerializationException;
+import com.mesosphere.dcos.cassandra.common.tasks.CassandraDaemonTask;
 import com.mesosphere.dcos.cassandra.common.tasks.ClusterTaskManager;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
 import com.mesosphere.dcos.cassandra.common.offer.ClusterTaskOfferRequirementProvider;
+import com.mesosphere.dcos.cassandra.scheduler.plan.AbstractClusterTaskBlock;
 import com.mesosphere.dcos.cassandra.scheduler.resources.BackupRestoreRequest;
 import com.mesosphere.dcos.cassandra.common.tasks.CassandraState;
 
@@ -19,8 +21,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * BackupManager is responsible for orchestrating cluster-wide backup.
@@ -35,6 +40,7 @@ public class BackupManager extends DefaultObservable implements ClusterTaskManag
     private final ClusterTaskOfferRequirementProvider provider;
     private volatile BackupSnapshotPhase backup = null;
     private volatile UploadBackupPhase upload = null;
+    private volatile VerifyBackupPhase verify = null;
     private StateStore stateStore;
     private volatile BackupRestoreContext activeContext = null;
 
@@ -61,6 +67,12 @@ public class BackupManager extends DefaultObservable implements ClusterTaskManag
                         context,
                         cassandraState,
                         provider);
+                if (context.isVerify()) {
+                    this.verify = new VerifyBackupPhase(
+                            context,
+                            cassandraState,
+                            provider);
+                }
                 this.activeContext = context;
             }
         } catch (SerializationException e) {
@@ -77,7 +89,10 @@ public class BackupManager extends DefaultObservable implements ClusterTaskManag
             return;
         }
 
-        BackupRestoreContext context = request.toContext();
+        // All nodes ship at once after a continuous backup.
+        BackupRestoreContext context = request.toContext(
+                getTransferringNodes(cassandraState, request),
+                Math.max(1, cassandraState.getDaemons().size()));
         LOGGER.info("Starting backup");
         try {
             if (isComplete()) {
@@ -87,12 +102,21 @@ public class BackupManager extends DefaultObservable implements ClusterTaskManag
                 for (String name : cassandraState.getBackupUploadTasks().keySet()) {
                     cassandraState.remove(name);
                 }
+                for (String name : cassandraState.getBackupVerifyTasks().keySet()) {
+                    cassandraState.remove(name);
+                }
             }
             stateStore.storeProperty(BACKUP_KEY, BackupRestoreContext.JSON_SERIALIZER.serialize(context));
             backup = new BackupSnapshotPhase(context, cassandraState, provider);
             upload = new UploadBackupPhase(context, cassandraState, provider);
+            verify = context.isVerify() ?
+                    new VerifyBackupPhase(context, cassandraState, provider) :
+                    null;
             backup.subscribe(this);
             upload.subscribe(this);
+            if (verify != null) {
+                verify.subscribe(this);
+            }
             //this volatile signals that backup is started
             activeContext = context;
         } catch (SerializationException | PersistenceException e) {
@@ -104,6 +128,34 @@ public class BackupManager extends DefaultObservable implements ClusterTaskManag
         notifyObservers();
     }
 
+    /**
+     * Gets the number of nodes that share the cluster wide bandwidth limit.
+     * That is the number of concurrent nodes of the request, unless the
+     * cluster has fewer nodes, or the limit on concurrent nodes in each rack
+     * allows fewer nodes to transfer data at once.
+     *
+     * @param cassandraState The state of the cluster.
+     * @param request        The request of the backup or restore.
+     * @return The number of nodes that transfer data at the same time.
+     */
+    static int getTransferringNodes(CassandraState cassandraState,
+                                    BackupRestoreRequest request) {
+        final Collection<CassandraDaemonTask> daemons =
+                cassandraState.getDaemons().values();
+        int nodes = Math.min(request.getConcurrentNodes(), daemons.size());
+        if (request.getConcurrentNodesPerRack() > 0) {
+            final Map<String, Long> racks = daemons.stream().collect(
+                    Collectors.groupingBy(AbstractClusterTaskBlock::getRack,
+                            Collectors.counting()));
+            final long perRack = racks.values().stream()
+                    .mapToLong(count -> Math.min(count,
+                            request.getConcurrentNodesPerRack()))
+                    .sum();
+            nodes = (int) Math.min(nodes, perRack);
+        }
+        return Math.max(1, nodes);
+    }
+
     public void stop() {
         LOGGER.info("Stopping backup");
         stateStore.clearProperty(BACKUP_KEY);
@@ -126,14 +178,16 @@ public class BackupManager extends DefaultObservable implements ClusterTaskManag
     public boolean isComplete() {
         return (activeContext != null &&
                 backup != null && backup.isComplete() &&
-                upload != null && upload.isComplete());
+                upload != null && upload.isComplete() &&
+                (verify == null || verify.isComplete()));
     }
 
     public List<Phase> getPhases() {
         if (activeContext == null) {
             return Collections.emptyList();
         } else {
-            return Arrays.asList(backup, upload);
+            return (verify == null) ? Arrays.asList(backup, upload) :
+                    Arrays.asList(backup, upload, verify);
         }
     }
 
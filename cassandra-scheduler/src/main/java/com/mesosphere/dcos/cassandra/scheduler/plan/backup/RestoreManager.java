@@ -67,7 +67,8 @@ public class RestoreManager extends ChainedObserver implements ClusterTaskManage
             return;
         }
 
-        BackupRestoreContext context = request.toContext();
+        BackupRestoreContext context = request.toContext(
+                BackupManager.getTransferringNodes(cassandraState, request));
         LOGGER.info("Starting restore");
         try {
             if (isComplete()) {
@@ -0,0 +1,57 @@
+package com.mesosphere.dcos.cassandra.scheduler.plan.backup;
+
+import com.mesosphere.dcos.cassandra.common.tasks.CassandraDaemonTask;
+import com.mesosphere.dcos.cassandra.common.tasks.CassandraTask;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupVerifyTask;
+import com.mesosphere.dcos.cassandra.common.offer.CassandraOfferRequirementProvider;
+import com.mesosphere.dcos.cassandra.common.persistence.PersistenceException;
+import com.mesosphere.dcos.cassandra.scheduler.plan.AbstractClusterTaskBlock;
+import com.mesosphere.dcos.cassandra.common.tasks.CassandraState;
+import org.apache.mesos.scheduler.plan.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+
+public class VerifyBackupBlock extends AbstractClusterTaskBlock<BackupRestoreContext> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            VerifyBackupBlock.class);
+
+    public static VerifyBackupBlock create(
+            String daemon,
+            CassandraState cassandraState,
+            CassandraOfferRequirementProvider provider,
+            BackupRestoreContext context) {
+        return new VerifyBackupBlock(daemon, cassandraState, provider, context);
+    }
+
+    public VerifyBackupBlock(
+            String daemon,
+            CassandraState cassandraState,
+            CassandraOfferRequirementProvider provider,
+            BackupRestoreContext context) {
+        super(daemon, cassandraState, provider, context);
+    }
+
+
+    @Override
+    protected Optional<CassandraTask> getOrCreateTask(BackupRestoreContext context)
+            throws PersistenceException {
+        CassandraDaemonTask daemonTask =
+                cassandraState.getDaemons().get(getDaemon());
+        if (daemonTask == null) {
+            LOGGER.warn("Cassandra Daemon for backup does not exist");
+            setStatus(Status.COMPLETE);
+            return Optional.empty();
+        }
+        return Optional.of(cassandraState.getOrCreateBackupVerify(
+                daemonTask,
+                context));
+    }
+
+    @Override
+    public String getName() {
+        return BackupVerifyTask.nameForDaemon(getDaemon());
+    }
+}
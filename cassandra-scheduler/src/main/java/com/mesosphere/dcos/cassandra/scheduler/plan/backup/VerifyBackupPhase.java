@@ -0,0 +1,42 @@
+package com.mesosphere.dcos.cassandra.scheduler.plan.backup;
+
+import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
+import com.mesosphere.dcos.cassandra.common.offer.ClusterTaskOfferRequirementProvider;
+import com.mesosphere.dcos.cassandra.scheduler.plan.AbstractClusterTaskPhase;
+import com.mesosphere.dcos.cassandra.common.tasks.CassandraState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * During VerifyBackupPhase, the uploaded objects of a backup are checked against
+ * its manifest without being downloaded.
+ */
+public class VerifyBackupPhase extends AbstractClusterTaskPhase<VerifyBackupBlock, BackupRestoreContext> {
+
+    public VerifyBackupPhase(
+            BackupRestoreContext context,
+            CassandraState cassandraState,
+            ClusterTaskOfferRequirementProvider provider) {
+        super(context, cassandraState, provider);
+    }
+
+    protected List<VerifyBackupBlock> createBlocks() {
+        final List<String> daemons =
+                new ArrayList<>(cassandraState.getDaemons().keySet());
+        Collections.sort(daemons);
+        return daemons.stream().map(daemon -> VerifyBackupBlock.create(
+                daemon,
+                cassandraState,
+                provider,
+                context
+        )).collect(Collectors.toList());
+    }
+
+    @Override
+    public String getName() {
+        return "Verify";
+    }
+}
@@ -2,14 +2,18 @@ package com.mesosphere.dcos.cassandra.scheduler.resources;
 
 import com.codahale.metrics.annotation.Timed;
 import com.google.inject.Inject;
+import com.mesosphere.dcos.cassandra.common.tasks.CassandraState;
 import com.mesosphere.dcos.cassandra.scheduler.plan.backup.BackupManager;
 
 import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Path("/v1/backup")
 @Produces(MediaType.APPLICATION_JSON)
@@ -17,9 +21,12 @@ import javax.ws.rs.core.Response;
 public class BackupResource {
 
     private final ClusterTaskRunner<BackupRestoreRequest> runner;
+    private final CassandraState state;
 
     @Inject
-    public BackupResource(final BackupManager manager) {
+    public BackupResource(final BackupManager manager,
+                          final CassandraState state) {
+        this.state = state;
         runner = new ClusterTaskRunner<>(manager, "Backup");
     }
 
@@ -36,4 +43,17 @@ public class BackupResource {
     public Response stop() {
         return runner.stop();
     }
+
+    /**
+     * Gets the progress of the uploads of each node and of the cluster.
+     */
+    @GET
+    @Timed
+    @Path("/status")
+    public Map<String, TransferStatus> status() {
+        final Map<String, TransferStatus> status = new LinkedHashMap<>();
+        status.put("upload", TransferStatus.create(state,
+            state.getBackupUploadTasks().values()));
+        return status;
+    }
 }
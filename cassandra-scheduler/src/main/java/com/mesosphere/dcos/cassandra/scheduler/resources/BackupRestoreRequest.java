@@ -1,13 +1,25 @@
 package com.mesosphere.dcos.cassandra.scheduler.resources;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableSet;
 import com.mesosphere.dcos.cassandra.common.tasks.ClusterTaskRequest;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
 
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.validator.constraints.NotEmpty;
 
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
 public class BackupRestoreRequest implements ClusterTaskRequest {
+  private static final Set<String> COMPRESSIONS =
+          ImmutableSet.of("none", "snappy", "lz4", "zstd");
+  private static final Set<String> AZURE_BLOB_TYPES =
+          ImmutableSet.of("page", "block");
+
   @JsonProperty("backup_name")
   @NotEmpty
   private String name;
@@ -31,6 +43,57 @@ public class BackupRestoreRequest implements ClusterTaskRequest {
   @JsonProperty("uses_emc")
   private Boolean usesEmc;
 
+  @JsonProperty("part_size_mb")
+  private Integer partSizeMb;
+
+  @JsonProperty("concurrency")
+  private Integer concurrency;
+
+  @JsonProperty("incremental")
+  private Boolean incremental;
+
+  @JsonProperty("compression")
+  private String compression;
+
+  @JsonProperty("throttle_mb_per_sec")
+  private Integer throttleMbPerSec;
+
+  @JsonProperty("cluster_throttle_mb_per_sec")
+  private Integer clusterThrottleMbPerSec;
+
+  @JsonProperty("azure_blob_type")
+  private String azureBlobType;
+
+  @JsonProperty("staging_budget_mb")
+  private Integer stagingBudgetMb;
+
+  @JsonProperty("concurrent_nodes")
+  private Integer concurrentNodes;
+
+  @JsonProperty("concurrent_nodes_per_rack")
+  private Integer concurrentNodesPerRack;
+
+  @JsonProperty("continuous")
+  private Boolean continuous;
+
+  @JsonProperty("point_in_time")
+  private String pointInTime;
+
+  @JsonProperty("keyspaces")
+  private List<String> keyspaces;
+
+  @JsonProperty("column_families")
+  private List<String> columnFamilies;
+
+  @JsonProperty("verify")
+  private Boolean verify;
+
+  @JsonProperty("import_sstables")
+  private Boolean importSSTables;
+
+  @JsonProperty("load_concurrency")
+  private Integer loadConcurrency;
+
   public String getName() {
     return name;
   }
@@ -87,9 +150,236 @@ public class BackupRestoreRequest implements ClusterTaskRequest {
     }
   }
 
+  public int getPartSizeMb() {
+    return partSizeMb != null ? partSizeMb : 0;
+  }
+
+  public void setPartSizeMb(Integer partSizeMb) {
+    this.partSizeMb = partSizeMb;
+  }
+
+  public int getConcurrency() {
+    return concurrency != null ? concurrency : 0;
+  }
+
+  public void setConcurrency(Integer concurrency) {
+    this.concurrency = concurrency;
+  }
+
+  public boolean isIncremental() {
+    return incremental != null ? incremental : false;
+  }
+
+  public void setIncremental(Boolean incremental) {
+    this.incremental = incremental;
+  }
+
+  public String getCompression() {
+    return compression != null ? compression : "";
+  }
+
+  public void setCompression(String compression) {
+    this.compression = compression;
+  }
+
+  public int getThrottleMbPerSec() {
+    return throttleMbPerSec != null ? throttleMbPerSec : 0;
+  }
+
+  public void setThrottleMbPerSec(Integer throttleMbPerSec) {
+    this.throttleMbPerSec = throttleMbPerSec;
+  }
+
+  public int getClusterThrottleMbPerSec() {
+    return clusterThrottleMbPerSec != null ? clusterThrottleMbPerSec : 0;
+  }
+
+  public void setClusterThrottleMbPerSec(Integer clusterThrottleMbPerSec) {
+    this.clusterThrottleMbPerSec = clusterThrottleMbPerSec;
+  }
+
+  public String getAzureBlobType() {
+    return azureBlobType != null ? azureBlobType : "";
+  }
+
+  public void setAzureBlobType(String azureBlobType) {
+    this.azureBlobType = azureBlobType;
+  }
+
+  public int getStagingBudgetMb() {
+    return stagingBudgetMb != null ? stagingBudgetMb : 0;
+  }
+
+  public void setStagingBudgetMb(Integer stagingBudgetMb) {
+    this.stagingBudgetMb = stagingBudgetMb;
+  }
+
+  public int getConcurrentNodes() {
+    return concurrentNodes != null ? concurrentNodes : 1;
+  }
+
+  public void setConcurrentNodes(Integer concurrentNodes) {
+    this.concurrentNodes = concurrentNodes;
+  }
+
+  public int getConcurrentNodesPerRack() {
+    return concurrentNodesPerRack != null ? concurrentNodesPerRack : 0;
+  }
+
+  public void setConcurrentNodesPerRack(Integer concurrentNodesPerRack) {
+    this.concurrentNodesPerRack = concurrentNodesPerRack;
+  }
+
+  public boolean isContinuous() {
+    return continuous != null ? continuous : false;
+  }
+
+  public void setContinuous(Boolean continuous) {
+    this.continuous = continuous;
+  }
+
+  public String getPointInTime() {
+    return pointInTime;
+  }
+
+  public void setPointInTime(String pointInTime) {
+    this.pointInTime = pointInTime;
+  }
+
+  public List<String> getKeyspaces() {
+    return keyspaces != null ? keyspaces : Collections.emptyList();
+  }
+
+  public void setKeyspaces(List<String> keyspaces) {
+    this.keyspaces = keyspaces;
+  }
+
+  /**
+   * Gets the column families to back up or restore, as keyspace.table.
+   */
+  public List<String> getColumnFamilies() {
+    return columnFamilies != null ? columnFamilies : Collections.emptyList();
+  }
+
+  public void setColumnFamilies(List<String> columnFamilies) {
+    this.columnFamilies = columnFamilies;
+  }
+
+  /**
+   * Gets whether the uploaded objects are checked against the manifest of
+   * the backup once the upload completes.
+   */
+  public boolean isVerify() {
+    return verify != null ? verify : false;
+  }
+
+  public void setVerify(Boolean verify) {
+    this.verify = verify;
+  }
+
+  /**
+   * Gets whether a restore imports the SSTables of each node whose tokens,
+   * and the tokens of its ring, are those recorded in the manifest of its
+   * backup, instead of streaming them.
+   */
+  public boolean isImportSSTables() {
+    return importSSTables != null ? importSSTables : true;
+  }
+
+  public void setImportSSTables(Boolean importSSTables) {
+    this.importSSTables = importSSTables;
+  }
+
+  /**
+   * Gets the number of column families each node loads at once when it
+   * restores, which is independent of the number of files or parts it
+   * transfers at once.
+   */
+  public int getLoadConcurrency() {
+    return loadConcurrency != null ? loadConcurrency : 0;
+  }
+
+  public void setLoadConcurrency(Integer loadConcurrency) {
+    this.loadConcurrency = loadConcurrency;
+  }
+
+  /**
+   * Gets the point in time that a restore recovers the data of.
+   *
+   * @return The ISO-8601 point in time in milliseconds since the epoch, or
+   * zero if the snapshot alone is restored.
+   * @throws DateTimeParseException If the point in time is not an ISO-8601
+   *                                instant.
+   */
+  public long getPointInTimeMillis() {
+    return StringUtils.isBlank(pointInTime) ? 0 :
+            Instant.parse(pointInTime).toEpochMilli();
+  }
+
+  /**
+   * Gets the bandwidth limit of each node. The cluster wide limit, if any,
+   * is split evenly across the nodes that transfer data at the same time,
+   * and the smaller of the per node limit and that share applies.
+   *
+   * @param transferringNodes The number of nodes transferring at once.
+   * @return The limit in MB/s for each node, or zero if unlimited.
+   */
+  public int getNodeThrottleMbPerSec(int transferringNodes) {
+    final int nodeThrottle = getThrottleMbPerSec();
+    if (getClusterThrottleMbPerSec() <= 0) {
+      return nodeThrottle;
+    }
+    final int share = Math.max(1,
+            getClusterThrottleMbPerSec() / Math.max(1, transferringNodes));
+    return nodeThrottle > 0 ? Math.min(nodeThrottle, share) : share;
+  }
+
   public boolean isValid() {
     return (StringUtils.isNotBlank(name) && externalLocation != null)
-            && (isValidS3Request() || isValidAzureRequest());
+            && (isValidS3Request() || isValidAzureRequest() || isValidLocalRequest())
+            && isValidCompression()
+            && isValidAzureBlobType()
+            && getThrottleMbPerSec() >= 0
+            && getClusterThrottleMbPerSec() >= 0
+            && getStagingBudgetMb() >= 0
+            && getConcurrentNodes() > 0
+            && getConcurrentNodesPerRack() >= 0
+            && isValidPointInTime()
+            && isValidKeyspaces()
+            && isValidColumnFamilies();
+  }
+
+  private boolean isValidKeyspaces() {
+    return getKeyspaces().stream().allMatch(StringUtils::isNotBlank);
+  }
+
+  private boolean isValidColumnFamilies() {
+    return getColumnFamilies().stream().allMatch(columnFamily -> {
+      final String[] names = StringUtils.split(columnFamily, '.');
+      return names != null
+              && names.length == 2
+              && columnFamily.indexOf('.') == columnFamily.lastIndexOf('.')
+              && StringUtils.isNotBlank(names[0])
+              && StringUtils.isNotBlank(names[1]);
+    });
+  }
+
+  private boolean isValidPointInTime() {
+    try {
+      return getPointInTimeMillis() >= 0;
+    } catch (DateTimeParseException e) {
+      return false;
+    }
+  }
+
+  private boolean isValidCompression() {
+    return StringUtils.isBlank(compression)
+            || COMPRESSIONS.contains(compression.toLowerCase());
+  }
+
+  private boolean isValidAzureBlobType() {
+    return StringUtils.isBlank(azureBlobType)
+            || AZURE_BLOB_TYPES.contains(azureBlobType.toLowerCase());
   }
 
   private boolean isValidS3Request() {
@@ -104,6 +394,10 @@ public class BackupRestoreRequest implements ClusterTaskRequest {
             || externalLocation.startsWith("https:");
   }
 
+  private boolean isValidLocalRequest() {
+    return externalLocation.startsWith("file:");
+  }
+
   private boolean isValidAzureRequest() {
     return azureAccount != null && azureKey != null && externalLocation.startsWith("azure:");
   }
@@ -118,11 +412,48 @@ public class BackupRestoreRequest implements ClusterTaskRequest {
             ", azureAccount='" + azureAccount + '\'' +
             ", azureKey='" + azureKey + '\'' +
             ", usesEmc='" + usesEmc + '\'' +
+            ", partSizeMb='" + partSizeMb + '\'' +
+            ", concurrency='" + concurrency + '\'' +
+            ", incremental='" + incremental + '\'' +
+            ", compression='" + compression + '\'' +
+            ", throttleMbPerSec='" + throttleMbPerSec + '\'' +
+            ", clusterThrottleMbPerSec='" + clusterThrottleMbPerSec + '\'' +
+            ", azureBlobType='" + azureBlobType + '\'' +
+            ", stagingBudgetMb='" + stagingBudgetMb + '\'' +
+            ", concurrentNodes='" + concurrentNodes + '\'' +
+            ", concurrentNodesPerRack='" + concurrentNodesPerRack + '\'' +
+            ", continuous='" + continuous + '\'' +
+            ", pointInTime='" + pointInTime + '\'' +
+            ", keyspaces=" + keyspaces +
+            ", columnFamilies=" + columnFamilies +
+            ", verify='" + verify + '\'' +
+            ", importSSTables='" + importSSTables + '\'' +
+            ", loadConcurrency='" + loadConcurrency + '\'' +
             '}';
   }
 
 
   public BackupRestoreContext toContext() {
+    return toContext(1);
+  }
+
+  public BackupRestoreContext toContext(int transferringNodes) {
+    return toContext(transferringNodes, transferringNodes);
+  }
+
+  /**
+   * Creates the context of the backup or restore.
+   *
+   * @param transferringNodes The number of nodes that transfer data at the
+   *                          same time, used to split the cluster wide
+   *                          bandwidth limit.
+   * @param shippingNodes     The number of nodes that ship the SSTables
+   *                          flushed after a continuous backup, which all do
+   *                          at the same time.
+   * @return The context for the request.
+   */
+  public BackupRestoreContext toContext(int transferringNodes,
+                                        int shippingNodes) {
     String accountId;
     String secretKey;
     if (isAzure(getExternalLocation())) {
@@ -140,7 +471,24 @@ public class BackupRestoreRequest implements ClusterTaskRequest {
         "", // local_location
         accountId,
         secretKey,
-        usesEmc());
+        usesEmc(),
+        getPartSizeMb(),
+        getConcurrency(),
+        isIncremental(),
+        getCompression(),
+        getNodeThrottleMbPerSec(transferringNodes),
+        getAzureBlobType(),
+        getStagingBudgetMb(),
+        isImportSSTables(),
+        getConcurrentNodes(),
+        getConcurrentNodesPerRack(),
+        isContinuous(),
+        getPointInTimeMillis(),
+        getKeyspaces(),
+        getColumnFamilies(),
+        isVerify(),
+        isContinuous() ? getNodeThrottleMbPerSec(shippingNodes) : 0,
+        getLoadConcurrency());
   }
 
   private static boolean isAzure(String externalLocation) {
@@ -2,14 +2,18 @@ package com.mesosphere.dcos.cassandra.scheduler.resources;
 
 import com.codahale.metrics.annotation.Timed;
 import com.google.inject.Inject;
+import com.mesosphere.dcos.cassandra.common.tasks.CassandraState;
 import com.mesosphere.dcos.cassandra.scheduler.plan.backup.RestoreManager;
 
 import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Path("/v1/restore")
 @Produces(MediaType.APPLICATION_JSON)
@@ -17,9 +21,12 @@ import javax.ws.rs.core.Response;
 public class RestoreResource {
 
     private final ClusterTaskRunner<BackupRestoreRequest> runner;
+    private final CassandraState state;
 
     @Inject
-    public RestoreResource(final RestoreManager manager) {
+    public RestoreResource(final RestoreManager manager,
+                           final CassandraState state) {
+        this.state = state;
         runner = new ClusterTaskRunner<>(manager, "Restore");
     }
 
@@ -36,4 +43,20 @@ public class RestoreResource {
     public Response stop() {
         return runner.stop();
     }
+
+    /**
+     * Gets the progress of the downloads and restores of each node and of
+     * the cluster.
+     */
+    @GET
+    @Timed
+    @Path("/status")
+    public Map<String, TransferStatus> status() {
+        final Map<String, TransferStatus> status = new LinkedHashMap<>();
+        status.put("download", TransferStatus.create(state,
+            state.getDownloadSnapshotTasks().values()));
+        status.put("restore", TransferStatus.create(state,
+            state.getRestoreSnapshotTasks().values()));
+        return status;
+    }
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Mesosphere
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mesosphere.dcos.cassandra.scheduler.resources;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.mesosphere.dcos.cassandra.common.tasks.CassandraState;
+import com.mesosphere.dcos.cassandra.common.tasks.CassandraTask;
+import com.mesosphere.dcos.cassandra.common.tasks.CassandraTaskStatus;
+import com.mesosphere.dcos.cassandra.common.tasks.backup.TransferProgress;
+import com.mesosphere.dcos.cassandra.common.util.JsonUtils;
+import org.apache.mesos.Protos;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * TransferStatus rolls up the progress reported by the tasks of a backup or
+ * restore phase, e.g. the uploads of all nodes, so that operators can tell
+ * how far a transfer has come and how long it will take.
+ */
+public class TransferStatus {
+
+    /**
+     * The status of the task of one node.
+     */
+    public static class Node {
+        @JsonProperty("name")
+        private final String name;
+        @JsonProperty("state")
+        private final Protos.TaskState state;
+        @JsonProperty("message")
+        private final String message;
+        @JsonProperty("progress")
+        private final TransferProgress progress;
+
+        private Node(final String name,
+                     final Protos.TaskState state,
+                     final String message,
+                     final TransferProgress progress) {
+            this.name = name;
+            this.state = state;
+            this.message = message;
+            this.progress = progress;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Protos.TaskState getState() {
+            return state;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public TransferProgress getProgress() {
+            return progress;
+        }
+    }
+
+    /**
+     * Creates the status of a phase from the latest status of its tasks.
+     *
+     * @param state The state the statuses of the tasks are fetched from.
+     * @param tasks The tasks of the phase.
+     * @return The status of each task and their combined progress.
+     */
+    public static TransferStatus create(
+        final CassandraState state,
+        final Collection<? extends CassandraTask> tasks) {
+        final List<Node> nodes = new ArrayList<>();
+        for (CassandraTask task : tasks) {
+            final Optional<CassandraTaskStatus> status =
+                state.getStatus(task.getName());
+            nodes.add(new Node(task.getName(),
+                status.map(CassandraTaskStatus::getState)
+                    .orElse(task.getState()),
+                status.flatMap(CassandraTaskStatus::getMessage).orElse(""),
+                status.flatMap(CassandraTaskStatus::getProgress)
+                    .orElse(TransferProgress.NONE)));
+        }
+        nodes.sort(Comparator.comparing(Node::getName));
+        return new TransferStatus(nodes, TransferProgress.sum(
+            nodes.stream().map(Node::getProgress)
+                .collect(Collectors.toList())));
+    }
+
+    @JsonProperty("nodes")
+    private final List<Node> nodes;
+    @JsonProperty("progress")
+    private final TransferProgress progress;
+
+    private TransferStatus(final List<Node> nodes,
+                           final TransferProgress progress) {
+        this.nodes = nodes;
+        this.progress = progress;
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    public TransferProgress getProgress() {
+        return progress;
+    }
+
+    @Override
+    public String toString() {
+        return JsonUtils.toJsonString(this);
+    }
+}
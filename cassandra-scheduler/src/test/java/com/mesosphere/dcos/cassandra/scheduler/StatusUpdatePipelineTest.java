@@ -0,0 +1,209 @@
+package com.mesosphere.dcos.cassandra.scheduler;
+
+import com.google.protobuf.ByteString;
+import com.mesosphere.dcos.cassandra.common.tasks.CassandraState;
+import org.apache.mesos.Protos;
+import org.apache.mesos.SchedulerDriver;
+import org.apache.mesos.scheduler.plan.PlanManager;
+import org.apache.mesos.state.StateStoreException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * This class tests the StatusUpdatePipeline class.
+ */
+public class StatusUpdatePipelineTest {
+    private CassandraState cassandraState;
+    private PlanManager planManager;
+    private SchedulerDriver driver;
+    private Queue<Runnable> scheduled;
+    private Queue<Runnable> persisted;
+    private StatusUpdatePipeline pipeline;
+
+    @Before
+    public void beforeEach() {
+        cassandraState = Mockito.mock(CassandraState.class);
+        planManager = Mockito.mock(PlanManager.class);
+        driver = Mockito.mock(SchedulerDriver.class);
+        // Updates are only applied when the test runs the scheduled queues.
+        scheduled = new ArrayDeque<>();
+        // Acknowledgements are only sent when the test persists the writes.
+        persisted = new ArrayDeque<>();
+        doAnswer(invocation -> persisted.add(
+                (Runnable) invocation.getArguments()[0]))
+                .when(cassandraState).whenPersisted(any());
+        pipeline = new StatusUpdatePipeline(cassandraState, planManager,
+                scheduled::add);
+    }
+
+    private void runScheduled() {
+        while (!scheduled.isEmpty()) {
+            scheduled.poll().run();
+        }
+    }
+
+    private void runPersisted() {
+        while (!persisted.isEmpty()) {
+            persisted.poll().run();
+        }
+    }
+
+    private static Protos.TaskStatus status(String name,
+                                            Protos.TaskState state,
+                                            String message) {
+        return Protos.TaskStatus.newBuilder()
+                .setTaskId(Protos.TaskID.newBuilder().setValue(name + "__1"))
+                .setState(state)
+                .setMessage(message)
+                .setUuid(ByteString.copyFromUtf8(message))
+                .build();
+    }
+
+    @Test
+    public void testCoalescesQueuedRunningUpdates() throws Exception {
+        final Protos.TaskStatus staging =
+                status("node-0", Protos.TaskState.TASK_STAGING, "");
+        final Protos.TaskStatus first =
+                status("node-0", Protos.TaskState.TASK_RUNNING, "first");
+        final Protos.TaskStatus second =
+                status("node-0", Protos.TaskState.TASK_RUNNING, "second");
+        pipeline.submit(driver, staging);
+        pipeline.submit(driver, first);
+        pipeline.submit(driver, second);
+        Assert.assertEquals(2, pipeline.getBacklog());
+        Assert.assertEquals(1, scheduled.size());
+
+        runScheduled();
+        final InOrder inOrder = inOrder(cassandraState, planManager);
+        inOrder.verify(cassandraState).update(staging);
+        inOrder.verify(planManager).update(staging);
+        inOrder.verify(cassandraState).update(second);
+        inOrder.verify(planManager).update(second);
+        verify(cassandraState, never()).update(first);
+        Assert.assertEquals(0, pipeline.getBacklog());
+        Assert.assertEquals(1, ((com.codahale.metrics.Meter) pipeline
+                .getMetrics().get("status_updates.coalesced")).getCount());
+    }
+
+    @Test
+    public void testKeepsUpdatesThatAreNotSuperseded() throws Exception {
+        final Protos.TaskStatus withData = Protos.TaskStatus.newBuilder(
+                status("node-0", Protos.TaskState.TASK_RUNNING, ""))
+                .setData(ByteString.copyFromUtf8("mode"))
+                .build();
+        final Protos.TaskStatus withoutData =
+                status("node-0", Protos.TaskState.TASK_RUNNING, "");
+        final Protos.TaskStatus failed =
+                status("node-0", Protos.TaskState.TASK_FAILED, "");
+        final Protos.TaskStatus other =
+                status("node-1", Protos.TaskState.TASK_RUNNING, "");
+        pipeline.submit(driver, withData);
+        pipeline.submit(driver, withoutData);
+        pipeline.submit(driver, failed);
+        pipeline.submit(driver, other);
+        Assert.assertEquals(4, pipeline.getBacklog());
+
+        runScheduled();
+        final InOrder inOrder = inOrder(cassandraState);
+        inOrder.verify(cassandraState).update(withData);
+        inOrder.verify(cassandraState).update(withoutData);
+        inOrder.verify(cassandraState).update(failed);
+        verify(cassandraState).update(other);
+        Assert.assertEquals(0, pipeline.getBacklog());
+    }
+
+    @Test
+    public void testAppliesUpdatesOfEachTaskInOrder() throws Exception {
+        final int tasks = 8;
+        final int updates = 200;
+        final Map<String, List<String>> applied = new ConcurrentHashMap<>();
+        doAnswer(invocation -> {
+            final Protos.TaskStatus status =
+                    (Protos.TaskStatus) invocation.getArguments()[0];
+            applied.computeIfAbsent(status.getTaskId().getValue(),
+                    id -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(status.getMessage());
+            return null;
+        }).when(cassandraState).update(any(Protos.TaskStatus.class));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        pipeline = new StatusUpdatePipeline(cassandraState, planManager,
+                executor);
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < updates; i++) {
+            expected.add(String.valueOf(i));
+            for (int t = 0; t < tasks; t++) {
+                pipeline.submit(driver, status("node-" + t,
+                        Protos.TaskState.TASK_STAGING, String.valueOf(i)));
+            }
+        }
+        pipeline.stop();
+
+        Assert.assertTrue(executor.isTerminated());
+        Assert.assertEquals(0, pipeline.getBacklog());
+        Assert.assertEquals(tasks, applied.size());
+        for (List<String> messages : applied.values()) {
+            Assert.assertEquals(expected, messages);
+        }
+    }
+
+    @Test
+    public void testAcknowledgesPersistedUpdates() throws Exception {
+        final Protos.TaskStatus first =
+                status("node-0", Protos.TaskState.TASK_RUNNING, "first");
+        final Protos.TaskStatus second =
+                status("node-0", Protos.TaskState.TASK_RUNNING, "second");
+        final Protos.TaskStatus reconciled = Protos.TaskStatus.newBuilder(
+                status("node-1", Protos.TaskState.TASK_RUNNING, ""))
+                .clearUuid()
+                .build();
+        pipeline.submit(driver, first);
+        pipeline.submit(driver, second);
+        pipeline.submit(driver, reconciled);
+        verify(driver, never()).acknowledgeStatusUpdate(any());
+
+        runScheduled();
+        verify(cassandraState, never()).flush();
+        verify(driver, never()).acknowledgeStatusUpdate(any());
+
+        runPersisted();
+        // The replaced update is acknowledged once its replacement is
+        // persisted.
+        final InOrder inOrder = inOrder(cassandraState, driver);
+        inOrder.verify(cassandraState).update(second);
+        inOrder.verify(cassandraState).whenPersisted(any());
+        inOrder.verify(driver).acknowledgeStatusUpdate(first);
+        inOrder.verify(driver).acknowledgeStatusUpdate(second);
+        verify(driver, never()).acknowledgeStatusUpdate(reconciled);
+    }
+
+    @Test
+    public void testDoesNotAcknowledgeUnstoredUpdates() throws Exception {
+        final Protos.TaskStatus running =
+                status("node-0", Protos.TaskState.TASK_RUNNING, "");
+        doThrow(new StateStoreException("Rejected")).when(cassandraState)
+                .update(running);
+        pipeline.submit(driver, running);
+
+        runScheduled();
+        runPersisted();
+        verify(planManager).update(running);
+        verify(cassandraState, never()).whenPersisted(any());
+        verify(driver, never()).acknowledgeStatusUpdate(any());
+    }
+}
@@ -0,0 +1,135 @@
+package com.mesosphere.dcos.cassandra.scheduler.plan;
+
+import org.apache.mesos.scheduler.plan.Block;
+import org.apache.mesos.scheduler.plan.Phase;
+import org.apache.mesos.scheduler.plan.Status;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.Mockito.when;
+
+public class ParallelPhaseStrategyTest {
+    @Mock
+    private Phase phase;
+
+    private Block block0;
+    private Block block1;
+    private Block block2;
+
+    @Before
+    public void beforeEach() {
+        MockitoAnnotations.initMocks(this);
+        block0 = block("block-0");
+        block1 = block("block-1");
+        block2 = block("block-2");
+        final List<Block> blocks = Arrays.asList(block0, block1, block2);
+        Mockito.doReturn(blocks).when(phase).getBlocks();
+    }
+
+    private static Block block(String name) {
+        final Block block = Mockito.mock(Block.class);
+        when(block.getName()).thenReturn(name);
+        when(block.isPending()).thenReturn(true);
+        return block;
+    }
+
+    private static void inProgress(Block block) {
+        when(block.isPending()).thenReturn(false);
+        when(block.isInProgress()).thenReturn(true);
+    }
+
+    private static void complete(Block block) {
+        when(block.isPending()).thenReturn(false);
+        when(block.isInProgress()).thenReturn(false);
+        when(block.isComplete()).thenReturn(true);
+    }
+
+    @Test
+    public void testStartsAllBlocks() {
+        final ParallelPhaseStrategy strategy = new ParallelPhaseStrategy(phase);
+        Assert.assertEquals(Status.PENDING, strategy.getStatus());
+
+        Assert.assertEquals(Optional.of(block0), strategy.getCurrentBlock());
+        inProgress(block0);
+        Assert.assertEquals(Optional.of(block1), strategy.getCurrentBlock());
+        inProgress(block1);
+        Assert.assertEquals(Optional.of(block2), strategy.getCurrentBlock());
+        inProgress(block2);
+        Assert.assertEquals(Status.IN_PROGRESS, strategy.getStatus());
+
+        // Nothing is left to start, so a block in progress is current.
+        Assert.assertEquals(Optional.of(block0), strategy.getCurrentBlock());
+        complete(block0);
+        Assert.assertEquals(Optional.of(block1), strategy.getCurrentBlock());
+        complete(block1);
+        complete(block2);
+        when(phase.isComplete()).thenReturn(true);
+        Assert.assertEquals(Optional.empty(), strategy.getCurrentBlock());
+        Assert.assertEquals(Status.COMPLETE, strategy.getStatus());
+    }
+
+    @Test
+    public void testLimitsBlocksInProgress() {
+        final ParallelPhaseStrategy strategy =
+                new ParallelPhaseStrategy(phase, 2);
+
+        Assert.assertEquals(Optional.of(block0), strategy.getCurrentBlock());
+        inProgress(block0);
+        Assert.assertEquals(Optional.of(block1), strategy.getCurrentBlock());
+        inProgress(block1);
+        Assert.assertEquals(Optional.of(block0), strategy.getCurrentBlock());
+
+        complete(block0);
+        Assert.assertEquals(Optional.of(block2), strategy.getCurrentBlock());
+    }
+
+    @Test
+    public void testLimitsBlocksInProgressPerGroup() {
+        final ParallelPhaseStrategy strategy = new ParallelPhaseStrategy(
+                phase, 3, block -> block == block2 ? "rack2" : "rack1", 1);
+
+        Assert.assertEquals(Optional.of(block0), strategy.getCurrentBlock());
+        inProgress(block0);
+        // block-1 is in the same rack as block-0, so block-2 is next.
+        Assert.assertEquals(Optional.of(block2), strategy.getCurrentBlock());
+        inProgress(block2);
+        Assert.assertEquals(Optional.of(block0), strategy.getCurrentBlock());
+
+        complete(block0);
+        Assert.assertEquals(Optional.of(block1), strategy.getCurrentBlock());
+    }
+
+    @Test
+    public void testPendingBlocksTakeTurns() {
+        final ParallelPhaseStrategy strategy = new ParallelPhaseStrategy(phase);
+
+        // block-0 was not launched, so it stays pending, but it does not
+        // keep the other blocks from starting.
+        Assert.assertEquals(Optional.of(block0), strategy.getCurrentBlock());
+        Assert.assertEquals(Optional.of(block1), strategy.getCurrentBlock());
+        Assert.assertEquals(Optional.of(block2), strategy.getCurrentBlock());
+        Assert.assertEquals(Optional.of(block0), strategy.getCurrentBlock());
+    }
+
+    @Test
+    public void testInterrupt() {
+        final ParallelPhaseStrategy strategy = new ParallelPhaseStrategy(phase);
+
+        strategy.interrupt();
+        Assert.assertTrue(strategy.isInterrupted());
+        Assert.assertEquals(Optional.empty(), strategy.getCurrentBlock());
+        Assert.assertEquals(Status.WAITING, strategy.getStatus());
+
+        strategy.proceed();
+        Assert.assertFalse(strategy.isInterrupted());
+        Assert.assertEquals(Optional.of(block0), strategy.getCurrentBlock());
+    }
+}
@@ -1,5 +1,7 @@
 package com.mesosphere.dcos.cassandra.scheduler.plan.backup;
 
+import com.mesosphere.dcos.cassandra.common.config.CassandraConfig;
+import com.mesosphere.dcos.cassandra.common.config.Location;
 import com.mesosphere.dcos.cassandra.common.serialization.SerializationException;
 import com.mesosphere.dcos.cassandra.common.tasks.CassandraDaemonTask;
 import com.mesosphere.dcos.cassandra.common.tasks.backup.BackupRestoreContext;
@@ -33,6 +35,7 @@ import static org.mockito.Mockito.when;
 public class BackupManagerTest {
     private static final String SNAPSHOT_NODE_0 = "snapshot-node-0";
     private static final String UPLOAD_NODE_0 = "upload-node-0";
+    private static final String VERIFY_NODE_0 = "verify-node-0";
     private static final String NODE_0 = "node-0";
 
     @Mock private ClusterTaskOfferRequirementProvider mockProvider;
@@ -65,6 +68,32 @@ public class BackupManagerTest {
         assertEquals(2, manager.getPhases().size());
     }
 
+    @Test
+    public void testStartWithVerify() {
+        when(mockState.fetchProperty(BackupManager.BACKUP_KEY)).thenThrow(
+                new StateStoreException("no state found"));
+        BackupManager manager = new BackupManager(mockCassandraState, mockProvider, mockState);
+
+        final CassandraDaemonTask daemonTask = Mockito.mock(CassandraDaemonTask.class);
+        Mockito.when(daemonTask.getState()).thenReturn(Protos.TaskState.TASK_FINISHED);
+        final HashMap<String, CassandraDaemonTask> map = new HashMap<>();
+        map.put(NODE_0, daemonTask);
+        when(mockCassandraState.getDaemons()).thenReturn(map);
+        when(mockCassandraState.get(SNAPSHOT_NODE_0)).thenReturn(Optional.of(daemonTask));
+        when(mockCassandraState.get(UPLOAD_NODE_0)).thenReturn(Optional.of(daemonTask));
+        when(mockCassandraState.get(VERIFY_NODE_0)).thenReturn(Optional.empty());
+
+        final BackupRestoreRequest request = emptyRequest();
+        request.setVerify(true);
+        manager.start(request);
+
+        // The backup is complete once the verification is.
+        assertEquals(3, manager.getPhases().size());
+        assertEquals("Verify", manager.getPhases().get(2).getName());
+        assertFalse(manager.isComplete());
+        assertTrue(manager.isInProgress());
+    }
+
     @Test
     public void testStartCompleteStop() throws PersistenceException {
         when(mockState.fetchProperty(BackupManager.BACKUP_KEY)).thenThrow(
@@ -182,6 +211,36 @@ public class BackupManagerTest {
         assertTrue(manager.getPhases().isEmpty());
     }
 
+    @Test
+    public void testGetTransferringNodes() {
+        final HashMap<String, CassandraDaemonTask> map = new HashMap<>();
+        map.put("node-0", daemon("rack1"));
+        map.put("node-1", daemon("rack1"));
+        map.put("node-2", daemon("rack1"));
+        map.put("node-3", daemon("rack2"));
+        when(mockCassandraState.getDaemons()).thenReturn(map);
+        final BackupRestoreRequest request = emptyRequest();
+
+        assertEquals(1, BackupManager.getTransferringNodes(mockCassandraState, request));
+        request.setConcurrentNodes(3);
+        assertEquals(3, BackupManager.getTransferringNodes(mockCassandraState, request));
+        request.setConcurrentNodes(10);
+        assertEquals(4, BackupManager.getTransferringNodes(mockCassandraState, request));
+        // One node of each rack at a time.
+        request.setConcurrentNodesPerRack(1);
+        assertEquals(2, BackupManager.getTransferringNodes(mockCassandraState, request));
+        request.setConcurrentNodesPerRack(2);
+        assertEquals(3, BackupManager.getTransferringNodes(mockCassandraState, request));
+    }
+
+    private static CassandraDaemonTask daemon(String rack) {
+        final CassandraDaemonTask daemonTask = Mockito.mock(CassandraDaemonTask.class);
+        final CassandraConfig config = Mockito.mock(CassandraConfig.class);
+        when(daemonTask.getConfig()).thenReturn(config);
+        when(config.getLocation()).thenReturn(Location.create(rack, "dc1"));
+        return daemonTask;
+    }
+
     private BackupRestoreRequest emptyRequest() {
         BackupRestoreRequest request = new BackupRestoreRequest();
         request.setAzureAccount("");
@@ -184,6 +184,24 @@ public class RestoreManagerTest {
         assertTrue(manager.getPhases().isEmpty());
     }
 
+    @Test
+    public void testStartStreamsSSTablesOnRequest() throws SerializationException {
+        when(mockState.fetchProperty(RestoreManager.RESTORE_KEY)).thenThrow(
+                new StateStoreException("no state found"));
+        RestoreManager manager = new RestoreManager(mockCassandraState, mockProvider, mockState);
+        when(mockCassandraState.getDaemons()).thenReturn(new HashMap<>());
+
+        final BackupRestoreRequest request = emptyRequest();
+        request.setName("backup");
+        request.setImportSSTables(false);
+        manager.start(request);
+
+        final BackupRestoreContext context = request.toContext(1);
+        assertFalse(context.isImportSSTables());
+        verify(mockState).storeProperty(RestoreManager.RESTORE_KEY,
+                BackupRestoreContext.JSON_SERIALIZER.serialize(context));
+    }
+
     private BackupRestoreRequest emptyRequest() {
         BackupRestoreRequest request = new BackupRestoreRequest();
         request.setAzureAccount("");
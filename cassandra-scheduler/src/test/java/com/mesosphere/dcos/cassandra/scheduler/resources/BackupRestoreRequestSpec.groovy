@@ -38,6 +38,96 @@ class BackupRestoreRequestSpec extends Specification {
     "name" | "azure:"         | ""           | ""       || true
   }
 
+  def "valid azure blob type check"() {
+
+    given:
+    def request = new BackupRestoreRequest(name: "name", externalLocation: "azure:", azureAccount: "", azureKey: "", azureBlobType: azureBlobType)
+
+    expect:
+    request.isValid() == valid
+
+    where:
+    azureBlobType || valid
+    null          || true
+    ""            || true
+    "page"        || true
+    "BLOCK"       || true
+    "append"      || false
+  }
+
+  def "valid staging budget check"() {
+
+    given:
+    def request = new BackupRestoreRequest(name: "name", externalLocation: "s3:", s3AccessKey: "", s3SecretKey: "", stagingBudgetMb: stagingBudgetMb)
+
+    expect:
+    request.isValid() == valid
+    request.toContext().getStagingBudgetMb() == budget
+
+    where:
+    stagingBudgetMb || valid | budget
+    null            || true  | 0
+    0               || true  | 0
+    1024            || true  | 1024
+    -1              || false | -1
+  }
+
+  def "valid concurrent nodes check"() {
+
+    given:
+    def request = new BackupRestoreRequest(name: "name", externalLocation: "s3:", s3AccessKey: "", s3SecretKey: "", concurrentNodes: nodes, concurrentNodesPerRack: perRack)
+
+    expect:
+    request.isValid() == valid
+    request.toContext().getConcurrentNodes() == expectedNodes
+
+    where:
+    nodes | perRack || valid | expectedNodes
+    null  | null    || true  | 1
+    3     | null    || true  | 3
+    3     | 1       || true  | 3
+    0     | null    || false | 0
+    3     | -1      || false | 3
+  }
+
+  def "valid point in time check"() {
+
+    given:
+    def request = new BackupRestoreRequest(name: "name", externalLocation: "s3:", s3AccessKey: "", s3SecretKey: "", pointInTime: pointInTime)
+
+    expect:
+    request.isValid() == valid
+
+    where:
+    pointInTime            || valid
+    null                   || true
+    ""                     || true
+    "2016-11-02T10:15:30Z" || true
+    "2016-11-02"           || false
+    "1969-12-31T23:59:59Z" || false
+  }
+
+  def "valid keyspaces and column families check"() {
+
+    given:
+    def request = new BackupRestoreRequest(name: "name", externalLocation: "s3:", s3AccessKey: "", s3SecretKey: "", keyspaces: keyspaces, columnFamilies: columnFamilies)
+
+    expect:
+    request.isValid() == valid
+
+    where:
+    keyspaces | columnFamilies   || valid
+    null      | null             || true
+    ["ks"]    | []               || true
+    []        | ["ks.cf"]        || true
+    ["ks"]    | ["ks2.cf"]       || true
+    [""]      | null             || false
+    null      | ["cf"]           || false
+    null      | ["ks."]          || false
+    null      | [".cf"]          || false
+    null      | ["ks.cf.x"]      || false
+  }
+
   def "invalid combinations of requests"() {
 
     when:
@@ -52,4 +142,54 @@ class BackupRestoreRequestSpec extends Specification {
     then:
     !request.isValid()
   }
+
+  def "cluster throttle is split across transferring nodes"() {
+
+    given:
+    def request = new BackupRestoreRequest(throttleMbPerSec: node, clusterThrottleMbPerSec: cluster)
+
+    expect:
+    request.getNodeThrottleMbPerSec(nodes) == expected
+
+    where:
+    node | cluster | nodes || expected
+    null | null    | 3     || 0
+    50   | null    | 3     || 50
+    null | 300     | 3     || 100
+    50   | 300     | 3     || 50
+    null | 2       | 3     || 1
+    null | 300     | 0     || 300
+  }
+
+  def "cluster throttle is split across all shipping nodes"() {
+
+    given:
+    def request = new BackupRestoreRequest(name: "name", externalLocation: "s3:", clusterThrottleMbPerSec: 300,
+      continuous: continuous)
+
+    expect:
+    request.toContext(1, 6).getThrottleMbPerSec() == 300
+    request.toContext(1, 6).getShippingThrottleMbPerSec() == expected
+
+    where:
+    continuous || expected
+    true       || 50
+    false      || 0
+  }
+
+  def "load concurrency is independent of transfer concurrency"() {
+
+    given:
+    def request = new BackupRestoreRequest(name: "name", externalLocation: "s3:", concurrency: 16,
+      loadConcurrency: load)
+
+    expect:
+    request.toContext().getConcurrency() == 16
+    request.toContext().getLoadConcurrency() == expected
+
+    where:
+    load || expected
+    null || 0
+    3    || 3
+  }
 }
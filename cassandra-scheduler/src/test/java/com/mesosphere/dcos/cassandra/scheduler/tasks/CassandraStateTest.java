@@ -4,6 +4,7 @@ import com.fasterxml.jackson.datatype.guava.GuavaModule;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.google.common.io.Resources;
 import com.mesosphere.dcos.cassandra.common.config.*;
+import com.mesosphere.dcos.cassandra.common.persistence.BatchingStateStore;
 import com.mesosphere.dcos.cassandra.common.tasks.*;
 import io.dropwizard.configuration.ConfigurationFactory;
 import io.dropwizard.configuration.EnvironmentVariableSubstitutor;
@@ -31,6 +32,7 @@ import org.mockito.Mockito;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
 
 import static org.mockito.Mockito.when;
 
@@ -190,6 +192,27 @@ public class CassandraStateTest {
                 stateStore.fetchStatus(updatedDaemonTask.getName()).get().getState());
     }
 
+    @Test
+    public void testCachesTasks() throws Exception {
+        final BatchingStateStore batching = Mockito.spy(new BatchingStateStore(
+                stateStore, Mockito.mock(ScheduledExecutorService.class), 10));
+        cassandraState = new CassandraState(
+                configuration,
+                clusterTaskConfig,
+                batching);
+        CassandraDaemonTask daemonTask = cassandraState.createDaemon(testDaemonName);
+        cassandraState.update(daemonTask.getTaskInfo(), getTestOffer());
+        Assert.assertTrue(cassandraState.get(testDaemonName).isPresent());
+        Assert.assertEquals(1, cassandraState.getDaemons().size());
+        Mockito.verify(batching, Mockito.times(1)).fetchTasks();
+
+        // A write that bypasses the state is seen by the next read.
+        batching.clearTask(testDaemonName);
+        Assert.assertFalse(cassandraState.get(testDaemonName).isPresent());
+        Assert.assertEquals(0, cassandraState.getDaemons().size());
+        Mockito.verify(batching, Mockito.times(2)).fetchTasks();
+    }
+
     private void validateDaemonTaskInfo(Protos.TaskInfo daemonTaskInfo) throws TaskException {
         Assert.assertEquals(testDaemonName, daemonTaskInfo.getName());
         Assert.assertEquals(4, daemonTaskInfo.getResourcesCount());
@@ -169,6 +169,23 @@ type BackupRestoreHandler struct {
 	s3SecretKey string
 	azureAccount string
 	azureKey string
+	partSizeMb int
+	concurrency int
+	incremental bool
+	compression string
+	throttleMbPerSec int
+	clusterThrottleMbPerSec int
+	azureBlobType string
+	stagingBudgetMb int
+	concurrentNodes int
+	concurrentNodesPerRack int
+	continuous bool
+	pointInTime string
+	keyspaces string
+	columnFamilies string
+	verify bool
+	importSSTables bool
+	loadConcurrency int
 }
 func (cmd *BackupRestoreHandler) getArgs() map[string]interface{} {
 	return map[string]interface{} {
@@ -178,7 +195,34 @@ func (cmd *BackupRestoreHandler) getArgs() map[string]interface{} {
 		"s3_secret_key": cmd.s3SecretKey,
 		"azure_account": cmd.azureAccount,
 		"azure_key": cmd.azureKey,
+		"part_size_mb": cmd.partSizeMb,
+		"concurrency": cmd.concurrency,
+		"incremental": cmd.incremental,
+		"compression": cmd.compression,
+		"throttle_mb_per_sec": cmd.throttleMbPerSec,
+		"cluster_throttle_mb_per_sec": cmd.clusterThrottleMbPerSec,
+		"azure_blob_type": cmd.azureBlobType,
+		"staging_budget_mb": cmd.stagingBudgetMb,
+		"concurrent_nodes": cmd.concurrentNodes,
+		"concurrent_nodes_per_rack": cmd.concurrentNodesPerRack,
+		"continuous": cmd.continuous,
+		"point_in_time": cmd.pointInTime,
+		"keyspaces": splitNames(cmd.keyspaces),
+		"column_families": splitNames(cmd.columnFamilies),
+		"verify": cmd.verify,
+		"import_sstables": cmd.importSSTables,
+		"load_concurrency": cmd.loadConcurrency,
+	}
+}
+// Splits a comma separated list of names, e.g. 'ks1,ks2'
+func splitNames(names string) []string {
+	list := []string{}
+	for _, name := range strings.Split(names, ",") {
+		if trimmed := strings.TrimSpace(name); len(trimmed) != 0 {
+			list = append(list, trimmed)
+		}
 	}
+	return list
 }
 func (cmd *BackupRestoreHandler) runBackup(c *kingpin.ParseContext) error {
 	payload, err := json.Marshal(cmd.getArgs())
@@ -218,6 +262,19 @@ func handleBackupRestoreSections(app *kingpin.Application, serviceName string) {
 	backupStart.Flag("s3_secret_key", "S3 secret key").StringVar(&cmd.s3SecretKey)
 	backupStart.Flag("azure_account", "Azure storage account").StringVar(&cmd.azureAccount)
 	backupStart.Flag("azure_key", "Azure secret key").StringVar(&cmd.azureKey)
+	backupStart.Flag("part_size_mb", "Size in MB of each part of a multipart transfer").IntVar(&cmd.partSizeMb)
+	backupStart.Flag("concurrency", "Number of files or parts transferred at once by each node").IntVar(&cmd.concurrency)
+	backupStart.Flag("incremental", "Only upload SSTables not already stored at the external location").BoolVar(&cmd.incremental)
+	backupStart.Flag("compression", "Compression of uploaded files: none, snappy, lz4 or zstd").StringVar(&cmd.compression)
+	backupStart.Flag("throttle_mb_per_sec", "Maximum upload rate in MB/s of each node").IntVar(&cmd.throttleMbPerSec)
+	backupStart.Flag("cluster_throttle_mb_per_sec", "Maximum upload rate in MB/s of the cluster, split across the uploading nodes").IntVar(&cmd.clusterThrottleMbPerSec)
+	backupStart.Flag("azure_blob_type", "Type of the blobs uploaded to Azure storage: page or block").StringVar(&cmd.azureBlobType)
+	backupStart.Flag("concurrent_nodes", "Number of nodes uploading at once").Default("1").IntVar(&cmd.concurrentNodes)
+	backupStart.Flag("concurrent_nodes_per_rack", "Number of nodes of each rack uploading at once, zero for no limit").IntVar(&cmd.concurrentNodesPerRack)
+	backupStart.Flag("continuous", "Keep shipping the SSTables flushed after the backup, for point in time recovery").BoolVar(&cmd.continuous)
+	backupStart.Flag("keyspaces", "Comma separated keyspaces to back up, or empty for all").StringVar(&cmd.keyspaces)
+	backupStart.Flag("column_families", "Comma separated column families to back up, as keyspace.table").StringVar(&cmd.columnFamilies)
+	backupStart.Flag("verify", "Check the uploaded files against the backup's manifest once the upload completes").BoolVar(&cmd.verify)
 	backup.Command(
 		"stop",
 		"Stops a currently running backup").Action(cmd.runBackupStop)
@@ -236,6 +293,18 @@ func handleBackupRestoreSections(app *kingpin.Application, serviceName string) {
 	restoreStart.Flag("s3_secret_key", "S3 secret key").StringVar(&cmd.s3SecretKey)
 	restoreStart.Flag("azure_account", "Azure storage account").StringVar(&cmd.azureAccount)
 	restoreStart.Flag("azure_key", "Azure secret key").StringVar(&cmd.azureKey)
+	restoreStart.Flag("part_size_mb", "Size in MB of each part of a multipart transfer").IntVar(&cmd.partSizeMb)
+	restoreStart.Flag("concurrency", "Number of files or parts transferred at once by each node").IntVar(&cmd.concurrency)
+	restoreStart.Flag("throttle_mb_per_sec", "Maximum download rate in MB/s of each node").IntVar(&cmd.throttleMbPerSec)
+	restoreStart.Flag("cluster_throttle_mb_per_sec", "Maximum download rate in MB/s of the cluster, split across the downloading nodes").IntVar(&cmd.clusterThrottleMbPerSec)
+	restoreStart.Flag("staging_budget_mb", "Disk space in MB each node may use for downloaded files not yet restored, zero to download the whole backup first").IntVar(&cmd.stagingBudgetMb)
+	restoreStart.Flag("concurrent_nodes", "Number of nodes downloading and restoring at once").Default("1").IntVar(&cmd.concurrentNodes)
+	restoreStart.Flag("concurrent_nodes_per_rack", "Number of nodes of each rack downloading and restoring at once, zero for no limit").IntVar(&cmd.concurrentNodesPerRack)
+	restoreStart.Flag("point_in_time", "ISO-8601 time, e.g. 2016-11-02T10:15:30Z, up to which the SSTables shipped after a continuous backup are restored").StringVar(&cmd.pointInTime)
+	restoreStart.Flag("keyspaces", "Comma separated keyspaces to restore, or empty for all").StringVar(&cmd.keyspaces)
+	restoreStart.Flag("column_families", "Comma separated column families to restore, as keyspace.table").StringVar(&cmd.columnFamilies)
+	restoreStart.Flag("import_sstables", "Import the SSTables of each node that has the tokens of its backup instead of streaming them, use --no-import_sstables to always stream").Default("true").BoolVar(&cmd.importSSTables)
+	restoreStart.Flag("load_concurrency", "Number of column families streamed or imported at once by each node").IntVar(&cmd.loadConcurrency)
 	restore.Command(
 		"stop",
 		"Stops a currently running restore").Action(cmd.runRestoreStop)